@@ -1,24 +1,47 @@
 package com.email.legal_agent.config;
 
 
+import com.email.legal_agent.service.KnowledgeBaseService;
+import com.email.legal_agent.service.knowledge.QuantizedEmbeddingStore;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
 @Configuration
 public class LangChainConfig {
 
+    // Loading the ONNX model takes seconds; it is created by the startup warmup in the background
     @Bean
+    @Lazy
     public EmbeddingModel embeddingModel() {
         return new AllMiniLmL6V2EmbeddingModel();
     }
 
     @Bean
-    public EmbeddingStore<TextSegment> embeddingStore() {
-        return new InMemoryEmbeddingStore<>();
+    public EmbeddingStore<TextSegment> embeddingStore(
+            @Value("${legal-assistant.knowledge-base.quantization.mode:INT8}") QuantizedEmbeddingStore.Mode mode,
+            @Value("${legal-assistant.knowledge-base.quantization.rescore:true}") boolean rescore,
+            @Value("${legal-assistant.knowledge-base.quantization.rescore-oversampling:4}") int rescoreOversampling,
+            @Value("${legal-assistant.knowledge-base.quantization.calibration-sample-size:1000}") int calibrationSampleSize) {
+        return new QuantizedEmbeddingStore(mode, rescore, rescoreOversampling, calibrationSampleSize);
     }
-}
\ No newline at end of file
+
+    // Hybrid retriever over the knowledge base; replaces the starter's default retriever,
+    // which would otherwise force the embedding model to load during context refresh
+    @Bean
+    public ContentRetriever contentRetriever(
+            KnowledgeBaseService knowledgeBaseService,
+            @Value("${legal-assistant.knowledge-base.max-results:10}") int maxResults,
+            @Value("${legal-assistant.knowledge-base.min-score:0.7}") double minScore) {
+        return query -> knowledgeBaseService.search(query.text(), maxResults, minScore, null).stream()
+                .map(hit -> Content.from(hit.segment))
+                .toList();
+    }
+}
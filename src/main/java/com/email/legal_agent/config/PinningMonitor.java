@@ -0,0 +1,201 @@
+package com.email.legal_agent.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports virtual threads that block while pinned to their carrier: inside a
+ * {@code synchronized} block or a native frame, a blocking call parks the carrier thread too,
+ * and enough of them at once stall every virtual thread in the process. Listens to the JDK's
+ * {@code jdk.VirtualThreadPinned} flight recorder events above {@code threshold-ms} and
+ * attributes each to the innermost frame of this application (or the innermost non-JDK frame).
+ *
+ * Exported as {@code legal.virtual-threads.pinned} timers tagged by site, plus
+ * {@code legal.virtual-threads.submit-failed}. The first event from a site is logged with its
+ * stack, and {@code /actuator/pinning} lists the sites by total pinned time.
+ */
+@Component
+@Endpoint(id = "pinning")
+public class PinningMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(PinningMonitor.class);
+
+    private static final String APPLICATION_PACKAGE = "com.email.legal_agent.";
+    private static final String OTHER_SITE = "other";
+
+    public record PinnedSite(String site, long events, long totalMs, long maxMs, List<String> stack) {
+    }
+
+    private static final class Site {
+        final List<String> stack;
+        final Timer timer;
+        final LongAdder events = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        Site(List<String> stack, Timer timer) {
+            this.stack = stack;
+            this.timer = timer;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Duration threshold;
+    private final int maxSites;
+    private final int stackDepth;
+    private final Map<String, Site> sites = new ConcurrentHashMap<>();
+    private final Counter submitFailures;
+    private volatile RecordingStream stream;
+
+    public PinningMonitor(MeterRegistry meterRegistry,
+                          @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                          @Value("${legal-assistant.virtual-threads.pinning.enabled:true}") boolean enabled,
+                          @Value("${legal-assistant.virtual-threads.pinning.threshold-ms:20}") long thresholdMillis,
+                          @Value("${legal-assistant.virtual-threads.pinning.max-sites:50}") int maxSites,
+                          @Value("${legal-assistant.virtual-threads.pinning.stack-depth:12}") int stackDepth) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = virtualThreads && enabled;
+        this.threshold = Duration.ofMillis(Math.max(0, thresholdMillis));
+        this.maxSites = Math.max(1, maxSites);
+        this.stackDepth = Math.max(1, stackDepth);
+        this.submitFailures = meterRegistry.counter("legal.virtual-threads.submit-failed");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || stream != null) {
+            return;
+        }
+        try {
+            RecordingStream recording = new RecordingStream();
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+            recording.enable("jdk.VirtualThreadSubmitFailed");
+            recording.onEvent("jdk.VirtualThreadPinned", this::pinned);
+            recording.onEvent("jdk.VirtualThreadSubmitFailed", event -> {
+                submitFailures.increment();
+                logger.error("Virtual thread could not be scheduled: {}", event.getString("exceptionMessage"));
+            });
+            recording.startAsync();
+            stream = recording;
+            logger.info("Watching for virtual threads pinned longer than {} ms", threshold.toMillis());
+        } catch (RuntimeException e) {
+            // A JVM without the flight recorder still runs, just without this report
+            logger.warn("Virtual thread pinning monitor not started: {}", e.getMessage());
+        }
+    }
+
+    public boolean isRunning() {
+        return stream != null;
+    }
+
+    @ReadOperation
+    public Map<String, Object> report() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("enabled", enabled);
+        report.put("running", isRunning());
+        report.put("thresholdMs", threshold.toMillis());
+        report.put("events", events());
+        report.put("sites", sites());
+        return report;
+    }
+
+    public long events() {
+        return sites.values().stream().mapToLong(site -> site.events.sum()).sum();
+    }
+
+    /**
+     * Pinning sites seen so far, longest total pinned time first
+     */
+    public List<PinnedSite> sites() {
+        return sites.entrySet().stream()
+                .map(entry -> new PinnedSite(entry.getKey(), entry.getValue().events.sum(),
+                        TimeUnit.NANOSECONDS.toMillis(entry.getValue().totalNanos.sum()),
+                        TimeUnit.NANOSECONDS.toMillis(entry.getValue().maxNanos.get()), entry.getValue().stack))
+                .sorted(Comparator.comparingLong(PinnedSite::totalMs).reversed())
+                .toList();
+    }
+
+    private void pinned(RecordedEvent event) {
+        List<String> frames = new ArrayList<>();
+        if (event.getStackTrace() != null) {
+            for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+                if (frames.size() == stackDepth) {
+                    break;
+                }
+                frames.add(frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + ":" + frame.getLineNumber());
+            }
+        }
+        record(frames, event.getDuration());
+    }
+
+    /**
+     * Count one pinned interval against the site {@code frames} (innermost first) point to
+     */
+    void record(List<String> frames, Duration duration) {
+        String name = site(frames);
+        Site site = sites.get(name);
+        if (site == null) {
+            // Past max-sites new sites share one entry, so a noisy library can't grow the tag set
+            if (sites.size() >= maxSites && !name.equals(OTHER_SITE)) {
+                name = OTHER_SITE;
+            }
+            String tag = name;
+            site = sites.computeIfAbsent(tag, key -> {
+                logger.warn("Virtual thread pinned for {} ms at {}:\n\t{}", duration.toMillis(), key,
+                        String.join("\n\t", frames));
+                return new Site(List.copyOf(frames), Timer.builder("legal.virtual-threads.pinned")
+                        .tag("site", key)
+                        .register(meterRegistry));
+            });
+        }
+        long nanos = duration.toNanos();
+        site.events.increment();
+        site.totalNanos.add(nanos);
+        site.maxNanos.accumulateAndGet(nanos, Math::max);
+        site.timer.record(duration);
+    }
+
+    private static String site(List<String> frames) {
+        for (String frame : frames) {
+            if (frame.startsWith(APPLICATION_PACKAGE)) {
+                return frame;
+            }
+        }
+        for (String frame : frames) {
+            if (!frame.startsWith("java.") && !frame.startsWith("jdk.") && !frame.startsWith("sun.")) {
+                return frame;
+            }
+        }
+        return frames.isEmpty() ? "unknown" : frames.get(0);
+    }
+
+    @PreDestroy
+    public void stop() {
+        RecordingStream recording = stream;
+        if (recording != null) {
+            stream = null;
+            recording.close();
+        }
+    }
+}
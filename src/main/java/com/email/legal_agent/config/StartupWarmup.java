@@ -0,0 +1,101 @@
+package com.email.legal_agent.config;
+
+import com.email.legal_agent.service.EmbeddingService;
+import com.email.legal_agent.service.LegalTeamService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Loads the embedding model and builds the agent proxies in the background once the
+ * application is up, and reports "warmup" as a health indicator. The readiness group
+ * includes it, so a new instance only takes traffic after warmup inferences have run.
+ */
+@Component("warmup")
+public class StartupWarmup implements HealthIndicator {
+    private static final Logger logger = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private final EmbeddingService embeddingService;
+    private final LegalTeamService legalTeamService;
+    private final ExecutorService startupExecutor;
+    private final boolean enabled;
+
+    private volatile CompletableFuture<Void> warmup;
+    private volatile long modelLoadMs = -1;
+    private volatile long warmupInferenceMs = -1;
+    private volatile long timeToReadyMs = -1;
+    private volatile Throwable failure;
+
+    public StartupWarmup(EmbeddingService embeddingService,
+                         LegalTeamService legalTeamService,
+                         ExecutorService startupExecutor,
+                         @Value("${legal-assistant.startup.warmup:true}") boolean enabled) {
+        this.embeddingService = embeddingService;
+        this.legalTeamService = legalTeamService;
+        this.startupExecutor = startupExecutor;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Started after refresh so background bean creation can't contend with the context's singleton lock
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            logger.info("Startup warmup disabled - models and agents load on first use");
+            return;
+        }
+
+        CompletableFuture<Void> embeddings = embeddingService.warmUp(startupExecutor)
+                .thenAccept(timings -> {
+                    modelLoadMs = timings[0];
+                    warmupInferenceMs = timings[1];
+                });
+        CompletableFuture<Void> agents = legalTeamService.initializeAgents(startupExecutor);
+
+        warmup = CompletableFuture.allOf(embeddings, agents).whenComplete((ignored, error) -> {
+            if (error != null) {
+                failure = error;
+                logger.error("Startup warmup failed", error);
+                return;
+            }
+            timeToReadyMs = ManagementFactory.getRuntimeMXBean().getUptime();
+            logger.info("Warmup complete - time to ready: {} ms (model load {} ms, warmup inference {} ms)",
+                    timeToReadyMs, modelLoadMs, warmupInferenceMs);
+        });
+    }
+
+    public boolean isReady() {
+        return !enabled || (warmup != null && warmup.isDone() && failure == null);
+    }
+
+    @Override
+    public Health health() {
+        if (!enabled) {
+            return Health.up().withDetail("warmup", "disabled").build();
+        }
+        if (failure != null) {
+            return Health.down(failure).build();
+        }
+        if (!isReady()) {
+            return Health.outOfService()
+                    .withDetail("embeddingModelLoaded", modelLoadMs >= 0)
+                    .withDetail("agentsInitialized", legalTeamService.agentsInitialized())
+                    .build();
+        }
+        return Health.up()
+                .withDetail("modelLoadMs", modelLoadMs)
+                .withDetail("warmupInferenceMs", warmupInferenceMs)
+                .withDetail("timeToReadyMs", timeToReadyMs)
+                .build();
+    }
+}
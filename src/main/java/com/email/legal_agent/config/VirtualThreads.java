@@ -0,0 +1,85 @@
+package com.email.legal_agent.config;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for work that mostly waits on the model or the network. With
+ * {@code spring.threads.virtual.enabled} every task gets its own virtual thread and a semaphore
+ * keeps at most {@code concurrency} of them running, so the bound still protects upstream while
+ * a waiting task costs a few hundred bytes instead of a platform stack. Otherwise the usual fixed
+ * pool of named daemon threads.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static ExecutorService executor(boolean virtual, String name, int concurrency) {
+        int threads = Math.max(1, concurrency);
+        if (virtual) {
+            return new Bounded(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory()),
+                    threads);
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Tasks start at once and queue on the semaphore, parked rather than holding a thread
+    private static final class Bounded extends AbstractExecutorService {
+        private final ExecutorService threads;
+        private final Semaphore permits;
+
+        Bounded(ExecutorService threads, int concurrency) {
+            this.threads = threads;
+            this.permits = new Semaphore(concurrency, true);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            threads.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            threads.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return threads.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return threads.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return threads.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return threads.awaitTermination(timeout, unit);
+        }
+    }
+}
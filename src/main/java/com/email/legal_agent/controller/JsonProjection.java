@@ -0,0 +1,79 @@
+package com.email.legal_agent.controller;
+
+import com.email.legal_agent.dto.LegalAnalysisResult;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * {@code ?fields=} projection for {@link LegalAnalysisResult} responses. Unrequested properties
+ * are skipped by the serializer itself, so their values are never rendered, and the JSON is
+ * generated straight into the response stream instead of being built up as one string first.
+ *
+ * The filter is attached through a mix-in on a private copy of the application's mapper, so
+ * every other serialization of the result (session persistence, batch events) is unaffected.
+ */
+@Component
+public class JsonProjection {
+
+    private static final String FILTER = "fields";
+
+    @JsonFilter(FILTER)
+    private interface Projected {
+    }
+
+    private final ObjectWriter writer;
+    private final Set<String> resultFields;
+
+    public JsonProjection(ObjectMapper objectMapper) {
+        ObjectMapper projecting = objectMapper.copy().addMixIn(LegalAnalysisResult.class, Projected.class);
+        this.writer = projecting.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.resultFields = projecting.getSerializationConfig()
+                .introspect(projecting.constructType(LegalAnalysisResult.class))
+                .findProperties().stream()
+                .map(BeanPropertyDefinition::getName)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * Parse a comma-separated field list; null or blank selects every field
+     */
+    public Set<String> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return Set.of();
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        List<String> unknown = new ArrayList<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            (resultFields.contains(name) ? selected : unknown).add(name);
+        }
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("Unknown fields " + unknown + "; available: " + resultFields);
+        }
+        return selected;
+    }
+
+    /**
+     * Serialize a result, or a list of them, keeping only {@code fields} (all when empty)
+     */
+    public StreamingResponseBody body(Object value, Set<String> fields) {
+        SimpleBeanPropertyFilter filter = fields.isEmpty()
+                ? SimpleBeanPropertyFilter.serializeAll()
+                : SimpleBeanPropertyFilter.filterOutAllExcept(fields);
+        ObjectWriter projected = writer.with(new SimpleFilterProvider().addFilter(FILTER, filter));
+        return out -> projected.writeValue(out, value);
+    }
+}
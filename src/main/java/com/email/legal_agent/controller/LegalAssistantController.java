@@ -4,51 +4,136 @@ import com.email.legal_agent.dto.LegalAnalysisResult;
 import com.email.legal_agent.dto.LegalQueryRequest;
 
 import com.email.legal_agent.service.LegalTeamService;
+import com.email.legal_agent.service.batch.BatchAnalysisService;
+import com.email.legal_agent.service.batch.BatchJob;
+import com.email.legal_agent.service.cancellation.CancellationRegistry;
+import com.email.legal_agent.service.cancellation.CancellationToken;
+import com.email.legal_agent.service.document.DocumentExtractionService;
+import com.email.legal_agent.service.document.ExtractedDocument;
+import com.email.legal_agent.service.scheduling.AgentScheduler;
+import com.email.legal_agent.service.scheduling.Priority;
+import com.email.legal_agent.service.session.SessionStore;
+import com.email.legal_agent.service.usage.TokenAccounting;
+import com.email.legal_agent.service.usage.TokenAccounting.QuotaAction;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.*;
 
 @RestController
 @RequestMapping("/api/legal-assistant")
-@CrossOrigin(origins = "*", maxAge = 3600)
+@CrossOrigin(origins = "*", maxAge = 3600, exposedHeaders = {"X-Batch-Id", "X-Job-Id", "X-Next-Cursor"})
 public class LegalAssistantController {
 
     private static final Logger logger = LoggerFactory.getLogger(LegalAssistantController.class);
 
+    private static final String TENANT_HEADER = "X-Tenant-Id";
+    private static final String API_KEY_HEADER = "X-API-Key";
+    private static final String JOB_ID_HEADER = "X-Job-Id";
+    private static final String DEADLINE_HEADER = "X-Deadline-Seconds";
+    private static final String PROBE_HEADER = "X-Disconnect-Probe";
+
     @Autowired
     private LegalTeamService legalTeamService;
 
+    @Autowired
+    private DocumentExtractionService documentExtractionService;
+
+    @Autowired
+    private BatchAnalysisService batchAnalysisService;
+
+    @Autowired
+    private JsonProjection jsonProjection;
+
+    @Autowired
+    private AgentScheduler agentScheduler;
+
+    @Autowired
+    private TokenAccounting tokenAccounting;
+
+    @Autowired
+    private CancellationRegistry cancellations;
+
+    @Value("${legal-assistant.api.max-page-size:200}")
+    private int maxPageSize;
+
+    @Value("${legal-assistant.cancellation.disconnect-probe-ms:2000}")
+    private long disconnectProbeMillis;
+
     @PostMapping("/analyze")
 
 
-    public ResponseEntity<LegalAnalysisResult> analyzeLegalQuery(
-            @Valid @RequestBody LegalQueryRequest request) {
+    @SuppressWarnings("try")
+    public ResponseEntity<?> analyzeLegalQuery(
+            @Valid @RequestBody LegalQueryRequest request,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestHeader(value = TENANT_HEADER, required = false) String tenantId,
+            @RequestHeader(value = API_KEY_HEADER, required = false) String apiKey,
+            @RequestHeader(value = JOB_ID_HEADER, required = false) String jobId,
+            @RequestHeader(value = DEADLINE_HEADER, required = false) Long deadlineSeconds,
+            @RequestHeader(value = PROBE_HEADER, defaultValue = "false") boolean probe) {
 
+        CancellationToken token = null;
         try {
-            logger.info("Received legal query analysis request: {}", request.getQuery());
+            Set<String> selected = jsonProjection.parse(fields);
+            Priority priority = Priority.parse(request.getPriority());
+            String tenant = tenant(tenantId, apiKey);
+            QuotaAction quota = tokenAccounting.quota(tenant);
+            if (quota == QuotaAction.REJECT) {
+                return overQuota(tenant);
+            }
+            logger.info("Received legal query analysis request ({} chars)", request.getQuery().length());
 
             // Generate session ID if not provided
             String sessionId = request.getSessionId() != null ?
                     request.getSessionId() :
                     UUID.randomUUID().toString();
 
-            // Process the query through the legal team
-            LegalAnalysisResult result = legalTeamService.processLegalQuery(
-                    request.getQuery(),
-                    sessionId
-            );
-
-            logger.info("Legal analysis completed for session: {}", sessionId);
-            return ResponseEntity.ok(result);
-
+            // Process the query through the legal team once the scheduler grants a slot; a tenant
+            // near its token quota gets the quick tier instead
+            boolean degraded = quota == QuotaAction.DEGRADE;
+            token = cancellations.register(jobId(jobId), tenant, deadlineSeconds);
+            return respond(token, probe, () -> {
+                LegalAnalysisResult result;
+                try (AgentScheduler.Permit permit = agentScheduler.acquire(schedulingClass(priority, quota), tenant);
+                     TokenAccounting.Scope usage = tokenAccounting.open(tenant, sessionId)) {
+                    result = legalTeamService.processLegalQuery(
+                            request.getQuery(),
+                            sessionId,
+                            degraded ? "QUICK" : request.getAnalysisType(),
+                            degraded ? "BRIEF" : request.getResponseLength()
+                    );
+                }
+                logger.info("Legal analysis completed for session: {}", sessionId);
+                return result;
+            }, selected);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(LegalAnalysisResult.error(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return busy(e);
+        } catch (CancellationException e) {
+            return cancelled(token, e);
         } catch (Exception e) {
             logger.error("Error processing legal query", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -58,12 +143,33 @@ public class LegalAssistantController {
 
     @PostMapping("/analyze-document")
 
-    public ResponseEntity<LegalAnalysisResult> analyzeDocument(
+    @SuppressWarnings("try")
+    public ResponseEntity<?> analyzeDocument(
             @RequestParam("file") MultipartFile file,
             @RequestParam(value = "sessionId", required = false) String sessionId,
-            @RequestParam(value = "analysisType", defaultValue = "COMPREHENSIVE") String analysisType) {
-
+            @RequestParam(value = "analysisType", defaultValue = "COMPREHENSIVE") String analysisType,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "priority", defaultValue = "MEDIUM") String priority,
+            @RequestParam(value = "responseLength", defaultValue = "DETAILED") String responseLength,
+            @RequestHeader(value = TENANT_HEADER, required = false) String tenantId,
+            @RequestHeader(value = API_KEY_HEADER, required = false) String apiKey,
+            @RequestHeader(value = JOB_ID_HEADER, required = false) String jobId,
+            @RequestHeader(value = DEADLINE_HEADER, required = false) Long deadlineSeconds,
+            @RequestHeader(value = PROBE_HEADER, defaultValue = "false") boolean probe) {
+
+        CancellationToken token = null;
         try {
+            Set<String> selected = jsonProjection.parse(fields);
+            // Rejected before the upload is extracted
+            LegalTeamService.ResponseLength.parse(responseLength);
+            String tenant = tenant(tenantId, apiKey);
+            QuotaAction quota = tokenAccounting.quota(tenant);
+            if (quota == QuotaAction.REJECT) {
+                return overQuota(tenant);
+            }
+            // Documents have no cheaper tier, so a degraded tenant's uploads wait behind other work
+            Priority schedulingClass = schedulingClass(Priority.parse(priority),
+                    quota == QuotaAction.DEGRADE ? QuotaAction.QUEUE : quota);
             logger.info("Received document analysis request: {}", file.getOriginalFilename());
 
             if (file.isEmpty()) {
@@ -78,27 +184,35 @@ public class LegalAssistantController {
             }
 
             // Generate session ID if not provided
-            if (sessionId == null) {
-                sessionId = UUID.randomUUID().toString();
-            }
+            String session = sessionId != null ? sessionId : UUID.randomUUID().toString();
 
             // Extract text from document
-            String documentText = extractTextFromDocument(file);
-
-            // Create query for document analysis
-            String query = String.format(
-                    "Analyze this %s document:\n\nFilename: %s\n\nContent:\n%s",
-                    analysisType.toLowerCase(),
-                    file.getOriginalFilename(),
-                    documentText
-            );
-
-            // Process through legal team
-            LegalAnalysisResult result = legalTeamService.processLegalQuery(query, sessionId);
-
-            logger.info("Document analysis completed for: {}", file.getOriginalFilename());
-            return ResponseEntity.ok(result);
+            ExtractedDocument document = documentExtractionService.extract(file);
+            if (document.text().isBlank()) {
+                return ResponseEntity.badRequest()
+                        .body(LegalAnalysisResult.error("No extractable text found (scanned documents need OCR first)"));
+            }
 
+            // Process through legal team; large documents are map-reduced over chunks
+            String filename = file.getOriginalFilename();
+            token = cancellations.register(jobId(jobId), tenant, deadlineSeconds);
+            return respond(token, probe, () -> {
+                LegalAnalysisResult result;
+                try (AgentScheduler.Permit permit = agentScheduler.acquire(schedulingClass, tenant);
+                     TokenAccounting.Scope usage = tokenAccounting.open(tenant, session)) {
+                    result = legalTeamService.analyzeDocument(document, analysisType, session, tenant, responseLength);
+                }
+                logger.info("Document analysis completed for: {}", filename);
+                return result;
+            }, selected);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(LegalAnalysisResult.error(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return busy(e);
+        } catch (CancellationException e) {
+            return cancelled(token, e);
         } catch (Exception e) {
             logger.error("Error analyzing document", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -106,20 +220,133 @@ public class LegalAssistantController {
         }
     }
 
+    /**
+     * Analyse several files and/or ZIP archives; each result is streamed back as an NDJSON line
+     * as soon as its document finishes, followed by a summary line
+     */
+    @PostMapping(value = "/analyze-batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+
+    public ResponseEntity<?> analyzeBatch(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "analysisType", defaultValue = "COMPREHENSIVE") String analysisType,
+            @RequestHeader(value = TENANT_HEADER, required = false) String tenantId,
+            @RequestHeader(value = API_KEY_HEADER, required = false) String apiKey) {
+
+        try {
+            String tenant = tenant(tenantId, apiKey);
+            if (tokenAccounting.quota(tenant) == QuotaAction.REJECT) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).contentType(MediaType.APPLICATION_JSON)
+                        .body(LegalAnalysisResult.error(quotaMessage(tenant)));
+            }
+            BatchJob job = batchAnalysisService.submit(files, analysisType, tenant);
+            StreamingResponseBody body = out -> batchAnalysisService.stream(job, 0, out);
+            return ResponseEntity.ok()
+                    .header("X-Batch-Id", job.id())
+                    .header(JOB_ID_HEADER, job.id())
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(body);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                    .body(LegalAnalysisResult.error(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error starting batch analysis", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.APPLICATION_JSON)
+                    .body(LegalAnalysisResult.error("Failed to start batch: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Reconnect to one of the caller's batches: replays the events after sequence {@code after},
+     * then follows live results; 404 if the tenant has no such batch
+     */
+    @GetMapping(value = "/analyze-batch/{batchId}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+
+    public ResponseEntity<StreamingResponseBody> resumeBatch(
+            @PathVariable String batchId,
+            @RequestParam(value = "after", defaultValue = "0") long after,
+            @RequestHeader(value = TENANT_HEADER, required = false) String tenantId,
+            @RequestHeader(value = API_KEY_HEADER, required = false) String apiKey) {
+
+        return batchAnalysisService.find(batchId, tenant(tenantId, apiKey))
+                .map(job -> ResponseEntity.ok()
+                        .header("X-Batch-Id", job.id())
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .body((StreamingResponseBody) out -> batchAnalysisService.stream(job, after, out)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Conversation turns, oldest first. With {@code cursor} or {@code limit} they come a page at a
+     * time and, when more remain, the {@code X-Next-Cursor} header holds the cursor for the next
+     * page; without either the whole history is returned, as before paging existed.
+     */
     @GetMapping("/conversation/{sessionId}")
 
     public ResponseEntity<List<String>> getConversationHistory(
-            @PathVariable String sessionId) {
+            @PathVariable String sessionId,
+            @RequestParam(value = "cursor", required = false) Integer cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
 
         try {
-            List<String> history = legalTeamService.getConversationHistory(sessionId);
-            return ResponseEntity.ok(history);
+            if (cursor == null && limit == null) {
+                return ResponseEntity.ok(legalTeamService.getConversationHistory(sessionId));
+            }
+            SessionStore.Page<String> page = legalTeamService.getConversationHistory(sessionId,
+                    cursor != null ? cursor : 0, pageSize(limit));
+            return withCursor(ResponseEntity.ok(), page).body(page.items());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             logger.error("Error retrieving conversation history", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    /**
+     * Analysis results of a session, paged like the conversation and projected with {@code ?fields=}
+     */
+    @GetMapping("/conversation/{sessionId}/results")
+
+    public ResponseEntity<?> getAnalysisResults(
+            @PathVariable String sessionId,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "cursor", defaultValue = "0") int cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+
+        try {
+            Set<String> selected = jsonProjection.parse(fields);
+            SessionStore.Page<LegalAnalysisResult> page =
+                    legalTeamService.getAnalysisResults(sessionId, cursor, pageSize(limit));
+            return withCursor(ResponseEntity.ok(), page)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(jsonProjection.body(page.items(), selected));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(LegalAnalysisResult.error(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error retrieving analysis results", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Cancel one of the caller's running analyses or batches, by its {@code X-Job-Id} (a batch's id is
+     * its {@code X-Batch-Id}); 404 if the tenant has no such job in flight
+     */
+    @DeleteMapping("/jobs/{jobId}")
+
+    public ResponseEntity<Void> cancelJob(
+            @PathVariable String jobId,
+            @RequestHeader(value = TENANT_HEADER, required = false) String tenantId,
+            @RequestHeader(value = API_KEY_HEADER, required = false) String apiKey) {
+
+        if (cancellations.cancel(jobId, tenant(tenantId, apiKey), CancellationToken.Reason.CLIENT_REQUEST)) {
+            return ResponseEntity.accepted().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+
     @DeleteMapping("/conversation/{sessionId}")
 
     public ResponseEntity<Void> clearConversationHistory(
@@ -134,36 +361,72 @@ public class LegalAssistantController {
         }
     }
 
+    /**
+     * Month-to-date token usage, cost and quota state of the calling tenant
+     */
+    @GetMapping("/usage")
+
+    public ResponseEntity<TokenAccounting.TenantUsage> getUsage(
+            @RequestHeader(value = TENANT_HEADER, required = false) String tenantId,
+            @RequestHeader(value = API_KEY_HEADER, required = false) String apiKey) {
+        return ResponseEntity.ok(tokenAccounting.usage(tenant(tenantId, apiKey)));
+    }
+
     @GetMapping("/health")
 
     public ResponseEntity<String> healthCheck() {
         return ResponseEntity.ok("Legal Assistant service is running");
     }
 
+    /**
+     * One fast agent call with a small output budget; returns the answer text
+     */
     @PostMapping("/quick-analysis")
 
-    public ResponseEntity<String> quickAnalysis(@RequestParam String query) {
+    @SuppressWarnings("try")
+    public ResponseEntity<String> quickAnalysis(
+            @RequestParam String query,
+            @RequestParam(value = "sessionId", required = false) String sessionId,
+            @RequestParam(value = "responseLength", defaultValue = "BRIEF") String responseLength,
+            @RequestParam(value = "priority", defaultValue = "MEDIUM") String priority,
+            @RequestHeader(value = TENANT_HEADER, required = false) String tenantId,
+            @RequestHeader(value = API_KEY_HEADER, required = false) String apiKey,
+            @RequestHeader(value = JOB_ID_HEADER, required = false) String jobId,
+            @RequestHeader(value = DEADLINE_HEADER, required = false) Long deadlineSeconds) {
+        CancellationToken token = null;
         try {
-            logger.info("Quick analysis request: {}", query);
-
-            // For quick analysis, just use one agent based on query type
-            String result;
-            String lowerQuery = query.toLowerCase();
-
-            if (lowerQuery.contains("contract") || lowerQuery.contains("agreement")) {
-                // Use contract analyst for quick contract questions
-                result = "Quick Contract Analysis: " + query + "\n\n" +
-                        "⚠️ For full analysis including compliance and strategic recommendations, use /analyze endpoint";
-            } else if (lowerQuery.contains("compliance") || lowerQuery.contains("gdpr") || lowerQuery.contains("ccpa")) {
-                result = "Quick Compliance Check: " + query + "\n\n" +
-                        "⚠️ For comprehensive compliance analysis, use /analyze endpoint";
-            } else {
-                result = "Quick Legal Guidance: " + query + "\n\n" +
-                        "💡 Recommendation: Use /analyze endpoint for comprehensive multi-agent analysis";
+            logger.info("Quick analysis request ({} chars)", query.length());
+            LegalTeamService.ResponseLength length = LegalTeamService.ResponseLength.parse(responseLength);
+            String tenant = tenant(tenantId, apiKey);
+            QuotaAction quota = tokenAccounting.quota(tenant);
+            if (quota == QuotaAction.REJECT) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(quotaMessage(tenant));
             }
 
-            return ResponseEntity.ok(result);
-
+            // One short call: cancellable by deadline or DELETE /jobs/{id}, without a disconnect probe
+            LegalAnalysisResult result;
+            token = cancellations.register(jobId(jobId), tenant, deadlineSeconds);
+            try (CancellationToken.Scope bound = token.bind();
+                 AgentScheduler.Permit permit = agentScheduler.acquire(schedulingClass(Priority.parse(priority), quota), tenant);
+                 TokenAccounting.Scope usage = tokenAccounting.open(tenant, sessionId)) {
+                result = legalTeamService.quickAnalysis(query, sessionId,
+                        quota == QuotaAction.DEGRADE ? LegalTeamService.ResponseLength.BRIEF : length);
+            } finally {
+                cancellations.unregister(token);
+            }
+            if ("ERROR".equals(result.getStatus())) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(result.getErrorMessage());
+            }
+            return ResponseEntity.ok(result.getExecutiveSummary());
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body("Analysis capacity exhausted: " + e.getMessage());
+        } catch (CancellationException e) {
+            return ResponseEntity.status(cancelledStatus(token)).body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error in quick analysis", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -172,43 +435,158 @@ public class LegalAssistantController {
     }
 
     // Helper methods
-    private boolean isValidDocumentType(String contentType) {
-        if (contentType == null) return false;
+    /**
+     * The scheduling tenant: the tenant header if sent, else a digest of the API key
+     */
+    private static String tenant(String tenantId, String apiKey) {
+        if (tenantId != null && !tenantId.isBlank()) {
+            return tenantId.trim();
+        }
+        if (apiKey != null && !apiKey.isBlank()) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+                return "key:" + HexFormat.of().formatHex(digest, 0, 8);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return "anonymous";
+    }
 
-        return contentType.equals("application/pdf") ||
-                contentType.equals("application/msword") ||
-                contentType.equals("application/vnd.openxmlformats-officedocument.wordprocessingml.document") ||
-                contentType.equals("text/plain") ||
-                contentType.startsWith("text/");
+    // Over-quota tenants queue behind everyone else
+    private static Priority schedulingClass(Priority requested, QuotaAction quota) {
+        return quota == QuotaAction.QUEUE ? Priority.LOW : requested;
     }
 
-    private String extractTextFromDocument(MultipartFile file) throws Exception {
-        String contentType = file.getContentType();
-        byte[] bytes = file.getBytes();
+    private static ResponseEntity<LegalAnalysisResult> overQuota(String tenant) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .body(LegalAnalysisResult.error(quotaMessage(tenant)));
+    }
 
-        if (contentType == null) {
-            throw new IllegalArgumentException("Unknown file type");
+    private static String quotaMessage(String tenant) {
+        return "Monthly token quota of tenant " + tenant + " is exhausted";
+    }
+
+    private static ResponseEntity<LegalAnalysisResult> busy(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(LegalAnalysisResult.error("Analysis capacity exhausted: " + e.getMessage()));
+    }
+
+    /**
+     * Run an analysis as job {@code token} and answer with its result, failures mapped to their
+     * usual statuses by the caller.
+     *
+     * Tomcat doesn't report a client that hangs up while the response is idle, so only a failed
+     * write reveals it. A client that sends {@code X-Disconnect-Probe: true} accepts that in
+     * exchange for cancellation on disconnect: if the job is still running after
+     * {@code disconnect-probe-ms}, the response is committed as 200 and a space (leading
+     * whitespace is valid JSON) is written every interval until the result follows. Failures after
+     * that point can only be reported in the body, as an ERROR result.
+     */
+    private ResponseEntity<?> respond(CancellationToken token, boolean probe, Callable<LegalAnalysisResult> analysis,
+                                      Set<String> fields) throws Exception {
+        CompletableFuture<LegalAnalysisResult> job = cancellations.submit(token, analysis);
+        LegalAnalysisResult result;
+        try {
+            result = probe && disconnectProbeMillis > 0
+                    ? job.get(disconnectProbeMillis, TimeUnit.MILLISECONDS)
+                    : job.get();
+        } catch (TimeoutException e) {
+            return ResponseEntity.ok()
+                    .header(JOB_ID_HEADER, token.id())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body((StreamingResponseBody) out -> streamWhenDone(token, job, fields, out));
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } catch (InterruptedException e) {
+            token.cancel(CancellationToken.Reason.CLIENT_DISCONNECT);
+            throw e;
         }
+        return ResponseEntity.ok()
+                .header(JOB_ID_HEADER, token.id())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jsonProjection.body(result, fields));
+    }
 
-        switch (contentType) {
-            case "text/plain":
-                return new String(bytes);
-            case "application/pdf":
-                // For PDF extraction, you would typically use a library like PDFBox
-                // For now, return a placeholder
-                return "[PDF Content - " + file.getOriginalFilename() + "]\n" +
-                        "Note: PDF text extraction requires additional libraries like Apache PDFBox";
-            case "application/msword":
-            case "application/vnd.openxmlformats-officedocument.wordprocessingml.document":
-                // For Word document extraction, you would use Apache POI
-                return "[Word Document Content - " + file.getOriginalFilename() + "]\n" +
-                        "Note: Word document extraction requires Apache POI library";
-            default:
-                if (contentType.startsWith("text/")) {
-                    return new String(bytes);
+    private void streamWhenDone(CancellationToken token, CompletableFuture<LegalAnalysisResult> job,
+                                Set<String> fields, OutputStream out) throws IOException {
+        LegalAnalysisResult result;
+        try {
+            while (true) {
+                try {
+                    result = job.get(disconnectProbeMillis, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    out.write(' ');
+                    out.flush();
                 }
-                throw new IllegalArgumentException("Unsupported file type: " + contentType);
+            }
+        } catch (IOException e) {
+            logger.info("Client of job {} disconnected, cancelling", token.id());
+            token.cancel(CancellationToken.Reason.CLIENT_DISCONNECT);
+            throw e;
+        } catch (InterruptedException e) {
+            token.cancel(CancellationToken.Reason.CLIENT_DISCONNECT);
+            Thread.currentThread().interrupt();
+            return;
+        } catch (CancellationException e) {
+            // The status is already sent; the error travels in the body
+            result = LegalAnalysisResult.error(e.getMessage());
+            fields = Set.of();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RejectedExecutionException) {
+                result = LegalAnalysisResult.error("Analysis capacity exhausted: " + cause.getMessage());
+            } else if (cause instanceof IllegalArgumentException) {
+                result = LegalAnalysisResult.error(cause.getMessage());
+            } else {
+                logger.error("Error in analysis job {}", token.id(), cause);
+                result = LegalAnalysisResult.error("Failed to process query: " + cause.getMessage());
+            }
+            fields = Set.of();
+        }
+        jsonProjection.body(result, fields).writeTo(out);
+    }
+
+    private static ResponseEntity<LegalAnalysisResult> cancelled(CancellationToken token, CancellationException e) {
+        return ResponseEntity.status(cancelledStatus(token))
+                .body(LegalAnalysisResult.error(e.getMessage()));
+    }
+
+    // 504 past the deadline; 409 when cancelled by the client (a departed client never reads it)
+    private static HttpStatus cancelledStatus(CancellationToken token) {
+        return token != null && token.reason() == CancellationToken.Reason.DEADLINE
+                ? HttpStatus.GATEWAY_TIMEOUT
+                : HttpStatus.CONFLICT;
+    }
+
+    private static String jobId(String requested) {
+        return requested != null && !requested.isBlank() ? requested.trim() : UUID.randomUUID().toString();
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return maxPageSize;
         }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    private static ResponseEntity.BodyBuilder withCursor(ResponseEntity.BodyBuilder builder, SessionStore.Page<?> page) {
+        return page.next() < 0 ? builder : builder.header("X-Next-Cursor", Integer.toString(page.next()));
+    }
+
+    private boolean isValidDocumentType(String contentType) {
+        if (contentType == null) return false;
+
+        return contentType.equals("application/pdf") ||
+                contentType.equals("application/msword") ||
+                contentType.equals("application/vnd.openxmlformats-officedocument.wordprocessingml.document") ||
+                contentType.equals("text/plain") ||
+                contentType.startsWith("text/");
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,42 @@
+package com.email.legal_agent.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of a batch analysis stream: a finished document, or the closing summary.
+ * {@code sequence} numbers lines in the order they were produced, so a client that
+ * reconnects can ask for everything after the last line it saw.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchEvent(String batchId,
+                         long sequence,
+                         String event,
+                         Integer index,
+                         String filename,
+                         String status,
+                         String error,
+                         Long elapsedMs,
+                         LegalAnalysisResult result,
+                         Integer documents,
+                         Integer failed) {
+
+    public static final String DOCUMENT = "document";
+    public static final String COMPLETED = "completed";
+
+    public static BatchEvent document(String batchId, long sequence, int index, String filename,
+                                      LegalAnalysisResult result, long elapsedMs) {
+        boolean failed = "ERROR".equals(result.getStatus());
+        return new BatchEvent(batchId, sequence, DOCUMENT, index, filename, failed ? "FAILED" : "SUCCESS",
+                failed ? result.getErrorMessage() : null, elapsedMs, failed ? null : result, null, null);
+    }
+
+    public static BatchEvent failure(String batchId, long sequence, int index, String filename,
+                                     String error, long elapsedMs) {
+        return new BatchEvent(batchId, sequence, DOCUMENT, index, filename, "FAILED", error, elapsedMs,
+                null, null, null);
+    }
+
+    public static BatchEvent completed(String batchId, long sequence, int documents, int failed) {
+        return new BatchEvent(batchId, sequence, COMPLETED, null, null, null, null, null, null, documents, failed);
+    }
+}
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class LegalAnalysisResult {
@@ -27,10 +28,19 @@ public class LegalAnalysisResult {
     private List<String> actionItems;
     private double confidenceScore;
 
+    // Risk movements against the previous version of the same document in this session
+    private List<String> riskChanges;
+
     private boolean requiresHumanReview;
     private String errorMessage;
     private String status;
 
+    // Chunk counts, per-stage timings and similar diagnostics; null for plain queries
+    private Map<String, Object> processingStats;
+
+    // Model tokens and cost of this analysis, per agent; null when it ran outside token accounting
+    private TokenUsageBreakdown tokenUsage;
+
     // Constructors
     public LegalAnalysisResult() {
         this.timestamp = new Date();
@@ -185,6 +195,30 @@ public class LegalAnalysisResult {
         this.status = status;
     }
 
+    public List<String> getRiskChanges() {
+        return riskChanges;
+    }
+
+    public void setRiskChanges(List<String> riskChanges) {
+        this.riskChanges = riskChanges;
+    }
+
+    public Map<String, Object> getProcessingStats() {
+        return processingStats;
+    }
+
+    public void setProcessingStats(Map<String, Object> processingStats) {
+        this.processingStats = processingStats;
+    }
+
+    public TokenUsageBreakdown getTokenUsage() {
+        return tokenUsage;
+    }
+
+    public void setTokenUsage(TokenUsageBreakdown tokenUsage) {
+        this.tokenUsage = tokenUsage;
+    }
+
     @Override
     public String toString() {
         return "LegalAnalysisResult{" +
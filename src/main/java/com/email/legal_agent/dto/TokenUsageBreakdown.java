@@ -0,0 +1,16 @@
+package com.email.legal_agent.dto;
+
+import java.util.Map;
+
+/**
+ * Model tokens one analysis consumed, in total and per agent, priced at the configured rates
+ */
+public record TokenUsageBreakdown(long promptTokens,
+                                  long completionTokens,
+                                  long calls,
+                                  double costUsd,
+                                  Map<String, AgentUsage> byAgent) {
+
+    public record AgentUsage(long calls, long promptTokens, long completionTokens, double costUsd) {
+    }
+}
@@ -0,0 +1,346 @@
+package com.email.legal_agent.service;
+
+import com.email.legal_agent.service.replay.TrafficTrace;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shared front for the ONNX {@link EmbeddingModel}.
+ *
+ * Single-text {@link #embed(String)} calls are served from a bounded LRU cache keyed by a
+ * hash of the text; misses are queued and a batcher thread coalesces whatever arrives
+ * within a short window into one {@code embedAll} call on a dedicated inference pool.
+ * Identical texts already in flight share the same pending result. {@link #embedAll} reads and
+ * fills the same cache. Callers wait at most {@code timeout-ms} for a result, and shutting
+ * down fails every caller still waiting.
+ *
+ * The model itself is resolved lazily - normally by {@link #warmUp} on the startup
+ * executor - so loading ONNX weights doesn't hold up application startup.
+ */
+@Service
+public class EmbeddingService {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingService.class);
+
+    private static final List<TextSegment> WARMUP_TEXTS = List.of(
+            TextSegment.from("The Licensee shall indemnify and hold harmless the Licensor from all claims."),
+            TextSegment.from("Consumers have the right to opt out of the sale of personal information under Section 1798.120."),
+            TextSegment.from("This Agreement may be terminated by either party upon thirty days written notice."));
+
+    private final ObjectProvider<EmbeddingModel> embeddingModelProvider;
+    private final TrafficTrace trafficTrace;
+    private volatile EmbeddingModel embeddingModel;
+    // Loading takes seconds; callers wait on a lock so virtual threads park rather than pin
+    private final ReentrantLock modelLock = new ReentrantLock();
+    private final int maxBatchSize;
+    private final long batchWindowNanos;
+    private final int cacheMaxEntries;
+    private final long timeoutMillis;
+
+    private final BlockingQueue<PendingEmbedding> queue = new LinkedBlockingQueue<>();
+    private final Map<TextKey, CompletableFuture<Embedding>> inFlight = new ConcurrentHashMap<>();
+    private final Map<TextKey, Embedding> cache;
+    private final ExecutorService inferencePool;
+    private final Thread batcher;
+    private volatile boolean running = true;
+
+    private final DistributionSummary batchSizes;
+    private final Timer queueWait;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    public EmbeddingService(ObjectProvider<EmbeddingModel> embeddingModelProvider,
+                            MeterRegistry meterRegistry,
+                            TrafficTrace trafficTrace,
+                            @Value("${legal-assistant.embedding.batch-max-size:32}") int maxBatchSize,
+                            @Value("${legal-assistant.embedding.batch-window-ms:5}") long batchWindowMs,
+                            @Value("${legal-assistant.embedding.cache-max-entries:10000}") int cacheMaxEntries,
+                            @Value("${legal-assistant.embedding.inference-threads:0}") int inferenceThreads,
+                            @Value("${legal-assistant.embedding.timeout-ms:30000}") long timeoutMillis) {
+        this.embeddingModelProvider = embeddingModelProvider;
+        this.trafficTrace = trafficTrace;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(batchWindowMs);
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.timeoutMillis = timeoutMillis;
+
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TextKey, Embedding> eldest) {
+                return size() > EmbeddingService.this.cacheMaxEntries;
+            }
+        });
+
+        int threads = inferenceThreads > 0 ? inferenceThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.inferencePool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "embedding-inference-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.batchSizes = DistributionSummary.builder("legal.embedding.batch.size")
+                .description("Texts per embedAll micro-batch")
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("legal.embedding.queue.wait")
+                .description("Time an embed request waited before its batch started")
+                .register(meterRegistry);
+        this.cacheHits = Counter.builder("legal.embedding.cache").tag("result", "hit").register(meterRegistry);
+        this.cacheMisses = Counter.builder("legal.embedding.cache").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("legal.embedding.cache.size", cache, Map::size);
+        meterRegistry.gauge("legal.embedding.queue.depth", queue, Queue::size);
+
+        this.batcher = new Thread(this::runBatcher, "embedding-batcher");
+        this.batcher.setDaemon(true);
+        this.batcher.start();
+
+        logger.info("Embedding service started - batch size: {}, window: {} ms, cache entries: {}, threads: {}",
+                this.maxBatchSize, batchWindowMs, cacheMaxEntries, threads);
+    }
+
+    /**
+     * Embed a single text, coalescing with concurrent callers
+     */
+    public Embedding embed(String text) {
+        long start = System.nanoTime();
+        Embedding embedding = embedCoalesced(text);
+        trafficTrace.embedding(text, start);
+        return embedding;
+    }
+
+    private Embedding embedCoalesced(String text) {
+        TextKey key = TextKey.of(text);
+        Embedding cached = cache.get(key);
+        if (cached != null) {
+            cacheHits.increment();
+            return cached;
+        }
+        cacheMisses.increment();
+
+        CompletableFuture<Embedding> pending = inFlight.computeIfAbsent(key, k -> {
+            CompletableFuture<Embedding> future = new CompletableFuture<>();
+            queue.add(new PendingEmbedding(k, text, future, System.nanoTime()));
+            return future;
+        });
+        if (!running) {
+            // Shutdown may have drained the queue before this request was added
+            pending.completeExceptionally(shutDown());
+        }
+
+        try {
+            return pending.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Later callers start a fresh request instead of joining the stalled one
+            inFlight.remove(key, pending);
+            throw new IllegalStateException("Embedding timed out after " + timeoutMillis + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for embedding", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Embedding failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Embed many segments at once (ingestion); cached texts are reused and the rest run on the
+     * inference pool in one call, bypassing the batcher
+     */
+    public List<Embedding> embedAll(List<TextSegment> segments) {
+        Embedding[] embeddings = new Embedding[segments.size()];
+        List<TextKey> missingKeys = new ArrayList<>();
+        List<TextSegment> missing = new ArrayList<>();
+        List<Integer> missingPositions = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            TextKey key = TextKey.of(segments.get(i).text());
+            Embedding cached = cache.get(key);
+            if (cached != null) {
+                cacheHits.increment();
+                embeddings[i] = cached;
+            } else {
+                cacheMisses.increment();
+                missingKeys.add(key);
+                missing.add(segments.get(i));
+                missingPositions.add(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            return Arrays.asList(embeddings);
+        }
+
+        Future<List<Embedding>> computed;
+        try {
+            computed = inferencePool.submit(() -> model().embedAll(missing).content());
+        } catch (RejectedExecutionException e) {
+            throw shutDown();
+        }
+        try {
+            List<Embedding> results = computed.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < results.size(); i++) {
+                cache.put(missingKeys.get(i), results.get(i));
+                embeddings[missingPositions.get(i)] = results.get(i);
+            }
+            return Arrays.asList(embeddings);
+        } catch (TimeoutException e) {
+            computed.cancel(true);
+            throw new IllegalStateException("Embedding " + missing.size() + " segments timed out after "
+                    + timeoutMillis + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while embedding segments", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Embedding failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    public int dimension() {
+        return model().dimension();
+    }
+
+    /**
+     * Load the model and run a few inferences so the ONNX session and JIT are warm
+     * before the first real request. Returns the load and warmup durations in ms.
+     */
+    public CompletableFuture<long[]> warmUp(Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            EmbeddingModel model = model();
+            long loaded = System.nanoTime();
+            model.embedAll(WARMUP_TEXTS);
+            long warmed = System.nanoTime();
+
+            long loadMs = TimeUnit.NANOSECONDS.toMillis(loaded - start);
+            long warmupMs = TimeUnit.NANOSECONDS.toMillis(warmed - loaded);
+            logger.info("Embedding model loaded in {} ms, warmup inference took {} ms", loadMs, warmupMs);
+            return new long[]{loadMs, warmupMs};
+        }, executor);
+    }
+
+    private EmbeddingModel model() {
+        EmbeddingModel model = embeddingModel;
+        if (model == null) {
+            modelLock.lock();
+            try {
+                model = embeddingModel;
+                if (model == null) {
+                    model = embeddingModelProvider.getObject();
+                    embeddingModel = model;
+                }
+            } finally {
+                modelLock.unlock();
+            }
+        }
+        return model;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        batcher.interrupt();
+        inferencePool.shutdown();
+        PendingEmbedding pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(shutDown());
+        }
+        // Includes batches the batcher had taken but the pool will no longer run
+        inFlight.values().forEach(future -> future.completeExceptionally(shutDown()));
+        inFlight.clear();
+    }
+
+    private static IllegalStateException shutDown() {
+        return new IllegalStateException("Embedding service shut down");
+    }
+
+    private void runBatcher() {
+        while (running) {
+            try {
+                List<PendingEmbedding> batch = new ArrayList<>(maxBatchSize);
+                batch.add(queue.take());
+
+                long deadline = System.nanoTime() + batchWindowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingEmbedding next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                try {
+                    inferencePool.execute(() -> runBatch(batch));
+                } catch (RejectedExecutionException e) {
+                    batch.forEach(pending -> {
+                        inFlight.remove(pending.key);
+                        pending.future.completeExceptionally(shutDown());
+                    });
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void runBatch(List<PendingEmbedding> batch) {
+        long started = System.nanoTime();
+        batchSizes.record(batch.size());
+        for (PendingEmbedding pending : batch) {
+            queueWait.record(started - pending.enqueuedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        try {
+            List<TextSegment> segments = batch.stream().map(pending -> TextSegment.from(pending.text)).toList();
+            List<Embedding> embeddings = model().embedAll(segments).content();
+            for (int i = 0; i < batch.size(); i++) {
+                PendingEmbedding pending = batch.get(i);
+                cache.put(pending.key, embeddings.get(i));
+                inFlight.remove(pending.key);
+                pending.future.complete(embeddings.get(i));
+            }
+        } catch (Exception e) {
+            logger.error("Embedding batch of {} failed", batch.size(), e);
+            for (PendingEmbedding pending : batch) {
+                inFlight.remove(pending.key);
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private record PendingEmbedding(TextKey key, String text, CompletableFuture<Embedding> future, long enqueuedNanos) {
+    }
+
+    /**
+     * 128-bit SHA-256 prefix of the text, so the cache doesn't retain the strings themselves
+     */
+    private record TextKey(long high, long low) {
+        static TextKey of(String text) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+                ByteBuffer buffer = ByteBuffer.wrap(digest);
+                return new TextKey(buffer.getLong(), buffer.getLong());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+}
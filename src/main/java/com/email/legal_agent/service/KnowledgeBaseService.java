@@ -0,0 +1,138 @@
+package com.email.legal_agent.service;
+
+import com.email.legal_agent.service.citation.CitationIndex;
+import com.email.legal_agent.service.knowledge.Bm25Index;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Knowledge base ingestion and hybrid retrieval.
+ *
+ * Segments are embedded into the vector store and indexed lexically (BM25) under the
+ * same id. Searches run both retrievers in parallel and fuse the two rankings with
+ * reciprocal-rank fusion, so exact citations like "Section 1798.120" surface even when
+ * the embedding model misses them.
+ */
+@Service
+public class KnowledgeBaseService {
+    private static final Logger logger = LoggerFactory.getLogger(KnowledgeBaseService.class);
+
+    @Autowired
+    private EmbeddingStore<TextSegment> embeddingStore;
+
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Autowired
+    private CitationIndex citationIndex;
+
+    private final Bm25Index lexicalIndex = new Bm25Index();
+
+    @Value("${legal-assistant.knowledge-base.hybrid.enabled:true}")
+    private boolean hybridEnabled;
+
+    @Value("${legal-assistant.knowledge-base.hybrid.rrf-k:60}")
+    private int rrfK;
+
+    @Value("${legal-assistant.knowledge-base.hybrid.candidates-per-retriever:50}")
+    private int candidatesPerRetriever;
+
+    /**
+     * Embed and index segments; returns the ids assigned in the embedding store
+     */
+    public List<String> ingest(List<TextSegment> segments) {
+        if (segments.isEmpty()) {
+            return List.of();
+        }
+
+        long start = System.currentTimeMillis();
+        List<Embedding> embeddings = embeddingService.embedAll(segments);
+        List<String> ids = embeddingStore.addAll(embeddings, segments);
+        for (int i = 0; i < ids.size(); i++) {
+            lexicalIndex.add(ids.get(i), segments.get(i));
+            citationIndex.index(segments.get(i).text(), CitationIndex.Source.segment(ids.get(i)));
+        }
+
+        logger.info("Ingested {} knowledge base segments in {} ms", segments.size(), System.currentTimeMillis() - start);
+        return ids;
+    }
+
+    public void remove(Collection<String> ids) {
+        embeddingStore.removeAll(ids);
+        lexicalIndex.remove(ids);
+        ids.forEach(id -> citationIndex.remove(CitationIndex.Source.segment(id)));
+    }
+
+    /**
+     * Hybrid search: vector and BM25 retrieval in parallel, fused by reciprocal rank. Both
+     * retrievers narrow to the filter's metadata bitmap before scoring.
+     */
+    public List<KnowledgeBaseHit> search(String query, int maxResults, double minScore, Filter filter) {
+        int candidates = Math.max(maxResults, candidatesPerRetriever);
+
+        CompletableFuture<List<Bm25Index.Hit>> lexical = hybridEnabled
+                ? CompletableFuture.supplyAsync(() -> lexicalIndex.search(query, candidates, filter))
+                : CompletableFuture.completedFuture(List.of());
+
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(embeddingService.embed(query))
+                .maxResults(hybridEnabled ? candidates : maxResults)
+                .minScore(minScore)
+                .filter(filter)
+                .build();
+        List<EmbeddingMatch<TextSegment>> vectorMatches = embeddingStore.search(request).matches();
+
+        return fuse(vectorMatches, lexical.join(), maxResults);
+    }
+
+    private List<KnowledgeBaseHit> fuse(List<EmbeddingMatch<TextSegment>> vectorMatches,
+                                        List<Bm25Index.Hit> lexicalHits, int maxResults) {
+        Map<String, KnowledgeBaseHit> fused = new LinkedHashMap<>();
+
+        for (int rank = 0; rank < vectorMatches.size(); rank++) {
+            EmbeddingMatch<TextSegment> match = vectorMatches.get(rank);
+            KnowledgeBaseHit hit = fused.computeIfAbsent(match.embeddingId(),
+                    id -> new KnowledgeBaseHit(id, match.embedded()));
+            hit.vectorScore = match.score();
+            hit.fusedScore += 1.0 / (rrfK + rank + 1);
+        }
+
+        for (int rank = 0; rank < lexicalHits.size(); rank++) {
+            Bm25Index.Hit lexicalHit = lexicalHits.get(rank);
+            KnowledgeBaseHit hit = fused.computeIfAbsent(lexicalHit.id(),
+                    id -> new KnowledgeBaseHit(id, lexicalHit.segment()));
+            hit.lexicalScore = lexicalHit.score();
+            hit.fusedScore += 1.0 / (rrfK + rank + 1);
+        }
+
+        return fused.values().stream()
+                .sorted(Comparator.comparingDouble((KnowledgeBaseHit hit) -> hit.fusedScore).reversed())
+                .limit(maxResults)
+                .toList();
+    }
+
+    public static class KnowledgeBaseHit {
+        public final String id;
+        public final TextSegment segment;
+        public Double vectorScore;
+        public Float lexicalScore;
+        public double fusedScore;
+
+        KnowledgeBaseHit(String id, TextSegment segment) {
+            this.id = id;
+            this.segment = segment;
+        }
+    }
+}
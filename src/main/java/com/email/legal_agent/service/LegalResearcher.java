@@ -9,7 +9,8 @@ public interface LegalResearcher {
             When analyzing documents:
             Your primary function is to use the available tools to find legal answers
 
-            1. First search the knowledge base for relevant clauses using exact legal terminology
+            1. First search the knowledge base for relevant clauses using exact legal terminology,
+               passing the jurisdiction and case type as filters whenever the question names them
             2. Identify 3-5 key legal concepts requiring verification
             3. Use DuckDuckGo to:
                 - Find recent court rulings (last 3 years)
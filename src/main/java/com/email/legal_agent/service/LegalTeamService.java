@@ -1,119 +1,978 @@
 package com.email.legal_agent.service;
 
+import com.email.legal_agent.config.VirtualThreads;
 import com.email.legal_agent.dto.LegalAnalysisResult;
+import com.email.legal_agent.service.audit.AuditLog;
+import com.email.legal_agent.service.audit.AuditRecord;
+import com.email.legal_agent.service.cancellation.CancellationRegistry;
+import com.email.legal_agent.service.cancellation.CancellationToken;
+import com.email.legal_agent.service.citation.CitationIndex;
+import com.email.legal_agent.service.document.AnalyzedDocument;
+import com.email.legal_agent.service.document.ClauseCategory;
+import com.email.legal_agent.service.document.ClauseDiff;
+import com.email.legal_agent.service.document.ClauseFindings;
+import com.email.legal_agent.service.document.ClauseIndex;
+import com.email.legal_agent.service.document.ClauseSegmenter;
+import com.email.legal_agent.service.document.DocumentChunker;
+import com.email.legal_agent.service.document.DocumentFingerprint;
+import com.email.legal_agent.service.document.ExtractedDocument;
+import com.email.legal_agent.service.document.NearDuplicateIndex;
+import com.email.legal_agent.service.replay.TraceEvent;
+import com.email.legal_agent.service.replay.TrafficTrace;
+import com.email.legal_agent.service.session.SessionStore;
+import com.email.legal_agent.service.synthesis.AgentReports;
+import com.email.legal_agent.service.synthesis.CoordinationPolicy;
+import com.email.legal_agent.service.synthesis.DeterministicSynthesis;
+import com.email.legal_agent.service.tools.ToolDispatcher;
+import com.email.legal_agent.service.usage.OutputBudget;
+import com.email.legal_agent.service.usage.TokenAccounting;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.service.AiServices;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 @Service
 public class LegalTeamService {
     private static final Logger logger = LoggerFactory.getLogger(LegalTeamService.class);
 
-    private final ComplianceAgent complianceAgent;
-    private final ContractAnalyst contractAnalyst;
-    private final LegalResearcher legalResearcher;
-    private final LegalStrategist legalStrategist;
-    private final TeamCoordinator teamCoordinator;
-
-    // Conversation memory for maintaining context across agents
-    private final Map<String, List<String>> conversationHistory = new HashMap<>();
-    private final Map<String, AgentResponse> agentResponses = new HashMap<>();
+    private final String apiKey;
+    private final String baseUrl;
+    private final String modelName;
+    private final Double temperature;
+    private final LegalResearcherTools legalResearcherTools;
+    private final ToolDispatcher toolDispatcher;
+    private final CitationIndex citationIndex;
+    private final SessionStore sessionStore;
+    private final AuditLog auditLog;
+    private final CoordinationPolicy coordinationPolicy;
+    private final TokenAccounting tokenAccounting;
+    private final TrafficTrace trafficTrace;
+    private final CancellationRegistry cancellations;
+
+    // Output-token caps by response length; QUICK answers are capped at quickOutputTokens as well
+    private final int briefOutputTokens;
+    private final int detailedOutputTokens;
+    private final int quickOutputTokens;
+    private final OutputBudget outputBudget = new OutputBudget();
+
+    // Documents above the single-pass budget are analysed chunk by chunk (roughly 4 chars per token)
+    private static final int CHARS_PER_TOKEN = 4;
+    private final int singlePassMaxTokens;
+    private final int chunkTokens;
+    private final int chunkOverlapTokens;
+    private final ExecutorService chunkAnalysisPool;
+    private final Executor chunkExecutor;
+
+    // Earlier document analyses, looked up by MinHash so near-identical uploads of the same tenant reuse them
+    private final boolean reuseEnabled;
+    private final double reuseSimilarityThreshold;
+    private final double maxChangedFraction;
+    private final NearDuplicateIndex<AnalyzedDocument> analyzedDocuments;
+
+    // Latest document version analysed in each session, the baseline for the next upload; the
+    // least recently used sessions are dropped beyond maxVersionedSessions
+    private final int maxVersionedSessions;
+    private final Map<String, AnalyzedDocument> documentVersions;
+
+    // Agent proxies are built on first use or by the startup warmup, not in the constructor
+    private volatile Agents agents;
+    // A lock rather than a monitor: requests waiting for the first build park instead of pinning
+    // their carrier threads
+    private final ReentrantLock agentsLock = new ReentrantLock();
+    private final AtomicBoolean firstQueryServed = new AtomicBoolean();
+
+    // Conversation history and results live in the session store; agent outputs stay in memory
+    private final Map<String, AgentResponse> agentResponses = new ConcurrentHashMap<>();
 
     public LegalTeamService(@Value("${groq.api.key}") String apiKey,
                             @Value("${groq.api.base-url}") String baseUrl,
                             @Value("${groq.model.name}") String modelName,
                             @Value("${groq.model.temperature:0.1}") Double temperature,
-                            @Autowired LegalResearcherTools legalResearcherTools) {
+                            @Autowired LegalResearcherTools legalResearcherTools,
+                            @Autowired ToolDispatcher toolDispatcher,
+                            @Autowired CitationIndex citationIndex,
+                            @Autowired SessionStore sessionStore,
+                            @Autowired AuditLog auditLog,
+                            @Autowired CoordinationPolicy coordinationPolicy,
+                            @Autowired TokenAccounting tokenAccounting,
+                            @Autowired TrafficTrace trafficTrace,
+                            @Autowired CancellationRegistry cancellations,
+                            @Value("${legal-assistant.document.analysis.single-pass-max-tokens:3000}") int singlePassMaxTokens,
+                            @Value("${legal-assistant.document.analysis.chunk-tokens:2500}") int chunkTokens,
+                            @Value("${legal-assistant.document.analysis.overlap-tokens:150}") int chunkOverlapTokens,
+                            @Value("${legal-assistant.document.analysis.max-concurrency:16}") int maxConcurrency,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                            @Value("${legal-assistant.document.reuse.enabled:true}") boolean reuseEnabled,
+                            @Value("${legal-assistant.document.reuse.similarity-threshold:0.85}") double reuseSimilarityThreshold,
+                            @Value("${legal-assistant.document.reuse.max-changed-fraction:0.5}") double maxChangedFraction,
+                            @Value("${legal-assistant.document.reuse.max-entries:10000}") int maxReuseEntries,
+                            @Value("${legal-assistant.document.versions.max-sessions:1000}") int maxVersionedSessions,
+                            @Value("${legal-assistant.response.max-output-tokens.brief:512}") int briefOutputTokens,
+                            @Value("${legal-assistant.response.max-output-tokens.detailed:0}") int detailedOutputTokens,
+                            @Value("${legal-assistant.response.max-output-tokens.quick:384}") int quickOutputTokens) {
+        this.apiKey = apiKey;
+        this.baseUrl = baseUrl;
+        this.modelName = modelName;
+        this.temperature = temperature;
+        this.legalResearcherTools = legalResearcherTools;
+        this.toolDispatcher = toolDispatcher;
+        this.citationIndex = citationIndex;
+        this.sessionStore = sessionStore;
+        this.auditLog = auditLog;
+        this.coordinationPolicy = coordinationPolicy;
+        this.tokenAccounting = tokenAccounting;
+        this.trafficTrace = trafficTrace;
+        this.cancellations = cancellations;
+        this.briefOutputTokens = briefOutputTokens;
+        this.detailedOutputTokens = detailedOutputTokens;
+        this.quickOutputTokens = quickOutputTokens;
+        this.singlePassMaxTokens = singlePassMaxTokens;
+        this.chunkTokens = chunkTokens;
+        this.chunkOverlapTokens = chunkOverlapTokens;
+        this.reuseEnabled = reuseEnabled;
+        this.reuseSimilarityThreshold = reuseSimilarityThreshold;
+        this.maxChangedFraction = maxChangedFraction;
+        this.analyzedDocuments = new NearDuplicateIndex<>(maxReuseEntries);
+        this.maxVersionedSessions = maxVersionedSessions;
+        this.documentVersions = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AnalyzedDocument> eldest) {
+                return size() > LegalTeamService.this.maxVersionedSessions;
+            }
+        });
+
+        this.chunkAnalysisPool = VirtualThreads.executor(virtualThreads, "chunk-analysis", maxConcurrency);
+        // Chunk calls are accounted to, capped and cancelled with the request that fanned them out
+        this.chunkExecutor = cancellations.propagating(outputBudget.propagating(
+                tokenAccounting.propagating(chunkAnalysisPool)));
+
+        logger.info("LegalTeamService created with Groq - baseUrl: {}, model: {} (agents initialized on demand)", baseUrl, modelName);
+    }
+
+    /**
+     * Build the chat model and all agent proxies in parallel on the given executor
+     */
+    public CompletableFuture<Void> initializeAgents(Executor executor) {
+        if (agents != null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long start = System.nanoTime();
+        ChatLanguageModel chatLanguageModel = buildChatModel();
+
+        var researcher = CompletableFuture.supplyAsync(() -> buildLegalResearcher(
+                forAgent(chatLanguageModel, "research")), executor);
+        var analyst = CompletableFuture.supplyAsync(() -> buildAgent(ContractAnalyst.class,
+                forAgent(chatLanguageModel, "contract"), 20), executor);
+        var compliance = CompletableFuture.supplyAsync(() -> buildAgent(ComplianceAgent.class,
+                forAgent(chatLanguageModel, "compliance"), 20), executor);
+        var strategist = CompletableFuture.supplyAsync(() -> buildAgent(LegalStrategist.class,
+                forAgent(chatLanguageModel, "strategy"), 20), executor);
+        var coordinator = CompletableFuture.supplyAsync(() -> buildAgent(TeamCoordinator.class,
+                forAgent(chatLanguageModel, "coordinator"), 30), executor);
+        var documentAnalyst = CompletableFuture.supplyAsync(() -> buildStatelessAgent(ContractAnalyst.class,
+                forAgent(chatLanguageModel, "contract")), executor);
+        var documentCompliance = CompletableFuture.supplyAsync(() -> buildStatelessAgent(ComplianceAgent.class,
+                forAgent(chatLanguageModel, "compliance")), executor);
+        var documentStrategist = CompletableFuture.supplyAsync(() -> buildStatelessAgent(LegalStrategist.class,
+                forAgent(chatLanguageModel, "strategy")), executor);
+        var documentCoordinator = CompletableFuture.supplyAsync(() -> buildStatelessAgent(TeamCoordinator.class,
+                forAgent(chatLanguageModel, "coordinator")), executor);
+        var quickCounsel = CompletableFuture.supplyAsync(() -> buildStatelessAgent(QuickCounsel.class,
+                forAgent(chatLanguageModel, "quick")), executor);
+
+        return CompletableFuture.allOf(researcher, analyst, compliance, strategist, coordinator, documentAnalyst,
+                documentCompliance, documentStrategist, documentCoordinator, quickCounsel).thenRun(() -> {
+            agentsLock.lock();
+            try {
+                if (agents == null) {
+                    agents = new Agents(researcher.join(), analyst.join(), compliance.join(),
+                            strategist.join(), coordinator.join(), documentAnalyst.join(), documentCompliance.join(),
+                            documentStrategist.join(), documentCoordinator.join(), quickCounsel.join());
+                }
+            } finally {
+                agentsLock.unlock();
+            }
+            logger.info("All legal agents initialized with Groq in {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        });
+    }
 
-        logger.info("Initializing LegalTeamService with Groq - baseUrl: {}, model: {}", baseUrl, modelName);
+    public boolean agentsInitialized() {
+        return agents != null;
+    }
+
+    private Agents agents() {
+        Agents current = agents;
+        if (current == null) {
+            agentsLock.lock();
+            try {
+                current = agents;
+                if (current == null) {
+                    long start = System.nanoTime();
+                    ChatLanguageModel chatLanguageModel = buildChatModel();
+                    current = new Agents(
+                            buildLegalResearcher(forAgent(chatLanguageModel, "research")),
+                            buildAgent(ContractAnalyst.class, forAgent(chatLanguageModel, "contract"), 20),
+                            buildAgent(ComplianceAgent.class, forAgent(chatLanguageModel, "compliance"), 20),
+                            buildAgent(LegalStrategist.class, forAgent(chatLanguageModel, "strategy"), 20),
+                            // Coordinator needs more memory
+                            buildAgent(TeamCoordinator.class, forAgent(chatLanguageModel, "coordinator"), 30),
+                            buildStatelessAgent(ContractAnalyst.class, forAgent(chatLanguageModel, "contract")),
+                            buildStatelessAgent(ComplianceAgent.class, forAgent(chatLanguageModel, "compliance")),
+                            buildStatelessAgent(LegalStrategist.class, forAgent(chatLanguageModel, "strategy")),
+                            buildStatelessAgent(TeamCoordinator.class, forAgent(chatLanguageModel, "coordinator")),
+                            buildStatelessAgent(QuickCounsel.class, forAgent(chatLanguageModel, "quick")));
+                    agents = current;
+                    logger.info("Legal agents initialized on first use in {} ms",
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+            } finally {
+                agentsLock.unlock();
+            }
+        }
+        return current;
+    }
 
-        var chatLanguageModel = OpenAiChatModel.builder()
+    private ChatLanguageModel buildChatModel() {
+        return outputBudget.budgeted(OpenAiChatModel.builder()
                 .apiKey(apiKey)
                 .baseUrl(baseUrl)
                 .modelName(modelName)
                 .temperature(temperature)
                 .timeout(Duration.ofSeconds(60))
-                .build();
-
-        // Initialize all agents with shared chat model and memory
-        legalResearcher = AiServices.builder(LegalResearcher.class)
-                .chatLanguageModel(chatLanguageModel)
-                .chatMemory(MessageWindowChatMemory.withMaxMessages(20))
-                .tools(legalResearcherTools)
-                .build();
+                .build());
+    }
 
-        contractAnalyst = AiServices.builder(ContractAnalyst.class)
-                .chatLanguageModel(chatLanguageModel)
-                .chatMemory(MessageWindowChatMemory.withMaxMessages(20))
-                .build();
+    // Each agent's calls are traced (or replayed) and token-accounted under its own name, and
+    // stop with the job they are made for
+    private ChatLanguageModel forAgent(ChatLanguageModel model, String agent) {
+        return cancellations.cancellable(tokenAccounting.metering(trafficTrace.chatModel(model, agent), agent));
+    }
 
-        complianceAgent = AiServices.builder(ComplianceAgent.class)
-                .chatLanguageModel(chatLanguageModel)
+    // Tool calls from one researcher turn run concurrently, with per-session result caching
+    private LegalResearcher buildLegalResearcher(ChatLanguageModel chatLanguageModel) {
+        return AiServices.builder(LegalResearcher.class)
+                .chatLanguageModel(toolDispatcher.dispatching(chatLanguageModel))
                 .chatMemory(MessageWindowChatMemory.withMaxMessages(20))
+                .tools(toolDispatcher.executors(legalResearcherTools))
                 .build();
+    }
 
-        legalStrategist = AiServices.builder(LegalStrategist.class)
+    private <T> T buildAgent(Class<T> agentType, ChatLanguageModel chatLanguageModel, int maxMessages) {
+        return AiServices.builder(agentType)
                 .chatLanguageModel(chatLanguageModel)
-                .chatMemory(MessageWindowChatMemory.withMaxMessages(20))
+                .chatMemory(MessageWindowChatMemory.withMaxMessages(maxMessages))
                 .build();
+    }
 
-        teamCoordinator = AiServices.builder(TeamCoordinator.class)
+    // No shared memory, so concurrent documents and chunk calls can't interleave into each other's
+    // context or carry one upload's clauses into the next prompt
+    private <T> T buildStatelessAgent(Class<T> agentType, ChatLanguageModel chatLanguageModel) {
+        return AiServices.builder(agentType)
                 .chatLanguageModel(chatLanguageModel)
-                .chatMemory(MessageWindowChatMemory.withMaxMessages(30)) // Coordinator needs more memory
                 .build();
-
-        logger.info("All legal agents initialized successfully with Groq");
     }
 
     /**
      * Process a legal query through the appropriate agent workflow
      */
     public LegalAnalysisResult processLegalQuery(String query, String sessionId) {
+        return processLegalQuery(query, sessionId, "COMPREHENSIVE", "DETAILED");
+    }
+
+    /**
+     * Process a legal query as the request asks: {@code analysisType} QUICK answers with a single
+     * agent call, a query type name forces that workflow, and anything else (COMPREHENSIVE by
+     * default) routes on the query text. {@code responseLength} caps the output of every agent.
+     */
+    public LegalAnalysisResult processLegalQuery(String query, String sessionId, String analysisType,
+                                                 String responseLength) {
+        trafficTrace.query(TraceEvent.QUERY, query, sessionId, analysisType, responseLength);
+        ResponseLength length = ResponseLength.parse(responseLength);
+        String type = analysisType == null ? "COMPREHENSIVE" : analysisType.trim().toUpperCase(Locale.ROOT);
+        if (type.equals("QUICK")) {
+            return quick(query, sessionId, length);
+        }
+        QueryType forced = type.equals("COMPREHENSIVE") ? null : QueryType.parse(type);
+        return outputBudget.with(outputTokens(length), () -> processFullQuery(query, sessionId, forced));
+    }
+
+    /**
+     * Fast tier: one stateless call to a compact-prompt agent in the specialty the query needs,
+     * with a small output budget and no research, cross-agent context or coordinator pass.
+     * {@code sessionId} may be null, in which case nothing is recorded in a session.
+     */
+    public LegalAnalysisResult quickAnalysis(String query, String sessionId, ResponseLength length) {
+        trafficTrace.query(TraceEvent.QUICK, query, sessionId, null, length.name());
+        return quick(query, sessionId, length);
+    }
+
+    private LegalAnalysisResult quick(String query, String sessionId, ResponseLength length) {
+        long start = System.nanoTime();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("mode", "quick");
+        QueryType queryType = determineQueryType(query);
+        tokenAccounting.classify(queryType);
+        int lengthCap = outputTokens(length);
+        int budget = lengthCap > 0 ? Math.min(quickOutputTokens, lengthCap) : quickOutputTokens;
+
+        try {
+            QuickCounsel counsel = agents().quickCounsel();
+            String answer = outputBudget.with(budget, () -> ask(stats, timingKey(queryType),
+                    question -> counsel.answer(specialty(queryType), budget * 3 / 4, question), query));
+
+            LegalAnalysisResult result = new LegalAnalysisResult();
+            result.setQuery(query);
+            result.setQueryType(queryType);
+            result.setSessionId(sessionId);
+            result.setExecutiveSummary(answer);
+            result.setActionItems(extractActionItems(answer));
+            stats.put("totalMs", elapsedMs(start));
+            result.setProcessingStats(stats);
+            result.setTokenUsage(tokenAccounting.snapshot());
+
+            if (sessionId != null) {
+                sessionStore.appendTurn(sessionId, "USER: " + query);
+                sessionStore.appendTurn(sessionId, "ASSISTANT: " + answer);
+                sessionStore.saveResult(sessionId, result);
+            }
+            audit(AuditRecord.Kind.QUERY, queryType, result.getStatus(), stats, start, null);
+            return result;
+
+        } catch (Exception e) {
+            rethrowIfCancelled(AuditRecord.Kind.QUERY, queryType, stats, start, null);
+            logger.error("Error in quick analysis", e);
+            audit(AuditRecord.Kind.QUERY, queryType, "ERROR", stats, start, null);
+            return LegalAnalysisResult.error("Failed to process query: " + e.getMessage());
+        }
+    }
+
+    private int outputTokens(ResponseLength length) {
+        return length == ResponseLength.BRIEF ? briefOutputTokens : detailedOutputTokens;
+    }
+
+    private static String timingKey(QueryType queryType) {
+        return switch (queryType) {
+            case CONTRACT_ANALYSIS -> "contractMs";
+            case COMPLIANCE -> "complianceMs";
+            case LEGAL_RESEARCH -> "researchMs";
+            case LEGAL_STRATEGY, COMPREHENSIVE -> "strategyMs";
+        };
+    }
+
+    private static String specialty(QueryType queryType) {
+        return switch (queryType) {
+            case CONTRACT_ANALYSIS -> "senior contract specialist";
+            case COMPLIANCE -> "regulatory compliance counsel";
+            case LEGAL_RESEARCH -> "legal research attorney";
+            case LEGAL_STRATEGY, COMPREHENSIVE -> "legal strategist";
+        };
+    }
+
+    private LegalAnalysisResult processFullQuery(String query, String sessionId, QueryType forcedType) {
         logger.info("Processing legal query for session: {}", sessionId);
+        long start = System.nanoTime();
+        Map<String, Object> stats = new HashMap<>();
+
+        // Step 1: Determine query type and route to appropriate agents
+        QueryType queryType = forcedType != null ? forcedType : determineQueryType(query);
+        tokenAccounting.classify(queryType);
+        logger.info("Query type determined: {}", queryType);
 
         try {
-            // Initialize session history if needed
-            conversationHistory.putIfAbsent(sessionId, new ArrayList<>());
             agentResponses.putIfAbsent(sessionId, new AgentResponse());
 
             // Add query to conversation history
-            conversationHistory.get(sessionId).add("USER: " + query);
-
-            // Step 1: Determine query type and route to appropriate agents
-            QueryType queryType = determineQueryType(query);
-            logger.info("Query type determined: {}", queryType);
+            sessionStore.appendTurn(sessionId, "USER: " + query);
 
             // Step 2: Process query through relevant agents
-            AgentResponse responses = processWithAgents(query, queryType, sessionId);
-
-            // Step 3: Coordinate and synthesize responses
-            String coordinatedResponse = teamCoordinator.processQuery(
-                    buildCoordinatorInput(query, responses, sessionId)
-            );
+            AgentResponse responses = processWithAgents(query, queryType, sessionId, stats);
+
+            // Step 3: Coordinate and synthesize responses; simple workflows skip the coordinator call
+            AgentReports reports = reportsFor(queryType, responses);
+            CoordinationPolicy.Decision decision = coordinationPolicy.decide(reports);
+            DeterministicSynthesis.Synthesis synthesis = null;
+            String coordinatedResponse;
+            if (decision.useCoordinator()) {
+                coordinatedResponse = ask(stats, "coordinationMs", agents().teamCoordinator()::processQuery,
+                        buildCoordinatorInput(query, responses, sessionId));
+            } else {
+                synthesis = DeterministicSynthesis.synthesize(reports);
+                coordinatedResponse = synthesis.executiveSummary();
+            }
+            logger.debug("Coordination for session {}: {} ({})", sessionId,
+                    decision.useCoordinator() ? "coordinator" : "deterministic", decision.reason());
 
             // Step 4: Build comprehensive result
             LegalAnalysisResult result = buildAnalysisResult(query, queryType, responses, coordinatedResponse, sessionId);
+            if (synthesis != null) {
+                result.setActionItems(synthesis.actionItems());
+                result.setRiskAssessment(synthesis.riskAssessment());
+            }
+            stats.put("coordination", decision.useCoordinator() ? "coordinator" : "deterministic");
+            stats.put("totalMs", elapsedMs(start));
+            result.setProcessingStats(stats);
+            result.setTokenUsage(tokenAccounting.snapshot());
 
             // Update conversation history
-            conversationHistory.get(sessionId).add("ASSISTANT: " + result.getExecutiveSummary());
-
+            sessionStore.appendTurn(sessionId, "ASSISTANT: " + result.getExecutiveSummary());
+            sessionStore.saveResult(sessionId, result);
+            indexCitations(sessionId, query, responses, coordinatedResponse);
+            audit(AuditRecord.Kind.QUERY, queryType, result.getStatus(), stats, start, null);
+
+            if (firstQueryServed.compareAndSet(false, true)) {
+                logger.info("First legal query served in {} ms",
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
             return result;
 
         } catch (Exception e) {
+            rethrowIfCancelled(AuditRecord.Kind.QUERY, queryType, stats, start, null);
             logger.error("Error processing legal query", e);
+            audit(AuditRecord.Kind.QUERY, queryType, "ERROR", stats, start, null);
             return LegalAnalysisResult.error("Failed to process query: " + e.getMessage());
         }
     }
 
+    /**
+     * Analyse an uploaded document. The text is segmented into clauses first so each agent sees
+     * only the sections it works with: the contract analyst reads the whole document, compliance
+     * gets data-protection, confidentiality and governing-law clauses, and the strategist gets
+     * term, termination, liability and payment clauses. Documents that don't fit the model
+     * context are map-reduced over overlapping chunks before strategy and coordination.
+     *
+     * Uploads that match an earlier analysis of {@code tenant}'s reuse it: exact copies outright,
+     * near-duplicates (the same template with different parties, say) by re-analysing only the
+     * clauses that differ. A new version of the agreement uploaded to the same session is diffed
+     * against the previous one the same way, and the result lists how clause risk moved between
+     * the versions.
+     *
+     * All document calls go to stateless agents. Concurrent uploads, batch documents included,
+     * never share a chat memory, and earlier uploads reach the prompts only through the session's
+     * bounded history excerpt.
+     */
+    public LegalAnalysisResult analyzeDocument(ExtractedDocument document, String analysisType, String sessionId,
+                                               String tenant) {
+        return analyzeDocument(document, analysisType, sessionId, tenant, "DETAILED");
+    }
+
+    /**
+     * As above, with {@code responseLength} capping the output of every agent call, chunk calls included
+     */
+    public LegalAnalysisResult analyzeDocument(ExtractedDocument document, String analysisType, String sessionId,
+                                               String tenant, String responseLength) {
+        int cap = outputTokens(ResponseLength.parse(responseLength));
+        return outputBudget.with(cap, () -> analyze(document, analysisType, sessionId, tenant));
+    }
+
+    private LegalAnalysisResult analyze(ExtractedDocument document, String analysisType, String sessionId,
+                                        String tenant) {
+        trafficTrace.document(document, sessionId, analysisType);
+        String header = String.format("Analyze this %s document:\n\nFilename: %s",
+                analysisType.toLowerCase(), document.filename());
+        String truncationNote = document.truncated() ? "\n\n[Document truncated for analysis]" : "";
+        boolean chunked = estimateTokens(document.text()) > singlePassMaxTokens;
+        logger.info("Analyzing {} ({} chars, {} mode) for session: {}", document.filename(),
+                document.characterCount(), chunked ? "chunked" : "single-pass", sessionId);
+        long start = System.nanoTime();
+        Map<String, Object> stats = documentStats(document, chunked ? "chunked" : "single-pass");
+        tokenAccounting.classify(QueryType.CONTRACT_ANALYSIS);
+
+        try {
+            agentResponses.putIfAbsent(sessionId, new AgentResponse());
+            sessionStore.appendTurn(sessionId, "USER: " + header + truncationNote);
+            Agents agents = agents();
+
+            // Step 1: Clause index
+            long segmentStart = System.nanoTime();
+            ClauseIndex clauseIndex = ClauseSegmenter.segment(document.text());
+            stats.put("clauses", clauseIndex.clauses().size());
+            stats.put("definedTerms", clauseIndex.definedTerms().size());
+            stats.put("segmentationMicros", TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - segmentStart));
+
+            long citationStart = System.nanoTime();
+            int citations = citationIndex.index(document.text(), CitationIndex.Source.session(sessionId)).size();
+            stats.put("citations", citations);
+            stats.put("citationScanMicros", TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - citationStart));
+
+            // Step 2: Look for an earlier analysis of the same or a near-identical document
+            long lookupStart = System.nanoTime();
+            DocumentFingerprint fingerprint = DocumentFingerprint.of(document.text());
+            Optional<NearDuplicateIndex.Match<AnalyzedDocument>> prior = reuseEnabled
+                    ? analyzedDocuments.findNearest(tenant, fingerprint, reuseSimilarityThreshold) : Optional.empty();
+            stats.put("duplicateLookupMicros", TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - lookupStart));
+
+            // Step 3: Agent analysis, in full or for the differing clauses only. The previous
+            // version uploaded to this session is the preferred baseline, then any earlier match
+            AgentResponse responses = agentResponses.get(sessionId);
+            AnalyzedDocument previousVersion = documentVersions.get(sessionId);
+            ClauseDiff versionDiff = previousVersion == null ? null
+                    : ClauseDiff.between(previousVersion.clauses(), clauseIndex, document.text());
+            ClauseDiff diff = prior.filter(match -> !match.exact())
+                    .map(match -> ClauseDiff.between(match.value().clauses(), clauseIndex, document.text()))
+                    .orElse(null);
+            String coordinatedResponse;
+            List<String> riskChanges = null;
+            int version = 1;
+            if (versionDiff != null && isIncremental(versionDiff, clauseIndex)) {
+                version = previousVersion.version() + 1;
+                stats.put("mode", "new-version");
+                stats.put("version", version);
+                stats.put("previousVersion", previousVersion.filename());
+                Revision revision = reanalyzeChanges(previousVersion, false, versionDiff, clauseIndex, document.text(),
+                        header, responses, agents, sessionId, stats);
+                coordinatedResponse = revision.coordinatedResponse();
+                riskChanges = revision.riskChanges();
+            } else if (prior.isPresent() && prior.get().exact()) {
+                AnalyzedDocument previous = prior.get().value();
+                responses.contractAnalysis = previous.contractAnalysis();
+                responses.complianceAnalysis = previous.complianceAnalysis();
+                responses.legalStrategy = previous.legalStrategy();
+                coordinatedResponse = previous.coordinatedResponse();
+                stats.put("mode", "exact-duplicate");
+                stats.put("reusedFrom", previous.filename());
+            } else if (diff != null && isIncremental(diff, clauseIndex)) {
+                stats.put("mode", "near-duplicate");
+                stats.put("reusedFrom", prior.get().value().filename());
+                stats.put("similarity", prior.get().similarity());
+                coordinatedResponse = reanalyzeChanges(prior.get().value(), true, diff, clauseIndex, document.text(),
+                        header, responses, agents, sessionId, stats).coordinatedResponse();
+            } else {
+                coordinatedResponse = analyzeInFull(document, header, truncationNote, chunked, clauseIndex,
+                        responses, agents, sessionId, stats);
+            }
+
+            // The session keeps clause text for the next version's diff; the shared index doesn't need it
+            List<ClauseDiff.Snapshot> snapshots = ClauseDiff.snapshot(clauseIndex, document.text(), true);
+            documentVersions.put(sessionId, new AnalyzedDocument(document.filename(), version, fingerprint, snapshots,
+                    responses.contractAnalysis, responses.complianceAnalysis, responses.legalStrategy, coordinatedResponse));
+            if (reuseEnabled) {
+                analyzedDocuments.put(tenant, fingerprint, new AnalyzedDocument(document.filename(), 1, fingerprint,
+                        snapshots.stream().map(ClauseDiff.Snapshot::withoutText).toList(), responses.contractAnalysis,
+                        responses.complianceAnalysis, responses.legalStrategy, coordinatedResponse));
+            }
+
+            LegalAnalysisResult result = buildAnalysisResult(header, QueryType.CONTRACT_ANALYSIS,
+                    responses, coordinatedResponse, sessionId);
+            result.setRiskChanges(riskChanges);
+            stats.put("totalMs", elapsedMs(start));
+            result.setProcessingStats(stats);
+            result.setTokenUsage(tokenAccounting.snapshot());
+            sessionStore.appendTurn(sessionId, "ASSISTANT: " + result.getExecutiveSummary());
+            sessionStore.saveResult(sessionId, result);
+            indexCitations(sessionId, null, responses, coordinatedResponse);
+            audit(AuditRecord.Kind.DOCUMENT, QueryType.CONTRACT_ANALYSIS, result.getStatus(), stats, start, document);
+
+            logger.info("Document analysis of {} finished ({}): {} clauses, {} of {} document tokens sent, total {} ms",
+                    document.filename(), stats.get("mode"), clauseIndex.clauses().size(),
+                    stats.getOrDefault("documentTokensSent", 0), stats.get("documentTokensUnrouted"), stats.get("totalMs"));
+            return result;
+
+        } catch (Exception e) {
+            rethrowIfCancelled(AuditRecord.Kind.DOCUMENT, QueryType.CONTRACT_ANALYSIS, stats, start, document);
+            logger.error("Error in document analysis", e);
+            audit(AuditRecord.Kind.DOCUMENT, QueryType.CONTRACT_ANALYSIS, "ERROR", stats, start, document);
+            return LegalAnalysisResult.error("Failed to analyze document: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Full four-agent run over the clause views; returns the coordinated response
+     */
+    private String analyzeInFull(ExtractedDocument document, String header, String truncationNote, boolean chunked,
+                                 ClauseIndex clauseIndex, AgentResponse responses, Agents agents,
+                                 String sessionId, Map<String, Object> stats) {
+        String complianceClauses = clauseIndex.render(ClauseIndex.Audience.COMPLIANCE);
+        String strategyClauses = capToChunk(clauseIndex.render(ClauseIndex.Audience.STRATEGY));
+
+        // Contract and compliance analysis
+        long contractStart = System.nanoTime();
+        if (!chunked) {
+            responses.contractAnalysis = agents.documentAnalyst().processQuery(
+                    header + "\n\nContent:\n" + document.text() + truncationNote);
+            stats.put("contractMs", elapsedMs(contractStart));
+            long complianceStart = System.nanoTime();
+            responses.complianceAnalysis = agents.documentCompliance().processQuery(
+                    buildComplianceQuery(header, responses.contractAnalysis)
+                            + "\n\nRelevant Clauses:\n" + complianceClauses);
+            stats.put("complianceMs", elapsedMs(complianceStart));
+        } else {
+            // Both map-reduces only wait on pool tasks, so the contract one runs on its own thread
+            Executor reduceDriver = cancellations.propagating(outputBudget.propagating(tokenAccounting.propagating(
+                    runnable -> Thread.ofVirtual().name("chunk-reduce").start(runnable))));
+            CompletableFuture<String> contract = CompletableFuture.supplyAsync(() -> mapReduce(document.text(),
+                    header, "contract analysis", agents.documentAnalyst()::processQuery, stats, "contract"), reduceDriver);
+            responses.complianceAnalysis = mapReduce(complianceClauses, header, "compliance analysis",
+                    agents.documentCompliance()::processQuery, stats, "compliance");
+            synchronized (stats) {
+                stats.put("complianceMs", elapsedMs(contractStart));
+            }
+            responses.contractAnalysis = contract.join();
+            stats.put("contractMs", elapsedMs(contractStart));
+        }
+
+        // Strategy on the merged findings plus the clauses it needs
+        long strategyStart = System.nanoTime();
+        responses.legalStrategy = agents.documentStrategist().processQuery(buildStrategyQuery(
+                header + "\n\nKey Clauses:\n" + strategyClauses,
+                responses.contractAnalysis, responses.complianceAnalysis));
+        stats.put("strategyMs", elapsedMs(strategyStart));
+
+        // Coordination sees the agent outputs, not the document again
+        long coordinationStart = System.nanoTime();
+        String coordinatedResponse = agents.documentCoordinator().processQuery(
+                buildCoordinatorInput(header, responses, sessionId));
+        stats.put("coordinationMs", elapsedMs(coordinationStart));
+
+        // Document tokens sent to agents, against sending the full text to all four as before
+        int documentTokens = estimateTokens(document.text());
+        stats.put("documentTokensSent", documentTokens + estimateTokens(complianceClauses) + estimateTokens(strategyClauses));
+        stats.put("documentTokensUnrouted", documentTokens * 4);
+        return coordinatedResponse;
+    }
+
+    private boolean isIncremental(ClauseDiff diff, ClauseIndex clauseIndex) {
+        return clauseIndex.isStructured()
+                && diff.editedClauses() <= maxChangedFraction * clauseIndex.clauses().size();
+    }
+
+    /**
+     * Re-analyse only the clauses in {@code diff} and fold the findings into the previous analysis.
+     * Compliance and strategy are revised only when an edit touches their clause families;
+     * the coordinator runs again only if anything changed at all. A baseline from another
+     * document ({@code otherDocument}) may name other parties, so there an edit to the parties
+     * revises compliance and strategy too.
+     */
+    private Revision reanalyzeChanges(AnalyzedDocument previous, boolean otherDocument, ClauseDiff diff, ClauseIndex clauseIndex, String text,
+                                      String header, AgentResponse responses, Agents agents,
+                                      String sessionId, Map<String, Object> stats) {
+        List<ClauseIndex.Clause> edited = new ArrayList<>(diff.changed());
+        edited.addAll(diff.added());
+        List<String> removedKeys = diff.removed().stream().map(ClauseDiff.Snapshot::key).toList();
+        String removedNote = diff.removed().isEmpty() ? "" : "\n\nClauses removed since the previous version: "
+                + String.join(", ", diff.removed().stream().map(this::describe).toList());
+        List<String> renderedClauses = edited.stream().map(clause -> renderClause(clause, diff, text)).toList();
+        String changedClauses = String.join("", renderedClauses);
+
+        long contractStart = System.nanoTime();
+        AtomicInteger failedCalls = new AtomicInteger();
+        String delta = analyzeClauses(renderedClauses, header, agents.documentAnalyst()::processQuery, failedCalls);
+        responses.contractAnalysis = ClauseFindings.merge(previous.contractAnalysis(), delta, removedKeys);
+        stats.put("contractMs", elapsedMs(contractStart));
+
+        // Party names alone don't change the compliance or strategy picture of the same agreement,
+        // but another agreement's analysis would still name its own parties
+        boolean partiesChanged = otherDocument && diff.touches(EnumSet.of(ClauseCategory.PARTIES));
+        boolean complianceTouched = partiesChanged || diff.touches(substantive(ClauseIndex.Audience.COMPLIANCE));
+        boolean strategyTouched = complianceTouched || diff.touches(substantive(ClauseIndex.Audience.STRATEGY));
+        long complianceStart = System.nanoTime();
+        responses.complianceAnalysis = complianceTouched
+                ? agents.documentCompliance().processQuery(buildRevisionQuery("compliance analysis", header,
+                        previous.complianceAnalysis(), changedClauses + removedNote))
+                : previous.complianceAnalysis();
+        stats.put("complianceMs", elapsedMs(complianceStart));
+
+        long strategyStart = System.nanoTime();
+        responses.legalStrategy = strategyTouched
+                ? agents.documentStrategist().processQuery(buildRevisionQuery("legal strategy", header,
+                        previous.legalStrategy(), changedClauses + removedNote
+                                + "\n\nRevised Compliance Analysis:\n" + responses.complianceAnalysis))
+                : previous.legalStrategy();
+        stats.put("strategyMs", elapsedMs(strategyStart));
+
+        List<String> riskChanges = riskChanges(previous.contractAnalysis(), delta, diff);
+
+        long coordinationStart = System.nanoTime();
+        String coordinatedResponse = previous.coordinatedResponse();
+        if (!diff.isEmpty()) {
+            StringBuilder input = new StringBuilder(buildCoordinatorInput(header, responses, sessionId));
+            input.append("=== CLAUSE CHANGES SINCE THE PREVIOUS ANALYSIS ===\n");
+            riskChanges.forEach(change -> input.append("- ").append(change).append('\n'));
+            coordinatedResponse = agents.documentCoordinator().processQuery(input.toString());
+        }
+        stats.put("coordinationMs", elapsedMs(coordinationStart));
+
+        // Tokens scale with the size of the edit rather than the document
+        int changedTokens = estimateTokens(changedClauses);
+        stats.put("clausesReanalyzed", edited.size());
+        stats.put("clausesRemoved", diff.removed().size());
+        stats.put("clausesUnchanged", diff.unchanged());
+        stats.put("editedFraction", clauseIndex.clauses().isEmpty() ? 0.0
+                : (double) diff.editedClauses() / clauseIndex.clauses().size());
+        stats.put("failedClauseCalls", failedCalls.get());
+        stats.put("complianceReanalyzed", complianceTouched);
+        stats.put("strategyReanalyzed", strategyTouched);
+        stats.put("documentTokensSent", changedTokens * (1 + (complianceTouched ? 1 : 0) + (strategyTouched ? 1 : 0)));
+        stats.put("documentTokensUnrouted", estimateTokens(text) * 4);
+        return new Revision(coordinatedResponse, riskChanges);
+    }
+
+    /**
+     * Contract findings for the rendered clauses, batched to the chunk budget and analysed in parallel
+     */
+    private String analyzeClauses(List<String> renderedClauses, String header,
+                                  Function<String, String> agent, AtomicInteger failedCalls) {
+        int budgetChars = chunkTokens * CHARS_PER_TOKEN;
+        List<String> batches = new ArrayList<>();
+        StringBuilder batch = new StringBuilder();
+        for (String clause : renderedClauses) {
+            if (!batch.isEmpty() && batch.length() + clause.length() > budgetChars) {
+                batches.add(batch.toString());
+                batch.setLength(0);
+            }
+            batch.append(clause);
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch.toString());
+        }
+
+        List<CompletableFuture<String>> findings = batches.stream()
+                .map(clauses -> CompletableFuture.supplyAsync(() -> agent.apply(String.format(
+                        "%s\n\nThe clauses below differ from a previously analyzed version of this document. "
+                                + "Analyze only these clauses. Start the findings for each with its heading exactly as given "
+                                + "and state its risk as \"Risk: High\", \"Risk: Medium\" or \"Risk: Low\".\n\n%s",
+                        header, capToChunk(clauses))), chunkExecutor)
+                        .exceptionally(e -> {
+                            failedCalls.incrementAndGet();
+                            logger.warn("Analysis of changed clauses failed: {}", e.getMessage());
+                            return "[Changed clauses could not be analyzed: " + e.getMessage() + "]";
+                        }))
+                .toList();
+        return String.join("\n\n", findings.stream().map(CompletableFuture::join).toList());
+    }
+
+    // Changed clauses carry their previous wording when the baseline kept it
+    private static String renderClause(ClauseIndex.Clause clause, ClauseDiff diff, String text) {
+        StringBuilder rendered = new StringBuilder(ClauseFindings.heading(clause)).append('\n')
+                .append(clause.text(text).strip()).append('\n');
+        ClauseDiff.Snapshot before = diff.previousVersion(clause);
+        if (before != null && before.text() != null) {
+            rendered.append("Previous wording:\n").append(before.text().strip()).append('\n');
+        } else if (before == null) {
+            rendered.append("(New clause)\n");
+        }
+        return rendered.append('\n').toString();
+    }
+
+    /**
+     * One line per edited clause saying how its stated risk moved, highest new risk first
+     */
+    private List<String> riskChanges(String previousAnalysis, String delta, ClauseDiff diff) {
+        Map<String, String> before = ClauseFindings.sections(previousAnalysis);
+        Map<String, String> after = ClauseFindings.sections(delta);
+        List<Map.Entry<Integer, String>> changes = new ArrayList<>();
+
+        for (ClauseIndex.Clause clause : diff.changed()) {
+            String name = describe(clause.number(), clause.title());
+            Optional<String> oldRisk = ClauseFindings.riskLevel(
+                    before.get(ClauseFindings.normalize(diff.previousVersion(clause).key())));
+            Optional<String> newRisk = ClauseFindings.riskLevel(after.get(ClauseFindings.key(clause)));
+            String line;
+            if (oldRisk.isPresent() && newRisk.isPresent() && !oldRisk.equals(newRisk)) {
+                line = name + ": risk " + oldRisk.get() + " -> " + newRisk.get();
+            } else if (newRisk.isPresent()) {
+                line = name + ": revised, risk " + newRisk.get() + (oldRisk.isPresent() ? " (unchanged)" : "");
+            } else {
+                line = name + ": revised";
+            }
+            changes.add(Map.entry(riskRank(newRisk) * 2 + (oldRisk.equals(newRisk) ? 0 : 1), line));
+        }
+        for (ClauseIndex.Clause clause : diff.added()) {
+            Optional<String> newRisk = ClauseFindings.riskLevel(after.get(ClauseFindings.key(clause)));
+            changes.add(Map.entry(riskRank(newRisk) * 2 + 1, describe(clause.number(), clause.title())
+                    + ": added" + newRisk.map(risk -> ", risk " + risk).orElse("")));
+        }
+        for (ClauseDiff.Snapshot removed : diff.removed()) {
+            Optional<String> oldRisk = ClauseFindings.riskLevel(before.get(ClauseFindings.normalize(removed.key())));
+            changes.add(Map.entry(riskRank(oldRisk) * 2, describe(removed)
+                    + ": removed" + oldRisk.map(risk -> " (was " + risk + " risk)").orElse("")));
+        }
+
+        changes.sort(Map.Entry.<Integer, String>comparingByKey().reversed());
+        return changes.stream().map(Map.Entry::getValue).toList();
+    }
+
+    private static int riskRank(Optional<String> level) {
+        return switch (level.orElse("")) {
+            case "critical" -> 4;
+            case "high" -> 3;
+            case "medium", "moderate" -> 2;
+            case "low" -> 1;
+            default -> 0;
+        };
+    }
+
+    private String describe(String number, String title) {
+        return ("Clause " + number + " " + title).replaceAll("\\s+", " ").trim();
+    }
+
+    private String describe(ClauseDiff.Snapshot removed) {
+        return describe(removed.number(), removed.title());
+    }
+
+    private static Set<ClauseCategory> substantive(ClauseIndex.Audience audience) {
+        Set<ClauseCategory> categories = EnumSet.copyOf(audience.categories());
+        categories.remove(ClauseCategory.PARTIES);
+        return categories;
+    }
+
+    private String buildRevisionQuery(String kind, String header, String previousAnalysis, String changes) {
+        return String.format("%s\n\nRevise this %s of a previously analyzed version of the document. "
+                        + "Only the clauses below changed; keep findings that still apply, update the ones affected "
+                        + "and return the complete %s in the same format.\n\nPrevious %s:\n%s\n\nChanged Clauses:\n%s",
+                header, kind, kind, kind, previousAnalysis != null ? previousAnalysis : "", changes);
+    }
+
+    /**
+     * Map an agent over overlapping chunks of {@code text} in parallel, then reduce the findings
+     */
+    private String mapReduce(String text, String header, String kind, Function<String, String> agent,
+                             Map<String, Object> stats, String statsPrefix) {
+        List<DocumentChunker.Chunk> chunks = DocumentChunker.split(text,
+                chunkTokens * CHARS_PER_TOKEN, chunkOverlapTokens * CHARS_PER_TOKEN);
+
+        long mapStart = System.nanoTime();
+        AtomicInteger failedCalls = new AtomicInteger();
+        List<CompletableFuture<String>> findings = chunks.stream()
+                .map(chunk -> analyzeChunk(() -> agent.apply(buildChunkQuery(header, chunk, chunks.size(), text.length())),
+                        chunk, failedCalls))
+                .toList();
+        List<String> parts = findings.stream().map(CompletableFuture::join).toList();
+        long mapMs = elapsedMs(mapStart);
+
+        long reduceStart = System.nanoTime();
+        AtomicInteger reduceCalls = new AtomicInteger();
+        String merged = reduceFindings(parts, kind, agent, reduceCalls);
+
+        synchronized (stats) {
+            stats.put(statsPrefix + "Chunks", chunks.size());
+            stats.put(statsPrefix + "FailedChunkCalls", failedCalls.get());
+            stats.put(statsPrefix + "MapMs", mapMs);
+            stats.put(statsPrefix + "ReduceCalls", reduceCalls.get());
+            stats.put(statsPrefix + "ReduceMs", elapsedMs(reduceStart));
+        }
+        return merged;
+    }
+
+    private String capToChunk(String text) {
+        int maxChars = chunkTokens * CHARS_PER_TOKEN;
+        return text.length() <= maxChars ? text : text.substring(0, maxChars) + "\n[Further clauses omitted]";
+    }
+
+    private static int estimateTokens(String text) {
+        return text.length() / CHARS_PER_TOKEN;
+    }
+
+    private CompletableFuture<String> analyzeChunk(Supplier<String> call,
+                                                   DocumentChunker.Chunk chunk, AtomicInteger failedCalls) {
+        return CompletableFuture.supplyAsync(call, chunkExecutor).exceptionally(e -> {
+            failedCalls.incrementAndGet();
+            logger.warn("Analysis of chunk {} failed: {}", chunk.index() + 1, e.getMessage());
+            return "[Part " + (chunk.index() + 1) + " could not be analyzed: " + e.getMessage() + "]";
+        });
+    }
+
+    /**
+     * Group findings into batches that fit one chunk budget and consolidate each batch in parallel,
+     * repeating until a single report remains
+     */
+    private String reduceFindings(List<String> findings, String kind,
+                                  Function<String, String> consolidator, AtomicInteger reduceCalls) {
+        int budgetChars = chunkTokens * CHARS_PER_TOKEN;
+        List<String> level = findings;
+
+        while (level.size() > 1) {
+            List<List<String>> batches = new ArrayList<>();
+            List<String> batch = new ArrayList<>();
+            int batchChars = 0;
+            for (String finding : level) {
+                if (!batch.isEmpty() && batchChars + finding.length() > budgetChars) {
+                    batches.add(batch);
+                    batch = new ArrayList<>();
+                    batchChars = 0;
+                }
+                batch.add(finding);
+                batchChars += finding.length();
+            }
+            batches.add(batch);
+
+            if (batches.size() == level.size()) {
+                // Every finding fills a batch on its own, so consolidating further won't converge
+                return String.join("\n\n", level);
+            }
+
+            // Findings that fit one context still get one consolidation pass, which merges the
+            // issues repeated across chunks and reconciles contradicting ones
+            List<CompletableFuture<String>> merged = batches.stream()
+                    .map(parts -> CompletableFuture.supplyAsync(() -> {
+                        reduceCalls.incrementAndGet();
+                        return consolidator.apply(buildReduceQuery(kind, parts));
+                    }, chunkExecutor).exceptionally(e -> {
+                        logger.warn("Consolidating {} findings failed, keeping them unmerged: {}", kind, e.getMessage());
+                        return String.join("\n\n", parts);
+                    }))
+                    .toList();
+            level = merged.stream().map(CompletableFuture::join).toList();
+        }
+        return level.isEmpty() ? "" : level.get(0);
+    }
+
+    private String buildChunkQuery(String header, DocumentChunker.Chunk chunk, int chunkCount, int totalChars) {
+        return String.format("%s\n\nThis is part %d of %d (characters %d-%d of %d). "
+                        + "Report findings for this part only and cite clause numbers where present.\n\nContent:\n%s",
+                header, chunk.index() + 1, chunkCount, chunk.start(), chunk.end(), totalChars, chunk.text());
+    }
+
+    private String buildReduceQuery(String kind, List<String> parts) {
+        StringBuilder query = new StringBuilder();
+        query.append("Consolidate these partial ").append(kind)
+                .append(" findings, each covering consecutive parts of the same document, into one report. ")
+                .append("Keep every distinct issue and clause reference, merge duplicates, resolve findings that ")
+                .append("contradict each other (say which part each came from if they can't be reconciled), ")
+                .append("and keep the output format.\n\n");
+        for (int i = 0; i < parts.size(); i++) {
+            query.append("=== PART ").append(i + 1).append(" ===\n").append(parts.get(i)).append("\n\n");
+        }
+        return query.toString();
+    }
+
+    private Map<String, Object> documentStats(ExtractedDocument document, String mode) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", mode);
+        stats.put("characters", document.characterCount());
+        if (document.pageCount() > 0) {
+            stats.put("pages", document.pagesExtracted());
+        }
+        stats.put("truncated", document.truncated());
+        stats.put("extractionMs", document.extractionMs());
+        return stats;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
     /**
      * Determine the type of legal query to route to appropriate agents
      */
@@ -147,47 +1006,116 @@ public class LegalTeamService {
     /**
      * Process query through relevant agents based on type
      */
-    private AgentResponse processWithAgents(String query, QueryType queryType, String sessionId) {
+    private AgentResponse processWithAgents(String query, QueryType queryType, String sessionId,
+                                            Map<String, Object> stats) {
         AgentResponse response = agentResponses.get(sessionId);
+        Agents agents = agents();
+        Function<String, String> researcher = researchQuery -> research(agents, researchQuery, sessionId, stats);
 
         switch (queryType) {
             case CONTRACT_ANALYSIS:
-                response.contractAnalysis = contractAnalyst.processQuery(query);
-                response.complianceAnalysis = complianceAgent.processQuery(buildComplianceQuery(query, response.contractAnalysis));
-                response.legalStrategy = legalStrategist.processQuery(buildStrategyQuery(query, response.contractAnalysis, response.complianceAnalysis));
+                response.contractAnalysis = ask(stats, "contractMs", agents.contractAnalyst()::processQuery, query);
+                response.complianceAnalysis = ask(stats, "complianceMs", agents.complianceAgent()::processQuery,
+                        buildComplianceQuery(query, response.contractAnalysis));
+                response.legalStrategy = ask(stats, "strategyMs", agents.legalStrategist()::processQuery,
+                        buildStrategyQuery(query, response.contractAnalysis, response.complianceAnalysis));
                 break;
 
             case COMPLIANCE:
-                response.complianceAnalysis = complianceAgent.processQuery(query);
-                response.legalStrategy = legalStrategist.processQuery(buildStrategyQuery(query, null, response.complianceAnalysis));
+                response.complianceAnalysis = ask(stats, "complianceMs", agents.complianceAgent()::processQuery, query);
+                response.legalStrategy = ask(stats, "strategyMs", agents.legalStrategist()::processQuery,
+                        buildStrategyQuery(query, null, response.complianceAnalysis));
                 break;
 
             case LEGAL_RESEARCH:
-                response.researchFindings = legalResearcher.processQuery(query);
-                response.legalStrategy = legalStrategist.processQuery(buildStrategyQuery(query, null, null));
+                response.researchFindings = ask(stats, "researchMs", researcher, query);
+                response.legalStrategy = ask(stats, "strategyMs", agents.legalStrategist()::processQuery,
+                        buildStrategyQuery(query, null, null));
                 break;
 
             case LEGAL_STRATEGY:
                 // Strategy queries may need background research
-                response.researchFindings = legalResearcher.processQuery(buildResearchQuery(query));
-                response.legalStrategy = legalStrategist.processQuery(query);
+                response.researchFindings = ask(stats, "researchMs", researcher, buildResearchQuery(query));
+                response.legalStrategy = ask(stats, "strategyMs", agents.legalStrategist()::processQuery, query);
                 break;
 
             case COMPREHENSIVE:
             default:
                 // Full workflow for comprehensive analysis
-                response.researchFindings = legalResearcher.processQuery(query);
-                response.contractAnalysis = contractAnalyst.processQuery(query);
-                response.complianceAnalysis = complianceAgent.processQuery(query);
-                response.legalStrategy = legalStrategist.processQuery(
-                        buildStrategyQuery(query, response.contractAnalysis, response.complianceAnalysis)
-                );
+                response.researchFindings = ask(stats, "researchMs", researcher, query);
+                response.contractAnalysis = ask(stats, "contractMs", agents.contractAnalyst()::processQuery, query);
+                response.complianceAnalysis = ask(stats, "complianceMs", agents.complianceAgent()::processQuery, query);
+                response.legalStrategy = ask(stats, "strategyMs", agents.legalStrategist()::processQuery,
+                        buildStrategyQuery(query, response.contractAnalysis, response.complianceAnalysis));
                 break;
         }
 
         return response;
     }
 
+    // Only the reports this request's workflow produced; the session's response holder keeps older ones
+    private static AgentReports reportsFor(QueryType queryType, AgentResponse responses) {
+        return switch (queryType) {
+            case CONTRACT_ANALYSIS -> new AgentReports(null, responses.contractAnalysis,
+                    responses.complianceAnalysis, responses.legalStrategy);
+            case COMPLIANCE -> new AgentReports(null, null, responses.complianceAnalysis, responses.legalStrategy);
+            case LEGAL_RESEARCH, LEGAL_STRATEGY -> new AgentReports(responses.researchFindings, null, null,
+                    responses.legalStrategy);
+            case COMPREHENSIVE -> new AgentReports(responses.researchFindings, responses.contractAnalysis,
+                    responses.complianceAnalysis, responses.legalStrategy);
+        };
+    }
+
+    private String research(Agents agents, String query, String sessionId, Map<String, Object> stats) {
+        toolDispatcher.takeCacheHits();
+        try {
+            return toolDispatcher.inSession(sessionId, () -> agents.legalResearcher().processQuery(query));
+        } finally {
+            stats.merge("toolCacheHits", toolDispatcher.takeCacheHits(), (a, b) -> (Integer) a + (Integer) b);
+        }
+    }
+
+    /**
+     * One agent call, timed under {@code timingKey} and counted with its estimated prompt tokens
+     */
+    private static String ask(Map<String, Object> stats, String timingKey, Function<String, String> agent, String prompt) {
+        long start = System.nanoTime();
+        try {
+            return agent.apply(prompt);
+        } finally {
+            stats.merge(timingKey, elapsedMs(start), (a, b) -> (Long) a + (Long) b);
+            stats.merge("agentCalls", 1, (a, b) -> (Integer) a + (Integer) b);
+            stats.merge("tokensSent", estimateTokens(prompt), (a, b) -> (Integer) a + (Integer) b);
+        }
+    }
+
+    // Only counts and timings go to the audit log, never query or document text
+    private void audit(AuditRecord.Kind kind, QueryType queryType, String status, Map<String, Object> stats,
+                       long startNanos, ExtractedDocument document) {
+        auditLog.record(new AuditRecord(System.currentTimeMillis(), kind, queryType, AuditRecord.Status.of(status),
+                AuditRecord.Mode.of(stats.get("mode")), (int) elapsedMs(startNanos),
+                intStat(stats, "researchMs"), intStat(stats, "contractMs"), intStat(stats, "complianceMs"),
+                intStat(stats, "strategyMs"), intStat(stats, "coordinationMs"), intStat(stats, "agentCalls"),
+                intStat(stats, document == null ? "tokensSent" : "documentTokensSent"), intStat(stats, "toolCacheHits"),
+                document == null ? 0 : document.characterCount(), document == null ? 0 : document.pagesExtracted(),
+                intStat(stats, "clauses")));
+    }
+
+    // A failure caused by cancelling the job is not an analysis error: audit it as cancelled and
+    // let it reach the caller, whichever wrapped form it surfaced in
+    private void rethrowIfCancelled(AuditRecord.Kind kind, QueryType queryType, Map<String, Object> stats,
+                                    long startNanos, ExtractedDocument document) {
+        CancellationToken token = CancellationToken.current();
+        if (token != null && token.isCancelled()) {
+            audit(kind, queryType, "CANCELLED", stats, startNanos, document);
+            throw token.aborted("analysis");
+        }
+    }
+
+    private static int intStat(Map<String, Object> stats, String key) {
+        return stats.get(key) instanceof Number number ? number.intValue() : 0;
+    }
+
     /**
      * Build input for team coordinator to synthesize responses
      */
@@ -195,7 +1123,7 @@ public class LegalTeamService {
         StringBuilder input = new StringBuilder();
         input.append("Original Query: ").append(originalQuery).append("\n\n");
 
-        List<String> history = conversationHistory.get(sessionId);
+        List<String> history = sessionStore.history(sessionId);
         if (history.size() > 1) {
             input.append("Previous Context:\n");
             history.stream()
@@ -399,23 +1327,73 @@ public class LegalTeamService {
         return maxConfidence;
     }
 
+    // Authorities the agents cited become findable from the session
+    private void indexCitations(String sessionId, String query, AgentResponse responses, String coordinatedResponse) {
+        CitationIndex.Source session = CitationIndex.Source.session(sessionId);
+        for (String text : Arrays.asList(query, responses.researchFindings, responses.contractAnalysis,
+                responses.complianceAnalysis, responses.legalStrategy, coordinatedResponse)) {
+            if (text != null) {
+                citationIndex.index(text, session);
+            }
+        }
+    }
+
     /**
      * Get conversation history for a session
      */
     public List<String> getConversationHistory(String sessionId) {
-        return conversationHistory.getOrDefault(sessionId, new ArrayList<>());
+        return sessionStore.history(sessionId);
+    }
+
+    /**
+     * Analysis results recorded for a session, oldest first
+     */
+    public List<LegalAnalysisResult> getAnalysisResults(String sessionId) {
+        return sessionStore.results(sessionId);
+    }
+
+    /**
+     * One page of a session's conversation history, starting at turn {@code from}
+     */
+    public SessionStore.Page<String> getConversationHistory(String sessionId, int from, int limit) {
+        return sessionStore.history(sessionId, from, limit);
+    }
+
+    /**
+     * One page of a session's analysis results, starting at result {@code from}
+     */
+    public SessionStore.Page<LegalAnalysisResult> getAnalysisResults(String sessionId, int from, int limit) {
+        return sessionStore.results(sessionId, from, limit);
     }
 
     /**
      * Clear conversation history for a session
      */
     public void clearConversationHistory(String sessionId) {
-        conversationHistory.remove(sessionId);
+        sessionStore.clear(sessionId);
         agentResponses.remove(sessionId);
+        documentVersions.remove(sessionId);
+        toolDispatcher.clearSession(sessionId);
+        citationIndex.remove(CitationIndex.Source.session(sessionId));
         logger.info("Cleared conversation history for session: {}", sessionId);
     }
 
+    @PreDestroy
+    public void shutdown() {
+        chunkAnalysisPool.shutdownNow();
+    }
+
     // Inner classes
+    private record Agents(LegalResearcher legalResearcher, ContractAnalyst contractAnalyst,
+                          ComplianceAgent complianceAgent, LegalStrategist legalStrategist,
+                          TeamCoordinator teamCoordinator, ContractAnalyst documentAnalyst,
+                          ComplianceAgent documentCompliance, LegalStrategist documentStrategist,
+                          TeamCoordinator documentCoordinator, QuickCounsel quickCounsel) {
+    }
+
+    private record Revision(String coordinatedResponse, List<String> riskChanges) {
+    }
+
     private static class AgentResponse {
         String researchFindings;
         String contractAnalysis;
@@ -428,6 +1406,31 @@ public class LegalTeamService {
         COMPLIANCE,
         LEGAL_RESEARCH,
         LEGAL_STRATEGY,
-        COMPREHENSIVE
+        COMPREHENSIVE;
+
+        public static QueryType parse(String value) {
+            try {
+                return valueOf(value);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown analysis type '" + value + "'; expected QUICK or one of "
+                        + Arrays.toString(values()));
+            }
+        }
+    }
+
+    public enum ResponseLength {
+        BRIEF,
+        DETAILED;
+
+        public static ResponseLength parse(String value) {
+            if (value == null || value.isBlank()) {
+                return DETAILED;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown response length '" + value + "'; expected BRIEF or DETAILED");
+            }
+        }
     }
 }
\ No newline at end of file
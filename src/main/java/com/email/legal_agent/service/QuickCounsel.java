@@ -0,0 +1,15 @@
+package com.email.legal_agent.service;
+
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.UserMessage;
+import dev.langchain4j.service.V;
+
+public interface QuickCounsel {
+    @SystemMessage("""
+        You are a {{specialty}} giving a fast first answer. Use at most {{words}} words:
+        the direct answer first, then up to three bullets on key risks or next steps.
+        Mark anything that needs full review by counsel with ⚠️. Cite no authority you are unsure of.
+        """
+    )
+    String answer(@V("specialty") String specialty, @V("words") int words, @UserMessage String question);
+}
@@ -0,0 +1,287 @@
+package com.email.legal_agent.service.audit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Append-only audit log of completed analyses, written as compressed columnar blocks to rolling
+ * segment files (see {@link AuditSegment}); read them back with {@link AuditLogReader} or
+ * {@link AuditLogCli}.
+ *
+ * {@link #record} never blocks: records go into a bounded queue and are dropped, and counted
+ * under {@code legal.audit.dropped}, when it is full. A single writer thread packs them into
+ * preallocated column arrays and deflates full blocks, or whatever arrived within the flush
+ * interval, with a reused buffer, deflater and checksum. A segment rolls over when it reaches
+ * the size limit or the UTC day changes; segments older than the retention period are deleted.
+ */
+@Service
+public class AuditLog {
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+    private static final DateTimeFormatter SEGMENT_TIME =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss").withZone(ZoneOffset.UTC);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final int retentionDays;
+    private final long flushIntervalMillis;
+
+    private final BlockingQueue<AuditRecord> queue;
+    private final Queue<CompletableFuture<Void>> flushRequests = new ConcurrentLinkedQueue<>();
+    private final ExecutorService writer;
+    private volatile boolean running = true;
+
+    // Writer-thread state, reused for every block
+    private final AuditSegment.Columns columns;
+    private final ByteBuffer raw;
+    private final byte[] compressed;
+    private final ByteBuffer header = ByteBuffer.allocate(AuditSegment.BLOCK_HEADER_BYTES);
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32 crc = new CRC32();
+    private FileChannel segment;
+    private LocalDate segmentDay;
+    private long blockStartMillis;
+
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter failures;
+
+    public AuditLog(MeterRegistry meterRegistry,
+                    @Value("${legal-assistant.audit.enabled:true}") boolean enabled,
+                    @Value("${legal-assistant.audit.directory:logs/audit}") String directory,
+                    @Value("${legal-assistant.audit.queue-capacity:65536}") int queueCapacity,
+                    @Value("${legal-assistant.audit.block-records:4096}") int blockRecords,
+                    @Value("${legal-assistant.audit.flush-interval-ms:1000}") long flushIntervalMillis,
+                    @Value("${legal-assistant.audit.max-segment-mb:64}") long maxSegmentMb,
+                    @Value("${legal-assistant.audit.retention-days:30}") int retentionDays) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.maxSegmentBytes = maxSegmentMb * 1024 * 1024;
+        this.retentionDays = retentionDays;
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        this.columns = new AuditSegment.Columns(Math.max(1, blockRecords));
+        this.raw = ByteBuffer.allocate(columns.capacity() * AuditSegment.RECORD_BYTES);
+        // Deflate can expand incompressible input slightly
+        this.compressed = new byte[raw.capacity() + raw.capacity() / 100 + 64];
+
+        this.written = meterRegistry.counter("legal.audit.records");
+        this.dropped = meterRegistry.counter("legal.audit.dropped");
+        this.failures = meterRegistry.counter("legal.audit.write-failures");
+        meterRegistry.gaugeCollectionSize("legal.audit.queued", Tags.empty(), queue);
+
+        if (enabled) {
+            this.writer = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "audit-log-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            writer.execute(this::writeLoop);
+        } else {
+            this.writer = null;
+        }
+    }
+
+    public void record(AuditRecord record) {
+        if (enabled && !queue.offer(record)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Completes once every record accepted before the call is on disk
+     */
+    public CompletableFuture<Void> flush() {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        flushRequests.add(done);
+        return done;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    private void writeLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                // Short polls so flush requests are seen promptly even with a long flush interval
+                AuditRecord record = queue.poll(Math.min(flushIntervalMillis, 100), TimeUnit.MILLISECONDS);
+                if (record != null) {
+                    if (columns.size == 0) {
+                        blockStartMillis = System.currentTimeMillis();
+                    }
+                    columns.add(record);
+                    fillBlock();
+                }
+
+                CompletableFuture<Void> flushRequest = flushRequests.poll();
+                if (flushRequest != null) {
+                    // Everything queued before the request is written along with it
+                    do {
+                        fillBlock();
+                        writeBlock();
+                    } while (!queue.isEmpty());
+                    do {
+                        flushRequest.complete(null);
+                    } while ((flushRequest = flushRequests.poll()) != null);
+                } else if (columns.size > 0 && (columns.isFull()
+                        || System.currentTimeMillis() - blockStartMillis >= flushIntervalMillis)) {
+                    writeBlock();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        writeBlock();
+        closeSegment();
+    }
+
+    private void fillBlock() {
+        AuditRecord next;
+        while (!columns.isFull() && (next = queue.poll()) != null) {
+            columns.add(next);
+        }
+        if (columns.isFull()) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() {
+        if (columns.size == 0) {
+            return;
+        }
+        int count = columns.size;
+        try {
+            raw.clear();
+            columns.encode(raw);
+            deflater.reset();
+            deflater.setInput(raw.array(), 0, raw.position());
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+            crc.reset();
+            crc.update(compressed, 0, compressedLength);
+
+            header.clear();
+            columns.header(compressedLength, (int) crc.getValue()).write(header);
+            header.flip();
+
+            FileChannel channel = segmentFor(columns.timestamps[0]);
+            ByteBuffer body = ByteBuffer.wrap(compressed, 0, compressedLength);
+            while (header.hasRemaining() || body.hasRemaining()) {
+                channel.write(new ByteBuffer[]{header, body});
+            }
+            written.increment(count);
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            logger.error("Failed to write {} audit records: {}", count, e.getMessage());
+            closeSegment();
+        } finally {
+            columns.size = 0;
+        }
+    }
+
+    private FileChannel segmentFor(long timestampMillis) throws IOException {
+        LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(timestampMillis), ZoneOffset.UTC);
+        if (segment != null && (segment.size() >= maxSegmentBytes || !day.equals(segmentDay))) {
+            closeSegment();
+        }
+        if (segment == null) {
+            Files.createDirectories(directory);
+            deleteExpiredSegments();
+            String name = "audit-" + SEGMENT_TIME.format(Instant.now());
+            Path file = directory.resolve(name + AuditSegment.SUFFIX);
+            for (int n = 1; Files.exists(file); n++) {
+                file = directory.resolve(name + "-" + n + AuditSegment.SUFFIX);
+            }
+            segment = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            ByteBuffer fileHeader = ByteBuffer.allocate(AuditSegment.FILE_HEADER_BYTES)
+                    .putInt(AuditSegment.FILE_MAGIC).putInt(AuditSegment.FORMAT).flip();
+            while (fileHeader.hasRemaining()) {
+                segment.write(fileHeader);
+            }
+            segmentDay = day;
+            logger.info("Audit log segment {} opened", file.getFileName());
+        }
+        return segment;
+    }
+
+    private void deleteExpiredSegments() {
+        if (retentionDays <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays);
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*" + AuditSegment.SUFFIX)) {
+            for (Path file : segments) {
+                if (Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                    Files.deleteIfExists(file);
+                    logger.info("Audit log segment {} expired", file.getFileName());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Audit log retention sweep failed: {}", e.getMessage());
+        }
+    }
+
+    private void closeSegment() {
+        if (segment != null) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                logger.warn("Closing audit segment failed: {}", e.getMessage());
+            }
+            segment = null;
+        }
+    }
+
+    /**
+     * Stop accepting records and write out whatever is still queued
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        writer.shutdown();
+        try {
+            if (writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                deflater.end();
+            } else {
+                logger.warn("Audit log not drained at shutdown; {} records lost", queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
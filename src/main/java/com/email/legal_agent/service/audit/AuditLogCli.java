@@ -0,0 +1,162 @@
+package com.email.legal_agent.service.audit;
+
+import com.email.legal_agent.service.LegalTeamService;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Command-line scanner for the audit log. From the packaged application:
+ * <pre>
+ * java -cp smart-legal-assistant.jar -Dloader.main=com.email.legal_agent.service.audit.AuditLogCli \
+ *      org.springframework.boot.loader.launch.PropertiesLauncher \
+ *      --dir logs/audit --from 2025-06-01 --type COMPLIANCE,LEGAL_RESEARCH --status ERROR --format csv
+ * </pre>
+ * {@code --format summary} (the default) prints count, latency percentiles, average agent
+ * timings and token totals per kind and query type; {@code csv} prints every matching record.
+ */
+public final class AuditLogCli {
+
+    private static final String USAGE = """
+            Usage: AuditLogCli [--dir DIR] [--from DATE|INSTANT] [--to DATE|INSTANT] [--kind QUERY,DOCUMENT]
+                               [--type QUERY_TYPE,...] [--status SUCCESS,ERROR,...] [--min-total-ms N]
+                               [--format summary|csv]""";
+
+    private AuditLogCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Path directory = Path.of("logs/audit");
+        AuditQuery query = AuditQuery.all();
+        String format = "summary";
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--dir" -> directory = Path.of(value);
+                    case "--from" -> query = query.between(parseTime(value), query.to());
+                    case "--to" -> query = query.between(query.from(), parseTime(value));
+                    case "--kind" -> query = new AuditQuery(query.from(), query.to(),
+                            parseSet(value, AuditRecord.Kind::valueOf), query.queryTypes(), query.statuses(), query.minTotalMs());
+                    case "--type" -> query = new AuditQuery(query.from(), query.to(), query.kinds(),
+                            parseSet(value, LegalTeamService.QueryType::valueOf), query.statuses(), query.minTotalMs());
+                    case "--status" -> query = new AuditQuery(query.from(), query.to(), query.kinds(),
+                            query.queryTypes(), parseSet(value, AuditRecord.Status::valueOf), query.minTotalMs());
+                    case "--min-total-ms" -> query = query.slowerThan(Integer.parseInt(value));
+                    case "--format" -> {
+                        if (!value.equals("summary") && !value.equals("csv")) {
+                            throw new IllegalArgumentException("Unknown format: " + value);
+                        }
+                        format = value;
+                    }
+                    default -> throw new IllegalArgumentException("Unknown option: " + option);
+                }
+            }
+        } catch (RuntimeException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        try {
+            AuditLogReader.ScanStats stats;
+            if (format.equals("csv")) {
+                out.println("timestamp,kind,queryType,status,mode,totalMs,researchMs,contractMs,complianceMs,"
+                        + "strategyMs,coordinationMs,agentCalls,tokensSent,toolCacheHits,documentChars,documentPages,clauses");
+                stats = AuditLogReader.scan(directory, query, record -> out.println(csv(record)));
+            } else {
+                Map<String, Summary> summaries = new TreeMap<>();
+                stats = AuditLogReader.scan(directory, query, record -> summaries
+                        .computeIfAbsent(record.kind() + " " + record.queryType(), key -> new Summary())
+                        .add(record));
+                printSummary(summaries, out);
+            }
+            err.printf("%d records matched of %d scanned; %d blocks read, %d skipped; %d segments read, %d skipped%n",
+                    stats.recordsMatched(), stats.recordsScanned(), stats.blocksRead(), stats.blocksSkipped(),
+                    stats.segmentsRead(), stats.segmentsSkipped());
+            return 0;
+        } catch (IOException e) {
+            err.println("Cannot read " + directory + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static Instant parseTime(String value) {
+        return value.contains("T") ? Instant.parse(value) : LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static <E extends Enum<E>> Set<E> parseSet(String value, Function<String, E> parser) {
+        Set<E> values = new HashSet<>();
+        for (String part : value.split(",")) {
+            values.add(parser.apply(part.trim().toUpperCase(Locale.ROOT)));
+        }
+        return values;
+    }
+
+    private static String csv(AuditRecord r) {
+        return String.join(",", r.timestamp().toString(), r.kind().name(), r.queryType().name(),
+                r.status().name(), r.mode().name(), Integer.toString(r.totalMs()), Integer.toString(r.researchMs()),
+                Integer.toString(r.contractMs()), Integer.toString(r.complianceMs()), Integer.toString(r.strategyMs()),
+                Integer.toString(r.coordinationMs()), Integer.toString(r.agentCalls()), Integer.toString(r.tokensSent()),
+                Integer.toString(r.toolCacheHits()), Integer.toString(r.documentChars()),
+                Integer.toString(r.documentPages()), Integer.toString(r.clauses()));
+    }
+
+    private static void printSummary(Map<String, Summary> summaries, PrintStream out) {
+        out.printf("%-34s %8s %7s %8s %8s %8s %9s %9s %9s %9s %9s %12s %9s%n", "kind / query type", "count", "errors",
+                "p50 ms", "p95 ms", "max ms", "research", "contract", "compliance", "strategy", "coordin.",
+                "tokens", "tool hits");
+        summaries.forEach((group, s) -> out.printf("%-34s %8d %7d %8d %8d %8d %9d %9d %9d %9d %9d %12d %9d%n",
+                group, s.count, s.errors, s.percentile(0.50), s.percentile(0.95), s.percentile(1.0),
+                s.researchMs / s.count, s.contractMs / s.count, s.complianceMs / s.count, s.strategyMs / s.count,
+                s.coordinationMs / s.count, s.tokens, s.toolCacheHits));
+    }
+
+    private static final class Summary {
+        int count;
+        int errors;
+        long researchMs;
+        long contractMs;
+        long complianceMs;
+        long strategyMs;
+        long coordinationMs;
+        long tokens;
+        long toolCacheHits;
+        int[] totals = new int[64];
+
+        void add(AuditRecord r) {
+            if (count == totals.length) {
+                totals = Arrays.copyOf(totals, count * 2);
+            }
+            totals[count++] = r.totalMs();
+            errors += r.status() == AuditRecord.Status.ERROR ? 1 : 0;
+            researchMs += r.researchMs();
+            contractMs += r.contractMs();
+            complianceMs += r.complianceMs();
+            strategyMs += r.strategyMs();
+            coordinationMs += r.coordinationMs();
+            tokens += r.tokensSent();
+            toolCacheHits += r.toolCacheHits();
+        }
+
+        int percentile(double p) {
+            int[] sorted = Arrays.copyOf(totals, count);
+            Arrays.sort(sorted);
+            return sorted[Math.max(0, (int) Math.ceil(p * count) - 1)];
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.email.legal_agent.service.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Scans audit segments written by {@link AuditLog}, pushing the query down as far as it goes:
+ * whole segments are skipped by modification time, blocks by their header ranges and masks, and
+ * records are tested on the decoded columns so only matches are materialized.
+ *
+ * Safe to run against a directory the application is still writing to; a block that is only
+ * partly written is treated as the end of its segment.
+ */
+public final class AuditLogReader {
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogReader.class);
+
+    /**
+     * What a scan touched; skipped counts show how much the pushdown saved
+     */
+    public record ScanStats(int segmentsRead, int segmentsSkipped, long blocksRead, long blocksSkipped,
+                            long recordsScanned, long recordsMatched) {
+    }
+
+    private final AuditQuery.Compiled query;
+    private final ByteBuffer header = ByteBuffer.allocate(AuditSegment.BLOCK_HEADER_BYTES);
+    private final Inflater inflater = new Inflater();
+    private final CRC32 crc = new CRC32();
+    private byte[] compressed = new byte[64 * 1024];
+    private byte[] raw = new byte[256 * 1024];
+    private AuditSegment.Columns columns = new AuditSegment.Columns(4096);
+
+    private int segmentsRead;
+    private int segmentsSkipped;
+    private long blocksRead;
+    private long blocksSkipped;
+    private long recordsScanned;
+    private long recordsMatched;
+
+    private AuditLogReader(AuditQuery query) {
+        this.query = query.compile();
+    }
+
+    /**
+     * Pass every record in {@code directory} matching {@code query} to {@code sink}, oldest segment first
+     */
+    public static ScanStats scan(Path directory, AuditQuery query, Consumer<AuditRecord> sink) throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(file -> file.getFileName().toString().endsWith(AuditSegment.SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        AuditLogReader reader = new AuditLogReader(query);
+        try {
+            for (Path segment : segments) {
+                reader.scanSegment(segment, sink);
+            }
+        } finally {
+            reader.inflater.end();
+        }
+        return new ScanStats(reader.segmentsRead, reader.segmentsSkipped, reader.blocksRead, reader.blocksSkipped,
+                reader.recordsScanned, reader.recordsMatched);
+    }
+
+    private void scanSegment(Path file, Consumer<AuditRecord> sink) throws IOException {
+        if (!query.mayMatchSegmentModifiedAt(Files.getLastModifiedTime(file).toMillis())) {
+            segmentsSkipped++;
+            return;
+        }
+        segmentsRead++;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer fileHeader = ByteBuffer.allocate(AuditSegment.FILE_HEADER_BYTES);
+            if (!readFully(channel, fileHeader, 0) || fileHeader.getInt(0) != AuditSegment.FILE_MAGIC
+                    || fileHeader.getInt(4) != AuditSegment.FORMAT) {
+                logger.warn("Skipping {}: not an audit segment of format {}", file.getFileName(), AuditSegment.FORMAT);
+                return;
+            }
+
+            long position = AuditSegment.FILE_HEADER_BYTES;
+            while (position < size) {
+                header.clear();
+                if (!readFully(channel, header, position)) {
+                    break;
+                }
+                header.flip();
+                AuditSegment.BlockHeader block = AuditSegment.BlockHeader.read(header);
+                long bodyStart = position + AuditSegment.BLOCK_HEADER_BYTES;
+                if (block == null || block.compressedLength() < 0 || bodyStart + block.compressedLength() > size) {
+                    logger.warn("{} ends in an incomplete block at byte {}", file.getFileName(), position);
+                    break;
+                }
+                position = bodyStart + block.compressedLength();
+
+                if (!query.mayMatch(block)) {
+                    blocksSkipped++;
+                    continue;
+                }
+                if (!readBlock(channel, bodyStart, block)) {
+                    logger.warn("{} has a corrupt block at byte {}", file.getFileName(), bodyStart);
+                    break;
+                }
+                blocksRead++;
+                recordsScanned += block.count();
+                for (int i = 0; i < columns.size; i++) {
+                    if (query.matches(columns, i)) {
+                        recordsMatched++;
+                        sink.accept(columns.record(i));
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean readBlock(FileChannel channel, long bodyStart, AuditSegment.BlockHeader block) throws IOException {
+        int length = block.compressedLength();
+        if (compressed.length < length) {
+            compressed = new byte[length];
+        }
+        if (!readFully(channel, ByteBuffer.wrap(compressed, 0, length), bodyStart)) {
+            return false;
+        }
+        crc.reset();
+        crc.update(compressed, 0, length);
+        if ((int) crc.getValue() != block.crc() || block.rawLength() != block.count() * AuditSegment.RECORD_BYTES) {
+            return false;
+        }
+
+        if (raw.length < block.rawLength()) {
+            raw = new byte[block.rawLength()];
+        }
+        inflater.reset();
+        inflater.setInput(compressed, 0, length);
+        try {
+            int inflated = 0;
+            while (inflated < block.rawLength() && !inflater.finished()) {
+                int n = inflater.inflate(raw, inflated, block.rawLength() - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return false;
+                }
+                inflated += n;
+            }
+            if (inflated != block.rawLength()) {
+                return false;
+            }
+        } catch (DataFormatException e) {
+            return false;
+        }
+
+        if (columns.capacity() < block.count()) {
+            columns = new AuditSegment.Columns(block.count());
+        }
+        columns.decode(ByteBuffer.wrap(raw, 0, block.rawLength()), block.count());
+        return true;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                return false;
+            }
+            position += n;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,110 @@
+package com.email.legal_agent.service.audit;
+
+import com.email.legal_agent.service.LegalTeamService;
+
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Filter for audit scans. Null bounds and empty sets match everything.
+ *
+ * Every condition is checked against block headers first, so blocks that cannot match are
+ * skipped without being inflated, and then against the decoded columns before any record
+ * object is built.
+ */
+public record AuditQuery(Instant from,
+                         Instant to,
+                         Set<AuditRecord.Kind> kinds,
+                         Set<LegalTeamService.QueryType> queryTypes,
+                         Set<AuditRecord.Status> statuses,
+                         int minTotalMs) {
+
+    public AuditQuery {
+        kinds = kinds == null ? Set.of() : Set.copyOf(kinds);
+        queryTypes = queryTypes == null ? Set.of() : Set.copyOf(queryTypes);
+        statuses = statuses == null ? Set.of() : Set.copyOf(statuses);
+    }
+
+    public static AuditQuery all() {
+        return new AuditQuery(null, null, null, null, null, 0);
+    }
+
+    public AuditQuery between(Instant from, Instant to) {
+        return new AuditQuery(from, to, kinds, queryTypes, statuses, minTotalMs);
+    }
+
+    public AuditQuery kinds(AuditRecord.Kind first, AuditRecord.Kind... rest) {
+        return new AuditQuery(from, to, EnumSet.of(first, rest), queryTypes, statuses, minTotalMs);
+    }
+
+    public AuditQuery queryTypes(LegalTeamService.QueryType first, LegalTeamService.QueryType... rest) {
+        return new AuditQuery(from, to, kinds, EnumSet.of(first, rest), statuses, minTotalMs);
+    }
+
+    public AuditQuery statuses(AuditRecord.Status first, AuditRecord.Status... rest) {
+        return new AuditQuery(from, to, kinds, queryTypes, EnumSet.of(first, rest), minTotalMs);
+    }
+
+    public AuditQuery slowerThan(int totalMs) {
+        return new AuditQuery(from, to, kinds, queryTypes, statuses, totalMs);
+    }
+
+    Compiled compile() {
+        return new Compiled(this);
+    }
+
+    /**
+     * The query with bounds and sets turned into the primitives the block and column checks use
+     */
+    static final class Compiled {
+        private final long from;
+        private final long to;
+        private final int kindMask;
+        private final int queryTypeMask;
+        private final int statusMask;
+        private final int minTotalMs;
+
+        private Compiled(AuditQuery query) {
+            this.from = query.from() == null ? Long.MIN_VALUE : query.from().toEpochMilli();
+            this.to = query.to() == null ? Long.MAX_VALUE : query.to().toEpochMilli();
+            this.kindMask = mask(query.kinds());
+            this.queryTypeMask = mask(query.queryTypes());
+            this.statusMask = mask(query.statuses());
+            this.minTotalMs = query.minTotalMs();
+        }
+
+        // Records are stamped before they are written, so a segment last modified before the range holds none of it
+        boolean mayMatchSegmentModifiedAt(long modifiedMillis) {
+            return modifiedMillis >= from;
+        }
+
+        boolean mayMatch(AuditSegment.BlockHeader header) {
+            return header.maxTimestamp() >= from && header.minTimestamp() < to
+                    && overlaps(header.kindMask(), kindMask)
+                    && overlaps(header.queryTypeMask(), queryTypeMask)
+                    && overlaps(header.statusMask(), statusMask);
+        }
+
+        boolean matches(AuditSegment.Columns columns, int i) {
+            long timestamp = columns.timestamps[i];
+            return timestamp >= from && timestamp < to
+                    && overlaps(1 << columns.kinds[i], kindMask)
+                    && overlaps(1 << columns.queryTypes[i], queryTypeMask)
+                    && overlaps(1 << columns.statuses[i], statusMask)
+                    && columns.ints[0][i] >= minTotalMs;
+        }
+
+        private static boolean overlaps(int present, int wanted) {
+            return wanted == 0 || (present & wanted) != 0;
+        }
+
+        private static int mask(Set<? extends Enum<?>> values) {
+            int mask = 0;
+            for (Enum<?> value : values) {
+                mask |= 1 << value.ordinal();
+            }
+            return mask;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.email.legal_agent.service.audit;
+
+import com.email.legal_agent.service.LegalTeamService;
+
+import java.time.Instant;
+
+/**
+ * One completed analysis as kept in the audit log. No query or document text is recorded,
+ * only what is needed to attribute cost and latency.
+ *
+ * Enum values are stored by ordinal, so constants may only ever be appended.
+ */
+public record AuditRecord(long timestampMillis,
+                          Kind kind,
+                          LegalTeamService.QueryType queryType,
+                          Status status,
+                          Mode mode,
+                          int totalMs,
+                          int researchMs,
+                          int contractMs,
+                          int complianceMs,
+                          int strategyMs,
+                          int coordinationMs,
+                          int agentCalls,
+                          int tokensSent,
+                          int toolCacheHits,
+                          int documentChars,
+                          int documentPages,
+                          int clauses) {
+
+    public enum Kind {
+        QUERY,
+        DOCUMENT
+    }
+
+    public enum Status {
+        SUCCESS,
+        ERROR,
+        REQUIRES_REVIEW,
+        OTHER,
+        CANCELLED;
+
+        public static Status of(String status) {
+            if (status == null) {
+                return OTHER;
+            }
+            return switch (status) {
+                case "SUCCESS" -> SUCCESS;
+                case "ERROR" -> ERROR;
+                case "REQUIRES_REVIEW" -> REQUIRES_REVIEW;
+                case "CANCELLED" -> CANCELLED;
+                default -> OTHER;
+            };
+        }
+    }
+
+    /**
+     * How a document was analysed; NONE for plain queries
+     */
+    public enum Mode {
+        NONE,
+        SINGLE_PASS,
+        CHUNKED,
+        EXACT_DUPLICATE,
+        NEAR_DUPLICATE,
+        NEW_VERSION,
+        QUICK;
+
+        public static Mode of(Object mode) {
+            if (mode == null) {
+                return NONE;
+            }
+            return switch (mode.toString()) {
+                case "single-pass" -> SINGLE_PASS;
+                case "chunked" -> CHUNKED;
+                case "exact-duplicate" -> EXACT_DUPLICATE;
+                case "near-duplicate" -> NEAR_DUPLICATE;
+                case "new-version" -> NEW_VERSION;
+                case "quick" -> QUICK;
+                default -> NONE;
+            };
+        }
+    }
+
+    public Instant timestamp() {
+        return Instant.ofEpochMilli(timestampMillis);
+    }
+}
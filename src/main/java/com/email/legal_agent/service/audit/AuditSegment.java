@@ -0,0 +1,163 @@
+package com.email.legal_agent.service.audit;
+
+import com.email.legal_agent.service.LegalTeamService;
+
+import java.nio.ByteBuffer;
+
+/**
+ * On-disk layout of audit segment files, shared by the writer and the reader.
+ *
+ * A segment starts with an 8-byte file header (magic, format) followed by self-contained blocks.
+ * Each block has a fixed header carrying its record count, timestamp range and bitmasks of the
+ * query types, statuses, kinds and modes inside it, so scans can skip a block without inflating
+ * it; then the deflated block body. The body is columnar: every record's timestamp, then every
+ * record's kind, and so on, which compresses far better than row-wise records. Segments are only
+ * ever appended to; a block cut short by a crash fails its length or CRC check and ends the segment.
+ */
+final class AuditSegment {
+
+    static final int FILE_MAGIC = 0x4C415544;
+    static final int FORMAT = 1;
+    static final int FILE_HEADER_BYTES = 8;
+
+    static final int BLOCK_MAGIC = 0x424C4B31;
+    static final int BLOCK_HEADER_BYTES = 52;
+
+    static final int INT_COLUMNS = 12;
+    static final int RECORD_BYTES = Long.BYTES + 4 + INT_COLUMNS * Integer.BYTES;
+
+    static final String SUFFIX = ".seg";
+
+    private AuditSegment() {
+    }
+
+    /**
+     * Block header fields; {@code rawLength} is the inflated body size
+     */
+    record BlockHeader(int count, long minTimestamp, long maxTimestamp, int queryTypeMask, int statusMask,
+                       int kindMask, int modeMask, int rawLength, int compressedLength, int crc) {
+
+        void write(ByteBuffer out) {
+            out.putInt(BLOCK_MAGIC).putInt(count).putLong(minTimestamp).putLong(maxTimestamp)
+                    .putInt(queryTypeMask).putInt(statusMask).putInt(kindMask).putInt(modeMask)
+                    .putInt(rawLength).putInt(compressedLength).putInt(crc);
+        }
+
+        static BlockHeader read(ByteBuffer in) {
+            if (in.getInt() != BLOCK_MAGIC) {
+                return null;
+            }
+            return new BlockHeader(in.getInt(), in.getLong(), in.getLong(), in.getInt(), in.getInt(),
+                    in.getInt(), in.getInt(), in.getInt(), in.getInt(), in.getInt());
+        }
+    }
+
+    /**
+     * A block's records held column by column in preallocated arrays, reused from block to block
+     */
+    static final class Columns {
+        private static final LegalTeamService.QueryType[] QUERY_TYPES = LegalTeamService.QueryType.values();
+        private static final AuditRecord.Kind[] KINDS = AuditRecord.Kind.values();
+        private static final AuditRecord.Status[] STATUSES = AuditRecord.Status.values();
+        private static final AuditRecord.Mode[] MODES = AuditRecord.Mode.values();
+
+        final long[] timestamps;
+        final byte[] kinds;
+        final byte[] queryTypes;
+        final byte[] statuses;
+        final byte[] modes;
+        final int[][] ints;
+        int size;
+
+        Columns(int capacity) {
+            timestamps = new long[capacity];
+            kinds = new byte[capacity];
+            queryTypes = new byte[capacity];
+            statuses = new byte[capacity];
+            modes = new byte[capacity];
+            ints = new int[INT_COLUMNS][capacity];
+        }
+
+        int capacity() {
+            return timestamps.length;
+        }
+
+        boolean isFull() {
+            return size == timestamps.length;
+        }
+
+        void add(AuditRecord record) {
+            int i = size++;
+            timestamps[i] = record.timestampMillis();
+            kinds[i] = (byte) record.kind().ordinal();
+            queryTypes[i] = (byte) record.queryType().ordinal();
+            statuses[i] = (byte) record.status().ordinal();
+            modes[i] = (byte) record.mode().ordinal();
+            ints[0][i] = record.totalMs();
+            ints[1][i] = record.researchMs();
+            ints[2][i] = record.contractMs();
+            ints[3][i] = record.complianceMs();
+            ints[4][i] = record.strategyMs();
+            ints[5][i] = record.coordinationMs();
+            ints[6][i] = record.agentCalls();
+            ints[7][i] = record.tokensSent();
+            ints[8][i] = record.toolCacheHits();
+            ints[9][i] = record.documentChars();
+            ints[10][i] = record.documentPages();
+            ints[11][i] = record.clauses();
+        }
+
+        AuditRecord record(int i) {
+            return new AuditRecord(timestamps[i], KINDS[kinds[i]], QUERY_TYPES[queryTypes[i]], STATUSES[statuses[i]],
+                    MODES[modes[i]], ints[0][i], ints[1][i], ints[2][i], ints[3][i], ints[4][i], ints[5][i],
+                    ints[6][i], ints[7][i], ints[8][i], ints[9][i], ints[10][i], ints[11][i]);
+        }
+
+        void encode(ByteBuffer out) {
+            for (int i = 0; i < size; i++) {
+                out.putLong(timestamps[i]);
+            }
+            out.put(kinds, 0, size).put(queryTypes, 0, size).put(statuses, 0, size).put(modes, 0, size);
+            for (int[] column : ints) {
+                for (int i = 0; i < size; i++) {
+                    out.putInt(column[i]);
+                }
+            }
+        }
+
+        void decode(ByteBuffer in, int count) {
+            size = count;
+            for (int i = 0; i < count; i++) {
+                timestamps[i] = in.getLong();
+            }
+            in.get(kinds, 0, count).get(queryTypes, 0, count).get(statuses, 0, count).get(modes, 0, count);
+            for (int[] column : ints) {
+                for (int i = 0; i < count; i++) {
+                    column[i] = in.getInt();
+                }
+            }
+        }
+
+        /**
+         * Header for the current contents, given the compressed body's size and checksum
+         */
+        BlockHeader header(int compressedLength, int crc) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            int queryTypeMask = 0;
+            int statusMask = 0;
+            int kindMask = 0;
+            int modeMask = 0;
+            for (int i = 0; i < size; i++) {
+                min = Math.min(min, timestamps[i]);
+                max = Math.max(max, timestamps[i]);
+                queryTypeMask |= 1 << queryTypes[i];
+                statusMask |= 1 << statuses[i];
+                kindMask |= 1 << kinds[i];
+                modeMask |= 1 << modes[i];
+            }
+            return new BlockHeader(size, min, max, queryTypeMask, statusMask, kindMask, modeMask,
+                    size * RECORD_BYTES, compressedLength, crc);
+        }
+    }
+}
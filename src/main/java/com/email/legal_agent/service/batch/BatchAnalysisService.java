@@ -0,0 +1,389 @@
+package com.email.legal_agent.service.batch;
+
+import com.email.legal_agent.config.VirtualThreads;
+import com.email.legal_agent.dto.BatchEvent;
+import com.email.legal_agent.dto.LegalAnalysisResult;
+import com.email.legal_agent.service.LegalTeamService;
+import com.email.legal_agent.service.cancellation.CancellationRegistry;
+import com.email.legal_agent.service.cancellation.CancellationToken;
+import com.email.legal_agent.service.document.DocumentExtractionService;
+import com.email.legal_agent.service.document.ExtractedDocument;
+import com.email.legal_agent.service.scheduling.AgentScheduler;
+import com.email.legal_agent.service.scheduling.Priority;
+import com.email.legal_agent.service.usage.TokenAccounting;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Analyses many documents per request: individual files or ZIP archives, read entry by entry.
+ *
+ * At most {@code max-concurrent-documents} documents run at once, on virtual threads when
+ * {@code spring.threads.virtual.enabled} is set, so all batches together stay within the model
+ * provider's rate limits, optionally paced to a number of document starts per minute. Each
+ * result is appended to its {@link BatchJob} as soon as it finishes; a failing document
+ * produces a FAILED event and the batch carries on. {@code DELETE /jobs/{batchId}} cancels
+ * the batch: documents in flight are cut off and the rest are reported as cancelled.
+ *
+ * A batch is only visible to the tenant that submitted it. Finished batches stay resumable for
+ * {@code retention-minutes}, and are evicted oldest first once they hold more than
+ * {@code max-retained-documents} results between them, checked every minute and whenever a batch
+ * finishes.
+ */
+@Service
+public class BatchAnalysisService {
+    private static final Logger logger = LoggerFactory.getLogger(BatchAnalysisService.class);
+
+    private static final long STREAM_POLL_SECONDS = 15;
+    private static final long EVICTION_INTERVAL_SECONDS = 60;
+
+    private final LegalTeamService legalTeamService;
+    private final DocumentExtractionService documentExtractionService;
+    private final AgentScheduler agentScheduler;
+    private final TokenAccounting tokenAccounting;
+    private final CancellationRegistry cancellations;
+    private final ObjectMapper objectMapper;
+    private final int maxConcurrentDocuments;
+    private final int maxDocuments;
+    private final long maxEntryBytes;
+    private final long retentionMillis;
+    private final int maxRetainedDocuments;
+    private final long startIntervalNanos;
+    private final ExecutorService analysisPool;
+    private final ScheduledExecutorService evictor;
+    private final Map<String, BatchJob> jobs = new ConcurrentHashMap<>();
+    private long nextStartNanos;
+
+    public BatchAnalysisService(LegalTeamService legalTeamService,
+                                DocumentExtractionService documentExtractionService,
+                                AgentScheduler agentScheduler,
+                                TokenAccounting tokenAccounting,
+                                CancellationRegistry cancellations,
+                                ObjectMapper objectMapper,
+                                @Value("${legal-assistant.batch.max-concurrent-documents:4}") int maxConcurrentDocuments,
+                                @Value("${legal-assistant.batch.max-documents-per-minute:0}") int maxDocumentsPerMinute,
+                                @Value("${legal-assistant.batch.max-documents:500}") int maxDocuments,
+                                @Value("${legal-assistant.batch.max-entry-bytes:52428800}") long maxEntryBytes,
+                                @Value("${legal-assistant.batch.retention-minutes:60}") long retentionMinutes,
+                                @Value("${legal-assistant.batch.max-retained-documents:2000}") int maxRetainedDocuments,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.legalTeamService = legalTeamService;
+        this.documentExtractionService = documentExtractionService;
+        this.agentScheduler = agentScheduler;
+        this.tokenAccounting = tokenAccounting;
+        this.cancellations = cancellations;
+        this.objectMapper = objectMapper;
+        this.maxConcurrentDocuments = Math.max(1, maxConcurrentDocuments);
+        this.maxDocuments = maxDocuments;
+        this.maxEntryBytes = maxEntryBytes;
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(retentionMinutes);
+        this.maxRetainedDocuments = maxRetainedDocuments;
+        this.startIntervalNanos = maxDocumentsPerMinute > 0 ? TimeUnit.MINUTES.toNanos(1) / maxDocumentsPerMinute : 0;
+
+        this.analysisPool = VirtualThreads.executor(virtualThreads, "batch-analysis", this.maxConcurrentDocuments);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictExpired, EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stage the uploads and start analysing them in the background, scheduled as {@code tenant}'s
+     * {@link Priority#LOW} work
+     */
+    public BatchJob submit(List<MultipartFile> files, String analysisType, String tenant) throws IOException {
+
+        // The request's multipart files are deleted when it completes, but the batch outlives it
+        List<StagedUpload> uploads = new ArrayList<>();
+        try {
+            for (MultipartFile file : files) {
+                if (file.isEmpty()) {
+                    continue;
+                }
+                Path path = Files.createTempFile("legal-batch-", ".upload");
+                uploads.add(new StagedUpload(file.getOriginalFilename(), file.getContentType(), path));
+                file.transferTo(path);
+            }
+        } catch (IOException e) {
+            uploads.forEach(upload -> deleteQuietly(upload.path()));
+            throw e;
+        }
+        if (uploads.isEmpty()) {
+            throw new IllegalArgumentException("No files provided");
+        }
+
+        BatchJob job = new BatchJob(UUID.randomUUID().toString(), tenant);
+        CancellationToken token = cancellations.register(job.id(), tenant);
+        jobs.put(job.id(), job);
+        Thread.ofVirtual().name("batch-reader-" + job.id()).start(() -> run(job, token, uploads, analysisType, tenant));
+        logger.info("Batch {} accepted with {} upload(s)", job.id(), uploads.size());
+        return job;
+    }
+
+    /**
+     * {@code tenant}'s batch with this id; another tenant's batch is reported as absent
+     */
+    public Optional<BatchJob> find(String batchId, String tenant) {
+        return Optional.ofNullable(jobs.get(batchId))
+                .filter(job -> job.tenant().equals(tenant) && !job.finishedBefore(System.currentTimeMillis() - retentionMillis));
+    }
+
+    /**
+     * Write the batch's events after {@code afterSequence} as NDJSON, one line per event, until
+     * the batch has finished. Returns early if the client goes away; the batch keeps running.
+     */
+    public void stream(BatchJob job, long afterSequence, OutputStream out) throws IOException {
+        long next = afterSequence;
+        try {
+            while (true) {
+                List<BatchEvent> events = job.awaitAfter(next, STREAM_POLL_SECONDS, TimeUnit.SECONDS);
+                if (events.isEmpty()) {
+                    if (job.isFinished()) {
+                        return;
+                    }
+                    continue;
+                }
+                for (BatchEvent event : events) {
+                    out.write(objectMapper.writeValueAsBytes(event));
+                    out.write('\n');
+                    next = event.sequence();
+                }
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(BatchJob job, CancellationToken token, List<StagedUpload> uploads, String analysisType,
+                     String tenant) {
+        // Caps how far reading runs ahead of analysis, so only a few entries sit on disk at a time
+        Semaphore lookahead = new Semaphore(maxConcurrentDocuments * 2);
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        int[] nextIndex = {0};
+        try {
+            for (StagedUpload upload : uploads) {
+                if (token.isCancelled()) {
+                    break;
+                }
+                if (isArchive(upload)) {
+                    readArchive(job, token, upload, analysisType, tenant, lookahead, pending, nextIndex);
+                } else {
+                    enqueue(job, token, nextIndex[0]++, upload, analysisType, tenant, lookahead, pending);
+                }
+            }
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Batch {} stopped unexpectedly", job.id(), e);
+        } finally {
+            cancellations.unregister(token);
+            uploads.forEach(upload -> deleteQuietly(upload.path()));
+            job.finish();
+            evictExpired();
+            logger.info("Batch {} finished: {} document(s)", job.id(), job.documents());
+        }
+    }
+
+    private void readArchive(BatchJob job, CancellationToken token, StagedUpload archive, String analysisType, String tenant,
+                             Semaphore lookahead, List<CompletableFuture<Void>> pending, int[] nextIndex)
+            throws InterruptedException {
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(Files.newInputStream(archive.path())))) {
+            ZipEntry entry;
+            while (!token.isCancelled() && (entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                String filename = name.substring(name.lastIndexOf('/') + 1);
+                if (entry.isDirectory() || filename.isEmpty() || filename.startsWith(".") || name.startsWith("__MACOSX/")) {
+                    continue;
+                }
+
+                int index = nextIndex[0]++;
+                String contentType = DocumentExtractionService.contentTypeFor(filename);
+                if (contentType == null) {
+                    fail(job, index, name, "Unsupported file type");
+                    continue;
+                }
+                if (index >= maxDocuments) {
+                    fail(job, index, name, "Batch document limit of " + maxDocuments + " reached");
+                    continue;
+                }
+
+                lookahead.acquire();
+                Path path = Files.createTempFile("legal-batch-entry-", ".upload");
+                if (!copyBounded(zip, path)) {
+                    deleteQuietly(path);
+                    lookahead.release();
+                    fail(job, index, name, "Entry exceeds " + maxEntryBytes + " bytes");
+                    continue;
+                }
+                pending.add(analyze(job, token, index, new StagedUpload(name, contentType, path), analysisType,
+                        tenant, lookahead));
+            }
+        } catch (IOException e) {
+            logger.warn("Batch {}: archive {} could not be read: {}", job.id(), archive.filename(), e.getMessage());
+            fail(job, nextIndex[0]++, archive.filename(), "Archive could not be read: " + e.getMessage());
+        }
+    }
+
+    private void enqueue(BatchJob job, CancellationToken token, int index, StagedUpload upload, String analysisType, String tenant,
+                         Semaphore lookahead, List<CompletableFuture<Void>> pending) throws InterruptedException {
+        if (index >= maxDocuments) {
+            fail(job, index, upload.filename(), "Batch document limit of " + maxDocuments + " reached");
+            return;
+        }
+        // Browsers often send octet-stream for .doc and .md; fall back to the extension
+        String contentType = upload.contentType();
+        if (contentType == null || contentType.equals("application/octet-stream")) {
+            String byExtension = DocumentExtractionService.contentTypeFor(String.valueOf(upload.filename()));
+            contentType = byExtension != null ? byExtension : contentType;
+        }
+        lookahead.acquire();
+        pending.add(analyze(job, token, index, new StagedUpload(upload.filename(), contentType, upload.path()),
+                analysisType, tenant, lookahead));
+    }
+
+    @SuppressWarnings("try")
+    private CompletableFuture<Void> analyze(BatchJob job, CancellationToken token, int index, StagedUpload upload,
+                                            String analysisType, String tenant, Semaphore lookahead) {
+        return CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            String sessionId = job.id() + "-" + index;
+            try (CancellationToken.Scope bound = token.bind()) {
+                // Queued documents of a cancelled batch are reported without extracting them
+                token.throwIfCancelled("batch-document");
+                awaitStartSlot();
+                ExtractedDocument document = documentExtractionService.extract(
+                        upload.filename(), upload.contentType(), upload.path());
+                LegalAnalysisResult result;
+                if (document.text().isBlank()) {
+                    result = LegalAnalysisResult.error("No extractable text found (scanned documents need OCR first)");
+                } else if (tokenAccounting.quota(tenant) == TokenAccounting.QuotaAction.REJECT) {
+                    // The quota can run out part way through a batch; the rest of it fails fast
+                    result = LegalAnalysisResult.error("Monthly token quota of tenant " + tenant + " is exhausted");
+                } else {
+                    try (AgentScheduler.Permit permit = agentScheduler.acquire(Priority.LOW, tenant);
+                         TokenAccounting.Scope usage = tokenAccounting.open(tenant, sessionId)) {
+                        result = legalTeamService.analyzeDocument(document, analysisType, sessionId, tenant);
+                    }
+                }
+                job.append(sequence -> BatchEvent.document(job.id(), sequence, index, upload.filename(),
+                        result, elapsedMs(start)));
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                logger.warn("Batch {}: {} failed: {}", job.id(), upload.filename(), e.getMessage());
+                job.append(sequence -> BatchEvent.failure(job.id(), sequence, index, upload.filename(),
+                        String.valueOf(e.getMessage()), elapsedMs(start)));
+            } finally {
+                // Results live in the batch; the per-document session isn't needed afterwards
+                legalTeamService.clearConversationHistory(sessionId);
+                deleteQuietly(upload.path());
+                lookahead.release();
+            }
+        }, analysisPool);
+    }
+
+    private void fail(BatchJob job, int index, String filename, String error) {
+        job.append(sequence -> BatchEvent.failure(job.id(), sequence, index, filename, error, 0));
+    }
+
+    /**
+     * Space document starts across all batches when a per-minute limit is configured
+     */
+    private void awaitStartSlot() throws InterruptedException {
+        if (startIntervalNanos == 0) {
+            return;
+        }
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextStartNanos);
+            nextStartNanos = slot + startIntervalNanos;
+            wait = slot - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private boolean copyBounded(InputStream in, Path path) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                total += read;
+                if (total > maxEntryBytes) {
+                    return false;
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return true;
+    }
+
+    private static boolean isArchive(StagedUpload upload) {
+        String contentType = upload.contentType() != null ? upload.contentType() : "";
+        String filename = upload.filename() != null ? upload.filename().toLowerCase(Locale.ROOT) : "";
+        return contentType.equals("application/zip") || contentType.equals("application/x-zip-compressed")
+                || filename.endsWith(".zip");
+    }
+
+    private synchronized void evictExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        jobs.values().removeIf(job -> job.finishedBefore(cutoff));
+
+        // Finished batches hold every result in memory; running ones are never evicted
+        List<BatchJob> finished = jobs.values().stream()
+                .filter(BatchJob::isFinished)
+                .sorted(Comparator.comparingLong(BatchJob::finishedAtMillis))
+                .toList();
+        int retained = finished.stream().mapToInt(BatchJob::documents).sum();
+        for (BatchJob job : finished) {
+            if (retained <= maxRetainedDocuments) {
+                break;
+            }
+            jobs.remove(job.id());
+            retained -= job.documents();
+            logger.info("Batch {} evicted to keep retained results under {}", job.id(), maxRetainedDocuments);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictor.shutdownNow();
+        analysisPool.shutdownNow();
+    }
+
+    private record StagedUpload(String filename, String contentType, Path path) {
+    }
+}
@@ -0,0 +1,95 @@
+package com.email.legal_agent.service.batch;
+
+import com.email.legal_agent.dto.BatchEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * Results of one batch, in completion order. Events are kept after the batch finishes so a
+ * client that lost its connection can pick up from the last sequence number it received.
+ */
+public class BatchJob {
+
+    private final String id;
+    private final String tenant;
+    private final List<BatchEvent> events = new ArrayList<>();
+    private int documents;
+    private int failed;
+    private boolean finished;
+    private long finishedAtMillis;
+
+    public BatchJob(String id, String tenant) {
+        this.id = id;
+        this.tenant = tenant;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String tenant() {
+        return tenant;
+    }
+
+    /**
+     * Append an event; the factory receives the event's sequence number (starting at 1)
+     */
+    public synchronized BatchEvent append(LongFunction<BatchEvent> factory) {
+        BatchEvent event = factory.apply(events.size() + 1L);
+        events.add(event);
+        if (BatchEvent.DOCUMENT.equals(event.event())) {
+            documents++;
+            if ("FAILED".equals(event.status())) {
+                failed++;
+            }
+        }
+        notifyAll();
+        return event;
+    }
+
+    synchronized void finish() {
+        if (finished) {
+            return;
+        }
+        append(sequence -> BatchEvent.completed(id, sequence, documents, failed));
+        finished = true;
+        finishedAtMillis = System.currentTimeMillis();
+        notifyAll();
+    }
+
+    /**
+     * Events after {@code sequence}, waiting up to the timeout for at least one when there are none yet.
+     * Returns an empty list on timeout, or once the batch has finished and everything was delivered.
+     */
+    public synchronized List<BatchEvent> awaitAfter(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (events.size() <= sequence && !finished) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return List.of();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        int from = (int) Math.min(Math.max(sequence, 0), events.size());
+        return List.copyOf(events.subList(from, events.size()));
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    public synchronized int documents() {
+        return documents;
+    }
+
+    synchronized boolean finishedBefore(long cutoffMillis) {
+        return finished && finishedAtMillis < cutoffMillis;
+    }
+
+    synchronized long finishedAtMillis() {
+        return finishedAtMillis;
+    }
+}
@@ -0,0 +1,213 @@
+package com.email.legal_agent.service.cancellation;
+
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * In-flight jobs by tenant and id, so {@code DELETE /jobs/{id}} can cancel them, plus their
+ * deadlines and the plumbing that carries a job's {@link CancellationToken} to the threads that
+ * work on it.
+ *
+ * Exported: {@code legal.cancellations} by reason, {@code legal.cancellation.aborted} by stage
+ * (agent steps that never ran, model and tool calls cut off, scheduler waits given up, batch
+ * documents skipped) and {@code legal.cancellation.active}.
+ */
+@Service
+public class CancellationRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(CancellationRegistry.class);
+
+    private final MeterRegistry meterRegistry;
+    private final long defaultDeadlineSeconds;
+    private final long maxDeadlineSeconds;
+    private final Map<String, CancellationToken> active = new ConcurrentHashMap<>();
+    private final Map<CancellationToken, ScheduledFuture<?>> deadlines = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor deadlineTimer;
+    private final ExecutorService jobThreads = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("analysis-", 0).factory());
+
+    public CancellationRegistry(MeterRegistry meterRegistry,
+                                @Value("${legal-assistant.cancellation.default-deadline-seconds:300}") long defaultDeadlineSeconds,
+                                @Value("${legal-assistant.cancellation.max-deadline-seconds:900}") long maxDeadlineSeconds) {
+        this.meterRegistry = meterRegistry;
+        this.defaultDeadlineSeconds = defaultDeadlineSeconds;
+        this.maxDeadlineSeconds = maxDeadlineSeconds;
+        this.deadlineTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "cancellation-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        deadlineTimer.setRemoveOnCancelPolicy(true);
+        meterRegistry.gaugeMapSize("legal.cancellation.active", Tags.empty(), active);
+    }
+
+    /**
+     * Track a new request of {@code tenant} under the deadline the client asked for: null for
+     * the configured default, capped at the maximum. Asking for 0 (none) gets the maximum.
+     *
+     * @throws IllegalArgumentException if the tenant already has a job with this id in flight
+     */
+    public CancellationToken register(String id, String tenant, Long deadlineSeconds) {
+        return track(id, tenant, deadlineSeconds(deadlineSeconds));
+    }
+
+    /**
+     * Track a background job that runs until it finishes or is cancelled
+     */
+    public CancellationToken register(String id, String tenant) {
+        return track(id, tenant, 0);
+    }
+
+    private CancellationToken track(String id, String tenant, long seconds) {
+        CancellationToken token = new CancellationToken(id, tenant, meterRegistry);
+        if (active.putIfAbsent(key(tenant, id), token) != null) {
+            throw new IllegalArgumentException("Job " + id + " is already running");
+        }
+        if (seconds > 0) {
+            deadlines.put(token, deadlineTimer.schedule(() -> {
+                if (token.cancel(CancellationToken.Reason.DEADLINE)) {
+                    logger.info("Job {} passed its {} s deadline, cancelling", id, seconds);
+                }
+            }, seconds, TimeUnit.SECONDS));
+        }
+        return token;
+    }
+
+    /**
+     * Stop tracking a finished job
+     */
+    public void unregister(CancellationToken token) {
+        active.remove(key(token.tenant(), token.id()), token);
+        ScheduledFuture<?> deadline = deadlines.remove(token);
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+    }
+
+    /**
+     * Cancel {@code tenant}'s job {@code id}; false if it has no such job in flight
+     */
+    public boolean cancel(String id, String tenant, CancellationToken.Reason reason) {
+        CancellationToken token = active.get(key(tenant, id));
+        if (token == null) {
+            return false;
+        }
+        if (token.cancel(reason)) {
+            logger.info("Job {} cancelled: {}", id, reason.tag());
+        }
+        return true;
+    }
+
+    /**
+     * Run {@code work} on its own virtual thread with {@code token} bound, and stop tracking the
+     * job when it ends
+     */
+    @SuppressWarnings("try")
+    public <T> CompletableFuture<T> submit(CancellationToken token, Callable<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            jobThreads.execute(() -> {
+                try (CancellationToken.Scope bound = token.bind()) {
+                    result.complete(work.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    unregister(token);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            unregister(token);
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Carries the submitting thread's token into tasks run by {@code executor}
+     */
+    @SuppressWarnings("try")
+    public Executor propagating(Executor executor) {
+        return task -> {
+            CancellationToken token = CancellationToken.current();
+            if (token == null) {
+                executor.execute(task);
+                return;
+            }
+            executor.execute(() -> {
+                try (CancellationToken.Scope bound = token.bind()) {
+                    task.run();
+                }
+            });
+        };
+    }
+
+    /**
+     * Wrap a chat model so calls made for a cancelled job fail before they are sent, and calls in
+     * flight when it is cancelled are cut off
+     */
+    @SuppressWarnings("try")
+    public ChatLanguageModel cancellable(ChatLanguageModel model) {
+        return new ChatLanguageModel() {
+            @Override
+            public ChatResponse chat(ChatRequest request) {
+                CancellationToken token = CancellationToken.current();
+                if (token == null) {
+                    return model.chat(request);
+                }
+                token.throwIfCancelled("agent-step");
+                try (CancellationToken.Scope blocking = token.interruptible()) {
+                    return model.chat(request);
+                } catch (RuntimeException e) {
+                    if (token.isCancelled()) {
+                        throw token.aborted("model-call");
+                    }
+                    throw e;
+                }
+            }
+
+            @Override
+            public ChatRequestParameters defaultRequestParameters() {
+                return model.defaultRequestParameters();
+            }
+
+            @Override
+            public Set<Capability> supportedCapabilities() {
+                return model.supportedCapabilities();
+            }
+        };
+    }
+
+    private long deadlineSeconds(Long requested) {
+        if (requested != null && requested < 0) {
+            throw new IllegalArgumentException("Deadline must not be negative");
+        }
+        long seconds = requested == null ? defaultDeadlineSeconds : requested;
+        if (maxDeadlineSeconds > 0 && (seconds == 0 || seconds > maxDeadlineSeconds)) {
+            return maxDeadlineSeconds;
+        }
+        return seconds;
+    }
+
+    private static String key(String tenant, String id) {
+        return tenant + '\u0000' + id;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deadlineTimer.shutdownNow();
+        jobThreads.shutdownNow();
+    }
+}
@@ -0,0 +1,167 @@
+package com.email.legal_agent.service.cancellation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cancellation state of one analysis or batch. Work bound to the token with {@link #bind()}
+ * checks it before every agent step; threads blocked in a model call, a tool wait or the
+ * scheduler queue register with {@link #interruptible()} and are interrupted when the token is
+ * cancelled, which aborts the HTTP call or the wait they are in. Threads are only interrupted
+ * inside those regions, never while they touch the database or the session store.
+ */
+public final class CancellationToken {
+
+    public enum Reason {
+        CLIENT_DISCONNECT,
+        CLIENT_REQUEST,
+        DEADLINE;
+
+        public String tag() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    /**
+     * A binding or interruptible region of the current thread, ended by closing it
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+    private static final Scope NOT_INTERRUPTIBLE = () -> {
+    };
+
+    private final String id;
+    private final String tenant;
+    private final MeterRegistry meterRegistry;
+    private final Set<Thread> blocked = new HashSet<>();
+    private final Set<Thread> interrupted = new HashSet<>();
+    private volatile Reason reason;
+
+    public CancellationToken(String id, String tenant, MeterRegistry meterRegistry) {
+        this.id = id;
+        this.tenant = tenant;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * The token bound to the calling thread, or null outside any cancellable work
+     */
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * An interruptible region for the current token, or a no-op outside cancellable work
+     */
+    public static Scope interruptibleCurrent() {
+        CancellationToken token = CURRENT.get();
+        return token == null ? NOT_INTERRUPTIBLE : token.interruptible();
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String tenant() {
+        return tenant;
+    }
+
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    /**
+     * Why the token was cancelled, or null while it is live
+     */
+    public Reason reason() {
+        return reason;
+    }
+
+    /**
+     * Cancel the token and interrupt the threads blocked on its behalf; false if already cancelled
+     */
+    public boolean cancel(Reason reason) {
+        synchronized (blocked) {
+            if (this.reason != null) {
+                return false;
+            }
+            this.reason = reason;
+            for (Thread thread : blocked) {
+                interrupted.add(thread);
+                thread.interrupt();
+            }
+        }
+        if (meterRegistry != null) {
+            meterRegistry.counter("legal.cancellations", "reason", reason.tag()).increment();
+        }
+        return true;
+    }
+
+    /**
+     * Make this the calling thread's token until the returned binding is closed
+     */
+    public Scope bind() {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Let {@link #cancel} interrupt the calling thread until the region is closed. An interrupt
+     * delivered by the token is cleared on close, so it can't leak into whatever the thread does next.
+     */
+    public Scope interruptible() {
+        Thread thread = Thread.currentThread();
+        synchronized (blocked) {
+            if (reason != null) {
+                interrupted.add(thread);
+                thread.interrupt();
+            }
+            blocked.add(thread);
+        }
+        return () -> {
+            synchronized (blocked) {
+                blocked.remove(thread);
+                if (interrupted.remove(thread)) {
+                    Thread.interrupted();
+                }
+            }
+        };
+    }
+
+    /**
+     * Throw if the token was cancelled, counting {@code stage} as work that was skipped
+     */
+    public void throwIfCancelled(String stage) {
+        if (reason != null) {
+            throw aborted(stage);
+        }
+    }
+
+    /**
+     * Count {@code stage} as cancelled work and return the exception to throw for it
+     */
+    public CancellationException aborted(String stage) {
+        Reason cause = reason;
+        if (meterRegistry != null) {
+            meterRegistry.counter("legal.cancellation.aborted", "stage", stage,
+                    "reason", cause == null ? "none" : cause.tag()).increment();
+        }
+        return new CancellationException("Job " + id + " cancelled (" + (cause == null ? "interrupted" : cause.tag())
+                + ") during " + stage);
+    }
+}
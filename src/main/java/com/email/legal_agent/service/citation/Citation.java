@@ -0,0 +1,19 @@
+package com.email.legal_agent.service.citation;
+
+/**
+ * A citation found in text.
+ *
+ * {@code bluebook} is the normalized form including any pinpoint or subsection; {@code key}
+ * drops those so every reference to the same authority lands on one index entry. {@code name}
+ * is "Party v. Party" for cases and the key otherwise. Court and year are only set for cases.
+ */
+public record Citation(CitationType type, String name, String bluebook, String key,
+                       String court, Integer year, int start, int end) {
+
+    /**
+     * Whether this is a case mentioned by name only, without a reporter
+     */
+    public boolean isShortForm() {
+        return type == CitationType.CASE && name.equals(key);
+    }
+}
@@ -0,0 +1,393 @@
+package com.email.legal_agent.service.citation;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Single-pass citation scanner for case citations, U.S.C. and C.F.R. sections, state codes and
+ * GDPR/CCPA articles, normalized to Bluebook form.
+ *
+ * The text is walked once looking for cheap trigger literals ("v.", "U.S.C", "C.F.R", "Code",
+ * "GDPR", ...). Only around a trigger is the matching citation pattern run, on a bounded window
+ * that must contain the trigger, so regex work is proportional to the number of candidate
+ * citations rather than to the length of the text.
+ */
+public final class CitationExtractor {
+
+    /**
+     * A citation pattern tried in a window around its trigger. The pattern only runs when one of
+     * the {@code required} literals occurs on the given side of the trigger.
+     */
+    private record Rule(int id, CitationType type, Pattern pattern, int lookBehind, int lookAhead,
+                        boolean requiredAfter, String[] required, Function<Matcher, Citation> normalizer) {
+    }
+
+    private record Trigger(String literal, boolean afterWhitespace, List<Rule> rules) {
+    }
+
+    // Case names: capitalized words joined by lower-case connectors
+    private static final String WORD = "[A-Z][\\w&'’.\\-]*";
+    private static final String CONNECTOR = "(?:of(?:\\s+the)?|and|for|de|del|la|ex\\s+rel\\.|&)";
+    private static final String NAME = WORD + "(?:,?\\s+(?:" + CONNECTOR + "\\s+)*" + WORD + "){0,6}";
+    private static final String CASE = "(?<plaintiff>" + NAME + ")\\s+vs?\\.\\s+(?<defendant>" + NAME + ")"
+            + "(?:,\\s*(?<volume>\\d{1,4})\\s+(?<reporter>[A-Z][A-Za-z.\\s]{0,20}?(?:\\d+(?:st|nd|rd|th|d))?)"
+            + "\\s+(?<page>\\d{1,5})(?!\\w)(?:,\\s*(?<pin>\\d{1,5}(?:[-–]\\d{1,5})?))?)?"
+            + "(?:\\s*\\((?<court>[^()\\d]{0,40}?)\\s*(?<year>(?:1[789]|20)\\d{2})\\))?";
+
+    private static final String SECTION_MARK = "(?:§§?|[Ss]ections?|[Ss]ecs?\\.)";
+    private static final String SUBSECTIONS = "(?<sub>(?:\\(\\w{1,4}\\))*)";
+    private static final String USC = "(?<title>\\d{1,2})\\s+U\\.?\\s?S\\.?\\s?C\\.?(?:\\s?A\\.?)?\\s*(?:" + SECTION_MARK + ")?\\s*"
+            + "(?<section>\\d+[a-zA-Z]?(?:-\\d+[a-zA-Z]?)?)" + SUBSECTIONS;
+    private static final String CFR = "(?<title>\\d{1,2})\\s+C\\.?\\s?F\\.?\\s?R\\.?\\s*(?:(?:[Pp]art|[Pp]t\\.)\\s*(?<part>\\d+)"
+            + "|(?:" + SECTION_MARK + ")?\\s*(?<section>\\d+(?:\\.\\d+[a-z]?)?)" + SUBSECTIONS + ")";
+
+    private static final String STATE = "(?<state>California|Cal\\.|New\\s+York|N\\.\\s?Y\\.|Texas|Tex\\.|Florida|Fla\\."
+            + "|Illinois|Ill\\.|Washington|Wash\\.|Massachusetts|Mass\\.|Delaware|Del\\.)";
+    private static final String CODE_NAME = "(?<code>(?:(?:[A-Z][A-Za-z'.]*|and|&)\\s+){0,5}?)";
+    private static final String CODE_KIND = "(?<kind>Code|Law|Stat(?:utes|\\.)?|Comp\\.\\s+Stat\\.|Gen\\.\\s+Laws|Rev\\.\\s+Code)";
+    private static final String STATE_SECTION = "(?<section>\\d+(?:[.:\\-]\\d+)*[a-z]?)" + SUBSECTIONS;
+    private static final String STATE_PREFIX = STATE + "\\s+" + CODE_NAME + CODE_KIND + "(?:\\s+Ann\\.)?,?\\s*"
+            + SECTION_MARK + "\\s*" + STATE_SECTION;
+    private static final String STATE_SUFFIX = SECTION_MARK + "\\s*" + STATE_SECTION + "\\s+of\\s+the\\s+"
+            + STATE + "\\s+" + CODE_NAME + CODE_KIND;
+
+    private static final String GDPR_NAME = "(?:GDPR|General\\s+Data\\s+Protection\\s+Regulation|Regulation\\s+\\(EU\\)\\s+2016/679)";
+    private static final String ARTICLE = "Art(?:icle|s?\\.)?\\s*(?<article>\\d{1,2})" + SUBSECTIONS;
+    private static final String GDPR_AFTER = ARTICLE + ",?\\s+(?:of\\s+(?:the\\s+)?)?" + GDPR_NAME;
+    private static final String GDPR_BEFORE = GDPR_NAME + ",?\\s+" + ARTICLE;
+
+    private static final String CCPA_NAME = "(?:CCPA|California\\s+Consumer\\s+Privacy\\s+Act(?:\\s+of\\s+2018)?)";
+    private static final String CCPA_SECTION = "(?<section>1798\\.\\d+(?:\\.\\d+)?)" + SUBSECTIONS;
+    private static final String CCPA_AFTER = SECTION_MARK + "\\s*" + CCPA_SECTION + "\\s+of\\s+the\\s+" + CCPA_NAME;
+    private static final String CCPA_BEFORE = CCPA_NAME + ",?\\s*" + SECTION_MARK + "\\s*" + CCPA_SECTION;
+
+    private static final Pattern SIGNALS = Pattern.compile(
+            "^(?:(?:See(?:,?\\s+also|,?\\s+generally)?|Cf\\.|But(?:\\s+see|\\s+cf\\.)?|Accord|E\\.g\\.,?|Compare|In|Under"
+                    + "|Following|Citing|Per|Also|And|Unlike|Like|Contra|The|As|While|Whereas|Since|Because|Although"
+                    + "|After|Before|Given|Here|Thus|Moreover|However|Therefore|Only|Even)\\s+)+");
+    private static final Pattern SENTENCE_BREAK = Pattern.compile("\\b[A-Za-z][a-z]{3,}\\.\\s+(?=[A-Z])");
+    private static final Pattern REPORTER_TOKEN = Pattern.compile("\\d+(?:st|nd|rd|th|d)|[A-Za-z']+\\.?");
+    private static final Pattern CIRCUIT = Pattern.compile(
+            "(?:(\\d{1,2})(?:st|nd|rd|th)|(First|Second|Third|Fourth|Fifth|Sixth|Seventh|Eighth|Ninth|Tenth|Eleventh|D\\.\\s?C\\.|Federal|Fed\\.))"
+                    + "\\s+Cir(?:cuit|\\.)?", Pattern.CASE_INSENSITIVE);
+    private static final Set<String> SUPREME_COURT_REPORTERS = Set.of("U.S.", "S. Ct.", "L. Ed.", "L. Ed. 2d");
+    private static final String SUPREME_COURT = "U.S. Supreme Court";
+    private static final String GDPR_SOURCE = ", 2016 O.J. (L 119) 1 (EU)";
+
+    // Bluebook T6 abbreviations for party names and T1 for state code names
+    private static final Map<String, String> PARTY_ABBREVIATIONS = Map.ofEntries(
+            Map.entry("Association", "Ass'n"), Map.entry("Brothers", "Bros."), Map.entry("Company", "Co."),
+            Map.entry("Corporation", "Corp."), Map.entry("Department", "Dep't"), Map.entry("Incorporated", "Inc."),
+            Map.entry("International", "Int'l"), Map.entry("Limited", "Ltd."), Map.entry("National", "Nat'l"),
+            Map.entry("University", "Univ."), Map.entry("Government", "Gov't"), Map.entry("Insurance", "Ins."));
+    private static final Map<String, String> CODE_ABBREVIATIONS = Map.ofEntries(
+            Map.entry("Civil", "Civ."), Map.entry("Business", "Bus."), Map.entry("Professions", "Prof."),
+            Map.entry("Commercial", "Com."), Map.entry("Commerce", "Com."), Map.entry("Labor", "Lab."),
+            Map.entry("Government", "Gov't"), Map.entry("General", "Gen."), Map.entry("Insurance", "Ins."),
+            Map.entry("Corporations", "Corp."), Map.entry("Procedure", "Proc."), Map.entry("Evidence", "Evid."),
+            Map.entry("Family", "Fam."), Map.entry("Vehicle", "Veh."), Map.entry("Education", "Educ."),
+            Map.entry("Criminal", "Crim."), Map.entry("Obligations", "Oblig."), Map.entry("and", "&"));
+    private static final Map<String, String> STATE_ABBREVIATIONS = Map.ofEntries(
+            Map.entry("california", "Cal."), Map.entry("cal.", "Cal."), Map.entry("new york", "N.Y."),
+            Map.entry("n.y.", "N.Y."), Map.entry("texas", "Tex."), Map.entry("tex.", "Tex."),
+            Map.entry("florida", "Fla."), Map.entry("fla.", "Fla."), Map.entry("illinois", "Ill."),
+            Map.entry("ill.", "Ill."), Map.entry("washington", "Wash."), Map.entry("wash.", "Wash."),
+            Map.entry("massachusetts", "Mass."), Map.entry("mass.", "Mass."), Map.entry("delaware", "Del."),
+            Map.entry("del.", "Del."));
+    private static final Map<String, String> CIRCUIT_ORDINALS = Map.ofEntries(
+            Map.entry("first", "1st"), Map.entry("second", "2d"), Map.entry("third", "3d"), Map.entry("fourth", "4th"),
+            Map.entry("fifth", "5th"), Map.entry("sixth", "6th"), Map.entry("seventh", "7th"), Map.entry("eighth", "8th"),
+            Map.entry("ninth", "9th"), Map.entry("tenth", "10th"), Map.entry("eleventh", "11th"));
+
+    private static final List<Rule> RULES = new ArrayList<>();
+    private static final Trigger[][] TRIGGERS = new Trigger[128][];
+
+    static {
+        String[] anything = {""};
+        String[] sectionMarks = {"§", "ection", "ec."};
+        String[] article = {"Art", "art"};
+        Rule caseRule = rule(CitationType.CASE, CASE, 160, 220, true, anything, CitationExtractor::caseCitation);
+        Rule usc = rule(CitationType.USC, USC, 6, 60, true, anything, CitationExtractor::uscCitation);
+        Rule cfr = rule(CitationType.CFR, CFR, 6, 60, true, anything, CitationExtractor::cfrCitation);
+        Rule statePrefix = rule(CitationType.STATE_CODE, STATE_PREFIX, 80, 60, true, sectionMarks, CitationExtractor::stateCitation);
+        Rule stateSuffix = rule(CitationType.STATE_CODE, STATE_SUFFIX, 140, 20, false, sectionMarks, CitationExtractor::stateCitation);
+        Rule gdprAfter = rule(CitationType.GDPR, GDPR_AFTER, 50, 50, false, article, CitationExtractor::gdprCitation);
+        Rule gdprBefore = rule(CitationType.GDPR, GDPR_BEFORE, 30, 70, true, article, CitationExtractor::gdprCitation);
+        Rule ccpaAfter = rule(CitationType.CCPA, CCPA_AFTER, 50, 50, false, sectionMarks, CitationExtractor::ccpaCitation);
+        Rule ccpaBefore = rule(CitationType.CCPA, CCPA_BEFORE, 10, 80, true, sectionMarks, CitationExtractor::ccpaCitation);
+
+        trigger("v. ", true, caseRule);
+        trigger("vs. ", true, caseRule);
+        trigger("U.S.C", false, usc);
+        trigger("U. S. C", false, usc);
+        trigger("USC", false, usc);
+        trigger("C.F.R", false, cfr);
+        trigger("CFR", false, cfr);
+        trigger("Code", false, statePrefix, stateSuffix);
+        trigger("Law", false, statePrefix, stateSuffix);
+        trigger("Stat", false, statePrefix, stateSuffix);
+        trigger("GDPR", false, gdprAfter, gdprBefore);
+        trigger("General Data Protection Regulation", false, gdprAfter, gdprBefore);
+        trigger("2016/679", false, gdprAfter, gdprBefore);
+        trigger("CCPA", false, ccpaAfter, ccpaBefore);
+        trigger("California Consumer Privacy Act", false, ccpaAfter, ccpaBefore);
+    }
+
+    private CitationExtractor() {
+    }
+
+    private static Rule rule(CitationType type, String regex, int lookBehind, int lookAhead, boolean requiredAfter,
+                             String[] required, Function<Matcher, Citation> normalizer) {
+        Rule rule = new Rule(RULES.size(), type, Pattern.compile(regex), lookBehind, lookAhead,
+                requiredAfter, required, normalizer);
+        RULES.add(rule);
+        return rule;
+    }
+
+    private static void trigger(String literal, boolean afterWhitespace, Rule... rules) {
+        char first = literal.charAt(0);
+        Trigger[] existing = TRIGGERS[first] == null ? new Trigger[0] : TRIGGERS[first];
+        Trigger[] updated = Arrays.copyOf(existing, existing.length + 1);
+        updated[existing.length] = new Trigger(literal, afterWhitespace, List.of(rules));
+        TRIGGERS[first] = updated;
+    }
+
+    /**
+     * All citations in {@code text}, in order of appearance and non-overlapping
+     */
+    public static List<Citation> extract(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        List<Citation> citations = new ArrayList<>();
+        Matcher[] matchers = new Matcher[RULES.size()];
+        int length = text.length();
+        int consumed = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            Trigger[] triggers = c < 128 ? TRIGGERS[c] : null;
+            if (triggers == null) {
+                continue;
+            }
+            Citation found = null;
+            for (int t = 0; t < triggers.length && found == null; t++) {
+                Trigger trigger = triggers[t];
+                if (!text.startsWith(trigger.literal, i)
+                        || (trigger.afterWhitespace && (i == 0 || !Character.isWhitespace(text.charAt(i - 1))))) {
+                    continue;
+                }
+                for (Rule rule : trigger.rules) {
+                    found = match(text, i, consumed, rule, matchers);
+                    if (found != null) {
+                        break;
+                    }
+                }
+            }
+            if (found != null) {
+                citations.add(found);
+                consumed = found.end();
+                i = found.end() - 1;
+            }
+        }
+        return citations;
+    }
+
+    // The leftmost match in the window around the trigger that covers the trigger itself
+    private static Citation match(String text, int trigger, int consumed, Rule rule, Matcher[] matchers) {
+        int from = Math.max(consumed, trigger - rule.lookBehind);
+        int to = Math.min(text.length(), trigger + rule.lookAhead);
+        if (!containsAny(text, rule.requiredAfter ? trigger : from, rule.requiredAfter ? to : trigger + 1, rule.required)) {
+            return null;
+        }
+        Matcher matcher = matchers[rule.id];
+        if (matcher == null) {
+            matcher = rule.pattern.matcher(text).useTransparentBounds(true).useAnchoringBounds(false);
+            matchers[rule.id] = matcher;
+        }
+        matcher.region(from, to);
+        while (matcher.find()) {
+            if (matcher.start() > trigger) {
+                return null;
+            }
+            if (matcher.end() > trigger) {
+                return rule.normalizer.apply(matcher);
+            }
+        }
+        return null;
+    }
+
+    private static boolean containsAny(String text, int from, int to, String[] literals) {
+        for (String literal : literals) {
+            if (literal.isEmpty() || text.indexOf(literal, from, to) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Citation caseCitation(Matcher m) {
+        String plaintiff = m.group("plaintiff");
+        int start = m.start("plaintiff");
+
+        // The name run may have started in the previous sentence or with a citation signal
+        Matcher sentence = SENTENCE_BREAK.matcher(plaintiff);
+        int cut = 0;
+        while (sentence.find()) {
+            cut = sentence.end();
+        }
+        Matcher signal = SIGNALS.matcher(plaintiff.substring(cut));
+        if (signal.find()) {
+            cut += signal.end();
+        }
+        plaintiff = plaintiff.substring(cut);
+        start += cut;
+        if (plaintiff.isBlank()) {
+            return null;
+        }
+
+        String name = party(plaintiff) + " v. " + party(m.group("defendant"));
+        String reporter = m.group("reporter") == null ? null : reporter(m.group("reporter"));
+        Integer year = m.group("year") == null ? null : Integer.valueOf(m.group("year"));
+        String court = m.group("court") == null ? "" : court(m.group("court"));
+        boolean supremeCourt = reporter != null && SUPREME_COURT_REPORTERS.contains(reporter);
+        if (supremeCourt) {
+            court = "";
+        }
+
+        String key = name;
+        StringBuilder bluebook = new StringBuilder(name);
+        if (reporter != null) {
+            key = name + ", " + m.group("volume") + " " + reporter + " " + m.group("page");
+            bluebook.append(", ").append(m.group("volume")).append(' ').append(reporter).append(' ').append(m.group("page"));
+            if (m.group("pin") != null) {
+                bluebook.append(", ").append(m.group("pin").replace('–', '-'));
+            }
+        }
+        if (year != null) {
+            bluebook.append(" (").append(court.isEmpty() ? "" : court + " ").append(year).append(')');
+        }
+        return new Citation(CitationType.CASE, name, bluebook.toString(), key,
+                supremeCourt ? SUPREME_COURT : court.isEmpty() ? null : court, year, start, m.end());
+    }
+
+    private static Citation uscCitation(Matcher m) {
+        String key = m.group("title") + " U.S.C. § " + m.group("section");
+        return new Citation(CitationType.USC, key, key + m.group("sub"), key, null, null, m.start(), m.end());
+    }
+
+    private static Citation cfrCitation(Matcher m) {
+        String section = m.group("section");
+        String key;
+        String sub = "";
+        if (m.group("part") != null) {
+            key = m.group("title") + " C.F.R. pt. " + m.group("part");
+        } else if (section.contains(".")) {
+            key = m.group("title") + " C.F.R. § " + section;
+            sub = m.group("sub");
+        } else {
+            key = m.group("title") + " C.F.R. pt. " + section;
+        }
+        return new Citation(CitationType.CFR, key, key + sub, key, null, null, m.start(), m.end());
+    }
+
+    private static Citation stateCitation(Matcher m) {
+        String state = STATE_ABBREVIATIONS.get(collapse(m.group("state")).toLowerCase(Locale.ROOT).replace(". ", "."));
+        StringBuilder code = new StringBuilder();
+        for (String word : collapse(m.group("code")).split(" ")) {
+            if (!word.isEmpty()) {
+                code.append(CODE_ABBREVIATIONS.getOrDefault(word, word)).append(' ');
+            }
+        }
+        String kind = collapse(m.group("kind"));
+        if (kind.startsWith("Stat") && !kind.contains(" ")) {
+            kind = "Stat.";
+        }
+        String section = m.group("section");
+        String key = state + " " + code + kind + " § " + section;
+        // Cal. Civ. Code §§ 1798.100-1798.199.100 are the CCPA
+        CitationType type = state.equals("Cal.") && code.toString().equals("Civ. ") && section.startsWith("1798.1")
+                ? CitationType.CCPA : CitationType.STATE_CODE;
+        return new Citation(type, key, key + m.group("sub"), key, null, null, m.start(), m.end());
+    }
+
+    private static Citation gdprCitation(Matcher m) {
+        String key = "Regulation 2016/679, art. " + m.group("article") + GDPR_SOURCE;
+        String bluebook = "Regulation 2016/679, art. " + m.group("article") + m.group("sub") + GDPR_SOURCE;
+        return new Citation(CitationType.GDPR, key, bluebook, key, null, null, m.start(), m.end());
+    }
+
+    private static Citation ccpaCitation(Matcher m) {
+        String key = "Cal. Civ. Code § " + m.group("section");
+        return new Citation(CitationType.CCPA, key, key + m.group("sub"), key, null, null, m.start(), m.end());
+    }
+
+    private static String party(String raw) {
+        String[] words = collapse(raw).replaceAll(",$", "").split(" ");
+        for (int i = 0; i < words.length; i++) {
+            String bare = words[i].endsWith(",") ? words[i].substring(0, words[i].length() - 1) : words[i];
+            String abbreviation = PARTY_ABBREVIATIONS.get(bare);
+            if (abbreviation != null) {
+                words[i] = abbreviation + (bare.length() < words[i].length() ? "," : "");
+            }
+        }
+        return String.join(" ", words);
+    }
+
+    // Adjacent single capitals and ordinals close up ("F.3d", "U.S."); anything longer is spaced ("F. Supp. 2d")
+    static String reporter(String raw) {
+        Matcher token = REPORTER_TOKEN.matcher(raw);
+        StringBuilder reporter = new StringBuilder();
+        boolean previousSingle = false;
+        while (token.find()) {
+            String part = token.group();
+            if (part.length() == 1 && Character.isUpperCase(part.charAt(0))) {
+                part = part + ".";
+            }
+            boolean single = Character.isDigit(part.charAt(0)) || (part.length() == 2 && part.endsWith("."));
+            if (!reporter.isEmpty() && !(single && previousSingle)) {
+                reporter.append(' ');
+            }
+            reporter.append(part);
+            previousSingle = single;
+        }
+        return reporter.toString();
+    }
+
+    private static String court(String raw) {
+        String court = collapse(raw).replaceAll("[,\\s]+$", "");
+        Matcher circuit = CIRCUIT.matcher(court);
+        if (circuit.find()) {
+            if (circuit.group(1) != null) {
+                return ordinal(Integer.parseInt(circuit.group(1))) + " Cir.";
+            }
+            String named = circuit.group(2).toLowerCase(Locale.ROOT).replace(" ", "");
+            return switch (named) {
+                case "d.c." -> "D.C. Cir.";
+                case "federal", "fed." -> "Fed. Cir.";
+                default -> CIRCUIT_ORDINALS.get(named) + " Cir.";
+            };
+        }
+        return court;
+    }
+
+    // Bluebook ordinals use "2d" and "3d"
+    private static String ordinal(int number) {
+        int lastTwo = number % 100;
+        if (lastTwo >= 11 && lastTwo <= 13) {
+            return number + "th";
+        }
+        return number + switch (number % 10) {
+            case 1 -> "st";
+            case 2 -> "d";
+            case 3 -> "d";
+            default -> "th";
+        };
+    }
+
+    private static String collapse(String text) {
+        return text == null ? "" : text.replaceAll("\\s+", " ").strip();
+    }
+}
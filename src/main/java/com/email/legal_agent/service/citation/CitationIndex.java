@@ -0,0 +1,167 @@
+package com.email.legal_agent.service.citation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index from each cited authority to the sessions and knowledge-base segments that
+ * cite it.
+ *
+ * Entries are keyed by {@link Citation#key()}, so pinpoints and subsections of the same
+ * authority share one entry. A case mentioned by name only is filed under the full citation
+ * of that case when one has been seen. Uploaded documents are recorded under the session they
+ * were analysed in, so their filenames never reach another tenant's answers and their citations
+ * go with the session. Only the most recent {@code max-sessions} sessions are kept.
+ */
+@Component
+public class CitationIndex {
+
+    public enum SourceKind {
+        SESSION,
+        SEGMENT
+    }
+
+    public record Source(SourceKind kind, String id) {
+
+        public static Source session(String id) {
+            return new Source(SourceKind.SESSION, id);
+        }
+
+        public static Source segment(String id) {
+            return new Source(SourceKind.SEGMENT, id);
+        }
+    }
+
+    /**
+     * Snapshot of one indexed authority
+     */
+    public record Entry(String key, CitationType type, String bluebook,
+                        Set<String> sessions, Set<String> segments) {
+
+        public int sourceCount() {
+            return sessions.size() + segments.size();
+        }
+    }
+
+    private static final class Postings {
+        final CitationType type;
+        final String bluebook;
+        final Set<Source> sources = ConcurrentHashMap.newKeySet();
+
+        Postings(CitationType type, String bluebook) {
+            this.type = type;
+            this.bluebook = bluebook;
+        }
+    }
+
+    private final Map<String, Postings> byKey = new ConcurrentHashMap<>();
+    private final Map<Source, Set<String>> keysBySource = new ConcurrentHashMap<>();
+    private final Map<String, String> caseKeysByName = new ConcurrentHashMap<>();
+    // Sessions in the order they were first recorded, oldest evicted first
+    private final Set<Source> sessionOrder = new LinkedHashSet<>();
+    private final int maxSessions;
+
+    public CitationIndex(@Value("${legal-assistant.citations.max-sessions:10000}") int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Extract the citations in {@code text} and record them against every source
+     */
+    public List<Citation> index(String text, Source... sources) {
+        List<Citation> citations = CitationExtractor.extract(text);
+        record(citations, sources);
+        return citations;
+    }
+
+    public void record(Collection<Citation> citations, Source... sources) {
+        // Full case citations first, so name-only mentions in the same text resolve to them
+        for (Citation citation : citations) {
+            if (citation.type() == CitationType.CASE && !citation.isShortForm()) {
+                caseKeysByName.put(citation.name().toLowerCase(Locale.ROOT), citation.key());
+            }
+        }
+        for (Citation citation : citations) {
+            String key = resolve(citation);
+            // The first form seen is kept for display
+            Postings postings = byKey.computeIfAbsent(key, k -> new Postings(citation.type(), citation.bluebook()));
+            for (Source source : sources) {
+                postings.sources.add(source);
+                keysBySource.computeIfAbsent(source, s -> ConcurrentHashMap.newKeySet()).add(key);
+            }
+        }
+        for (Source source : sources) {
+            if (source.kind() == SourceKind.SESSION) {
+                evictBeyondLimit(source);
+            }
+        }
+    }
+
+    private void evictBeyondLimit(Source session) {
+        List<Source> evicted = new ArrayList<>();
+        synchronized (sessionOrder) {
+            sessionOrder.add(session);
+            Iterator<Source> oldest = sessionOrder.iterator();
+            while (sessionOrder.size() - evicted.size() > maxSessions && oldest.hasNext()) {
+                evicted.add(oldest.next());
+            }
+        }
+        evicted.forEach(this::remove);
+    }
+
+    /**
+     * The entry for a citation, resolving a name-only case mention to its full citation
+     */
+    public Optional<Entry> lookup(Citation citation) {
+        return lookup(resolve(citation));
+    }
+
+    public Optional<Entry> lookup(String key) {
+        Postings postings = byKey.get(key);
+        if (postings == null) {
+            return Optional.empty();
+        }
+        Set<String> sessions = new TreeSet<>();
+        Set<String> segments = new TreeSet<>();
+        for (Source source : postings.sources) {
+            switch (source.kind()) {
+                case SESSION -> sessions.add(source.id());
+                case SEGMENT -> segments.add(source.id());
+            }
+        }
+        return Optional.of(new Entry(key, postings.type, postings.bluebook, sessions, segments));
+    }
+
+    /**
+     * Forget everything recorded against {@code source}, e.g. when a session is cleared
+     */
+    public void remove(Source source) {
+        synchronized (sessionOrder) {
+            sessionOrder.remove(source);
+        }
+        Set<String> keys = keysBySource.remove(source);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            byKey.computeIfPresent(key, (k, postings) -> {
+                postings.sources.remove(source);
+                return postings.sources.isEmpty() ? null : postings;
+            });
+        }
+        caseKeysByName.values().removeIf(key -> !byKey.containsKey(key));
+    }
+
+    public int size() {
+        return byKey.size();
+    }
+
+    private String resolve(Citation citation) {
+        return citation.isShortForm()
+                ? caseKeysByName.getOrDefault(citation.name().toLowerCase(Locale.ROOT), citation.key())
+                : citation.key();
+    }
+}
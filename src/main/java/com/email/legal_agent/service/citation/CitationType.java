@@ -0,0 +1,10 @@
+package com.email.legal_agent.service.citation;
+
+public enum CitationType {
+    CASE,
+    USC,
+    CFR,
+    STATE_CODE,
+    GDPR,
+    CCPA
+}
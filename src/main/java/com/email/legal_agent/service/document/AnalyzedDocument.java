@@ -0,0 +1,18 @@
+package com.email.legal_agent.service.document;
+
+import java.util.List;
+
+/**
+ * Agent outputs for an analysed document, kept with its fingerprint and clause snapshots so a
+ * later near-identical upload, or the next version in the same session, can reuse them and
+ * re-analyse only the clauses that differ
+ */
+public record AnalyzedDocument(String filename,
+                               int version,
+                               DocumentFingerprint fingerprint,
+                               List<ClauseDiff.Snapshot> clauses,
+                               String contractAnalysis,
+                               String complianceAnalysis,
+                               String legalStrategy,
+                               String coordinatedResponse) {
+}
@@ -0,0 +1,35 @@
+package com.email.legal_agent.service.document;
+
+import java.util.List;
+
+/**
+ * Clause families used to route document sections to the agents that need them.
+ * Keywords are matched against the clause heading first, then the clause body.
+ */
+public enum ClauseCategory {
+    PARTIES(List.of("parties", "recitals", "background", "whereas", "between")),
+    DEFINITIONS(List.of("definitions", "interpretation", "defined terms")),
+    TERM(List.of("term of", "duration", "commencement", "effective date", "renewal")),
+    TERMINATION(List.of("termination", "terminate", "expiry", "expiration", "exit", "suspension")),
+    LIABILITY(List.of("liability", "indemnif", "indemnity", "hold harmless", "damages", "warrant", "limitation of",
+            "insurance", "remedies")),
+    PAYMENT(List.of("payment", "fees", "price", "invoice", "charges", "compensation", "taxes")),
+    CONFIDENTIALITY(List.of("confidential", "non-disclosure", "proprietary information")),
+    DATA_PROTECTION(List.of("personal data", "data protection", "privacy", "gdpr", "ccpa", "hipaa", "processing",
+            "data subject", "sub-processor", "security measures", "breach notification", "personal information",
+            "protected health")),
+    INTELLECTUAL_PROPERTY(List.of("intellectual property", "licen", "copyright", "patent", "trademark", "ownership")),
+    GOVERNING_LAW(List.of("governing law", "jurisdiction", "dispute", "arbitration", "venue", "courts")),
+    GENERAL(List.of("notices", "severability", "entire agreement", "counterparts", "assignment", "waiver",
+            "force majeure", "amendment", "miscellaneous", "general"));
+
+    private final List<String> keywords;
+
+    ClauseCategory(List<String> keywords) {
+        this.keywords = keywords;
+    }
+
+    public List<String> keywords() {
+        return keywords;
+    }
+}
@@ -0,0 +1,141 @@
+package com.email.legal_agent.service.document;
+
+import java.util.*;
+
+/**
+ * Clause-aligned diff between a previously analysed document and a new one.
+ *
+ * Clauses are aligned by number (or heading when unnumbered); a clause whose number is new
+ * but whose text matches a previous clause counts as moved, not added.
+ */
+public record ClauseDiff(List<ClauseIndex.Clause> changed,
+                         List<ClauseIndex.Clause> added,
+                         List<Snapshot> removed,
+                         int unchanged,
+                         Map<Integer, Snapshot> previousVersions) {
+
+    /**
+     * What is kept of an analysed clause: its alignment key, text hash and families; the text
+     * itself only when the caller asks for it
+     */
+    public record Snapshot(String key, String number, String title, long textHash,
+                           Set<ClauseCategory> categories, String text) {
+
+        public Snapshot withoutText() {
+            return text == null ? this : new Snapshot(key, number, title, textHash, categories, null);
+        }
+    }
+
+    public static List<Snapshot> snapshot(ClauseIndex index, String text, boolean keepText) {
+        List<Snapshot> snapshots = new ArrayList<>(index.clauses().size());
+        Map<String, Integer> keyCounts = new HashMap<>();
+        for (ClauseIndex.Clause clause : index.clauses()) {
+            String clauseText = clause.text(text);
+            snapshots.add(new Snapshot(alignmentKey(clause, keyCounts), clause.number(), clause.title(),
+                    textHash(clauseText), EnumSet.copyOf(withFallback(clause.categories())),
+                    keepText ? clauseText : null));
+        }
+        return snapshots;
+    }
+
+    public static ClauseDiff between(List<Snapshot> previous, ClauseIndex current, String text) {
+        Map<String, Snapshot> previousByKey = new HashMap<>();
+        Set<Long> previousHashes = new HashSet<>();
+        for (Snapshot snapshot : previous) {
+            previousByKey.put(snapshot.key(), snapshot);
+            previousHashes.add(snapshot.textHash());
+        }
+
+        List<ClauseIndex.Clause> changed = new ArrayList<>();
+        Map<Integer, Snapshot> previousVersions = new HashMap<>();
+        List<ClauseIndex.Clause> added = new ArrayList<>();
+        Set<String> matchedKeys = new HashSet<>();
+        Set<Long> currentHashes = new HashSet<>();
+        Map<String, Integer> keyCounts = new HashMap<>();
+        int unchanged = 0;
+
+        for (ClauseIndex.Clause clause : current.clauses()) {
+            String key = alignmentKey(clause, keyCounts);
+            long hash = textHash(clause.text(text));
+            currentHashes.add(hash);
+
+            Snapshot before = previousByKey.get(key);
+            if (before != null) {
+                matchedKeys.add(key);
+                if (before.textHash() == hash) {
+                    unchanged++;
+                } else {
+                    changed.add(clause);
+                    previousVersions.put(clause.index(), before);
+                }
+            } else if (previousHashes.contains(hash)) {
+                unchanged++;
+            } else {
+                added.add(clause);
+            }
+        }
+
+        List<Snapshot> removed = previous.stream()
+                .filter(snapshot -> !matchedKeys.contains(snapshot.key()))
+                .filter(snapshot -> !currentHashes.contains(snapshot.textHash()))
+                .toList();
+        return new ClauseDiff(changed, added, removed, unchanged, previousVersions);
+    }
+
+    public boolean isEmpty() {
+        return changed.isEmpty() && added.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * The earlier snapshot of a changed clause, keyed by the clause's index in the new document
+     */
+    public Snapshot previousVersion(ClauseIndex.Clause clause) {
+        return previousVersions.get(clause.index());
+    }
+
+    public int editedClauses() {
+        return changed.size() + added.size() + removed.size();
+    }
+
+    /**
+     * Whether any edit touches a clause family the audience reads
+     */
+    public boolean touches(Set<ClauseCategory> categories) {
+        return changed.stream().anyMatch(clause -> !Collections.disjoint(withFallback(clause.categories()), categories))
+                || added.stream().anyMatch(clause -> !Collections.disjoint(withFallback(clause.categories()), categories))
+                || removed.stream().anyMatch(snapshot -> !Collections.disjoint(snapshot.categories(), categories));
+    }
+
+    private static String alignmentKey(ClauseIndex.Clause clause, Map<String, Integer> keyCounts) {
+        String base = !clause.number().isEmpty() ? clause.number().toLowerCase(Locale.ROOT)
+                : clause.title().toLowerCase(Locale.ROOT);
+        int occurrence = keyCounts.merge(base, 1, Integer::sum);
+        return occurrence == 1 ? base : base + "#" + occurrence;
+    }
+
+    // Unclassified clauses are treated as general boilerplate
+    private static Set<ClauseCategory> withFallback(Set<ClauseCategory> categories) {
+        return categories.isEmpty() ? EnumSet.of(ClauseCategory.GENERAL) : categories;
+    }
+
+    /**
+     * 64-bit FNV-1a over the lower-cased text with whitespace runs collapsed
+     */
+    static long textHash(String text) {
+        long hash = 0xcbf29ce484222325L;
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                continue;
+            }
+            if (pendingSpace) {
+                hash = (hash ^ ' ') * 0x100000001b3L;
+                pendingSpace = false;
+            }
+            hash = (hash ^ Character.toLowerCase(c)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
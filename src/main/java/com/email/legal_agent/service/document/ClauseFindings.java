@@ -0,0 +1,125 @@
+package com.email.legal_agent.service.document;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Merges clause-level findings from a partial re-analysis into an earlier report.
+ *
+ * Findings are keyed by "### Clause &lt;number&gt;" headings. Sections of the earlier report
+ * whose clause was re-analysed are replaced in place, removed clauses are dropped and new
+ * ones go under an "Updated clauses" heading, so repeated merges don't keep growing the report.
+ */
+public final class ClauseFindings {
+
+    public static final String UPDATED_HEADING = "## Updated clauses";
+    private static final Pattern RISK_LEVEL = Pattern.compile(
+            "risk(?:[ \t]+level)?[ \t]*[:=\\-][ \t]*\\**[ \t]*(critical|high|medium|moderate|low)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CLAUSE_HEADING = Pattern.compile(
+            "^#{2,4}[ \\t]*Clause[ \\t]+([^\\s:—-]+).*$", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
+
+    private ClauseFindings() {
+    }
+
+    /**
+     * Heading that starts the findings for one clause; unnumbered clauses use their title
+     */
+    public static String heading(ClauseIndex.Clause clause) {
+        if (clause.number().isEmpty()) {
+            return "### Clause " + clause.title().replace(' ', '_');
+        }
+        return "### Clause " + clause.number() + (clause.title().isEmpty() ? "" : " - " + clause.title());
+    }
+
+    public static String merge(String previous, String delta, Collection<String> removedKeys) {
+        Sections before = Sections.parse(previous == null ? "" : previous);
+        Sections update = Sections.parse(delta == null ? "" : delta);
+        Set<String> removed = new HashSet<>();
+        removedKeys.forEach(key -> removed.add(normalize(key)));
+
+        StringBuilder merged = new StringBuilder(before.preamble.stripTrailing());
+        Set<String> written = new HashSet<>();
+        for (Map.Entry<String, String> section : before.sections.entrySet()) {
+            String key = section.getKey();
+            if (removed.contains(key)) {
+                continue;
+            }
+            String replacement = update.sections.get(key);
+            merged.append("\n\n").append((replacement != null ? replacement : section.getValue()).strip());
+            written.add(key);
+        }
+
+        boolean headingWritten = before.preamble.contains(UPDATED_HEADING)
+                || before.sections.values().stream().anyMatch(text -> text.contains(UPDATED_HEADING));
+        StringBuilder additions = new StringBuilder();
+        if (!update.preamble.isBlank()) {
+            additions.append("\n\n").append(update.preamble.strip());
+        }
+        update.sections.forEach((key, text) -> {
+            if (!written.contains(key)) {
+                additions.append("\n\n").append(text.strip());
+            }
+        });
+        if (!additions.isEmpty()) {
+            if (!headingWritten) {
+                merged.append("\n\n").append(UPDATED_HEADING);
+            }
+            merged.append(additions);
+        }
+        return merged.toString().strip();
+    }
+
+    /**
+     * Findings text per clause key, for reports written with clause headings
+     */
+    public static Map<String, String> sections(String report) {
+        return Sections.parse(report == null ? "" : report).sections;
+    }
+
+    /**
+     * Section key of a clause, matching {@link #heading} and {@link ClauseDiff.Snapshot#key()}
+     */
+    public static String key(ClauseIndex.Clause clause) {
+        return normalize(clause.number().isEmpty() ? clause.title() : clause.number());
+    }
+
+    /**
+     * First stated risk level in a findings section ("Risk: High", "Risk level - medium"), lower-cased
+     */
+    public static Optional<String> riskLevel(String findings) {
+        if (findings == null) {
+            return Optional.empty();
+        }
+        Matcher matcher = RISK_LEVEL.matcher(findings);
+        return matcher.find() ? Optional.of(matcher.group(1).toLowerCase(Locale.ROOT)) : Optional.empty();
+    }
+
+    public static String normalize(String key) {
+        return key.toLowerCase(Locale.ROOT).replace(' ', '_').replaceAll("\\.$", "");
+    }
+
+    private record Sections(String preamble, LinkedHashMap<String, String> sections) {
+
+        static Sections parse(String text) {
+            LinkedHashMap<String, String> sections = new LinkedHashMap<>();
+            Matcher matcher = CLAUSE_HEADING.matcher(text);
+            int preambleEnd = text.length();
+            String key = null;
+            int sectionStart = 0;
+            while (matcher.find()) {
+                if (key == null) {
+                    preambleEnd = matcher.start();
+                } else {
+                    sections.merge(key, text.substring(sectionStart, matcher.start()), String::concat);
+                }
+                key = normalize(matcher.group(1));
+                sectionStart = matcher.start();
+            }
+            if (key != null) {
+                sections.merge(key, text.substring(sectionStart), String::concat);
+            }
+            return new Sections(text.substring(0, preambleEnd), sections);
+        }
+    }
+}
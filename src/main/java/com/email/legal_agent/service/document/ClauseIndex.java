@@ -0,0 +1,112 @@
+package com.email.legal_agent.service.document;
+
+import java.util.*;
+
+/**
+ * Clauses and defined terms found in one document, with per-agent views of the text.
+ */
+public class ClauseIndex {
+
+    /**
+     * Who a rendered view is for; each audience sees only the clause families it works with
+     */
+    public enum Audience {
+        COMPLIANCE(EnumSet.of(ClauseCategory.PARTIES, ClauseCategory.DATA_PROTECTION, ClauseCategory.CONFIDENTIALITY,
+                ClauseCategory.GOVERNING_LAW)),
+        STRATEGY(EnumSet.of(ClauseCategory.PARTIES, ClauseCategory.TERM, ClauseCategory.TERMINATION,
+                ClauseCategory.LIABILITY, ClauseCategory.PAYMENT, ClauseCategory.GOVERNING_LAW));
+
+        private final Set<ClauseCategory> categories;
+
+        Audience(Set<ClauseCategory> categories) {
+            this.categories = categories;
+        }
+
+        public Set<ClauseCategory> categories() {
+            return categories;
+        }
+    }
+
+    public record Clause(int index, String number, String title, int level, int start, int end,
+                         Set<ClauseCategory> categories) {
+        public String text(String document) {
+            return document.substring(start, end);
+        }
+    }
+
+    public record DefinedTerm(String term, int clauseIndex, int start, int end) {
+    }
+
+    private final String text;
+    private final List<Clause> clauses;
+    private final Map<String, DefinedTerm> definedTerms;
+
+    ClauseIndex(String text, List<Clause> clauses, Map<String, DefinedTerm> definedTerms) {
+        this.text = text;
+        this.clauses = List.copyOf(clauses);
+        this.definedTerms = Collections.unmodifiableMap(definedTerms);
+    }
+
+    public List<Clause> clauses() {
+        return clauses;
+    }
+
+    public Map<String, DefinedTerm> definedTerms() {
+        return definedTerms;
+    }
+
+    /**
+     * True when headings were found; unstructured text yields a single preamble clause
+     */
+    public boolean isStructured() {
+        return clauses.size() > 1;
+    }
+
+    public List<Clause> clausesFor(Audience audience) {
+        return clauses.stream()
+                .filter(clause -> !Collections.disjoint(clause.categories(), audience.categories()))
+                .toList();
+    }
+
+    public Map<ClauseCategory, Integer> categoryCounts() {
+        Map<ClauseCategory, Integer> counts = new EnumMap<>(ClauseCategory.class);
+        for (Clause clause : clauses) {
+            for (ClauseCategory category : clause.categories()) {
+                counts.merge(category, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * The clauses relevant to an audience in document order, followed by the definitions of any
+     * defined terms they use. Returns the full text when the document has no usable structure.
+     */
+    public String render(Audience audience) {
+        if (!isStructured()) {
+            return text;
+        }
+
+        List<Clause> selected = clausesFor(audience);
+        StringBuilder view = new StringBuilder();
+        Set<Integer> included = new HashSet<>();
+        for (Clause clause : selected) {
+            included.add(clause.index());
+            view.append(clause.text(text).strip()).append("\n\n");
+        }
+
+        // Definitions living in clauses that weren't selected are appended so the view stands on its own
+        String selectedText = view.toString();
+        List<DefinedTerm> used = definedTerms.values().stream()
+                .filter(term -> !included.contains(term.clauseIndex()))
+                .filter(term -> selectedText.contains(term.term()))
+                .toList();
+        if (!used.isEmpty()) {
+            view.append("Definitions used above:\n");
+            used.stream()
+                    .sorted(Comparator.comparingInt(DefinedTerm::start))
+                    .forEach(term -> view.append("- ").append(text, term.start(), term.end()).append('\n'));
+        }
+        return view.toString().strip();
+    }
+}
@@ -0,0 +1,208 @@
+package com.email.legal_agent.service.document;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deterministic clause segmentation for contract text.
+ *
+ * A single pass over the lines recognises headings ("12.", "4.3", "Section 5", "ARTICLE IV",
+ * short all-caps titles), a second pass finds defined terms ("Services" means ..., (the
+ * "Supplier")). Each clause is tagged with {@link ClauseCategory} families from its heading,
+ * or from its body when the heading says nothing; sub-clauses inherit their parent's tags.
+ */
+public final class ClauseSegmenter {
+
+    private static final Pattern NUMBERED = Pattern.compile(
+            "^[ \\t]*(\\d{1,3}(?:\\.\\d{1,3}){0,3})\\.?[ \\t]+(\\S.*)$");
+    private static final Pattern KEYWORD_NUMBERED = Pattern.compile(
+            "^[ \\t]*(section|article|clause|schedule|exhibit|annex|appendix)[ \\t]+([\\dIVXLC]+(?:\\.\\d+)*)\\.?[ \\t]*[-–:.]?[ \\t]*(.*)$",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern ALL_CAPS_TITLE = Pattern.compile("^[ \\t]*([A-Z][A-Z&,'\\- ]{3,60})[ \\t]*$");
+    private static final Pattern DEFINED_TERM = Pattern.compile(
+            "[\"“]([A-Z][\\w\\-/& ]{1,50}?)[\"”](?:\\s*\\)|\\s+(?:means|shall mean|has the meaning|refers to|includes))");
+
+    private static final int MAX_TITLE_LENGTH = 80;
+    private static final int MIN_BODY_KEYWORD_HITS = 2;
+
+    private ClauseSegmenter() {
+    }
+
+    public static ClauseIndex segment(String text) {
+        List<Heading> headings = findHeadings(text);
+
+        List<ClauseIndex.Clause> clauses = new ArrayList<>();
+        Deque<ClauseIndex.Clause> parents = new ArrayDeque<>();
+
+        int preambleEnd = headings.isEmpty() ? text.length() : headings.get(0).start;
+        if (preambleEnd > 0 && !text.substring(0, preambleEnd).isBlank()) {
+            clauses.add(new ClauseIndex.Clause(0, "", "Preamble", 0, 0, preambleEnd, EnumSet.of(ClauseCategory.PARTIES)));
+        }
+
+        for (int i = 0; i < headings.size(); i++) {
+            Heading heading = headings.get(i);
+            int end = i + 1 < headings.size() ? headings.get(i + 1).start : text.length();
+
+            while (!parents.isEmpty() && parents.peek().level() >= heading.level) {
+                parents.pop();
+            }
+            EnumSet<ClauseCategory> categories = classify(heading.title, text.substring(heading.start, end));
+            if (!parents.isEmpty()) {
+                categories.addAll(parents.peek().categories());
+            }
+
+            ClauseIndex.Clause clause = new ClauseIndex.Clause(clauses.size(), heading.number, heading.title,
+                    heading.level, heading.start, end, categories);
+            clauses.add(clause);
+            parents.push(clause);
+        }
+
+        Map<String, ClauseIndex.DefinedTerm> definedTerms = findDefinedTerms(text, clauses);
+        if (definedTerms.size() >= MIN_BODY_KEYWORD_HITS) {
+            // Clauses that define two or more terms are definitions clauses whatever their heading says
+            Map<Integer, Integer> definitionsPerClause = new HashMap<>();
+            definedTerms.values().forEach(term -> definitionsPerClause.merge(term.clauseIndex(), 1, Integer::sum));
+            definitionsPerClause.forEach((index, count) -> {
+                if (count >= MIN_BODY_KEYWORD_HITS) {
+                    clauses.get(index).categories().add(ClauseCategory.DEFINITIONS);
+                }
+            });
+        }
+
+        return new ClauseIndex(text, clauses, definedTerms);
+    }
+
+    private static List<Heading> findHeadings(String text) {
+        List<Heading> headings = new ArrayList<>();
+        int lineStart = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = text.length();
+            }
+            if (lineEnd - lineStart > 1) {
+                Heading heading = parseHeading(text.substring(lineStart, lineEnd), lineStart);
+                if (heading != null) {
+                    headings.add(heading);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return headings;
+    }
+
+    private static Heading parseHeading(String line, int offset) {
+        Matcher numbered = NUMBERED.matcher(line);
+        if (numbered.matches() && looksLikeHeadingText(numbered.group(2))) {
+            String number = numbered.group(1);
+            int level = 1 + (int) number.chars().filter(c -> c == '.').count();
+            return new Heading(offset, number, titleOf(numbered.group(2)), level);
+        }
+
+        Matcher keyword = KEYWORD_NUMBERED.matcher(line);
+        if (keyword.matches()) {
+            String number = keyword.group(1) + " " + keyword.group(2);
+            // Schedules and exhibits sit at the top level alongside articles
+            return new Heading(offset, number, titleOf(keyword.group(3)), 1);
+        }
+
+        Matcher caps = ALL_CAPS_TITLE.matcher(line);
+        if (caps.matches()) {
+            return new Heading(offset, "", caps.group(1).trim(), 1);
+        }
+        return null;
+    }
+
+    /**
+     * Numbered lines that continue a sentence ("30 days after ...") are not headings
+     */
+    private static boolean looksLikeHeadingText(String rest) {
+        char first = rest.charAt(0);
+        return Character.isUpperCase(first) || first == '(' || first == '"' || first == '“';
+    }
+
+    private static String titleOf(String rest) {
+        String trimmed = rest.trim();
+        if (trimmed.isEmpty()) {
+            return "";
+        }
+        int stop = trimmed.indexOf(". ");
+        if (stop > 0 && stop <= MAX_TITLE_LENGTH) {
+            return trimmed.substring(0, stop);
+        }
+        if (trimmed.endsWith(".")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed.length() <= MAX_TITLE_LENGTH ? trimmed : trimmed.substring(0, MAX_TITLE_LENGTH);
+    }
+
+    private static EnumSet<ClauseCategory> classify(String title, String body) {
+        EnumSet<ClauseCategory> categories = EnumSet.noneOf(ClauseCategory.class);
+        String lowerTitle = title.toLowerCase(Locale.ROOT);
+        for (ClauseCategory category : ClauseCategory.values()) {
+            for (String keyword : category.keywords()) {
+                if (lowerTitle.contains(keyword)) {
+                    categories.add(category);
+                    break;
+                }
+            }
+        }
+        if (!categories.isEmpty()) {
+            return categories;
+        }
+
+        String lowerBody = body.toLowerCase(Locale.ROOT);
+        for (ClauseCategory category : ClauseCategory.values()) {
+            int hits = 0;
+            for (String keyword : category.keywords()) {
+                for (int at = lowerBody.indexOf(keyword); at >= 0; at = lowerBody.indexOf(keyword, at + 1)) {
+                    if (++hits >= MIN_BODY_KEYWORD_HITS) {
+                        break;
+                    }
+                }
+                if (hits >= MIN_BODY_KEYWORD_HITS) {
+                    categories.add(category);
+                    break;
+                }
+            }
+        }
+        return categories;
+    }
+
+    private static Map<String, ClauseIndex.DefinedTerm> findDefinedTerms(String text, List<ClauseIndex.Clause> clauses) {
+        Map<String, ClauseIndex.DefinedTerm> terms = new LinkedHashMap<>();
+        Matcher matcher = DEFINED_TERM.matcher(text);
+        int clause = 0;
+        while (matcher.find()) {
+            String term = matcher.group(1).trim();
+            if (terms.containsKey(term)) {
+                continue;
+            }
+            while (clause + 1 < clauses.size() && clauses.get(clause + 1).start() <= matcher.start()) {
+                clause++;
+            }
+            int clauseIndex = clauses.isEmpty() ? 0 : clause;
+            terms.put(term, new ClauseIndex.DefinedTerm(term, clauseIndex, matcher.start(),
+                    definitionEnd(text, matcher.end())));
+        }
+        return terms;
+    }
+
+    // The definition runs to the end of its sentence or line, whichever comes first
+    private static int definitionEnd(String text, int from) {
+        int newline = text.indexOf('\n', from);
+        int sentence = text.indexOf(". ", from);
+        int end = text.length();
+        if (newline >= 0) {
+            end = Math.min(end, newline);
+        }
+        if (sentence >= 0) {
+            end = Math.min(end, sentence + 1);
+        }
+        return end;
+    }
+
+    private record Heading(int start, String number, String title, int level) {
+    }
+}
@@ -0,0 +1,108 @@
+package com.email.legal_agent.service.document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits long document text into overlapping chunks that fit a model context window.
+ *
+ * Chunk ends are pulled back to the last clause heading in the second half of the window,
+ * falling back to a paragraph break, then a sentence end, and only then a hard cut. Each
+ * following chunk starts up to {@code overlapChars} earlier, aligned to a paragraph or
+ * sentence start, so a clause cut at the boundary is seen whole by one of the two chunks.
+ */
+public final class DocumentChunker {
+
+    // "12.", "4.3", "Section 5", "ARTICLE IV", "(a)", "Schedule 2" at the start of a line
+    private static final Pattern CLAUSE_HEADING = Pattern.compile(
+            "(?m)^[ \\t]*(?:\\d+(?:\\.\\d+)*\\.?[ \\t]+\\S|(?:section|article|clause|schedule|exhibit|annex)[ \\t]+[\\dIVXLC]+|\\([a-z0-9]{1,4}\\)[ \\t]+\\S)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern PARAGRAPH_BREAK = Pattern.compile("\\n[ \\t]*\\n");
+    private static final Pattern SENTENCE_END = Pattern.compile("[.;:!?][\"')\\]]?\\s+");
+
+    private DocumentChunker() {
+    }
+
+    public record Chunk(int index, int start, int end, String text) {
+    }
+
+    public static List<Chunk> split(String text, int maxChars, int overlapChars) {
+        if (maxChars <= 0) {
+            throw new IllegalArgumentException("maxChars must be positive");
+        }
+        int overlap = Math.max(0, Math.min(overlapChars, maxChars / 4));
+
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int limit = Math.min(text.length(), start + maxChars);
+            int end = limit == text.length() ? limit : chooseEnd(text, start, limit);
+            chunks.add(new Chunk(chunks.size(), start, end, text.substring(start, end)));
+            if (end == text.length()) {
+                break;
+            }
+
+            start = chooseOverlapStart(text, Math.max(start + 1, end - overlap), end);
+        }
+        return chunks;
+    }
+
+    private static int chooseEnd(String text, int start, int limit) {
+        int floor = start + (limit - start) / 2;
+
+        int heading = lastMatchStart(CLAUSE_HEADING, text, floor, limit);
+        if (heading > floor) {
+            return heading;
+        }
+        int paragraph = lastMatchEnd(PARAGRAPH_BREAK, text, floor, limit);
+        if (paragraph > floor) {
+            return paragraph;
+        }
+        int sentence = lastMatchEnd(SENTENCE_END, text, floor, limit);
+        if (sentence > floor) {
+            return sentence;
+        }
+        return limit;
+    }
+
+    private static int chooseOverlapStart(String text, int from, int end) {
+        if (from >= end) {
+            return end;
+        }
+        int paragraph = firstMatchEnd(PARAGRAPH_BREAK, text, from, end);
+        if (paragraph >= 0 && paragraph < end) {
+            return paragraph;
+        }
+        int sentence = firstMatchEnd(SENTENCE_END, text, from, end);
+        if (sentence >= 0 && sentence < end) {
+            return sentence;
+        }
+        return from;
+    }
+
+    private static int lastMatchStart(Pattern pattern, String text, int from, int to) {
+        // Non-anchoring bounds so ^ only matches real line starts inside the region
+        Matcher matcher = pattern.matcher(text).region(from, to).useAnchoringBounds(false);
+        int last = -1;
+        while (matcher.find()) {
+            last = matcher.start();
+        }
+        return last;
+    }
+
+    private static int lastMatchEnd(Pattern pattern, String text, int from, int to) {
+        Matcher matcher = pattern.matcher(text).region(from, to);
+        int last = -1;
+        while (matcher.find()) {
+            last = matcher.end();
+        }
+        return last;
+    }
+
+    private static int firstMatchEnd(Pattern pattern, String text, int from, int to) {
+        Matcher matcher = pattern.matcher(text).region(from, to);
+        return matcher.find() ? matcher.end() : -1;
+    }
+}
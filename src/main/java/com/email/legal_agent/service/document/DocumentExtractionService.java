@@ -0,0 +1,348 @@
+package com.email.legal_agent.service.document;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.poi.hwpf.extractor.WordExtractor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Text extraction for uploaded PDF, Word and plain-text documents.
+ *
+ * Uploads are streamed from the multipart temp file to a private temp file and never
+ * buffered whole on the heap. Large PDFs are split into page ranges that are extracted in
+ * parallel, each worker holding its own {@link PDDocument} backed by scratch files.
+ * DOCX bodies are read with a StAX pass over the document part, and text files are decoded
+ * with BOM / strict UTF-8 detection instead of the platform charset.
+ */
+@Service
+public class DocumentExtractionService {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentExtractionService.class);
+
+    private static final String PDF = "application/pdf";
+    private static final String DOC = "application/msword";
+    private static final String DOCX = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+    private static final Charset FALLBACK_CHARSET = Charset.forName("windows-1252");
+    private static final int MIN_PAGES_PER_RANGE = 4;
+
+    private final int maxPages;
+    private final int maxCharacters;
+    private final int parallelPageThreshold;
+    private final int threads;
+    private final ExecutorService extractionPool;
+    private final MeterRegistry meterRegistry;
+
+    public DocumentExtractionService(MeterRegistry meterRegistry,
+                                     @Value("${legal-assistant.document.max-pages:500}") int maxPages,
+                                     @Value("${legal-assistant.document.max-characters:2000000}") int maxCharacters,
+                                     @Value("${legal-assistant.document.parallel-page-threshold:16}") int parallelPageThreshold,
+                                     @Value("${legal-assistant.document.extraction-threads:0}") int extractionThreads) {
+        this.meterRegistry = meterRegistry;
+        this.maxPages = maxPages;
+        this.maxCharacters = maxCharacters;
+        this.parallelPageThreshold = parallelPageThreshold;
+        this.threads = extractionThreads > 0 ? extractionThreads : Runtime.getRuntime().availableProcessors();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.extractionPool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "document-extraction-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Extract the text of an upload, honouring the configured page and character caps
+     */
+    public ExtractedDocument extract(MultipartFile file) throws IOException {
+        String format = resolveFormat(file.getContentType());
+        long start = System.nanoTime();
+
+        Path path = Files.createTempFile("legal-upload-", suffixFor(format));
+        try {
+            try (InputStream in = file.getInputStream()) {
+                Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return extract(file.getOriginalFilename(), file.getContentType(), path, start);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Extract the text of a document already on local disk; the caller keeps ownership of the file
+     */
+    public ExtractedDocument extract(String filename, String contentType, Path path) throws IOException {
+        return extract(filename, contentType, path, System.nanoTime());
+    }
+
+    private ExtractedDocument extract(String filename, String contentType, Path path, long start) throws IOException {
+        String format = resolveFormat(contentType);
+        Charset declaredCharset = declaredCharset(contentType);
+
+        ExtractedDocument document = switch (format) {
+            case PDF -> extractPdf(filename, path, start);
+            case DOCX -> extractDocx(filename, path, start);
+            case DOC -> extractDoc(filename, path, start);
+            default -> extractText(filename, format, path, declaredCharset, start);
+        };
+
+        Timer.builder("legal.document.extraction")
+                .description("Time to extract text from an uploaded document")
+                .tag("format", formatTag(format))
+                .register(meterRegistry)
+                .record(document.extractionMs(), TimeUnit.MILLISECONDS);
+        logger.info("Extracted {} chars from {} ({} of {} pages{}) in {} ms",
+                document.characterCount(), document.filename(), document.pagesExtracted(), document.pageCount(),
+                document.truncated() ? ", truncated" : "", document.extractionMs());
+        return document;
+    }
+
+    /**
+     * Content type for a file name inside an archive, or null when the extension isn't supported
+     */
+    public static String contentTypeFor(String filename) {
+        String lower = filename.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".pdf")) {
+            return PDF;
+        } else if (lower.endsWith(".docx")) {
+            return DOCX;
+        } else if (lower.endsWith(".doc")) {
+            return DOC;
+        } else if (lower.endsWith(".txt") || lower.endsWith(".md") || lower.endsWith(".text")) {
+            return "text/plain";
+        }
+        return null;
+    }
+
+    private ExtractedDocument extractPdf(String filename, Path path, long start) throws IOException {
+        int pageCount;
+        String text;
+        int pages;
+
+        try (PDDocument document = PDDocument.load(path.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+            pageCount = document.getNumberOfPages();
+            pages = Math.min(pageCount, maxPages);
+
+            if (pages < parallelPageThreshold || threads == 1) {
+                text = stripPages(document, 1, pages);
+            } else {
+                text = null;
+            }
+        }
+
+        if (text == null) {
+            text = extractPdfInParallel(path, pages);
+        }
+
+        boolean truncated = pages < pageCount || text.length() > maxCharacters;
+        if (text.length() > maxCharacters) {
+            text = text.substring(0, maxCharacters);
+        }
+        return new ExtractedDocument(filename, PDF, text, pageCount, pages, null, truncated, elapsedMs(start));
+    }
+
+    private String extractPdfInParallel(Path path, int pages) throws IOException {
+        int rangeSize = Math.max(MIN_PAGES_PER_RANGE, (pages + threads - 1) / threads);
+        List<Future<String>> ranges = new ArrayList<>();
+        for (int first = 1; first <= pages; first += rangeSize) {
+            int from = first;
+            int to = Math.min(pages, first + rangeSize - 1);
+            ranges.add(extractionPool.submit(() -> {
+                try (PDDocument document = PDDocument.load(path.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+                    return stripPages(document, from, to);
+                }
+            }));
+        }
+
+        StringBuilder text = new StringBuilder();
+        try {
+            for (Future<String> range : ranges) {
+                if (text.length() > maxCharacters) {
+                    range.cancel(true);
+                    continue;
+                }
+                text.append(range.get());
+            }
+        } catch (InterruptedException e) {
+            ranges.forEach(range -> range.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while extracting PDF pages");
+        } catch (ExecutionException e) {
+            ranges.forEach(range -> range.cancel(true));
+            throw e.getCause() instanceof IOException io ? io
+                    : new IOException("PDF extraction failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        return text.toString();
+    }
+
+    private static String stripPages(PDDocument document, int from, int to) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setSortByPosition(true);
+        stripper.setStartPage(from);
+        stripper.setEndPage(to);
+        return stripper.getText(document);
+    }
+
+    private ExtractedDocument extractDocx(String filename, Path path, long start) throws IOException {
+        StringBuilder text = new StringBuilder();
+        boolean truncated = DocxTextStreamer.extract(path.toFile(), text, maxCharacters);
+        return new ExtractedDocument(filename, DOCX, text.toString(), 0, 0, null, truncated, elapsedMs(start));
+    }
+
+    private ExtractedDocument extractDoc(String filename, Path path, long start) throws IOException {
+        // Legacy binary .doc has no streaming reader; these files are small in practice
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path));
+             WordExtractor extractor = new WordExtractor(in)) {
+            String text = extractor.getText();
+            boolean truncated = text.length() > maxCharacters;
+            if (truncated) {
+                text = text.substring(0, maxCharacters);
+            }
+            return new ExtractedDocument(filename, DOC, text, 0, 0, null, truncated, elapsedMs(start));
+        }
+    }
+
+    private ExtractedDocument extractText(String filename, String format, Path path,
+                                          Charset declaredCharset, long start) throws IOException {
+        Charset charset = declaredCharset != null ? declaredCharset : detectCharset(path);
+        StringBuilder text = new StringBuilder();
+        boolean truncated = decode(path, charset, text);
+        if (text.length() > 0 && text.charAt(0) == '\uFEFF') {
+            text.deleteCharAt(0);
+        }
+        return new ExtractedDocument(filename, format, text.toString(), 0, 0, charset.name(), truncated, elapsedMs(start));
+    }
+
+    /**
+     * BOM first, then a strict UTF-8 pass over the file; anything that isn't valid UTF-8 is treated as windows-1252
+     */
+    private Charset detectCharset(Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            in.mark(4);
+            byte[] bom = in.readNBytes(3);
+            in.reset();
+            if (bom.length >= 2 && (bom[0] & 0xFF) == 0xFE && (bom[1] & 0xFF) == 0xFF) {
+                return StandardCharsets.UTF_16BE;
+            }
+            if (bom.length >= 2 && (bom[0] & 0xFF) == 0xFF && (bom[1] & 0xFF) == 0xFE) {
+                return StandardCharsets.UTF_16LE;
+            }
+            if (bom.length == 3 && (bom[0] & 0xFF) == 0xEF && (bom[1] & 0xFF) == 0xBB && (bom[2] & 0xFF) == 0xBF) {
+                return StandardCharsets.UTF_8;
+            }
+
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            byte[] buffer = new byte[8192];
+            ByteBuffer bytes = ByteBuffer.allocate(buffer.length + 8);
+            CharBuffer chars = CharBuffer.allocate(buffer.length + 8);
+            long checked = 0;
+            int read;
+            // Sample up to the first few MB; that is enough to tell UTF-8 from a legacy code page
+            while (checked < 4L * 1024 * 1024 && (read = in.read(buffer)) > 0) {
+                bytes.put(buffer, 0, read).flip();
+                CoderResult result = decoder.decode(bytes, chars, false);
+                if (result.isError()) {
+                    return FALLBACK_CHARSET;
+                }
+                bytes.compact();
+                chars.clear();
+                checked += read;
+            }
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    private boolean decode(Path path, Charset charset, StringBuilder out) throws IOException {
+        try (Reader reader = new InputStreamReader(Files.newInputStream(path), charset)) {
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) > 0) {
+                int remaining = maxCharacters - out.length();
+                if (read > remaining) {
+                    out.append(buffer, 0, remaining);
+                    return true;
+                }
+                out.append(buffer, 0, read);
+            }
+            return false;
+        }
+    }
+
+    private static String resolveFormat(String contentType) {
+        if (contentType == null) {
+            throw new IllegalArgumentException("Unknown file type");
+        }
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            throw new IllegalArgumentException("Unsupported file type: " + contentType);
+        }
+
+        String format = mediaType.getType() + "/" + mediaType.getSubtype();
+        if (format.equals(PDF) || format.equals(DOC) || format.equals(DOCX) || mediaType.getType().equals("text")) {
+            return format;
+        }
+        throw new IllegalArgumentException("Unsupported file type: " + contentType);
+    }
+
+    private static Charset declaredCharset(String contentType) {
+        try {
+            return contentType != null ? MediaType.parseMediaType(contentType).getCharset() : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String suffixFor(String format) {
+        return switch (format) {
+            case PDF -> ".pdf";
+            case DOCX -> ".docx";
+            case DOC -> ".doc";
+            default -> ".txt";
+        };
+    }
+
+    private static String formatTag(String format) {
+        return switch (format) {
+            case PDF -> "pdf";
+            case DOCX -> "docx";
+            case DOC -> "doc";
+            default -> "text";
+        };
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        extractionPool.shutdownNow();
+    }
+}
@@ -0,0 +1,130 @@
+package com.email.legal_agent.service.document;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Exact content hash plus a MinHash signature over normalized word shingles.
+ *
+ * The signature uses one-permutation hashing: every shingle is hashed once, its top bits
+ * pick one of {@link #SIGNATURE_SIZE} bins and the bin keeps the minimum of the remaining
+ * bits. Empty bins are filled from the next non-empty bin (rotation densification), so the
+ * cost is one hash per shingle rather than one per shingle per permutation.
+ */
+public record DocumentFingerprint(String contentHash, long[] signature, int shingleCount) {
+
+    public static final int SIGNATURE_SIZE = 128;
+    private static final int SHINGLE_WORDS = 4;
+    private static final int BIN_SHIFT = 64 - Integer.numberOfTrailingZeros(SIGNATURE_SIZE);
+    private static final long VALUE_MASK = -1L >>> Integer.numberOfTrailingZeros(SIGNATURE_SIZE);
+    private static final long EMPTY = Long.MAX_VALUE;
+    private static final long DENSIFY_OFFSET = 0x9E3779B97F4A7C15L;
+
+    public static DocumentFingerprint of(String text) {
+        long[] signature = new long[SIGNATURE_SIZE];
+        Arrays.fill(signature, EMPTY);
+
+        // Rolling window of the last few token hashes; digits fold to 0 so renumbering doesn't matter
+        long[] window = new long[SHINGLE_WORDS];
+        int tokens = 0;
+        int shingles = 0;
+        long tokenHash = 0xcbf29ce484222325L;
+        boolean inToken = false;
+
+        for (int i = 0, length = text.length(); i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                char normalized = Character.isDigit(c) ? '0' : Character.toLowerCase(c);
+                tokenHash = (tokenHash ^ normalized) * 0x100000001b3L;
+                inToken = true;
+            } else if (inToken) {
+                window[tokens % SHINGLE_WORDS] = tokenHash;
+                tokens++;
+                tokenHash = 0xcbf29ce484222325L;
+                inToken = false;
+
+                if (tokens >= SHINGLE_WORDS) {
+                    long shingle = 0;
+                    for (int w = 0; w < SHINGLE_WORDS; w++) {
+                        shingle = shingle * 31 + window[(tokens + w) % SHINGLE_WORDS];
+                    }
+                    addToSignature(signature, mix(shingle));
+                    shingles++;
+                }
+            }
+        }
+
+        densify(signature);
+        return new DocumentFingerprint(sha256(text), signature, shingles);
+    }
+
+    /**
+     * Estimated Jaccard similarity of the two shingle sets
+     */
+    public double similarity(DocumentFingerprint other) {
+        if (shingleCount == 0 || other.shingleCount == 0) {
+            return contentHash.equals(other.contentHash) ? 1.0 : 0.0;
+        }
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (signature[i] == other.signature[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / SIGNATURE_SIZE;
+    }
+
+    private static void addToSignature(long[] signature, long hash) {
+        int bin = (int) (hash >>> BIN_SHIFT);
+        long value = hash & VALUE_MASK;
+        if (value < signature[bin]) {
+            signature[bin] = value;
+        }
+    }
+
+    private static void densify(long[] signature) {
+        boolean[] filled = new boolean[SIGNATURE_SIZE];
+        int filledCount = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            filled[i] = signature[i] != EMPTY;
+            if (filled[i]) {
+                filledCount++;
+            }
+        }
+        if (filledCount == 0 || filledCount == SIGNATURE_SIZE) {
+            return;
+        }
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (filled[i]) {
+                continue;
+            }
+            int distance = 1;
+            while (!filled[(i + distance) % SIGNATURE_SIZE]) {
+                distance++;
+            }
+            signature[i] = signature[(i + distance) % SIGNATURE_SIZE] + distance * DENSIFY_OFFSET;
+        }
+    }
+
+    // Murmur3 fmix64 finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static String sha256(String text) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
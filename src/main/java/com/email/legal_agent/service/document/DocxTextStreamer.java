@@ -0,0 +1,99 @@
+package com.email.legal_agent.service.document;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the body text of a .docx with a StAX pass over word/document.xml.
+ *
+ * The package is opened read-only from disk through POI's OPC layer, so only the main
+ * document part is inflated and no XWPF object model is built.
+ */
+final class DocxTextStreamer {
+
+    private static final String WORDPROCESSING_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private DocxTextStreamer() {
+    }
+
+    /**
+     * Append paragraphs to {@code out} until the document ends or {@code maxCharacters} is reached.
+     * Returns true when the text was cut short.
+     */
+    static boolean extract(File docx, StringBuilder out, int maxCharacters) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(docx, PackageAccess.READ)) {
+            PackageRelationship coreDocument = pkg.getRelationshipsByType(PackageRelationshipTypes.CORE_DOCUMENT)
+                    .getRelationship(0);
+            if (coreDocument == null) {
+                throw new IllegalArgumentException("Not a Word document: no main document part");
+            }
+            PackagePart documentPart = pkg.getPart(coreDocument);
+
+            try (InputStream in = documentPart.getInputStream()) {
+                return streamText(in, out, maxCharacters);
+            }
+        } catch (org.apache.poi.openxml4j.exceptions.InvalidFormatException e) {
+            throw new IllegalArgumentException("Invalid DOCX file: " + e.getMessage(), e);
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed DOCX document XML: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean streamText(InputStream in, StringBuilder out, int maxCharacters) throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            boolean inText = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT && WORDPROCESSING_NS.equals(reader.getNamespaceURI())) {
+                    switch (reader.getLocalName()) {
+                        case "t" -> inText = true;
+                        case "tab" -> out.append('\t');
+                        case "br", "cr" -> out.append('\n');
+                        default -> {
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && WORDPROCESSING_NS.equals(reader.getNamespaceURI())) {
+                    switch (reader.getLocalName()) {
+                        case "t" -> inText = false;
+                        case "p" -> out.append('\n');
+                        case "tc" -> out.append('\t');
+                        default -> {
+                        }
+                    }
+                } else if (inText && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                    out.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                }
+
+                if (out.length() >= maxCharacters) {
+                    out.setLength(maxCharacters);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+}
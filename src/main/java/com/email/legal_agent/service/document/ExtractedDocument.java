@@ -0,0 +1,18 @@
+package com.email.legal_agent.service.document;
+
+/**
+ * Plain text pulled out of an uploaded document, plus what the extractor had to do to get it
+ */
+public record ExtractedDocument(String filename,
+                                String format,
+                                String text,
+                                int pageCount,
+                                int pagesExtracted,
+                                String charset,
+                                boolean truncated,
+                                long extractionMs) {
+
+    public int characterCount() {
+        return text.length();
+    }
+}
@@ -0,0 +1,135 @@
+package com.email.legal_agent.service.document;
+
+import java.util.*;
+
+/**
+ * Bounded in-memory LSH index over {@link DocumentFingerprint} signatures.
+ *
+ * Signatures are cut into {@link #BANDS} bands of {@link #ROWS} rows; documents sharing any
+ * band land in the same bucket and become candidates, which are then checked against the
+ * similarity threshold. With 16 x 8 the candidate curve rises steeply around 0.7 Jaccard.
+ * Entries are evicted least-recently-used once {@code maxEntries} is reached.
+ *
+ * Every entry belongs to a scope (the tenant whose document it is), and lookups only ever see
+ * entries of their own scope, so one client's analysis is never offered to another.
+ */
+public class NearDuplicateIndex<T> {
+
+    private static final int BANDS = 16;
+    private static final int ROWS = DocumentFingerprint.SIGNATURE_SIZE / BANDS;
+
+    public record Match<T>(T value, DocumentFingerprint fingerprint, double similarity, boolean exact) {
+    }
+
+    private record Entry<T>(long id, String scope, DocumentFingerprint fingerprint, T value, long[] bandKeys) {
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<Long, Entry<T>> entries;
+    private final Map<String, Long> byContentHash = new HashMap<>();
+    private final List<Map<Long, List<Long>>> buckets = new ArrayList<>(BANDS);
+    private long nextId;
+
+    public NearDuplicateIndex(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true);
+        for (int band = 0; band < BANDS; band++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    public synchronized void put(String scope, DocumentFingerprint fingerprint, T value) {
+        Long existing = byContentHash.get(contentKey(scope, fingerprint));
+        if (existing != null) {
+            remove(entries.get(existing));
+        }
+
+        Entry<T> entry = new Entry<>(nextId++, scope, fingerprint, value, bandKeys(scope, fingerprint));
+        entries.put(entry.id, entry);
+        byContentHash.put(contentKey(scope, fingerprint), entry.id);
+        for (int band = 0; band < BANDS; band++) {
+            buckets.get(band).computeIfAbsent(entry.bandKeys[band], key -> new ArrayList<>(1)).add(entry.id);
+        }
+
+        while (entries.size() > maxEntries) {
+            remove(entries.values().iterator().next());
+        }
+    }
+
+    /**
+     * Exact content match in {@code scope} if there is one, otherwise its most similar candidate at
+     * or above the threshold
+     */
+    public synchronized Optional<Match<T>> findNearest(String scope, DocumentFingerprint fingerprint,
+                                                       double minSimilarity) {
+        Long exactId = byContentHash.get(contentKey(scope, fingerprint));
+        if (exactId != null) {
+            Entry<T> exact = entries.get(exactId);
+            return Optional.of(new Match<>(exact.value, exact.fingerprint, 1.0, true));
+        }
+
+        long[] keys = bandKeys(scope, fingerprint);
+        Set<Long> seen = new HashSet<>();
+        Entry<T> best = null;
+        double bestSimilarity = minSimilarity;
+        for (int band = 0; band < BANDS; band++) {
+            List<Long> bucket = buckets.get(band).get(keys[band]);
+            if (bucket == null) {
+                continue;
+            }
+            for (Long id : bucket) {
+                if (!seen.add(id)) {
+                    continue;
+                }
+                Entry<T> candidate = entries.get(id);
+                // Band keys are seeded with the scope, so another scope only shares a bucket by collision
+                if (!candidate.scope.equals(scope)) {
+                    continue;
+                }
+                double similarity = candidate.fingerprint.similarity(fingerprint);
+                if (similarity >= bestSimilarity) {
+                    best = candidate;
+                    bestSimilarity = similarity;
+                }
+            }
+        }
+        return best == null ? Optional.empty()
+                : Optional.of(new Match<>(best.value, best.fingerprint, bestSimilarity, false));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void remove(Entry<T> entry) {
+        entries.remove(entry.id);
+        byContentHash.remove(contentKey(entry.scope, entry.fingerprint), entry.id);
+        for (int band = 0; band < BANDS; band++) {
+            Map<Long, List<Long>> bandBuckets = buckets.get(band);
+            List<Long> bucket = bandBuckets.get(entry.bandKeys[band]);
+            if (bucket != null) {
+                bucket.remove(Long.valueOf(entry.id));
+                if (bucket.isEmpty()) {
+                    bandBuckets.remove(entry.bandKeys[band]);
+                }
+            }
+        }
+    }
+
+    private static String contentKey(String scope, DocumentFingerprint fingerprint) {
+        return scope + '\u0000' + fingerprint.contentHash();
+    }
+
+    private static long[] bandKeys(String scope, DocumentFingerprint fingerprint) {
+        long[] signature = fingerprint.signature();
+        long[] keys = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long key = (long) scope.hashCode() << 32 ^ band;
+            for (int row = 0; row < ROWS; row++) {
+                key = key * 0x100000001b3L ^ signature[band * ROWS + row];
+            }
+            keys[band] = key;
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,375 @@
+package com.email.legal_agent.service.knowledge;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process BM25 inverted index over knowledge-base segments.
+ *
+ * Documents are appended in increasing doc-id order, so each postings list is stored as
+ * varint-encoded (doc-id delta, term frequency) pairs in a growable byte array. Scoring is
+ * term-at-a-time into a per-thread accumulator sized to the corpus, touching only the docs
+ * that appear in the query terms' postings.
+ *
+ * Removed documents stay in the postings but are tombstoned: their length and term document
+ * frequencies are subtracted so IDF and the average length reflect only live documents. Once
+ * tombstones make up a quarter of the doc ids, the postings are rewritten without them and the
+ * live documents renumbered, so churn doesn't grow the postings or the score arrays forever.
+ * Metadata filters the {@link MetadataBitmapIndex} can answer are turned into a candidate bitmap
+ * before scoring, so non-matching documents are never accumulated.
+ */
+public class Bm25Index {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final double COMPACTION_TOMBSTONE_FRACTION = 0.25;
+    // Below this many doc ids a rewrite saves too little to be worth it
+    private static final int COMPACTION_MIN_DOCUMENTS = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private final List<TextSegment> segments = new ArrayList<>();
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private final MetadataBitmapIndex metadataIndex = new MetadataBitmapIndex();
+    private int[] docLengths = new int[1024];
+    private long totalLength;
+    private int liveCount;
+
+    private final ThreadLocal<Accumulator> accumulators = ThreadLocal.withInitial(Accumulator::new);
+
+    public void add(String id, TextSegment segment) {
+        List<String> tokens = LegalTokenizer.tokenize(segment.text());
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Re-adding an id replaces the previous version of the document
+            delete(id);
+            compactIfNeeded();
+
+            int docId = ids.size();
+            ids.add(id);
+            segments.add(segment);
+            docIds.put(id, docId);
+            if (docId >= docLengths.length) {
+                docLengths = Arrays.copyOf(docLengths, docLengths.length * 2);
+            }
+            docLengths[docId] = tokens.size();
+            totalLength += tokens.size();
+            liveCount++;
+            metadataIndex.add(docId, segment.metadata());
+
+            frequencies.forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, t -> new Postings()).append(docId, frequency));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Collection<String> idsToRemove) {
+        lock.writeLock().lock();
+        try {
+            idsToRemove.forEach(this::delete);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock
+    private void delete(String id) {
+        Integer docId = docIds.remove(id);
+        if (docId == null) {
+            return;
+        }
+        deleted.set(docId);
+        totalLength -= docLengths[docId];
+        liveCount--;
+        metadataIndex.remove(docId, segments.get(docId).metadata());
+        for (String term : new HashSet<>(LegalTokenizer.tokenize(segments.get(docId).text()))) {
+            Postings termPostings = postings.get(term);
+            if (termPostings != null) {
+                termPostings.docFrequency--;
+            }
+        }
+    }
+
+    // Caller holds the write lock
+    private void compactIfNeeded() {
+        int tombstones = ids.size() - liveCount;
+        if (ids.size() >= COMPACTION_MIN_DOCUMENTS && tombstones > ids.size() * COMPACTION_TOMBSTONE_FRACTION) {
+            compact();
+        }
+    }
+
+    /**
+     * Renumber the live documents densely, keeping their order, and rewrite every postings list
+     * without the tombstoned ones. Totals and document frequencies already exclude them.
+     */
+    private void compact() {
+        int[] newIds = new int[ids.size()];
+        List<String> liveIds = new ArrayList<>(liveCount);
+        List<TextSegment> liveSegments = new ArrayList<>(liveCount);
+        int[] liveLengths = new int[Math.max(1024, Integer.highestOneBit(Math.max(1, liveCount)) * 2)];
+        metadataIndex.clear();
+        for (int docId = 0; docId < ids.size(); docId++) {
+            if (deleted.get(docId)) {
+                newIds[docId] = -1;
+                continue;
+            }
+            int newId = liveIds.size();
+            newIds[docId] = newId;
+            liveIds.add(ids.get(docId));
+            liveSegments.add(segments.get(docId));
+            liveLengths[newId] = docLengths[docId];
+            docIds.put(ids.get(docId), newId);
+            metadataIndex.add(newId, segments.get(docId).metadata());
+        }
+
+        postings.replaceAll((term, termPostings) -> termPostings.compacted(newIds));
+        postings.values().removeIf(termPostings -> termPostings.docFrequency == 0);
+        ids.clear();
+        ids.addAll(liveIds);
+        segments.clear();
+        segments.addAll(liveSegments);
+        docLengths = liveLengths;
+        deleted.clear();
+        metadataIndex.optimize();
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            ids.clear();
+            segments.clear();
+            docIds.clear();
+            deleted.clear();
+            metadataIndex.clear();
+            docLengths = new int[1024];
+            totalLength = 0;
+            liveCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Doc ids in use, live and tombstoned
+     */
+    int documentSlots() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Top documents by BM25 score. The optional filter is applied as a candidate bitmap before
+     * scoring when the metadata index can answer it, and tested per matching document otherwise.
+     */
+    public List<Hit> search(String query, int maxResults, Filter filter) {
+        Set<String> queryTerms = new LinkedHashSet<>(LegalTokenizer.tokenize(query));
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0) {
+                return List.of();
+            }
+            float averageLength = (float) totalLength / liveCount;
+
+            RoaringBitmap candidates = filter != null ? metadataIndex.evaluate(filter).orElse(null) : null;
+            if (candidates != null && candidates.isEmpty()) {
+                return List.of();
+            }
+            boolean testPerDocument = filter != null && candidates == null;
+
+            Accumulator accumulator = accumulators.get();
+            accumulator.reset(ids.size());
+            for (String term : queryTerms) {
+                Postings termPostings = postings.get(term);
+                if (termPostings != null && termPostings.docFrequency > 0) {
+                    float idf = (float) Math.log(1 + (liveCount - termPostings.docFrequency + 0.5)
+                            / (termPostings.docFrequency + 0.5));
+                    termPostings.score(idf, averageLength, docLengths, deleted, candidates, accumulator);
+                }
+            }
+
+            TopK top = new TopK(maxResults);
+            for (int i = 0; i < accumulator.touchedCount; i++) {
+                int docId = accumulator.touched[i];
+                if (testPerDocument && !MetadataBitmapIndex.matches(filter, segments.get(docId).metadata())) {
+                    continue;
+                }
+                top.offer(docId, accumulator.scores[docId]);
+            }
+
+            List<Hit> hits = new ArrayList<>();
+            for (int i : top.sortedDescending()) {
+                int docId = top.positionAt(i);
+                hits.add(new Hit(ids.get(docId), segments.get(docId), top.scoreAt(i)));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public record Hit(String id, TextSegment segment, float score) {
+    }
+
+    /**
+     * Varint-encoded postings for one term: (doc-id delta, term frequency) pairs
+     */
+    private static final class Postings {
+        private byte[] data = new byte[8];
+        private int length;
+        private int lastDocId = -1;
+        private int docFrequency;
+
+        void append(int docId, int frequency) {
+            writeVarint(lastDocId < 0 ? docId : docId - lastDocId);
+            writeVarint(frequency);
+            lastDocId = docId;
+            docFrequency++;
+        }
+
+        /**
+         * Accumulate this term's contribution for live documents, restricted to {@code candidates}
+         * when given
+         */
+        void score(float idf, float averageLength, int[] docLengths, BitSet deleted, RoaringBitmap candidates,
+                   Accumulator accumulator) {
+            int offset = 0;
+            int docId = 0;
+            boolean first = true;
+            while (offset < length) {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[offset++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                docId = first ? value : docId + value;
+                first = false;
+
+                int frequency = 0;
+                shift = 0;
+                do {
+                    b = data[offset++];
+                    frequency |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+
+                if (deleted.get(docId) || (candidates != null && !candidates.contains(docId))) {
+                    continue;
+                }
+                float norm = K1 * (1 - B + B * docLengths[docId] / averageLength);
+                accumulator.add(docId, idf * frequency * (K1 + 1) / (frequency + norm));
+            }
+        }
+
+        /**
+         * A copy with tombstoned documents dropped and the rest mapped to {@code newIds}
+         * (-1 for a tombstone); ids stay increasing, so the deltas stay valid
+         */
+        Postings compacted(int[] newIds) {
+            Postings compacted = new Postings();
+            int offset = 0;
+            int docId = 0;
+            boolean first = true;
+            while (offset < length) {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[offset++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                docId = first ? value : docId + value;
+                first = false;
+
+                int frequency = 0;
+                shift = 0;
+                do {
+                    b = data[offset++];
+                    frequency |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+
+                if (newIds[docId] >= 0) {
+                    compacted.append(newIds[docId], frequency);
+                }
+            }
+            return compacted;
+        }
+
+        private void writeVarint(int value) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+    }
+
+    /**
+     * Reusable per-thread score array; only touched entries are cleared between queries
+     */
+    private static final class Accumulator {
+        private float[] scores = new float[0];
+        private int[] touched = new int[64];
+        private int touchedCount;
+
+        void reset(int documentCount) {
+            if (scores.length < documentCount) {
+                scores = new float[documentCount];
+            } else {
+                for (int i = 0; i < touchedCount; i++) {
+                    scores[touched[i]] = 0f;
+                }
+            }
+            touchedCount = 0;
+        }
+
+        void add(int docId, float score) {
+            if (scores[docId] == 0f) {
+                if (touchedCount == touched.length) {
+                    touched = Arrays.copyOf(touched, touched.length * 2);
+                }
+                touched[touchedCount++] = docId;
+            }
+            scores[docId] += score;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.email.legal_agent.service.knowledge;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Full-precision copies of stored vectors kept in a memory-mapped temp file, so they
+ * stay off the Java heap and only the pages of rescored candidates are touched.
+ * Files are deleted on {@link #close()}; ones left behind by a process that died are
+ * removed when the first spill of the next run is created.
+ */
+final class FullPrecisionSpill implements AutoCloseable {
+
+    private static final int VECTORS_PER_REGION = 16_384;
+    private static final String PREFIX = "legal-kb-vectors";
+    private static final String SUFFIX = ".f32";
+    private static final AtomicBoolean STALE_FILES_REMOVED = new AtomicBoolean();
+
+    private final int dimension;
+    private final Path file;
+    private final FileChannel channel;
+    private final List<FloatBuffer> regions = new ArrayList<>();
+
+    FullPrecisionSpill(int dimension) {
+        this.dimension = dimension;
+        try {
+            this.file = Files.createTempFile(PREFIX, SUFFIX);
+            if (STALE_FILES_REMOVED.compareAndSet(false, true)) {
+                removeStaleFiles(file.getParent());
+            }
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create full-precision vector spill file", e);
+        }
+    }
+
+    // Spill files older than this JVM belong to an earlier run. Unlinking one another live process
+    // still maps is harmless: its mapping and channel keep the data until that process closes them.
+    private static void removeStaleFiles(Path directory) {
+        long startedAt = ManagementFactory.getRuntimeMXBean().getStartTime();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path stale : files) {
+                try {
+                    if (Files.getLastModifiedTime(stale).toMillis() < startedAt) {
+                        Files.deleteIfExists(stale);
+                    }
+                } catch (IOException e) {
+                    // Best effort - try the rest
+                }
+            }
+        } catch (IOException e) {
+            // Best effort - the temp directory may not be listable
+        }
+    }
+
+    /**
+     * Not thread-safe; callers serialize writes
+     */
+    void write(int index, float[] vector) {
+        FloatBuffer region = region(index / VECTORS_PER_REGION);
+        region.put((index % VECTORS_PER_REGION) * dimension, vector, 0, dimension);
+    }
+
+    void read(int index, float[] target) {
+        FloatBuffer region = regions.get(index / VECTORS_PER_REGION);
+        region.get((index % VECTORS_PER_REGION) * dimension, target, 0, dimension);
+    }
+
+    private FloatBuffer region(int regionIndex) {
+        while (regions.size() <= regionIndex) {
+            long regionBytes = (long) VECTORS_PER_REGION * dimension * Float.BYTES;
+            try {
+                FloatBuffer region = channel
+                        .map(FileChannel.MapMode.READ_WRITE, regions.size() * regionBytes, regionBytes)
+                        .order(ByteOrder.nativeOrder())
+                        .asFloatBuffer();
+                regions.add(region);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map vector spill region", e);
+            }
+        }
+        return regions.get(regionIndex);
+    }
+
+    /**
+     * Retire the spill. The file is only unlinked, never truncated: a region still mapped by a
+     * reader keeps its pages until the buffer is collected, whereas truncating under a live
+     * mapping faults (SIGBUS) on the next access.
+     */
+    @Override
+    public void close() {
+        regions.clear();
+        try {
+            channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Best effort - a file left behind is removed at the next startup
+        }
+    }
+}
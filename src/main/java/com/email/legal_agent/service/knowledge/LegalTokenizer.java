@@ -0,0 +1,100 @@
+package com.email.legal_agent.service.knowledge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tokenizer for the lexical index that keeps legal identifiers intact.
+ *
+ * Section and article references ("Section 1798.120", "§ 1798.120", "Art. 30"),
+ * code citations ("42 U.S.C. § 1983", "45 C.F.R. 164.502") and reporter citations
+ * ("123 F.3d 456") become single canonical tokens, so "Section 1798.120" never matches
+ * a stray "1798". Remaining text is split into lowercase words with stopwords removed;
+ * dotted numbers such as 1798.120 stay whole.
+ */
+public final class LegalTokenizer {
+
+    private static final Pattern CODE_CITATION = Pattern.compile(
+            "(\\d+)\\s+(U\\.?\\s?S\\.?\\s?C\\.?|C\\.?\\s?F\\.?\\s?R\\.?)\\s*(?:§+\\s*)?(\\d+[\\w.\\-]*)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern REPORTER_CITATION = Pattern.compile(
+            "(\\d+)\\s+(U\\.\\s?S\\.|S\\.\\s?Ct\\.|L\\.\\s?Ed\\.(?:\\s?2d)?|F\\.(?:\\s?Supp\\.)?(?:\\s?[234]d|\\s?4th)?|Cal\\.(?:\\s?App\\.)?(?:\\s?[2-5]th)?|P\\.[23]d|N\\.E\\.(?:2d|3d)?|A\\.(?:2d|3d)?)\\s+(\\d+)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern SECTION_REFERENCE = Pattern.compile(
+            "(?:§+|\\bsections?\\b|\\bsec\\.)\\s*(\\d+[\\w.\\-]*(?:\\([\\w]+\\))*)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern ARTICLE_REFERENCE = Pattern.compile(
+            "\\b(?:articles?|art\\.)\\s*(\\d+[\\w]*(?:\\(\\d+\\))*)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern WORD = Pattern.compile("\\d+(?:[.\\-]\\d+)*[a-z]?|[a-z][a-z0-9'\\-]*[a-z0-9]|[a-z]");
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "have", "in", "is",
+            "it", "its", "of", "on", "or", "that", "the", "this", "to", "was", "were", "which", "with",
+            "v", "vs");
+
+    private LegalTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        StringBuilder remainder = new StringBuilder(text);
+        extract(remainder, CODE_CITATION, tokens, 3,
+                m -> m.group(1) + "_" + compact(m.group(2)) + "_" + stripTrailingDot(m.group(3)));
+        extract(remainder, REPORTER_CITATION, tokens, 0,
+                m -> m.group(1) + "_" + compact(m.group(2)) + "_" + m.group(3));
+        extract(remainder, SECTION_REFERENCE, tokens, 1,
+                m -> "§" + stripTrailingDot(m.group(1).toLowerCase(Locale.ROOT)));
+        extract(remainder, ARTICLE_REFERENCE, tokens, 1,
+                m -> "art_" + m.group(1).toLowerCase(Locale.ROOT));
+
+        Matcher words = WORD.matcher(remainder.toString().toLowerCase(Locale.ROOT));
+        while (words.find()) {
+            String word = words.group();
+            if (!STOPWORDS.contains(word)) {
+                tokens.add(word);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Replace each match with spaces (so offsets of later patterns are unaffected) and
+     * emit its canonical token plus, when identifierGroup > 0, the bare identifier so a
+     * query for just "1798.120" still matches "Section 1798.120".
+     */
+    private static void extract(StringBuilder text, Pattern pattern, List<String> tokens,
+                                int identifierGroup, Function<Matcher, String> canonical) {
+        Matcher matcher = pattern.matcher(text);
+        List<int[]> spans = new ArrayList<>();
+        while (matcher.find()) {
+            tokens.add(canonical.apply(matcher));
+            if (identifierGroup > 0) {
+                tokens.add(stripTrailingDot(matcher.group(identifierGroup).toLowerCase(Locale.ROOT)));
+            }
+            spans.add(new int[]{matcher.start(), matcher.end()});
+        }
+        for (int[] span : spans) {
+            for (int i = span[0]; i < span[1]; i++) {
+                text.setCharAt(i, ' ');
+            }
+        }
+    }
+
+    private static String compact(String reporter) {
+        return reporter.replaceAll("[\\s.]", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static String stripTrailingDot(String value) {
+        return value.endsWith(".") ? value.substring(0, value.length() - 1) : value;
+    }
+}
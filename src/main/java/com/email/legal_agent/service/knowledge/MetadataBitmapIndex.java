@@ -0,0 +1,338 @@
+package com.email.legal_agent.service.knowledge;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.*;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * Compressed (Roaring) bitmap indexes over the knowledge-base metadata used for filtering.
+ *
+ * String fields are matched case-insensitively; numeric fields (year) hold whole numbers and
+ * also support range comparisons. Filters that only touch indexed fields are translated into a
+ * bitmap of matching store positions so the vector scan can skip everything else; the rest go
+ * through {@link #matches(Filter, Metadata)}, which applies the same rules segment by segment.
+ * Not thread-safe; {@link QuantizedEmbeddingStore} and {@link Bm25Index} guard it with their own locks.
+ */
+public final class MetadataBitmapIndex {
+
+    public static final String JURISDICTION = "jurisdiction";
+    public static final String CASE_TYPE = "case_type";
+    public static final String YEAR = "year";
+    public static final String SOURCE = "source";
+
+    private static final Set<String> STRING_FIELDS = Set.of(JURISDICTION, CASE_TYPE, SOURCE);
+    private static final Set<String> NUMERIC_FIELDS = Set.of(YEAR);
+
+    private final Map<String, Map<String, RoaringBitmap>> stringIndexes = new HashMap<>();
+    private final Map<String, NavigableMap<Long, RoaringBitmap>> numericIndexes = new HashMap<>();
+    private final RoaringBitmap all = new RoaringBitmap();
+
+    public MetadataBitmapIndex() {
+        STRING_FIELDS.forEach(field -> stringIndexes.put(field, new HashMap<>()));
+        NUMERIC_FIELDS.forEach(field -> numericIndexes.put(field, new TreeMap<>()));
+    }
+
+    public void add(int position, Metadata metadata) {
+        all.add(position);
+        if (metadata == null) {
+            return;
+        }
+
+        Map<String, Object> values = metadata.toMap();
+        for (String field : STRING_FIELDS) {
+            Object value = values.get(field);
+            if (value != null) {
+                stringIndexes.get(field).computeIfAbsent(normalize(value.toString()), v -> new RoaringBitmap()).add(position);
+            }
+        }
+        for (String field : NUMERIC_FIELDS) {
+            Long value = numericValue(values.get(field));
+            if (value != null) {
+                numericIndexes.get(field).computeIfAbsent(value, v -> new RoaringBitmap()).add(position);
+            }
+        }
+    }
+
+    /**
+     * Drop a position, given the metadata it was added with, touching only that position's own bitmaps
+     */
+    public void remove(int position, Metadata metadata) {
+        all.remove(position);
+        if (metadata == null) {
+            return;
+        }
+
+        Map<String, Object> values = metadata.toMap();
+        for (String field : STRING_FIELDS) {
+            Object value = values.get(field);
+            if (value != null) {
+                removeFrom(stringIndexes.get(field), normalize(value.toString()), position);
+            }
+        }
+        for (String field : NUMERIC_FIELDS) {
+            Long value = numericValue(values.get(field));
+            if (value != null) {
+                removeFrom(numericIndexes.get(field), value, position);
+            }
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, RoaringBitmap> index, K value, int position) {
+        RoaringBitmap bitmap = index.get(value);
+        if (bitmap != null) {
+            bitmap.remove(position);
+            if (bitmap.isEmpty()) {
+                index.remove(value);
+            }
+        }
+    }
+
+    public void clear() {
+        all.clear();
+        stringIndexes.values().forEach(Map::clear);
+        numericIndexes.values().forEach(Map::clear);
+    }
+
+    /**
+     * Switch bitmaps to run-length containers where that is smaller; call after bulk ingestion
+     */
+    public void optimize() {
+        all.runOptimize();
+        stringIndexes.values().forEach(index -> index.values().forEach(RoaringBitmap::runOptimize));
+        numericIndexes.values().forEach(index -> index.values().forEach(RoaringBitmap::runOptimize));
+    }
+
+    public long sizeInBytes() {
+        long bytes = all.getLongSizeInBytes();
+        for (Map<String, RoaringBitmap> index : stringIndexes.values()) {
+            bytes += index.values().stream().mapToLong(RoaringBitmap::getLongSizeInBytes).sum();
+        }
+        for (NavigableMap<Long, RoaringBitmap> index : numericIndexes.values()) {
+            bytes += index.values().stream().mapToLong(RoaringBitmap::getLongSizeInBytes).sum();
+        }
+        return bytes;
+    }
+
+    /**
+     * Translate a filter into the bitmap of matching positions.
+     *
+     * @return the matching positions, or empty if the filter references a field or
+     * operator the index can't answer and must be evaluated per segment instead
+     */
+    public Optional<RoaringBitmap> evaluate(Filter filter) {
+        return Optional.ofNullable(translate(filter));
+    }
+
+    private RoaringBitmap translate(Filter filter) {
+        if (filter instanceof And and) {
+            RoaringBitmap left = translate(and.left());
+            RoaringBitmap right = translate(and.right());
+            return left == null || right == null ? null : RoaringBitmap.and(left, right);
+        }
+        if (filter instanceof Or or) {
+            RoaringBitmap left = translate(or.left());
+            RoaringBitmap right = translate(or.right());
+            return left == null || right == null ? null : RoaringBitmap.or(left, right);
+        }
+        if (filter instanceof Not not) {
+            RoaringBitmap inner = translate(not.expression());
+            return inner == null ? null : RoaringBitmap.andNot(all, inner);
+        }
+        if (filter instanceof IsEqualTo equalTo) {
+            return lookup(equalTo.key(), List.of(equalTo.comparisonValue()));
+        }
+        if (filter instanceof IsIn in) {
+            return lookup(in.key(), in.comparisonValues());
+        }
+        if (filter instanceof IsNotEqualTo notEqualTo) {
+            RoaringBitmap matches = lookup(notEqualTo.key(), List.of(notEqualTo.comparisonValue()));
+            return matches == null ? null : RoaringBitmap.andNot(all, matches);
+        }
+        if (filter instanceof IsNotIn notIn) {
+            RoaringBitmap matches = lookup(notIn.key(), notIn.comparisonValues());
+            return matches == null ? null : RoaringBitmap.andNot(all, matches);
+        }
+        Bounds bounds = bounds(filter);
+        return bounds == null ? null : range(bounds);
+    }
+
+    /**
+     * Whether a segment's metadata passes the filter, with the same rules the bitmaps use:
+     * indexed string fields compare case-insensitively and numeric fields as whole numbers.
+     * Fields the index doesn't cover are left to the filter's own test.
+     */
+    public static boolean matches(Filter filter, Metadata metadata) {
+        if (filter instanceof And and) {
+            return matches(and.left(), metadata) && matches(and.right(), metadata);
+        }
+        if (filter instanceof Or or) {
+            return matches(or.left(), metadata) || matches(or.right(), metadata);
+        }
+        if (filter instanceof Not not) {
+            return !matches(not.expression(), metadata);
+        }
+        if (filter instanceof IsEqualTo equalTo && indexed(equalTo.key())) {
+            return matchesAny(equalTo.key(), List.of(equalTo.comparisonValue()), metadata);
+        }
+        if (filter instanceof IsIn in && indexed(in.key())) {
+            return matchesAny(in.key(), in.comparisonValues(), metadata);
+        }
+        if (filter instanceof IsNotEqualTo notEqualTo && indexed(notEqualTo.key())) {
+            return !matchesAny(notEqualTo.key(), List.of(notEqualTo.comparisonValue()), metadata);
+        }
+        if (filter instanceof IsNotIn notIn && indexed(notIn.key())) {
+            return !matchesAny(notIn.key(), notIn.comparisonValues(), metadata);
+        }
+        Bounds bounds = bounds(filter);
+        if (bounds != null) {
+            Long value = metadata == null ? null : numericValue(metadata.toMap().get(bounds.key()));
+            return value != null && value >= bounds.min() && value <= bounds.max();
+        }
+        return filter.test(metadata);
+    }
+
+    private static boolean indexed(String key) {
+        return STRING_FIELDS.contains(key) || NUMERIC_FIELDS.contains(key);
+    }
+
+    private static boolean matchesAny(String key, Collection<?> values, Metadata metadata) {
+        Object stored = metadata == null ? null : metadata.toMap().get(key);
+        if (stored == null) {
+            return false;
+        }
+        if (STRING_FIELDS.contains(key)) {
+            String normalized = normalize(stored.toString());
+            return values.stream().anyMatch(value -> normalize(String.valueOf(value)).equals(normalized));
+        }
+        Long number = numericValue(stored);
+        return number != null && values.stream().anyMatch(value -> number.equals(numericValue(value)));
+    }
+
+    /**
+     * Inclusive whole-number bounds of a range comparison on a numeric field. A fractional bound
+     * is rounded inwards, so {@code year >= 2019.5} starts at 2020 and {@code year < 2019.5} ends at 2019.
+     */
+    private record Bounds(String key, long min, long max) {
+    }
+
+    private static Bounds bounds(Filter filter) {
+        if (filter instanceof IsGreaterThan greaterThan) {
+            BigDecimal bound = decimalValue(greaterThan.comparisonValue());
+            return bounds(greaterThan.key(), bound, bound == null ? null : floor(bound) + 1, Long.MAX_VALUE);
+        }
+        if (filter instanceof IsGreaterThanOrEqualTo greaterThanOrEqualTo) {
+            BigDecimal bound = decimalValue(greaterThanOrEqualTo.comparisonValue());
+            return bounds(greaterThanOrEqualTo.key(), bound, bound == null ? null : ceiling(bound), Long.MAX_VALUE);
+        }
+        if (filter instanceof IsLessThan lessThan) {
+            BigDecimal bound = decimalValue(lessThan.comparisonValue());
+            return bounds(lessThan.key(), bound, Long.MIN_VALUE, bound == null ? null : ceiling(bound) - 1);
+        }
+        if (filter instanceof IsLessThanOrEqualTo lessThanOrEqualTo) {
+            BigDecimal bound = decimalValue(lessThanOrEqualTo.comparisonValue());
+            return bounds(lessThanOrEqualTo.key(), bound, Long.MIN_VALUE, bound == null ? null : floor(bound));
+        }
+        return null;
+    }
+
+    private static Bounds bounds(String key, BigDecimal bound, Long min, Long max) {
+        if (!NUMERIC_FIELDS.contains(key) || bound == null) {
+            return null;
+        }
+        return new Bounds(key, min, max);
+    }
+
+    private RoaringBitmap lookup(String key, Collection<?> values) {
+        if (stringIndexes.containsKey(key)) {
+            Map<String, RoaringBitmap> index = stringIndexes.get(key);
+            RoaringBitmap result = new RoaringBitmap();
+            for (Object value : values) {
+                RoaringBitmap bitmap = index.get(normalize(String.valueOf(value)));
+                if (bitmap != null) {
+                    result.or(bitmap);
+                }
+            }
+            return result;
+        }
+        if (numericIndexes.containsKey(key)) {
+            NavigableMap<Long, RoaringBitmap> index = numericIndexes.get(key);
+            RoaringBitmap result = new RoaringBitmap();
+            for (Object value : values) {
+                Long number = numericValue(value);
+                RoaringBitmap bitmap = number != null ? index.get(number) : null;
+                if (bitmap != null) {
+                    result.or(bitmap);
+                }
+            }
+            return result;
+        }
+        return null;
+    }
+
+    private RoaringBitmap range(Bounds bounds) {
+        if (bounds.min() > bounds.max()) {
+            return new RoaringBitmap();
+        }
+        NavigableMap<Long, RoaringBitmap> selected = numericIndexes.get(bounds.key())
+                .subMap(bounds.min(), true, bounds.max(), true);
+        return RoaringBitmap.or(selected.values().iterator());
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The value as a whole number, or null if it isn't one; a fractional year never equals an indexed one
+     */
+    private static Long numericValue(Object value) {
+        BigDecimal decimal = decimalValue(value);
+        if (decimal == null || decimal.signum() != 0 && decimal.stripTrailingZeros().scale() > 0) {
+            return null;
+        }
+        try {
+            return decimal.longValueExact();
+        } catch (ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private static BigDecimal decimalValue(Object value) {
+        try {
+            if (value instanceof Double || value instanceof Float) {
+                double number = ((Number) value).doubleValue();
+                return Double.isFinite(number) ? BigDecimal.valueOf(number) : null;
+            }
+            if (value instanceof Number number) {
+                return new BigDecimal(number.toString());
+            }
+            if (value instanceof String text) {
+                return new BigDecimal(text.trim());
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return null;
+    }
+
+    private static long floor(BigDecimal value) {
+        return clamp(value.setScale(0, RoundingMode.FLOOR));
+    }
+
+    private static long ceiling(BigDecimal value) {
+        return clamp(value.setScale(0, RoundingMode.CEILING));
+    }
+
+    private static long clamp(BigDecimal whole) {
+        // Keep one step of headroom so the +1 / -1 applied to exclusive bounds can't overflow
+        return whole.max(BigDecimal.valueOf(Long.MIN_VALUE + 1)).min(BigDecimal.valueOf(Long.MAX_VALUE - 1)).longValueExact();
+    }
+}
@@ -0,0 +1,59 @@
+package com.email.legal_agent.service.knowledge;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementations of the scoring kernels. Only loaded by {@link VectorKernels}
+ * once it has verified that the incubator module is present.
+ */
+final class PanamaVectorKernels {
+
+    // 8 bytes -> 8 shorts -> 8 ints keeps the int8 products exact without overflow
+    private static final VectorSpecies<Byte> BYTE_SPECIES = ByteVector.SPECIES_64;
+    private static final VectorSpecies<Short> SHORT_SPECIES = ShortVector.SPECIES_128;
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_256;
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private PanamaVectorKernels() {
+    }
+
+    static int dotProduct(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        IntVector acc = IntVector.zero(INT_SPECIES);
+        int upperBound = BYTE_SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upperBound; i += BYTE_SPECIES.length()) {
+            ByteVector va = ByteVector.fromArray(BYTE_SPECIES, a, aOffset + i);
+            ByteVector vb = ByteVector.fromArray(BYTE_SPECIES, b, bOffset + i);
+            ShortVector sa = (ShortVector) va.convertShape(VectorOperators.B2S, SHORT_SPECIES, 0);
+            ShortVector sb = (ShortVector) vb.convertShape(VectorOperators.B2S, SHORT_SPECIES, 0);
+            ShortVector product = sa.mul(sb);
+            acc = acc.add(product.convertShape(VectorOperators.S2I, INT_SPECIES, 0));
+        }
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    static float dotProduct(float[] a, float[] b) {
+        FloatVector acc = FloatVector.zero(FLOAT_SPECIES);
+        int upperBound = FLOAT_SPECIES.loopBound(a.length);
+        int i = 0;
+        for (; i < upperBound; i += FLOAT_SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, i);
+            acc = va.fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,496 @@
+package com.email.legal_agent.service.knowledge;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.RelevanceScore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory embedding store that keeps vectors as int8 codes instead of float[].
+ *
+ * The quantizer is calibrated from the first {@code calibrationSampleSize} vectors (or
+ * whatever is present at the first search). In BINARY mode a one-bit-per-dimension code
+ * is also kept and used as a coarse first pass before int8 scoring. When rescoring is
+ * enabled, full-precision vectors are spilled off-heap and the top candidates are
+ * re-ranked with exact cosine similarity.
+ *
+ * Metadata filters on jurisdiction, case type, year and source are answered from
+ * {@link MetadataBitmapIndex} and pushed into the scan, so only matching positions are
+ * scored. Other filters fall back to testing each segment's metadata.
+ */
+public class QuantizedEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(QuantizedEmbeddingStore.class);
+
+    private static final int VECTORS_PER_CHUNK = 4096;
+    private static final int PARALLEL_SCAN_THRESHOLD = 50_000;
+    private static final int BINARY_OVERSAMPLING = 8;
+    private static final double CALIBRATION_CONFIDENCE = 0.999;
+    private static final int OPTIMIZE_BATCH_SIZE = 1000;
+
+    public enum Mode {
+        INT8,
+        BINARY
+    }
+
+    private final Mode mode;
+    private final boolean rescore;
+    private final int rescoreOversampling;
+    private final int calibrationSampleSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<String> ids = new ArrayList<>();
+    private final List<TextSegment> segments = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private final MetadataBitmapIndex metadataIndex = new MetadataBitmapIndex();
+
+    // Vectors seen before calibration; dropped once quantized
+    private final List<float[]> pending = new ArrayList<>();
+    private final List<byte[]> codeChunks = new ArrayList<>();
+    private final List<long[]> bitChunks = new ArrayList<>();
+    private int[] codeSums = new int[VECTORS_PER_CHUNK];
+
+    private int dimension = -1;
+    private volatile ScalarQuantizer quantizer;
+    private FullPrecisionSpill spill;
+
+    public QuantizedEmbeddingStore(Mode mode, boolean rescore, int rescoreOversampling, int calibrationSampleSize) {
+        this.mode = mode;
+        this.rescore = rescore;
+        this.rescoreOversampling = Math.max(1, rescoreOversampling);
+        this.calibrationSampleSize = Math.max(1, calibrationSampleSize);
+        logger.info("Quantized embedding store - mode: {}, rescore: {}, SIMD: {}",
+                mode, rescore, VectorKernels.isSimdAvailable());
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return add(embedding, null);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), Collections.singletonList(null));
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment segment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), Collections.singletonList(segment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return addAll(embeddings, null);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> segments) {
+        List<String> newIds = generateIds(embeddings.size());
+        addAll(newIds, embeddings, segments);
+        return newIds;
+    }
+
+    @Override
+    public void addAll(List<String> newIds, List<Embedding> embeddings, List<TextSegment> newSegments) {
+        if (newSegments != null && newSegments.size() != embeddings.size()) {
+            throw new IllegalArgumentException("Embeddings and segments must have the same size");
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < embeddings.size(); i++) {
+                addInternal(newIds.get(i), embeddings.get(i).vector(), newSegments != null ? newSegments.get(i) : null);
+            }
+            if (embeddings.size() >= OPTIMIZE_BATCH_SIZE) {
+                metadataIndex.optimize();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> idsToRemove) {
+        lock.writeLock().lock();
+        try {
+            for (String id : idsToRemove) {
+                Integer position = positions.remove(id);
+                if (position != null) {
+                    markDeleted(position);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        lock.writeLock().lock();
+        try {
+            Optional<RoaringBitmap> indexed = metadataIndex.evaluate(filter);
+            if (indexed.isPresent()) {
+                for (int position : indexed.get().toArray()) {
+                    positions.remove(ids.get(position));
+                    markDeleted(position);
+                }
+                return;
+            }
+
+            for (int i = 0; i < ids.size(); i++) {
+                TextSegment segment = segments.get(i);
+                if (!deleted.get(i) && segment != null && MetadataBitmapIndex.matches(filter, segment.metadata())) {
+                    positions.remove(ids.get(i));
+                    markDeleted(i);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            ids.clear();
+            segments.clear();
+            positions.clear();
+            deleted.clear();
+            metadataIndex.clear();
+            pending.clear();
+            codeChunks.clear();
+            bitChunks.clear();
+            codeSums = new int[VECTORS_PER_CHUNK];
+            // Swap to a fresh spill file (created on the next add, at the new dimension)
+            if (spill != null) {
+                spill.close();
+                spill = null;
+            }
+            quantizer = null;
+            dimension = -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        ensureCalibrated();
+
+        lock.readLock().lock();
+        try {
+            int size = ids.size();
+            ScalarQuantizer currentQuantizer = quantizer;
+            if (size == 0 || currentQuantizer == null) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+
+            float[] query = normalize(request.queryEmbedding().vector());
+            if (query.length != dimension) {
+                throw new IllegalArgumentException("Query dimension " + query.length + " does not match store dimension " + dimension);
+            }
+
+            byte[] queryCodes = new byte[dimension];
+            int queryCodeSum = currentQuantizer.quantize(query, queryCodes, 0);
+            int maxResults = request.maxResults();
+            int candidateCount = rescore ? maxResults * rescoreOversampling : maxResults;
+
+            // Push indexed filters down as a bitmap; anything else is tested per segment
+            RoaringBitmap allowed = null;
+            Filter residual = request.filter();
+            if (residual != null) {
+                Optional<RoaringBitmap> indexed = metadataIndex.evaluate(residual);
+                if (indexed.isPresent()) {
+                    allowed = indexed.get();
+                    residual = null;
+                    if (allowed.isEmpty()) {
+                        return new EmbeddingSearchResult<>(List.of());
+                    }
+                }
+            }
+            RoaringBitmap allowedPositions = allowed;
+            Filter residualFilter = residual;
+            int scanned = allowed != null ? allowed.getCardinality() : size;
+
+            TopK candidates;
+            if (mode == Mode.BINARY) {
+                long[] queryBits = new long[currentQuantizer.binaryWords()];
+                currentQuantizer.binarize(query, queryBits, 0);
+                int coarseCount = candidateCount * BINARY_OVERSAMPLING;
+                TopK coarse = scan(size, scanned, coarseCount,
+                        chunk -> scanBinaryChunk(chunk, size, queryBits, coarseCount, allowedPositions, residualFilter));
+                candidates = new TopK(candidateCount);
+                for (int position : coarse.positions()) {
+                    candidates.offer(position, int8Score(position, queryCodes, queryCodeSum));
+                }
+            } else {
+                candidates = scan(size, scanned, candidateCount,
+                        chunk -> scanInt8Chunk(chunk, size, queryCodes, queryCodeSum, candidateCount, allowedPositions, residualFilter));
+            }
+
+            if (rescore) {
+                candidates = rescoreFullPrecision(candidates, query, maxResults);
+            }
+
+            return new EmbeddingSearchResult<>(toMatches(candidates, request.minScore()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size() - deleted.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (spill != null) {
+                spill.close();
+                spill = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Ingestion helpers (callers hold the write lock)
+    private void addInternal(String id, float[] rawVector, TextSegment segment) {
+        float[] vector = normalize(rawVector);
+        if (dimension < 0) {
+            dimension = vector.length;
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException("Embedding dimension " + vector.length + " does not match store dimension " + dimension);
+        }
+
+        int position = ids.size();
+        ids.add(id);
+        segments.add(segment);
+        positions.put(id, position);
+        metadataIndex.add(position, segment != null ? segment.metadata() : null);
+
+        if (rescore) {
+            if (spill == null) {
+                spill = new FullPrecisionSpill(dimension);
+            }
+            spill.write(position, vector);
+        }
+
+        if (quantizer == null) {
+            pending.add(vector);
+            if (pending.size() >= calibrationSampleSize) {
+                calibrate();
+            }
+        } else {
+            encode(position, vector);
+        }
+    }
+
+    private void ensureCalibrated() {
+        if (quantizer != null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (quantizer == null && !pending.isEmpty()) {
+                calibrate();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void calibrate() {
+        ScalarQuantizer calibrated = ScalarQuantizer.calibrate(pending, CALIBRATION_CONFIDENCE);
+        quantizer = calibrated;
+
+        // Pending vectors are always the first positions of the store
+        for (int i = 0; i < pending.size(); i++) {
+            encode(i, pending.get(i));
+        }
+        logger.info("Calibrated int8 quantizer from {} vectors", pending.size());
+        pending.clear();
+    }
+
+    private void encode(int position, float[] vector) {
+        int chunk = position / VECTORS_PER_CHUNK;
+        int slot = position % VECTORS_PER_CHUNK;
+        while (codeChunks.size() <= chunk) {
+            codeChunks.add(new byte[VECTORS_PER_CHUNK * dimension]);
+            if (mode == Mode.BINARY) {
+                bitChunks.add(new long[VECTORS_PER_CHUNK * quantizer.binaryWords()]);
+            }
+        }
+        if (position >= codeSums.length) {
+            codeSums = Arrays.copyOf(codeSums, Math.max(position + 1, codeSums.length * 2));
+        }
+
+        codeSums[position] = quantizer.quantize(vector, codeChunks.get(chunk), slot * dimension);
+        if (mode == Mode.BINARY) {
+            quantizer.binarize(vector, bitChunks.get(chunk), slot * quantizer.binaryWords());
+        }
+    }
+
+    // Scan helpers (callers hold the read lock)
+    private TopK scan(int size, int scanned, int capacity, IntFunction<TopK> chunkScanner) {
+        int chunks = (size + VECTORS_PER_CHUNK - 1) / VECTORS_PER_CHUNK;
+        if (scanned < PARALLEL_SCAN_THRESHOLD) {
+            TopK top = new TopK(capacity);
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                top.merge(chunkScanner.apply(chunk));
+            }
+            return top;
+        }
+        return IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(chunkScanner)
+                .reduce(new TopK(capacity), (left, right) -> new TopK(capacity).merge(left).merge(right));
+    }
+
+    private TopK scanInt8Chunk(int chunk, int size, byte[] queryCodes, int queryCodeSum, int capacity,
+                               RoaringBitmap allowed, Filter residual) {
+        TopK top = new TopK(capacity);
+        byte[] codes = codeChunks.get(chunk);
+        int start = chunk * VECTORS_PER_CHUNK;
+        int end = Math.min(size, start + VECTORS_PER_CHUNK);
+
+        forEachCandidate(start, end, allowed, residual, position -> {
+            int dot = VectorKernels.dotProduct(queryCodes, 0, codes, (position - start) * dimension, dimension);
+            top.offer(position, quantizer.dotProduct(dot, queryCodeSum, codeSums[position]));
+        });
+        return top;
+    }
+
+    private TopK scanBinaryChunk(int chunk, int size, long[] queryBits, int capacity,
+                                 RoaringBitmap allowed, Filter residual) {
+        TopK top = new TopK(capacity);
+        long[] bits = bitChunks.get(chunk);
+        int words = queryBits.length;
+        int start = chunk * VECTORS_PER_CHUNK;
+        int end = Math.min(size, start + VECTORS_PER_CHUNK);
+
+        forEachCandidate(start, end, allowed, residual, position -> {
+            int distance = VectorKernels.hammingDistance(queryBits, 0, bits, (position - start) * words, words);
+            top.offer(position, -distance);
+        });
+        return top;
+    }
+
+    private void forEachCandidate(int start, int end, RoaringBitmap allowed, Filter residual, IntConsumer action) {
+        if (allowed == null) {
+            for (int position = start; position < end; position++) {
+                if (accepts(position, residual)) {
+                    action.accept(position);
+                }
+            }
+            return;
+        }
+
+        PeekableIntIterator iterator = allowed.getIntIterator();
+        iterator.advanceIfNeeded(start);
+        while (iterator.hasNext() && iterator.peekNext() < end) {
+            int position = iterator.next();
+            if (accepts(position, residual)) {
+                action.accept(position);
+            }
+        }
+    }
+
+    private float int8Score(int position, byte[] queryCodes, int queryCodeSum) {
+        byte[] codes = codeChunks.get(position / VECTORS_PER_CHUNK);
+        int offset = (position % VECTORS_PER_CHUNK) * dimension;
+        int dot = VectorKernels.dotProduct(queryCodes, 0, codes, offset, dimension);
+        return quantizer.dotProduct(dot, queryCodeSum, codeSums[position]);
+    }
+
+    private TopK rescoreFullPrecision(TopK candidates, float[] query, int maxResults) {
+        TopK rescored = new TopK(maxResults);
+        float[] buffer = new float[dimension];
+        for (int position : candidates.positions()) {
+            spill.read(position, buffer);
+            rescored.offer(position, VectorKernels.dotProduct(query, buffer));
+        }
+        return rescored;
+    }
+
+    private void markDeleted(int position) {
+        deleted.set(position);
+        TextSegment segment = segments.get(position);
+        metadataIndex.remove(position, segment != null ? segment.metadata() : null);
+    }
+
+    private boolean accepts(int position, Filter filter) {
+        if (deleted.get(position)) {
+            return false;
+        }
+        if (filter == null) {
+            return true;
+        }
+        TextSegment segment = segments.get(position);
+        return segment != null && MetadataBitmapIndex.matches(filter, segment.metadata());
+    }
+
+    private List<EmbeddingMatch<TextSegment>> toMatches(TopK top, double minScore) {
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+        int[] order = top.sortedDescending();
+        for (int i : order) {
+            int position = top.positionAt(i);
+            double relevance = RelevanceScore.fromCosineSimilarity(top.scoreAt(i));
+            if (relevance < minScore) {
+                continue;
+            }
+            matches.add(new EmbeddingMatch<>(relevance, ids.get(position), reconstruct(position), segments.get(position)));
+        }
+        return matches;
+    }
+
+    private Embedding reconstruct(int position) {
+        if (spill != null) {
+            float[] vector = new float[dimension];
+            spill.read(position, vector);
+            return Embedding.from(vector);
+        }
+        byte[] codes = codeChunks.get(position / VECTORS_PER_CHUNK);
+        return Embedding.from(quantizer.dequantize(codes, (position % VECTORS_PER_CHUNK) * dimension));
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,118 @@
+package com.email.legal_agent.service.knowledge;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Linear int8 quantizer calibrated from a sample of the corpus.
+ *
+ * Each component is mapped to {@code x ≈ scale * q + midpoint} with q in [-127, 127].
+ * The clipping range comes from corpus quantiles rather than the absolute min/max so a
+ * handful of outlier components don't waste the 8-bit range. Per-dimension means are
+ * kept for the optional binary (sign) codes.
+ */
+public final class ScalarQuantizer {
+
+    private static final int MAX_CODE = 127;
+
+    private final int dimension;
+    private final float scale;
+    private final float midpoint;
+    private final float[] dimensionMeans;
+
+    private ScalarQuantizer(int dimension, float lower, float upper, float[] dimensionMeans) {
+        this.dimension = dimension;
+        this.midpoint = (upper + lower) / 2f;
+        this.scale = Math.max((upper - lower) / (2f * MAX_CODE), Float.MIN_NORMAL);
+        this.dimensionMeans = dimensionMeans;
+    }
+
+    /**
+     * Calibrate from sample vectors, clipping to the given central quantile (e.g. 0.999)
+     */
+    public static ScalarQuantizer calibrate(List<float[]> sample, double confidence) {
+        if (sample.isEmpty()) {
+            throw new IllegalArgumentException("Cannot calibrate quantizer from an empty sample");
+        }
+
+        int dimension = sample.get(0).length;
+        float[] components = new float[sample.size() * dimension];
+        float[] means = new float[dimension];
+
+        int position = 0;
+        for (float[] vector : sample) {
+            for (int d = 0; d < dimension; d++) {
+                components[position++] = vector[d];
+                means[d] += vector[d];
+            }
+        }
+        for (int d = 0; d < dimension; d++) {
+            means[d] /= sample.size();
+        }
+
+        Arrays.sort(components);
+        double tail = (1.0 - confidence) / 2.0;
+        int lowerIndex = (int) Math.floor(tail * (components.length - 1));
+        int upperIndex = (int) Math.ceil((1.0 - tail) * (components.length - 1));
+
+        return new ScalarQuantizer(dimension, components[lowerIndex], components[upperIndex], means);
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Quantize a vector into {@code codes[offset..offset+dimension)} and return the sum of its codes
+     */
+    public int quantize(float[] vector, byte[] codes, int offset) {
+        int sum = 0;
+        for (int d = 0; d < dimension; d++) {
+            int code = Math.round((vector[d] - midpoint) / scale);
+            code = Math.max(-MAX_CODE, Math.min(MAX_CODE, code));
+            codes[offset + d] = (byte) code;
+            sum += code;
+        }
+        return sum;
+    }
+
+    /**
+     * Reconstruct an approximate full-precision vector from its codes
+     */
+    public float[] dequantize(byte[] codes, int offset) {
+        float[] vector = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            vector[d] = scale * codes[offset + d] + midpoint;
+        }
+        return vector;
+    }
+
+    /**
+     * Approximate dot product of the original vectors from their int8 dot product and code sums
+     */
+    public float dotProduct(int codeDotProduct, int codeSumA, int codeSumB) {
+        return scale * scale * codeDotProduct
+                + scale * midpoint * (codeSumA + codeSumB)
+                + dimension * midpoint * midpoint;
+    }
+
+    /**
+     * Number of longs needed to hold one binary code
+     */
+    public int binaryWords() {
+        return (dimension + 63) / 64;
+    }
+
+    /**
+     * Encode one bit per dimension: set when the component is above the corpus mean
+     */
+    public void binarize(float[] vector, long[] bits, int offset) {
+        int words = binaryWords();
+        Arrays.fill(bits, offset, offset + words, 0L);
+        for (int d = 0; d < dimension; d++) {
+            if (vector[d] > dimensionMeans[d]) {
+                bits[offset + (d >>> 6)] |= 1L << (d & 63);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.email.legal_agent.service.knowledge;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Bounded min-heap of (position, score) keeping the highest scores
+ */
+final class TopK {
+    private final int capacity;
+    private final int[] heapPositions;
+    private final float[] heapScores;
+    private int size;
+
+    TopK(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.heapPositions = new int[this.capacity];
+        this.heapScores = new float[this.capacity];
+    }
+
+    void offer(int position, float score) {
+        if (size < capacity) {
+            heapPositions[size] = position;
+            heapScores[size] = score;
+            siftUp(size++);
+        } else if (score > heapScores[0]) {
+            heapPositions[0] = position;
+            heapScores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    TopK merge(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.heapPositions[i], other.heapScores[i]);
+        }
+        return this;
+    }
+
+    int[] positions() {
+        return Arrays.copyOf(heapPositions, size);
+    }
+
+    int positionAt(int i) {
+        return heapPositions[i];
+    }
+
+    float scoreAt(int i) {
+        return heapScores[i];
+    }
+
+    int[] sortedDescending() {
+        return IntStream.range(0, size)
+                .boxed()
+                .sorted((a, b) -> Float.compare(heapScores[b], heapScores[a]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapScores[i] >= heapScores[parent]) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            int right = left + 1;
+            int smallest = i;
+            if (left < size && heapScores[left] < heapScores[smallest]) smallest = left;
+            if (right < size && heapScores[right] < heapScores[smallest]) smallest = right;
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int position = heapPositions[i];
+        heapPositions[i] = heapPositions[j];
+        heapPositions[j] = position;
+        float score = heapScores[i];
+        heapScores[i] = heapScores[j];
+        heapScores[j] = score;
+    }
+}
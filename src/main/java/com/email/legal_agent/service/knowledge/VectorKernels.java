@@ -0,0 +1,88 @@
+package com.email.legal_agent.service.knowledge;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scoring kernels for quantized embeddings.
+ *
+ * Uses the incubating Java Vector API when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, otherwise falls back to plain scalar loops.
+ */
+public final class VectorKernels {
+    private static final Logger logger = LoggerFactory.getLogger(VectorKernels.class);
+
+    private static final boolean SIMD_AVAILABLE = detectVectorApi();
+
+    private VectorKernels() {
+    }
+
+    public static boolean isSimdAvailable() {
+        return SIMD_AVAILABLE;
+    }
+
+    /**
+     * Dot product of two int8 code vectors stored in (possibly larger) byte arrays
+     */
+    public static int dotProduct(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        if (SIMD_AVAILABLE) {
+            return PanamaVectorKernels.dotProduct(a, aOffset, b, bOffset, length);
+        }
+        return scalarDotProduct(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Dot product of two full-precision vectors
+     */
+    public static float dotProduct(float[] a, float[] b) {
+        if (SIMD_AVAILABLE) {
+            return PanamaVectorKernels.dotProduct(a, b);
+        }
+        return scalarDotProduct(a, b);
+    }
+
+    /**
+     * Hamming distance between two packed bit vectors. Long.bitCount is already
+     * intrinsified to POPCNT, so no Vector API variant is needed here.
+     */
+    public static int hammingDistance(long[] a, int aOffset, long[] b, int bOffset, int words) {
+        int distance = 0;
+        for (int i = 0; i < words; i++) {
+            distance += Long.bitCount(a[aOffset + i] ^ b[bOffset + i]);
+        }
+        return distance;
+    }
+
+    static int scalarDotProduct(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    static float scalarDotProduct(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static boolean detectVectorApi() {
+        boolean present = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        if (!present) {
+            logger.info("jdk.incubator.vector not enabled - using scalar embedding kernels");
+            return false;
+        }
+        try {
+            // Touch the Panama class so a broken setup degrades to scalar instead of failing searches
+            PanamaVectorKernels.dotProduct(new byte[16], 0, new byte[16], 0, 16);
+            logger.info("Using Vector API embedding kernels");
+            return true;
+        } catch (Throwable t) {
+            logger.warn("Vector API unavailable, using scalar embedding kernels: {}", t.toString());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.email.legal_agent.service.replay;
+
+import com.email.legal_agent.service.document.ExtractedDocument;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * One line of a traffic trace. Requests entering the legal team ({@code query}, {@code quick},
+ * {@code document}) are what a replay drives; the {@code chat}, {@code tool} and {@code embedding}
+ * exchanges they caused are what it serves back or, for embeddings, recomputes locally.
+ * {@code at} is milliseconds since recording started, {@code micros} the exchange's latency.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TraceEvent(String type,
+                         long at,
+                         Long micros,
+                         String agent,
+                         String key,
+                         String input,
+                         String output,
+                         List<ToolCall> toolCalls,
+                         Integer promptTokens,
+                         Integer completionTokens,
+                         String finishReason,
+                         String sessionId,
+                         String analysisType,
+                         String responseLength,
+                         ExtractedDocument document) {
+
+    public static final String CHAT = "chat";
+    public static final String TOOL = "tool";
+    public static final String EMBEDDING = "embedding";
+    public static final String QUERY = "query";
+    public static final String QUICK = "quick";
+    public static final String DOCUMENT = "document";
+
+    public record ToolCall(String id, String name, String arguments) {
+    }
+
+    public static TraceEvent chat(long at, long micros, String agent, String key, String text, List<ToolCall> toolCalls,
+                                  Integer promptTokens, Integer completionTokens, String finishReason) {
+        return new TraceEvent(CHAT, at, micros, agent, key, null, text, toolCalls, promptTokens, completionTokens,
+                finishReason, null, null, null, null);
+    }
+
+    public static TraceEvent tool(long at, long micros, String name, String key, String result) {
+        return new TraceEvent(TOOL, at, micros, name, key, null, result, null, null, null, null, null, null, null, null);
+    }
+
+    public static TraceEvent embedding(long at, long micros, String text) {
+        return new TraceEvent(EMBEDDING, at, micros, null, null, text, null, null, null, null, null, null, null, null, null);
+    }
+
+    public static TraceEvent query(long at, String type, String query, String sessionId, String analysisType,
+                                   String responseLength) {
+        return new TraceEvent(type, at, null, null, null, query, null, null, null, null, null, sessionId, analysisType,
+                responseLength, null);
+    }
+
+    public static TraceEvent document(long at, ExtractedDocument document, String sessionId, String analysisType) {
+        return new TraceEvent(DOCUMENT, at, null, null, null, null, null, null, null, null, null, sessionId, analysisType,
+                null, document);
+    }
+
+    @JsonIgnore
+    public boolean isRequest() {
+        return QUERY.equals(type) || QUICK.equals(type) || DOCUMENT.equals(type);
+    }
+}
@@ -0,0 +1,288 @@
+package com.email.legal_agent.service.replay;
+
+import com.email.legal_agent.config.PinningMonitor;
+import com.email.legal_agent.config.VirtualThreads;
+import com.email.legal_agent.dto.LegalAnalysisResult;
+import com.email.legal_agent.service.LegalTeamService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Drives the requests of a replayed trace through the legal team and reports how the build
+ * under test handled them: end-to-end latency percentiles, process CPU time and heap allocated.
+ * Only model and tool I/O comes from the trace, so the numbers reflect this build's own work
+ * plus the recorded upstream latency (scaled by {@code latency-scale}).
+ *
+ * Enabled with {@code legal-assistant.replay.drive=true} in replay mode. The report is logged,
+ * written to {@code report-file} if set, and compared with {@code baseline-report}, a report
+ * from an earlier build, if that is set too.
+ *
+ * With {@code concurrency-steps} the trace is replayed once per step instead, and the highest
+ * step that completes without errors and within {@code slo-p95-ms} is reported as the maximum
+ * sustainable number of concurrent analyses. Requests run on virtual threads or a pool of
+ * platform threads, following {@code spring.threads.virtual.enabled}, so running the sweep in
+ * both modes compares the two execution models on the same traffic.
+ */
+@Component
+public class TrafficReplayRunner {
+    private static final Logger logger = LoggerFactory.getLogger(TrafficReplayRunner.class);
+    private static final String REPLAY_TENANT = "replay";
+
+    public record Report(int concurrency, int requests, int errors, long wallMs, long p50Ms, long p95Ms, long p99Ms,
+                         long maxMs, long cpuMs, long allocatedMb, long unmatchedLookups, int peakPlatformThreads,
+                         long pinnedEvents) {
+
+        /**
+         * Relative change of each measure against {@code baseline}, e.g. "p95Ms +12.5%"
+         */
+        public List<String> compare(Report baseline) {
+            List<String> changes = new ArrayList<>();
+            changes.add(change("wallMs", wallMs, baseline.wallMs));
+            changes.add(change("p50Ms", p50Ms, baseline.p50Ms));
+            changes.add(change("p95Ms", p95Ms, baseline.p95Ms));
+            changes.add(change("p99Ms", p99Ms, baseline.p99Ms));
+            changes.add(change("cpuMs", cpuMs, baseline.cpuMs));
+            changes.add(change("allocatedMb", allocatedMb, baseline.allocatedMb));
+            changes.add(change("peakPlatformThreads", peakPlatformThreads, baseline.peakPlatformThreads));
+            return changes;
+        }
+
+        private static String change(String name, long value, long baseline) {
+            return baseline == 0 ? name + " " + value + " (baseline 0)"
+                    : String.format(Locale.ROOT, "%s %+.1f%% (%d -> %d)", name, 100.0 * (value - baseline) / baseline,
+                    baseline, value);
+        }
+    }
+
+    private final TrafficTrace trafficTrace;
+    private final LegalTeamService legalTeamService;
+    private final PinningMonitor pinningMonitor;
+    private final ConfigurableApplicationContext context;
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final boolean drive;
+    private final int concurrency;
+    private final List<Integer> concurrencySteps;
+    private final long sloP95Ms;
+    private final boolean virtualThreads;
+    private final boolean preserveArrivals;
+    private final double latencyScale;
+    private final String reportFile;
+    private final String baselineReport;
+    private final boolean exitWhenDone;
+
+    public TrafficReplayRunner(TrafficTrace trafficTrace,
+                               LegalTeamService legalTeamService,
+                               PinningMonitor pinningMonitor,
+                               ConfigurableApplicationContext context,
+                               @Value("${legal-assistant.replay.drive:false}") boolean drive,
+                               @Value("${legal-assistant.replay.concurrency:1}") int concurrency,
+                               @Value("${legal-assistant.replay.concurrency-steps:}") String concurrencySteps,
+                               @Value("${legal-assistant.replay.slo-p95-ms:0}") long sloP95Ms,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                               @Value("${legal-assistant.replay.preserve-arrivals:false}") boolean preserveArrivals,
+                               @Value("${legal-assistant.replay.latency-scale:1.0}") double latencyScale,
+                               @Value("${legal-assistant.replay.report-file:}") String reportFile,
+                               @Value("${legal-assistant.replay.baseline-report:}") String baselineReport,
+                               @Value("${legal-assistant.replay.exit-when-done:true}") boolean exitWhenDone) {
+        this.trafficTrace = trafficTrace;
+        this.legalTeamService = legalTeamService;
+        this.pinningMonitor = pinningMonitor;
+        this.context = context;
+        this.drive = drive;
+        this.concurrency = Math.max(1, concurrency);
+        this.concurrencySteps = parseSteps(concurrencySteps);
+        this.sloP95Ms = sloP95Ms;
+        this.virtualThreads = virtualThreads;
+        this.preserveArrivals = preserveArrivals;
+        this.latencyScale = Math.max(0, latencyScale);
+        this.reportFile = reportFile;
+        this.baselineReport = baselineReport;
+        this.exitWhenDone = exitWhenDone;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!drive) {
+            return;
+        }
+        if (trafficTrace.mode() != TrafficTrace.Mode.REPLAY) {
+            logger.error("legal-assistant.replay.drive needs legal-assistant.replay.mode=replay; not driving");
+            return;
+        }
+        Thread.ofPlatform().name("traffic-replay").daemon(false).start(() -> {
+            int exitCode = 0;
+            try {
+                if (concurrencySteps.isEmpty()) {
+                    publish(run(trafficTrace.requests(), concurrency));
+                } else {
+                    sweep(trafficTrace.requests());
+                }
+            } catch (Exception e) {
+                exitCode = 1;
+                logger.error("Traffic replay failed", e);
+            }
+            if (exitWhenDone) {
+                int code = exitCode;
+                System.exit(SpringApplication.exit(context, () -> code));
+            }
+        });
+    }
+
+    /**
+     * Replay {@code requests} once per concurrency step, lowest first, until a step misses the
+     * error or latency objective, and report the highest step that met it
+     */
+    public List<Report> sweep(List<TraceEvent> requests) throws Exception {
+        String threads = virtualThreads ? "virtual" : "platform";
+        List<Report> reports = new ArrayList<>();
+        int sustainable = 0;
+        for (int step : concurrencySteps) {
+            trafficTrace.rewind();
+            Report report = run(requests, step);
+            reports.add(report);
+            boolean met = report.errors() == 0 && (sloP95Ms <= 0 || report.p95Ms() <= sloP95Ms);
+            logger.info("Concurrency {} on {} threads: p95 {} ms, {} errors, {} platform threads, {} pinned - {}",
+                    step, threads, report.p95Ms(), report.errors(), report.peakPlatformThreads(),
+                    report.pinnedEvents(), met ? "sustained" : "not sustained");
+            if (!met) {
+                break;
+            }
+            sustainable = step;
+        }
+        logger.info("Max sustainable concurrent analyses on {} threads: {} (p95 objective {} ms)", threads,
+                sustainable, sloP95Ms <= 0 ? "none" : sloP95Ms);
+        if (!reportFile.isBlank()) {
+            objectMapper.writeValue(Path.of(reportFile).toFile(), reports);
+        }
+        return reports;
+    }
+
+    /**
+     * Run {@code requests} against the legal team, {@code concurrency} at a time, optionally at
+     * their recorded arrival times, and measure the whole run
+     */
+    public Report run(List<TraceEvent> requests, int concurrency) throws Exception {
+        legalTeamService.initializeAgents(ForkJoinPool.commonPool()).get();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        long unmatchedBefore = unmatched();
+        long cpuBefore = os.getProcessCpuTime();
+        long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+        long pinnedBefore = pinningMonitor.events();
+        threads.resetPeakThreadCount();
+        long start = System.nanoTime();
+
+        // Stands in for the servlet container's request threads
+        ExecutorService pool = VirtualThreads.executor(virtualThreads, "replay", concurrency);
+        List<Future<long[]>> outcomes = new ArrayList<>(requests.size());
+        try {
+            long firstArrival = requests.isEmpty() ? 0 : requests.get(0).at();
+            for (TraceEvent request : requests) {
+                if (preserveArrivals) {
+                    long due = start + TimeUnit.MILLISECONDS.toNanos((long) ((request.at() - firstArrival) * latencyScale));
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                }
+                outcomes.add(pool.submit(() -> replay(request)));
+            }
+            long[] latencies = new long[outcomes.size()];
+            int errors = 0;
+            for (int i = 0; i < latencies.length; i++) {
+                long[] outcome = outcomes.get(i).get();
+                latencies[i] = outcome[0];
+                errors += (int) outcome[1];
+            }
+            long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Arrays.sort(latencies);
+            return new Report(concurrency, latencies.length, errors, wallMs, percentile(latencies, 0.50),
+                    percentile(latencies, 0.95), percentile(latencies, 0.99), latencies.length == 0 ? 0 : latencies[latencies.length - 1],
+                    TimeUnit.NANOSECONDS.toMillis(os.getProcessCpuTime() - cpuBefore),
+                    (threads.getTotalThreadAllocatedBytes() - allocatedBefore) >> 20,
+                    unmatched() - unmatchedBefore, threads.getPeakThreadCount(),
+                    pinningMonitor.events() - pinnedBefore);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Latency in ms and 1 if the analysis failed
+    private long[] replay(TraceEvent request) {
+        long start = System.nanoTime();
+        LegalAnalysisResult result;
+        try {
+            result = switch (request.type()) {
+                case TraceEvent.QUICK -> legalTeamService.quickAnalysis(request.input(), request.sessionId(),
+                        LegalTeamService.ResponseLength.parse(request.responseLength()));
+                // Traces don't carry tenants; replayed documents reuse only each other's analyses
+                case TraceEvent.DOCUMENT -> legalTeamService.analyzeDocument(request.document(), request.analysisType(),
+                        request.sessionId(), REPLAY_TENANT);
+                default -> legalTeamService.processLegalQuery(request.input(), request.sessionId(),
+                        request.analysisType(), request.responseLength());
+            };
+        } catch (RuntimeException e) {
+            logger.warn("Replayed {} request failed: {}", request.type(), e.getMessage());
+            result = null;
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new long[]{elapsedMs, result == null || "ERROR".equals(result.getStatus()) ? 1 : 0};
+    }
+
+    private long unmatched() {
+        return trafficTrace.lookups(TraceEvent.CHAT, "none") + trafficTrace.lookups(TraceEvent.TOOL, "none");
+    }
+
+    private void publish(Report report) throws Exception {
+        logger.info("Traffic replay: {} requests ({} failed) in {} ms; latency p50 {} / p95 {} / p99 {} / max {} ms; "
+                        + "CPU {} ms, {} MB allocated; {} unmatched lookups, {} served out of order",
+                report.requests(), report.errors(), report.wallMs(), report.p50Ms(), report.p95Ms(), report.p99Ms(),
+                report.maxMs(), report.cpuMs(), report.allocatedMb(), report.unmatchedLookups(),
+                trafficTrace.lookups(TraceEvent.CHAT, "order") + trafficTrace.lookups(TraceEvent.TOOL, "order"));
+        if (!reportFile.isBlank()) {
+            objectMapper.writeValue(Path.of(reportFile).toFile(), report);
+        }
+        if (!baselineReport.isBlank()) {
+            Report baseline = objectMapper.readValue(Files.readAllBytes(Path.of(baselineReport)), Report.class);
+            logger.info("Against baseline {}: {}", baselineReport, String.join(", ", report.compare(baseline)));
+        }
+    }
+
+    private static List<Integer> parseSteps(String steps) {
+        List<Integer> parsed = new ArrayList<>();
+        for (String step : steps.split(",")) {
+            if (step.isBlank()) {
+                continue;
+            }
+            int value = Integer.parseInt(step.trim());
+            if (value < 1) {
+                throw new IllegalArgumentException("Concurrency steps must be positive: " + steps);
+            }
+            parsed.add(value);
+        }
+        Collections.sort(parsed);
+        return parsed;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.max(0, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,423 @@
+package com.email.legal_agent.service.replay;
+
+import com.email.legal_agent.service.document.ExtractedDocument;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Record and replay of the traffic that leaves the process, for offline performance runs.
+ *
+ * In {@code record} mode every chat-model exchange (per agent), tool result and embedding input
+ * is appended with its latency to a gzipped NDJSON trace, together with the requests that caused
+ * them. A single writer thread does the serialization and I/O; a full queue drops events (and
+ * counts them) rather than slowing requests down.
+ *
+ * In {@code replay} mode the trace is loaded at startup and the chat models and tools are served
+ * from it, after sleeping the recorded latency times {@code latency-scale}, so nothing goes over
+ * the network. Chat responses are matched by agent and a digest of the request messages, tool
+ * results by tool name and arguments; when traffic interleaves differently than it did in
+ * production and nothing matches, the agent's (or tool's) next unused recording in trace order
+ * is served instead. Both kinds of lookup are counted under {@code legal.replay.lookups}.
+ * Embeddings are always computed locally; their inputs are recorded for reference only.
+ */
+@Component
+public class TrafficTrace {
+    private static final Logger logger = LoggerFactory.getLogger(TrafficTrace.class);
+
+    public enum Mode {
+        OFF,
+        RECORD,
+        REPLAY
+    }
+
+    // A recording that either lookup may hand out, but only once
+    private static final class Recorded {
+        final TraceEvent event;
+        boolean used;
+
+        Recorded(TraceEvent event) {
+            this.event = event;
+        }
+    }
+
+    private final Mode mode;
+    private final Path file;
+    private final double latencyScale;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final long startNanos = System.nanoTime();
+
+    // Record mode
+    private final BlockingQueue<TraceEvent> queue;
+    private final ExecutorService writer;
+    private volatile boolean running = true;
+    private final Counter droppedEvents;
+
+    // Replay mode
+    private final List<TraceEvent> requests = new ArrayList<>();
+    private final Map<String, Deque<Recorded>> byKey = new HashMap<>();
+    private final Map<String, Deque<Recorded>> inOrder = new HashMap<>();
+    private final List<Recorded> recordings = new ArrayList<>();
+
+    public TrafficTrace(MeterRegistry meterRegistry,
+                        @Value("${legal-assistant.replay.mode:off}") String mode,
+                        @Value("${legal-assistant.replay.file:traces/traffic.ndjson.gz}") String file,
+                        @Value("${legal-assistant.replay.latency-scale:1.0}") double latencyScale,
+                        @Value("${legal-assistant.replay.queue-capacity:10000}") int queueCapacity) {
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.file = Path.of(file);
+        this.latencyScale = Math.max(0, latencyScale);
+        this.meterRegistry = meterRegistry;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.droppedEvents = meterRegistry.counter("legal.replay.record.dropped");
+
+        if (this.mode == Mode.RECORD) {
+            meterRegistry.gaugeCollectionSize("legal.replay.record.queued", Tags.empty(), queue);
+            Writer out;
+            try {
+                out = open(this.file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create trace " + this.file, e);
+            }
+            this.writer = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "traffic-trace-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            writer.execute(() -> writeLoop(out));
+            logger.warn("Recording all model, tool and embedding traffic to {}", this.file.toAbsolutePath());
+        } else {
+            this.writer = null;
+            if (this.mode == Mode.REPLAY) {
+                try {
+                    load(this.file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot read trace " + this.file, e);
+                }
+            }
+        }
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Requests found in the trace, in the order they arrived; empty unless replaying
+     */
+    public List<TraceEvent> requests() {
+        return Collections.unmodifiableList(requests);
+    }
+
+    /**
+     * Make every recording available again, so the same requests can be replayed once more
+     */
+    public void rewind() {
+        synchronized (byKey) {
+            byKey.clear();
+            inOrder.clear();
+            for (Recorded recorded : recordings) {
+                recorded.used = false;
+                index(recorded);
+            }
+        }
+    }
+
+    /**
+     * Wrap the model an agent talks to: record its exchanges, or answer from the trace instead
+     */
+    public ChatLanguageModel chatModel(ChatLanguageModel model, String agent) {
+        if (mode == Mode.OFF) {
+            return model;
+        }
+        return new ChatLanguageModel() {
+            @Override
+            public ChatResponse chat(ChatRequest request) {
+                String key = agent + ":" + digest(request.messages().toString());
+                if (mode == Mode.REPLAY) {
+                    return replayChat(agent, key);
+                }
+                long start = System.nanoTime();
+                ChatResponse response = model.chat(request);
+                record(chatEvent(start, agent, key, response));
+                return response;
+            }
+
+            @Override
+            public ChatRequestParameters defaultRequestParameters() {
+                return model.defaultRequestParameters();
+            }
+
+            @Override
+            public Set<Capability> supportedCapabilities() {
+                return model.supportedCapabilities();
+            }
+        };
+    }
+
+    /**
+     * Run a tool call, recording its result, or serve the recorded result
+     */
+    public String tool(String name, String arguments, Supplier<String> call) {
+        if (mode == Mode.OFF) {
+            return call.get();
+        }
+        String key = name + ":" + (arguments == null ? "" : arguments);
+        if (mode == Mode.REPLAY) {
+            TraceEvent event = take(TraceEvent.TOOL, name, key);
+            pause(event);
+            return event.output();
+        }
+        long start = System.nanoTime();
+        String result = call.get();
+        record(TraceEvent.tool(elapsedMs(), micros(start), name, key, result));
+        return result;
+    }
+
+    public void embedding(String text, long startNanos) {
+        if (mode == Mode.RECORD) {
+            record(TraceEvent.embedding(elapsedMs(), micros(startNanos), text));
+        }
+    }
+
+    public void query(String type, String query, String sessionId, String analysisType, String responseLength) {
+        if (mode == Mode.RECORD) {
+            record(TraceEvent.query(elapsedMs(), type, query, sessionId, analysisType, responseLength));
+        }
+    }
+
+    public void document(ExtractedDocument document, String sessionId, String analysisType) {
+        if (mode == Mode.RECORD) {
+            record(TraceEvent.document(elapsedMs(), document, sessionId, analysisType));
+        }
+    }
+
+    /**
+     * Recordings matched by request digest, by trace order, or not at all
+     */
+    public long lookups(String kind, String match) {
+        Counter counter = meterRegistry.find("legal.replay.lookups").tags("kind", kind, "match", match).counter();
+        return counter == null ? 0 : (long) counter.count();
+    }
+
+    private ChatResponse replayChat(String agent, String key) {
+        TraceEvent event = take(TraceEvent.CHAT, agent, key);
+        pause(event);
+        List<ToolExecutionRequest> toolRequests = event.toolCalls() == null ? List.of() : event.toolCalls().stream()
+                .map(call -> ToolExecutionRequest.builder().id(call.id()).name(call.name()).arguments(call.arguments()).build())
+                .toList();
+        AiMessage message = toolRequests.isEmpty() ? AiMessage.from(event.output() == null ? "" : event.output())
+                : event.output() == null ? AiMessage.from(toolRequests) : AiMessage.from(event.output(), toolRequests);
+        return ChatResponse.builder()
+                .aiMessage(message)
+                .tokenUsage(event.promptTokens() == null && event.completionTokens() == null ? null
+                        : new TokenUsage(event.promptTokens(), event.completionTokens()))
+                .finishReason(event.finishReason() == null ? null : FinishReason.valueOf(event.finishReason()))
+                .build();
+    }
+
+    private TraceEvent chatEvent(long startNanos, String agent, String key, ChatResponse response) {
+        AiMessage message = response.aiMessage();
+        List<TraceEvent.ToolCall> toolCalls = message == null || !message.hasToolExecutionRequests() ? null
+                : message.toolExecutionRequests().stream()
+                .map(request -> new TraceEvent.ToolCall(request.id(), request.name(), request.arguments()))
+                .toList();
+        TokenUsage usage = response.tokenUsage();
+        return TraceEvent.chat(elapsedMs(), micros(startNanos), agent, key, message == null ? null : message.text(),
+                toolCalls, usage == null ? null : usage.inputTokenCount(), usage == null ? null : usage.outputTokenCount(),
+                response.finishReason() == null ? null : response.finishReason().name());
+    }
+
+    private TraceEvent take(String kind, String source, String key) {
+        synchronized (byKey) {
+            Recorded recorded = next(byKey.get(kind + "|" + key));
+            String match = "digest";
+            if (recorded == null) {
+                recorded = next(inOrder.get(kind + "|" + source));
+                match = "order";
+            }
+            if (recorded == null) {
+                meterRegistry.counter("legal.replay.lookups", "kind", kind, "match", "none").increment();
+                throw new IllegalStateException("Trace has no " + kind + " recording left for " + source);
+            }
+            recorded.used = true;
+            meterRegistry.counter("legal.replay.lookups", "kind", kind, "match", match).increment();
+            return recorded.event;
+        }
+    }
+
+    private static Recorded next(Deque<Recorded> recordings) {
+        if (recordings == null) {
+            return null;
+        }
+        while (!recordings.isEmpty() && recordings.peekFirst().used) {
+            recordings.pollFirst();
+        }
+        return recordings.pollFirst();
+    }
+
+    private void index(Recorded recorded) {
+        TraceEvent event = recorded.event;
+        byKey.computeIfAbsent(event.type() + "|" + event.key(), key -> new ArrayDeque<>()).add(recorded);
+        inOrder.computeIfAbsent(event.type() + "|" + event.agent(), key -> new ArrayDeque<>()).add(recorded);
+    }
+
+    private void pause(TraceEvent event) {
+        long micros = event.micros() == null ? 0 : (long) (event.micros() * latencyScale);
+        if (micros <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MICROSECONDS.sleep(micros);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted during replayed latency");
+        }
+    }
+
+    private void load(Path path) throws IOException {
+        int events = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input(path), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = readLine(reader)) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                TraceEvent event = objectMapper.readValue(line, TraceEvent.class);
+                events++;
+                if (event.isRequest()) {
+                    requests.add(event);
+                } else if (event.type().equals(TraceEvent.CHAT) || event.type().equals(TraceEvent.TOOL)) {
+                    Recorded recorded = new Recorded(event);
+                    recordings.add(recorded);
+                    index(recorded);
+                }
+            }
+        }
+        logger.warn("Replaying model and tool traffic from {}: {} events, {} requests", path.toAbsolutePath(),
+                events, requests.size());
+    }
+
+    // A trace cut off by a crash ends with a partial gzip member; everything before it is still good
+    private static String readLine(BufferedReader reader) throws IOException {
+        try {
+            return reader.readLine();
+        } catch (EOFException e) {
+            logger.warn("Trace ends early, replaying the complete events before the cut");
+            return null;
+        }
+    }
+
+    private static InputStream input(Path path) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path));
+        return path.toString().endsWith(".gz") ? new GZIPInputStream(in, 64 * 1024) : in;
+    }
+
+    private static Writer open(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(path));
+        if (path.toString().endsWith(".gz")) {
+            // Sync flushes, so the trace is readable up to the last flush even if the process dies
+            out = new GZIPOutputStream(out, 64 * 1024, true);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    private void record(TraceEvent event) {
+        if (!queue.offer(event)) {
+            droppedEvents.increment();
+        }
+    }
+
+    // Polls rather than blocking in take() so shutdown doesn't have to interrupt a thread doing file I/O
+    private void writeLoop(Writer out) {
+        try (out) {
+            while (running || !queue.isEmpty()) {
+                TraceEvent event = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (event == null) {
+                    out.flush();
+                    continue;
+                }
+                try {
+                    out.write(objectMapper.writeValueAsString(event));
+                    out.write('\n');
+                } catch (JsonProcessingException e) {
+                    logger.warn("Trace event not written: {}", e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.error("Traffic trace {} failed, recording stopped: {}", file, e.getMessage());
+        }
+    }
+
+    private long elapsedMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static long micros(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    private static String digest(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write out the events still queued and finish the trace file
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Traffic trace not finished at shutdown; {} events lost", queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.email.legal_agent.service.research;
+
+/**
+ * One ruling returned by a {@link CaseLawSearchProvider}; court and year are null when the source doesn't say
+ */
+public record CaseLawResult(String title, String court, Integer year, String jurisdiction,
+                            String url, String snippet, String provider) {
+}
@@ -0,0 +1,17 @@
+package com.email.legal_agent.service.research;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Source of court rulings for the researcher's web search tool.
+ *
+ * Implementations must not block the caller; the returned future completes exceptionally
+ * when the source fails or times out.
+ */
+public interface CaseLawSearchProvider {
+
+    String name();
+
+    CompletableFuture<List<CaseLawResult>> search(String legalConcept, String jurisdiction, int maxResults);
+}
@@ -0,0 +1,181 @@
+package com.email.legal_agent.service.research;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes case-law searches to the configured provider and falls back to the local file when it fails.
+ *
+ * Every provider call is timed under {@code legal.research.provider} (tagged by provider and
+ * outcome) and failures are counted under {@code legal.research.provider.failures}.
+ */
+@Service
+public class CaseLawSearchService {
+    private static final Logger logger = LoggerFactory.getLogger(CaseLawSearchService.class);
+
+    /**
+     * Results and the provider that produced them; {@code fallbackReason} is set when the primary failed
+     */
+    public record Search(String provider, List<CaseLawResult> results, String fallbackReason) {
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final int maxResults;
+    private final CaseLawSearchProvider primary;
+    private final CaseLawSearchProvider fallback;
+
+    @Autowired
+    public CaseLawSearchService(MeterRegistry meterRegistry, ResourceLoader resourceLoader,
+                                @Value("${legal-assistant.research.provider:duckduckgo}") String provider,
+                                @Value("${legal-assistant.research.fallback-to-local:true}") boolean fallbackToLocal,
+                                @Value("${legal-assistant.research.max-results:5}") int maxResults,
+                                @Value("${legal-assistant.research.local.path:classpath:case-law/rulings.jsonl}") String localPath,
+                                @Value("${legal-assistant.external-services.duckduckgo.enabled:true}") boolean duckDuckGoEnabled,
+                                @Value("${legal-assistant.external-services.duckduckgo.base-url:https://api.duckduckgo.com/}") String duckDuckGoUrl,
+                                @Value("${legal-assistant.external-services.duckduckgo.connect-timeout-seconds:5}") long connectTimeoutSeconds,
+                                @Value("${legal-assistant.external-services.duckduckgo.request-timeout-seconds:10}") long requestTimeoutSeconds,
+                                @Value("${legal-assistant.external-services.duckduckgo.max-response-bytes:1048576}") long maxResponseBytes,
+                                @Value("${legal-assistant.external-services.duckduckgo.cache-ttl-minutes:30}") long cacheTtlMinutes,
+                                @Value("${legal-assistant.external-services.duckduckgo.cache-max-entries:500}") int cacheMaxEntries) {
+        this.meterRegistry = meterRegistry;
+        this.maxResults = maxResults;
+
+        if (!provider.equalsIgnoreCase("duckduckgo") && !provider.equalsIgnoreCase("local")) {
+            throw new IllegalArgumentException("Unknown case-law provider: " + provider);
+        }
+        CaseLawSearchProvider local = loadLocal(resourceLoader, localPath);
+        if (provider.equalsIgnoreCase("duckduckgo") && duckDuckGoEnabled) {
+            this.primary = new DuckDuckGoCaseLawProvider(duckDuckGoUrl, Duration.ofSeconds(connectTimeoutSeconds),
+                    Duration.ofSeconds(requestTimeoutSeconds), maxResponseBytes,
+                    Duration.ofMinutes(cacheTtlMinutes), cacheMaxEntries);
+            this.fallback = fallbackToLocal ? local : null;
+        } else {
+            this.primary = local;
+            this.fallback = null;
+        }
+        logger.info("Case-law search uses {}{}", primary == null ? "no provider" : primary.name(),
+                fallback == null ? "" : " with " + fallback.name() + " fallback");
+    }
+
+    CaseLawSearchService(MeterRegistry meterRegistry, int maxResults,
+                         CaseLawSearchProvider primary, CaseLawSearchProvider fallback) {
+        this.meterRegistry = meterRegistry;
+        this.maxResults = maxResults;
+        this.primary = primary;
+        this.fallback = fallback;
+    }
+
+    public CompletableFuture<Search> search(String legalConcept, String jurisdiction) {
+        if (primary == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No case-law provider is available"));
+        }
+        CompletableFuture<Search> search = timed(primary, legalConcept, jurisdiction)
+                .thenApply(results -> new Search(primary.name(), results, null));
+        if (fallback == null) {
+            return search;
+        }
+        return search.exceptionallyCompose(error -> {
+            String reason = describe(unwrap(error));
+            logger.warn("Case-law provider {} failed ({}), using {}", primary.name(), reason, fallback.name());
+            return timed(fallback, legalConcept, jurisdiction)
+                    .thenApply(results -> new Search(fallback.name(), results, reason));
+        });
+    }
+
+    private CompletableFuture<List<CaseLawResult>> timed(CaseLawSearchProvider provider,
+                                                         String legalConcept, String jurisdiction) {
+        long start = System.nanoTime();
+        CompletableFuture<List<CaseLawResult>> results;
+        try {
+            results = provider.search(legalConcept, jurisdiction, maxResults);
+        } catch (RuntimeException e) {
+            results = CompletableFuture.failedFuture(e);
+        }
+        return results.whenComplete((found, error) -> {
+            String outcome;
+            if (error == null) {
+                outcome = found.isEmpty() ? "empty" : "success";
+            } else {
+                outcome = unwrap(error) instanceof HttpTimeoutException ? "timeout" : "failure";
+                Counter.builder("legal.research.provider.failures")
+                        .description("Failed case-law searches")
+                        .tag("provider", provider.name())
+                        .register(meterRegistry)
+                        .increment();
+            }
+            Timer.builder("legal.research.provider")
+                    .description("Case-law search latency")
+                    .tag("provider", provider.name())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        });
+    }
+
+    private static CaseLawSearchProvider loadLocal(ResourceLoader resourceLoader, String path) {
+        if (path == null || path.isBlank()) {
+            return null;
+        }
+        Resource resource = resourceLoader.getResource(path);
+        if (!resource.exists()) {
+            logger.warn("Local case-law file {} not found; offline search disabled", path);
+            return null;
+        }
+        try (InputStream input = resource.getInputStream()) {
+            LocalCaseLawProvider local = LocalCaseLawProvider.fromJsonLines(input);
+            logger.info("Indexed {} rulings from {}", local.size(), path);
+            return local;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not load local case-law file {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static String describe(Throwable error) {
+        if (error instanceof HttpTimeoutException) {
+            return "timed out";
+        }
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            logger.debug("Closing case-law provider failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (primary instanceof AutoCloseable closeable) {
+            closeQuietly(closeable);
+        }
+    }
+}
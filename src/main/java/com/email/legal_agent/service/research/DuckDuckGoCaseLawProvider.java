@@ -0,0 +1,244 @@
+package com.email.legal_agent.service.research;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Court rulings from the DuckDuckGo instant-answer API, restricted to Justia and FindLaw.
+ *
+ * Requests go out on the JDK HTTP client without blocking the caller and are bounded by a
+ * connect and a request timeout; bodies larger than {@code maxResponseBytes} are cut off
+ * while streaming. Successful searches are cached for {@code cacheTtl}.
+ */
+public class DuckDuckGoCaseLawProvider implements CaseLawSearchProvider, AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern RESULT_LINK = Pattern.compile("<a href=\"[^\"]*\">(.*?)</a>\\s*(.*)", Pattern.DOTALL);
+    private static final Pattern CITED_YEAR = Pattern.compile("\\((?:[^()]*\\s)?((?:18|19|20)\\d{2})\\)");
+    private static final Pattern ANY_YEAR = Pattern.compile("\\b((?:18|19|20)\\d{2})\\b");
+    private static final Pattern COURT = Pattern.compile(
+            "Supreme Court(?: of (?:the )?[A-Z][a-z]+(?: [A-Z][a-z]+)*)?"
+                    + "|Court of Appeals(?: for the [\\w. ]+? Circuit)?"
+                    + "|\\d+(?:st|nd|rd|th) Cir\\."
+                    + "|[A-Z][a-z]+ District Court|District Court");
+
+    private record Cached(long expiresAtNanos, CompletableFuture<List<CaseLawResult>> results) {
+    }
+
+    private final String baseUrl;
+    private final Duration requestTimeout;
+    private final long maxResponseBytes;
+    private final long cacheTtlNanos;
+    private final ExecutorService httpThreads = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("case-law-http-", 0).factory());
+    private final HttpClient httpClient;
+    private final Map<String, Cached> cache;
+
+    public DuckDuckGoCaseLawProvider(String baseUrl, Duration connectTimeout, Duration requestTimeout,
+                                     long maxResponseBytes, Duration cacheTtl, int cacheMaxEntries) {
+        this.baseUrl = baseUrl;
+        this.requestTimeout = requestTimeout;
+        this.maxResponseBytes = maxResponseBytes;
+        this.cacheTtlNanos = cacheTtl.toNanos();
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(httpThreads)
+                .build();
+        this.cache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return size() > cacheMaxEntries;
+            }
+        };
+    }
+
+    @Override
+    public String name() {
+        return "duckduckgo";
+    }
+
+    @Override
+    public CompletableFuture<List<CaseLawResult>> search(String legalConcept, String jurisdiction, int maxResults) {
+        String key = (legalConcept + '\u0000' + jurisdiction).toLowerCase(Locale.ROOT) + '\u0000' + maxResults;
+        long now = System.nanoTime();
+        CompletableFuture<List<CaseLawResult>> results;
+        synchronized (cache) {
+            Cached cached = cache.get(key);
+            if (cached != null && cached.expiresAtNanos - now > 0) {
+                return cached.results;
+            }
+            results = fetch(legalConcept, jurisdiction, maxResults);
+            cache.put(key, new Cached(now + cacheTtlNanos, results));
+        }
+        // Failures are retried on the next call rather than served from the cache
+        results.whenComplete((found, error) -> {
+            if (error != null) {
+                synchronized (cache) {
+                    cache.computeIfPresent(key, (k, cached) -> cached.results == results ? null : cached);
+                }
+            }
+        });
+        return results;
+    }
+
+    private CompletableFuture<List<CaseLawResult>> fetch(String legalConcept, String jurisdiction, int maxResults) {
+        String query = String.format("%s court ruling %s site:justia.com OR site:caselaw.findlaw.com",
+                legalConcept, jurisdiction == null ? "" : jurisdiction);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "?q="
+                        + URLEncoder.encode(query, StandardCharsets.UTF_8) + "&format=json&no_html=1&skip_disambig=1"))
+                .timeout(requestTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        return httpClient.sendAsync(request, info -> new CappedBody(maxResponseBytes))
+                .thenApply(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new IllegalStateException("DuckDuckGo returned HTTP " + response.statusCode());
+                    }
+                    try {
+                        return parse(response.body(), jurisdiction, maxResults);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Unreadable DuckDuckGo response: " + e.getMessage(), e);
+                    }
+                });
+    }
+
+    /**
+     * Rulings in an instant-answer response: the abstract first, then direct results, then related topics
+     */
+    static List<CaseLawResult> parse(byte[] body, String jurisdiction, int maxResults) throws IOException {
+        JsonNode root = MAPPER.readTree(body);
+        Map<String, CaseLawResult> results = new LinkedHashMap<>();
+
+        String abstractText = root.path("AbstractText").asText("");
+        if (!abstractText.isBlank()) {
+            add(results, root.path("Heading").asText(""), root.path("AbstractURL").asText(""), abstractText, jurisdiction);
+        }
+        collectTopics(root.path("Results"), results, jurisdiction);
+        collectTopics(root.path("RelatedTopics"), results, jurisdiction);
+
+        return results.values().stream().limit(maxResults).toList();
+    }
+
+    // Related topics may be grouped one level deep under a "Topics" array
+    private static void collectTopics(JsonNode topics, Map<String, CaseLawResult> results, String jurisdiction) {
+        for (JsonNode topic : topics) {
+            if (topic.has("Topics")) {
+                collectTopics(topic.path("Topics"), results, jurisdiction);
+                continue;
+            }
+            String text = topic.path("Text").asText("");
+            String url = topic.path("FirstURL").asText("");
+            if (text.isBlank() || url.isBlank()) {
+                continue;
+            }
+            String title = null;
+            Matcher link = RESULT_LINK.matcher(topic.path("Result").asText(""));
+            if (link.matches()) {
+                title = link.group(1).strip();
+            }
+            if (title == null || title.isEmpty()) {
+                int dash = text.indexOf(" - ");
+                title = dash > 0 ? text.substring(0, dash) : text;
+            }
+            add(results, title, url, text, jurisdiction);
+        }
+    }
+
+    private static void add(Map<String, CaseLawResult> results, String title, String url, String text, String jurisdiction) {
+        String key = url.isBlank() ? title : url;
+        if (results.containsKey(key)) {
+            return;
+        }
+        Matcher court = COURT.matcher(text);
+        results.put(key, new CaseLawResult(title.strip(), court.find() ? court.group() : null, year(text),
+                jurisdiction, url, text.strip(), "duckduckgo"));
+    }
+
+    private static Integer year(String text) {
+        Matcher cited = CITED_YEAR.matcher(text);
+        if (cited.find()) {
+            return Integer.valueOf(cited.group(1));
+        }
+        Matcher any = ANY_YEAR.matcher(text);
+        return any.find() ? Integer.valueOf(any.group(1)) : null;
+    }
+
+    @Override
+    public void close() {
+        httpClient.shutdownNow();
+        httpThreads.shutdownNow();
+    }
+
+    /**
+     * Collects the body and fails as soon as it grows past the limit, cancelling the download
+     */
+    private static final class CappedBody implements HttpResponse.BodySubscriber<byte[]> {
+        private final long maxBytes;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        CappedBody(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (result.isDone()) {
+                return;
+            }
+            for (ByteBuffer buffer : buffers) {
+                if (body.size() + (long) buffer.remaining() > maxBytes) {
+                    subscription.cancel();
+                    result.completeExceptionally(new IOException("Response exceeded " + maxBytes + " bytes"));
+                    return;
+                }
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                body.writeBytes(bytes);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(body.toByteArray());
+        }
+
+        @Override
+        public CompletableFuture<byte[]> getBody() {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.email.legal_agent.service.research;
+
+import com.email.legal_agent.service.knowledge.Bm25Index;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+/**
+ * Offline rulings from a local case-law file, searched through a BM25 index built at load time.
+ *
+ * The file holds one JSON object per line with {@code title}, {@code court}, {@code year},
+ * {@code jurisdiction}, {@code url} and {@code summary}. Rulings from the requested
+ * jurisdiction rank first; the rest of the results are filled from any jurisdiction.
+ */
+public class LocalCaseLawProvider implements CaseLawSearchProvider {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String JURISDICTION = "jurisdiction";
+
+    private final List<CaseLawResult> rulings;
+    private final Bm25Index index = new Bm25Index();
+
+    public LocalCaseLawProvider(List<CaseLawResult> rulings) {
+        this.rulings = List.copyOf(rulings);
+        for (int i = 0; i < this.rulings.size(); i++) {
+            CaseLawResult ruling = this.rulings.get(i);
+            String text = String.join(" ", ruling.title(), Objects.toString(ruling.court(), ""), ruling.snippet());
+            Map<String, Object> metadata = new HashMap<>();
+            if (ruling.jurisdiction() != null) {
+                metadata.put(JURISDICTION, ruling.jurisdiction().toLowerCase(Locale.ROOT));
+            }
+            index.add(String.valueOf(i), TextSegment.from(text, Metadata.from(metadata)));
+        }
+    }
+
+    public static LocalCaseLawProvider fromJsonLines(InputStream input) throws IOException {
+        List<CaseLawResult> rulings = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode ruling = MAPPER.readTree(line);
+                String title = ruling.path("title").asText("");
+                if (title.isBlank()) {
+                    throw new IllegalArgumentException("Case-law line " + lineNumber + " has no title");
+                }
+                rulings.add(new CaseLawResult(title,
+                        textOrNull(ruling, "court"),
+                        ruling.hasNonNull("year") ? ruling.get("year").asInt() : null,
+                        textOrNull(ruling, "jurisdiction"),
+                        textOrNull(ruling, "url"),
+                        ruling.path("summary").asText(""),
+                        "local"));
+            }
+        }
+        return new LocalCaseLawProvider(rulings);
+    }
+
+    @Override
+    public String name() {
+        return "local";
+    }
+
+    @Override
+    public CompletableFuture<List<CaseLawResult>> search(String legalConcept, String jurisdiction, int maxResults) {
+        String query = legalConcept == null ? "" : legalConcept;
+        Map<String, CaseLawResult> results = new LinkedHashMap<>();
+        if (jurisdiction != null && !jurisdiction.isBlank()) {
+            collect(index.search(query, maxResults,
+                    metadataKey(JURISDICTION).isEqualTo(jurisdiction.strip().toLowerCase(Locale.ROOT))), results);
+        }
+        if (results.size() < maxResults) {
+            collect(index.search(query, maxResults, null), results);
+        }
+        return CompletableFuture.completedFuture(results.values().stream().limit(maxResults).toList());
+    }
+
+    public int size() {
+        return rulings.size();
+    }
+
+    private void collect(List<Bm25Index.Hit> hits, Map<String, CaseLawResult> results) {
+        for (Bm25Index.Hit hit : hits) {
+            results.putIfAbsent(hit.id(), rulings.get(Integer.parseInt(hit.id())));
+        }
+    }
+
+    private static String textOrNull(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asText() : null;
+    }
+}
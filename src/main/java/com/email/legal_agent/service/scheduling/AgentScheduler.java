@@ -0,0 +1,317 @@
+package com.email.legal_agent.service.scheduling;
+
+import com.email.legal_agent.service.cancellation.CancellationToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control in front of agent execution. Each analysis takes a {@link Permit} before it
+ * calls the model and returns it when done, so at most {@code max-concurrent} analyses hold
+ * upstream capacity at a time.
+ *
+ * Free slots go to the most urgent {@link Priority} class with waiters that is below its own
+ * concurrency cap; capping the lower classes below the total keeps room for urgent work while
+ * bulk traffic saturates the rest. Within a class, tenants share slots by weighted fair queuing:
+ * every request gets a virtual finish tag of {@code max(class clock, tenant's last tag) + 1/weight}
+ * and the smallest tag goes next, so a tenant with a deep backlog cannot crowd out one with a
+ * single request. A waiter older than the starvation threshold is served before any class
+ * above it, subject to its class cap.
+ *
+ * Exported per class: {@code legal.scheduler.queued}, {@code legal.scheduler.running},
+ * {@code legal.scheduler.wait} (with p50/p95/p99) and {@code legal.scheduler.rejected}.
+ */
+@Service
+public class AgentScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(AgentScheduler.class);
+
+    private final int maxConcurrent;
+    private final long starvationNanos;
+    private final long queueTimeoutMillis;
+    private final int maxQueued;
+    private final Map<String, Double> tenantWeights;
+
+    private final Object lock = new Object();
+    private final EnumMap<Priority, PriorityClass> classes = new EnumMap<>(Priority.class);
+    private int running;
+    private long nextSequence;
+
+    public AgentScheduler(MeterRegistry meterRegistry,
+                          @Value("${legal-assistant.scheduler.max-concurrent:8}") int maxConcurrent,
+                          @Value("${legal-assistant.scheduler.class-limits.urgent:8}") int urgentLimit,
+                          @Value("${legal-assistant.scheduler.class-limits.high:8}") int highLimit,
+                          @Value("${legal-assistant.scheduler.class-limits.medium:6}") int mediumLimit,
+                          @Value("${legal-assistant.scheduler.class-limits.low:4}") int lowLimit,
+                          @Value("${legal-assistant.scheduler.starvation-threshold-ms:30000}") long starvationThresholdMillis,
+                          @Value("${legal-assistant.scheduler.queue-timeout-seconds:300}") long queueTimeoutSeconds,
+                          @Value("${legal-assistant.scheduler.max-queued-per-class:1000}") int maxQueued,
+                          @Value("${legal-assistant.scheduler.tenant-weights:}") String tenantWeights) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.starvationNanos = TimeUnit.MILLISECONDS.toNanos(starvationThresholdMillis);
+        this.queueTimeoutMillis = TimeUnit.SECONDS.toMillis(queueTimeoutSeconds);
+        this.maxQueued = Math.max(1, maxQueued);
+        this.tenantWeights = parseWeights(tenantWeights);
+
+        int[] limits = {urgentLimit, highLimit, mediumLimit, lowLimit};
+        for (Priority priority : Priority.values()) {
+            PriorityClass priorityClass = new PriorityClass(priority,
+                    Math.max(1, Math.min(this.maxConcurrent, limits[priority.ordinal()])), meterRegistry);
+            classes.put(priority, priorityClass);
+        }
+        logger.info("Agent scheduler started - {} concurrent analyses, class limits {}", this.maxConcurrent,
+                Arrays.toString(limits));
+    }
+
+    /**
+     * Held while an analysis runs; closing it hands the slot to the next waiter
+     */
+    public final class Permit implements AutoCloseable {
+        private final PriorityClass priorityClass;
+        private boolean closed;
+
+        private Permit(PriorityClass priorityClass) {
+            this.priorityClass = priorityClass;
+        }
+
+        @Override
+        public void close() {
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                release(priorityClass);
+            }
+        }
+    }
+
+    /**
+     * Wait for a slot for {@code tenant}'s work at {@code priority}. Cancelling the calling
+     * thread's job takes it out of the queue.
+     *
+     * @throws RejectedExecutionException if the class queue is full or no slot frees up within the queue timeout
+     * @throws java.util.concurrent.CancellationException if the job is cancelled while waiting
+     */
+    @SuppressWarnings("try")
+    public Permit acquire(Priority priority, String tenant) throws InterruptedException {
+        PriorityClass priorityClass = classes.get(priority);
+        Waiter waiter;
+        synchronized (lock) {
+            if (priorityClass.arrivals.size() >= maxQueued) {
+                priorityClass.rejectedFull.increment();
+                throw new RejectedExecutionException(priority + " queue is full");
+            }
+            waiter = priorityClass.enqueue(tenant == null || tenant.isBlank() ? "anonymous" : tenant,
+                    nextSequence++);
+            dispatch();
+        }
+
+        CancellationToken cancellation = CancellationToken.current();
+        try (CancellationToken.Scope blocking = CancellationToken.interruptibleCurrent()) {
+            waiter.granted.get(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            boolean cancelled = cancellation != null && cancellation.isCancelled();
+            synchronized (lock) {
+                if (!waiter.granted.isDone()) {
+                    priorityClass.remove(waiter);
+                    if (cancelled) {
+                        throw cancellation.aborted("scheduler-queue");
+                    }
+                    if (e instanceof InterruptedException interrupted) {
+                        throw interrupted;
+                    }
+                    priorityClass.rejectedTimeout.increment();
+                    throw new RejectedExecutionException("No " + priority + " capacity within "
+                            + queueTimeoutMillis + " ms");
+                }
+            }
+            // Granted while giving up: keep the slot rather than leak it; a cancelled job gives it
+            // back at its next agent step
+            if (e instanceof InterruptedException && !cancelled) {
+                Thread.currentThread().interrupt();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return new Permit(priorityClass);
+    }
+
+    public int running() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    public int queued(Priority priority) {
+        return classes.get(priority).queued.get();
+    }
+
+    private void release(PriorityClass priorityClass) {
+        running--;
+        priorityClass.running.decrementAndGet();
+        dispatch();
+    }
+
+    // Called with the lock held: hand out free slots until none remain or nobody can take one
+    private void dispatch() {
+        while (running < maxConcurrent) {
+            Waiter next = null;
+            for (PriorityClass priorityClass : classes.values()) {
+                if (priorityClass.canRun()) {
+                    next = priorityClass.byTag.first();
+                    break;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            Waiter starving = starving();
+            if (starving != null && starving != next) {
+                classes.get(starving.priority).promoted.increment();
+                next = starving;
+            }
+            PriorityClass priorityClass = classes.get(next.priority);
+            priorityClass.remove(next);
+            priorityClass.clock = next.tag;
+            priorityClass.running.incrementAndGet();
+            running++;
+            priorityClass.wait.record(System.nanoTime() - next.enqueuedNanos, TimeUnit.NANOSECONDS);
+            next.granted.complete(null);
+        }
+    }
+
+    private Waiter starving() {
+        long now = System.nanoTime();
+        Waiter oldest = null;
+        for (PriorityClass priorityClass : classes.values()) {
+            if (!priorityClass.canRun()) {
+                continue;
+            }
+            Waiter head = priorityClass.arrivals.getFirst();
+            if (now - head.enqueuedNanos >= starvationNanos
+                    && (oldest == null || head.enqueuedNanos < oldest.enqueuedNanos)) {
+                oldest = head;
+            }
+        }
+        return oldest;
+    }
+
+    private static Map<String, Double> parseWeights(String weights) {
+        Map<String, Double> parsed = new HashMap<>();
+        if (weights == null || weights.isBlank()) {
+            return parsed;
+        }
+        for (String entry : weights.split(",")) {
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Tenant weight must be tenant=weight: " + entry);
+            }
+            double weight = Double.parseDouble(parts[1].trim());
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Tenant weight must be positive: " + entry);
+            }
+            parsed.put(parts[0].trim(), weight);
+        }
+        return parsed;
+    }
+
+    private static final class Waiter {
+        final Priority priority;
+        final String tenant;
+        final long sequence;
+        final double tag;
+        final long enqueuedNanos = System.nanoTime();
+        final CompletableFuture<Void> granted = new CompletableFuture<>();
+
+        Waiter(Priority priority, String tenant, long sequence, double tag) {
+            this.priority = priority;
+            this.tenant = tenant;
+            this.sequence = sequence;
+            this.tag = tag;
+        }
+    }
+
+    private static final class TenantState {
+        double lastTag;
+        int waiting;
+    }
+
+    private final class PriorityClass {
+        final Priority priority;
+        final int limit;
+        // Arrival order for the starvation check, tag order for fair queuing
+        final LinkedHashSet<Waiter> arrivals = new LinkedHashSet<>();
+        final TreeSet<Waiter> byTag = new TreeSet<>(Comparator.<Waiter>comparingDouble(w -> w.tag)
+                .thenComparingLong(w -> w.sequence));
+        final Map<String, TenantState> tenants = new HashMap<>();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        double clock;
+
+        final Timer wait;
+        final Counter rejectedFull;
+        final Counter rejectedTimeout;
+        final Counter promoted;
+
+        PriorityClass(Priority priority, int limit, MeterRegistry meterRegistry) {
+            this.priority = priority;
+            this.limit = limit;
+            this.wait = Timer.builder("legal.scheduler.wait")
+                    .description("Time an analysis waited for an agent slot")
+                    .tag("class", priority.tag())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+            this.rejectedFull = Counter.builder("legal.scheduler.rejected")
+                    .tag("class", priority.tag()).tag("reason", "queue-full").register(meterRegistry);
+            this.rejectedTimeout = Counter.builder("legal.scheduler.rejected")
+                    .tag("class", priority.tag()).tag("reason", "timeout").register(meterRegistry);
+            this.promoted = Counter.builder("legal.scheduler.promoted")
+                    .description("Waiters served early by starvation protection")
+                    .tag("class", priority.tag()).register(meterRegistry);
+            Gauge.builder("legal.scheduler.queued", queued, AtomicInteger::get)
+                    .tag("class", priority.tag()).register(meterRegistry);
+            Gauge.builder("legal.scheduler.running", running, AtomicInteger::get)
+                    .tag("class", priority.tag()).register(meterRegistry);
+        }
+
+        boolean canRun() {
+            return !arrivals.isEmpty() && running.get() < limit;
+        }
+
+        Waiter enqueue(String tenant, long sequence) {
+            TenantState state = tenants.computeIfAbsent(tenant, key -> new TenantState());
+            double tag = Math.max(clock, state.lastTag) + 1.0 / tenantWeights.getOrDefault(tenant, 1.0);
+            state.lastTag = tag;
+            state.waiting++;
+            Waiter waiter = new Waiter(priority, tenant, sequence, tag);
+            arrivals.add(waiter);
+            byTag.add(waiter);
+            queued.incrementAndGet();
+            return waiter;
+        }
+
+        void remove(Waiter waiter) {
+            arrivals.remove(waiter);
+            byTag.remove(waiter);
+            queued.decrementAndGet();
+            TenantState state = tenants.get(waiter.tenant);
+            // An idle tenant whose tag the clock has passed would get the same tag from scratch
+            if (--state.waiting == 0 && state.lastTag <= Math.max(clock, waiter.tag)) {
+                tenants.remove(waiter.tenant);
+            }
+        }
+    }
+}
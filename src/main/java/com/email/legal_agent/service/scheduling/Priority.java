@@ -0,0 +1,31 @@
+package com.email.legal_agent.service.scheduling;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Scheduling classes for agent work, most urgent first. {@code LegalQueryRequest.priority}
+ * selects one; batch documents always run as {@link #LOW}.
+ */
+public enum Priority {
+    URGENT,
+    HIGH,
+    MEDIUM,
+    LOW;
+
+    public static Priority parse(String value) {
+        if (value == null || value.isBlank()) {
+            return MEDIUM;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown priority '" + value + "'; expected one of "
+                    + Arrays.toString(values()));
+        }
+    }
+
+    public String tag() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
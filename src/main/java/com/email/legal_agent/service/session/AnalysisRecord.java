@@ -0,0 +1,61 @@
+package com.email.legal_agent.service.session;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * A persisted {@link com.email.legal_agent.dto.LegalAnalysisResult}, stored as its JSON form
+ */
+@Entity
+@Table(name = "analysis_results", indexes = @Index(name = "idx_results_session", columnList = "sessionId, createdAt"))
+public class AnalysisRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "result_ids")
+    @SequenceGenerator(name = "result_ids", sequenceName = "analysis_result_ids", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 128)
+    private String sessionId;
+
+    @Column(length = 32)
+    private String status;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    protected AnalysisRecord() {
+    }
+
+    public AnalysisRecord(String sessionId, String status, String payload, Instant createdAt) {
+        this.sessionId = sessionId;
+        this.status = status;
+        this.payload = payload;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
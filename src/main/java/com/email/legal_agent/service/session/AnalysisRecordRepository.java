@@ -0,0 +1,16 @@
+package com.email.legal_agent.service.session;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface AnalysisRecordRepository extends JpaRepository<AnalysisRecord, Long> {
+
+    List<AnalysisRecord> findBySessionIdOrderByCreatedAtAscIdAsc(String sessionId);
+
+    @Modifying
+    @Query("delete from AnalysisRecord r where r.sessionId = ?1")
+    int deleteBySession(String sessionId);
+}
@@ -0,0 +1,61 @@
+package com.email.legal_agent.service.session;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * One persisted conversation entry ("USER: ..." or "ASSISTANT: ..."), ordered within its session by sequence
+ */
+@Entity
+@Table(name = "conversation_turns", indexes = @Index(name = "idx_turns_session", columnList = "sessionId, sequence"))
+public class ConversationTurn {
+
+    // Sequence ids, allocated in blocks, so inserts can be sent as JDBC batches
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "turn_ids")
+    @SequenceGenerator(name = "turn_ids", sequenceName = "conversation_turn_ids", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 128)
+    private String sessionId;
+
+    private int sequence;
+
+    @Lob
+    @Column(nullable = false)
+    private String text;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    protected ConversationTurn() {
+    }
+
+    public ConversationTurn(String sessionId, int sequence, String text, Instant createdAt) {
+        this.sessionId = sessionId;
+        this.sequence = sequence;
+        this.text = text;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
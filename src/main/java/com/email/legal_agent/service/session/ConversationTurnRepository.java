@@ -0,0 +1,16 @@
+package com.email.legal_agent.service.session;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface ConversationTurnRepository extends JpaRepository<ConversationTurn, Long> {
+
+    List<ConversationTurn> findBySessionIdOrderBySequenceAscIdAsc(String sessionId);
+
+    @Modifying
+    @Query("delete from ConversationTurn t where t.sessionId = ?1")
+    int deleteBySession(String sessionId);
+}
@@ -0,0 +1,357 @@
+package com.email.legal_agent.service.session;
+
+import com.email.legal_agent.dto.LegalAnalysisResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Conversation turns and analysis results per session, durable in the database.
+ *
+ * Reads are served from a bounded, least-recently-used tier of hot sessions and fall back to
+ * the database on a miss, so a session written before a restart, or by another node sharing the
+ * database, is picked up on first use. Writes update the hot tier and are queued for a single
+ * writer thread that persists them in JDBC batches, one transaction per drained batch. The queue
+ * is bounded: when it is full, callers wait up to the offer timeout for room and the write is
+ * dropped (and counted) after that, so a stalled database slows requests down rather than
+ * exhausting memory. Sessions with writes still queued are never evicted from the hot tier.
+ */
+@Service
+public class SessionStore {
+    private static final Logger logger = LoggerFactory.getLogger(SessionStore.class);
+
+    private sealed interface Write permits AppendTurn, SaveResult, DeleteSession, Barrier {
+    }
+
+    private record AppendTurn(SessionState state, ConversationTurn turn) implements Write {
+    }
+
+    private record SaveResult(SessionState state, AnalysisRecord record) implements Write {
+    }
+
+    private record DeleteSession(SessionState state, String sessionId) implements Write {
+    }
+
+    private record Barrier(CompletableFuture<Void> done) implements Write {
+    }
+
+    /**
+     * One page of a session listing; {@code next} is the offset to resume from, or -1 at the end
+     */
+    public record Page<T>(List<T> items, int next) {
+    }
+
+    private static final class SessionState {
+        final List<String> turns = new ArrayList<>();
+        final List<LegalAnalysisResult> results = new ArrayList<>();
+        final AtomicInteger pendingWrites = new AtomicInteger();
+    }
+
+    private final ConversationTurnRepository turnRepository;
+    private final AnalysisRecordRepository resultRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, SessionState> hot;
+    private final BlockingQueue<Write> queue;
+    private final int batchSize;
+    private final long offerTimeoutMillis;
+    private final ExecutorService writer;
+    private volatile boolean running = true;
+
+    private final Counter hotReads;
+    private final Counter databaseReads;
+    private final Counter droppedWrites;
+    private final Counter failedBatches;
+    private final Timer batchTimer;
+
+    public SessionStore(ConversationTurnRepository turnRepository,
+                        AnalysisRecordRepository resultRepository,
+                        PlatformTransactionManager transactionManager,
+                        ObjectMapper objectMapper,
+                        MeterRegistry meterRegistry,
+                        @Value("${legal-assistant.sessions.hot-max-sessions:1000}") int hotMaxSessions,
+                        @Value("${legal-assistant.sessions.write-behind.queue-capacity:10000}") int queueCapacity,
+                        @Value("${legal-assistant.sessions.write-behind.batch-size:100}") int batchSize,
+                        @Value("${legal-assistant.sessions.write-behind.offer-timeout-ms:2000}") long offerTimeoutMillis) {
+        this.turnRepository = turnRepository;
+        this.resultRepository = resultRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.batchSize = Math.max(1, batchSize);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.hot = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SessionState> eldest) {
+                return size() > hotMaxSessions && eldest.getValue().pendingWrites.get() == 0;
+            }
+        };
+
+        this.hotReads = Counter.builder("legal.sessions.reads").tag("tier", "hot").register(meterRegistry);
+        this.databaseReads = Counter.builder("legal.sessions.reads").tag("tier", "database").register(meterRegistry);
+        this.droppedWrites = meterRegistry.counter("legal.sessions.write-behind.dropped");
+        this.failedBatches = meterRegistry.counter("legal.sessions.write-behind.failed-batches");
+        this.batchTimer = meterRegistry.timer("legal.sessions.write-behind.batch");
+        meterRegistry.gaugeCollectionSize("legal.sessions.write-behind.queued", Tags.empty(), queue);
+
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.execute(this::drainLoop);
+    }
+
+    public List<String> history(String sessionId) {
+        SessionState state = state(sessionId);
+        synchronized (state) {
+            return new ArrayList<>(state.turns);
+        }
+    }
+
+    public List<LegalAnalysisResult> results(String sessionId) {
+        SessionState state = state(sessionId);
+        synchronized (state) {
+            return new ArrayList<>(state.results);
+        }
+    }
+
+    /**
+     * At most {@code limit} turns starting at offset {@code from}; only the page is copied
+     */
+    public Page<String> history(String sessionId, int from, int limit) {
+        SessionState state = state(sessionId);
+        synchronized (state) {
+            return page(state.turns, from, limit);
+        }
+    }
+
+    public Page<LegalAnalysisResult> results(String sessionId, int from, int limit) {
+        SessionState state = state(sessionId);
+        synchronized (state) {
+            return page(state.results, from, limit);
+        }
+    }
+
+    private static <T> Page<T> page(List<T> all, int from, int limit) {
+        if (from < 0 || limit <= 0) {
+            throw new IllegalArgumentException("Page offset must be >= 0 and limit > 0");
+        }
+        int end = (int) Math.min(all.size(), (long) from + limit);
+        if (from >= end) {
+            return new Page<>(List.of(), -1);
+        }
+        return new Page<>(new ArrayList<>(all.subList(from, end)), end < all.size() ? end : -1);
+    }
+
+    public void appendTurn(String sessionId, String text) {
+        SessionState state = state(sessionId);
+        ConversationTurn turn;
+        synchronized (state) {
+            turn = new ConversationTurn(sessionId, state.turns.size(), text, Instant.now());
+            state.turns.add(text);
+        }
+        enqueue(state, new AppendTurn(state, turn));
+    }
+
+    public void saveResult(String sessionId, LegalAnalysisResult result) {
+        String payload;
+        try {
+            // Serialized now, so later changes to the result object don't leak into the stored copy
+            payload = objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            logger.warn("Analysis result for session {} not persisted: {}", sessionId, e.getMessage());
+            return;
+        }
+        SessionState state = state(sessionId);
+        synchronized (state) {
+            state.results.add(result);
+        }
+        enqueue(state, new SaveResult(state, new AnalysisRecord(sessionId, result.getStatus(), payload, Instant.now())));
+    }
+
+    /**
+     * Forget a session in both tiers. An empty state stays hot until the delete is committed,
+     * so turns appended in the meantime aren't mixed with the deleted rows on a database read.
+     */
+    public void clear(String sessionId) {
+        SessionState state = new SessionState();
+        synchronized (hot) {
+            hot.put(sessionId, state);
+        }
+        enqueue(state, new DeleteSession(state, sessionId));
+    }
+
+    /**
+     * Completes once every write queued before the call has been committed
+     */
+    public CompletableFuture<Void> flush() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (!offer(new Barrier(done))) {
+            done.completeExceptionally(new TimeoutException("Write-behind queue full"));
+        }
+        return done;
+    }
+
+    public int queuedWrites() {
+        return queue.size();
+    }
+
+    private SessionState state(String sessionId) {
+        synchronized (hot) {
+            SessionState state = hot.get(sessionId);
+            if (state != null) {
+                hotReads.increment();
+                return state;
+            }
+        }
+        // Loaded outside the lock so a slow query only delays this session
+        SessionState loaded = load(sessionId);
+        databaseReads.increment();
+        synchronized (hot) {
+            SessionState raced = hot.putIfAbsent(sessionId, loaded);
+            return raced != null ? raced : loaded;
+        }
+    }
+
+    private SessionState load(String sessionId) {
+        SessionState state = new SessionState();
+        for (ConversationTurn turn : turnRepository.findBySessionIdOrderBySequenceAscIdAsc(sessionId)) {
+            state.turns.add(turn.getText());
+        }
+        for (AnalysisRecord record : resultRepository.findBySessionIdOrderByCreatedAtAscIdAsc(sessionId)) {
+            try {
+                state.results.add(objectMapper.readValue(record.getPayload(), LegalAnalysisResult.class));
+            } catch (JsonProcessingException e) {
+                logger.warn("Skipping unreadable analysis result {} of session {}: {}",
+                        record.getId(), sessionId, e.getMessage());
+            }
+        }
+        return state;
+    }
+
+    private void enqueue(SessionState state, Write write) {
+        state.pendingWrites.incrementAndGet();
+        if (!offer(write)) {
+            state.pendingWrites.decrementAndGet();
+            droppedWrites.increment();
+            logger.error("Write-behind queue full for {} ms, {} not persisted", offerTimeoutMillis,
+                    write.getClass().getSimpleName());
+        }
+    }
+
+    private boolean offer(Write write) {
+        if (queue.offer(write)) {
+            return true;
+        }
+        try {
+            return queue.offer(write, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Polls rather than blocking in take() so shutdown never has to interrupt a thread doing database I/O
+    private void drainLoop() {
+        List<Write> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Write first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                persist(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void persist(List<Write> batch) {
+        long start = System.nanoTime();
+        RuntimeException failure = null;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<ConversationTurn> turns = new ArrayList<>();
+                List<AnalysisRecord> records = new ArrayList<>();
+                for (Write write : batch) {
+                    switch (write) {
+                        case AppendTurn append -> turns.add(append.turn());
+                        case SaveResult save -> records.add(save.record());
+                        case DeleteSession delete -> {
+                            // Rows queued ahead of the delete go first so it removes them too
+                            turnRepository.saveAll(turns);
+                            resultRepository.saveAll(records);
+                            turns.clear();
+                            records.clear();
+                            turnRepository.deleteBySession(delete.sessionId());
+                            resultRepository.deleteBySession(delete.sessionId());
+                        }
+                        case Barrier barrier -> {
+                        }
+                    }
+                }
+                turnRepository.saveAll(turns);
+                resultRepository.saveAll(records);
+            });
+        } catch (RuntimeException e) {
+            failure = e;
+            failedBatches.increment();
+            logger.error("Write-behind batch of {} writes failed: {}", batch.size(), e.getMessage());
+        }
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        for (Write write : batch) {
+            switch (write) {
+                case AppendTurn append -> append.state().pendingWrites.decrementAndGet();
+                case SaveResult save -> save.state().pendingWrites.decrementAndGet();
+                case DeleteSession delete -> delete.state().pendingWrites.decrementAndGet();
+                case Barrier barrier -> {
+                    if (failure == null) {
+                        barrier.done().complete(null);
+                    } else {
+                        barrier.done().completeExceptionally(failure);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop accepting work and persist whatever is still queued
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Write-behind queue not drained at shutdown; {} writes lost", queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
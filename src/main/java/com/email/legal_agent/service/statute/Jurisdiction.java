@@ -0,0 +1,9 @@
+package com.email.legal_agent.service.statute;
+
+import java.util.List;
+
+/**
+ * A jurisdiction known to the registry and the official sources for its legislation
+ */
+public record Jurisdiction(String id, String name, List<String> sources) {
+}
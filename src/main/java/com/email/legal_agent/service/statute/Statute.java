@@ -0,0 +1,23 @@
+package com.email.legal_agent.service.statute;
+
+import java.time.LocalDate;
+
+/**
+ * One registry row; {@code repealed} is null while the statute is in force
+ */
+public record Statute(String identifier, String title, String jurisdiction,
+                     LocalDate effective, LocalDate repealed) {
+
+    public enum Validity {
+        IN_FORCE,
+        NOT_YET_IN_FORCE,
+        REPEALED
+    }
+
+    public Validity validityOn(LocalDate date) {
+        if (date.isBefore(effective)) {
+            return Validity.NOT_YET_IN_FORCE;
+        }
+        return repealed != null && !date.isBefore(repealed) ? Validity.REPEALED : Validity.IN_FORCE;
+    }
+}
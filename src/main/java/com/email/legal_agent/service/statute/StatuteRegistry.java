@@ -0,0 +1,156 @@
+package com.email.legal_agent.service.statute;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local statute registry: validity and jurisdiction lookups without any network access.
+ *
+ * The versioned registry source is compiled once into a {@link StatuteTable} file named after
+ * its content hash and memory-mapped; unchanged sources reuse the compiled file across restarts.
+ * When the source is a file on disk it is polled for changes and the table swapped in place,
+ * so data updates need no restart. A source that fails to compile leaves the current table live;
+ * once a new table is live the file of the one it replaced is deleted.
+ */
+@Service
+public final class StatuteRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(StatuteRegistry.class);
+
+    private final Resource source;
+    private final Path tableDirectory;
+    private final String fallbackJurisdiction;
+    private final ScheduledExecutorService refresher;
+    private volatile StatuteTable table;
+    private Path tableFile;
+    private volatile long sourceModified;
+
+    public StatuteRegistry(ResourceLoader resourceLoader,
+                           @Value("${legal-assistant.statutes.source:classpath:statutes/registry.tsv}") String source,
+                           @Value("${legal-assistant.statutes.table-dir:${java.io.tmpdir}/legal-assistant/statutes}") String tableDirectory,
+                           @Value("${legal-assistant.statutes.fallback-jurisdiction:federal}") String fallbackJurisdiction,
+                           @Value("${legal-assistant.statutes.refresh-interval-seconds:60}") long refreshIntervalSeconds) {
+        this.source = resourceLoader.getResource(source);
+        this.tableDirectory = Path.of(tableDirectory);
+        this.fallbackJurisdiction = fallbackJurisdiction;
+
+        try {
+            refresh();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Statute registry unavailable: {}", e.getMessage());
+        }
+
+        if (refreshIntervalSeconds > 0 && this.source.isFile()) {
+            this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "statute-registry-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refreshIfModified, refreshIntervalSeconds, refreshIntervalSeconds,
+                    TimeUnit.SECONDS);
+        } else {
+            this.refresher = null;
+        }
+    }
+
+    /**
+     * Recompile and remap the source; returns the data version now live
+     */
+    public synchronized String refresh() throws IOException {
+        long modified = source.isFile() ? source.lastModified() : 0;
+        byte[] content;
+        try (InputStream input = source.getInputStream()) {
+            content = input.readAllBytes();
+        }
+
+        Path compiled = tableDirectory.resolve("statutes-" + sha256(content).substring(0, 16) + ".bin");
+        if (!Files.exists(compiled)) {
+            StatuteTable.compile(new ByteArrayInputStream(content), compiled);
+        }
+        StatuteTable loaded = StatuteTable.open(compiled);
+        String previous = table == null ? null : table.version();
+        Path previousFile = tableFile;
+        table = loaded;
+        tableFile = compiled;
+        sourceModified = modified;
+        logger.info("Statute registry {} loaded: {} entries{}", loaded.version(), loaded.size(),
+                previous == null ? "" : " (was " + previous + ")");
+        if (previousFile != null && !previousFile.equals(compiled)) {
+            deleteReplaced(previousFile);
+        }
+        return loaded.version();
+    }
+
+    // Unlinking is safe while readers still hold the old mapping: its pages stay valid until it is collected
+    private static void deleteReplaced(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete replaced statute table {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void refreshIfModified() {
+        try {
+            if (source.lastModified() != sourceModified) {
+                refresh();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Statute registry refresh failed, keeping {}: {}", version().orElse("no table"), e.getMessage());
+        }
+    }
+
+    public Optional<Statute> find(String identifier) {
+        StatuteTable current = table;
+        return current == null || identifier == null ? Optional.empty() : current.find(identifier);
+    }
+
+    public Optional<Jurisdiction> jurisdiction(String nameOrAlias) {
+        StatuteTable current = table;
+        return current == null ? Optional.empty() : current.jurisdiction(nameOrAlias);
+    }
+
+    /**
+     * The named jurisdiction, or the configured fallback for names the registry doesn't know
+     */
+    public Optional<Jurisdiction> jurisdictionOrFallback(String nameOrAlias) {
+        return jurisdiction(nameOrAlias).or(() -> jurisdiction(fallbackJurisdiction));
+    }
+
+    public Optional<String> version() {
+        StatuteTable current = table;
+        return current == null ? Optional.empty() : Optional.of(current.version());
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+}
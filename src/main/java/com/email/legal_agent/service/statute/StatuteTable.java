@@ -0,0 +1,326 @@
+package com.email.legal_agent.service.statute;
+
+import com.email.legal_agent.service.citation.Citation;
+import com.email.legal_agent.service.citation.CitationExtractor;
+import com.email.legal_agent.service.citation.CitationType;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Read-only, memory-mapped statute table compiled from the tab-separated registry source.
+ *
+ * Layout: a fixed header, then fixed-width statute records sorted by the UTF-8 bytes of their
+ * normalized key, jurisdiction records, jurisdiction aliases sorted the same way, and finally
+ * a pool of UTF-8 strings the records point into as (offset, length). Lookups binary-search
+ * the records in place, comparing key bytes straight from the mapping without decoding.
+ *
+ * Source lines, tab-separated ({@code #} starts a comment):
+ * <pre>
+ * version       &lt;data version&gt;
+ * jurisdiction  &lt;id&gt;  &lt;name&gt;  &lt;aliases, comma-separated&gt;  &lt;source URLs, space-separated&gt;
+ * statute       &lt;identifier&gt;  &lt;jurisdiction id&gt;  &lt;effective yyyy-mm-dd&gt;  &lt;repealed or empty&gt;  &lt;title&gt;  [&lt;aliases&gt;]
+ * </pre>
+ */
+final class StatuteTable {
+
+    private static final int MAGIC = 0x53544154;
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 44;
+    private static final int STATUTE_BYTES = 36;
+    private static final int JURISDICTION_BYTES = 24;
+    private static final int ALIAS_BYTES = 12;
+    private static final int NOT_REPEALED = Integer.MAX_VALUE;
+
+    private final ByteBuffer buffer;
+    private final String version;
+    private final int statuteCount;
+    private final int jurisdictionCount;
+    private final int aliasCount;
+    private final int statutesOffset;
+    private final int jurisdictionsOffset;
+    private final int aliasesOffset;
+    private final int stringsOffset;
+
+    private StatuteTable(ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+            throw new IllegalArgumentException("Not a statute table (format " + FORMAT + ")");
+        }
+        this.buffer = buffer;
+        this.statuteCount = buffer.getInt(16);
+        this.jurisdictionCount = buffer.getInt(20);
+        this.aliasCount = buffer.getInt(24);
+        this.statutesOffset = buffer.getInt(28);
+        this.jurisdictionsOffset = buffer.getInt(32);
+        this.aliasesOffset = buffer.getInt(36);
+        this.stringsOffset = buffer.getInt(40);
+        this.version = string(8);
+    }
+
+    static StatuteTable open(Path file) throws IOException {
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new StatuteTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    String version() {
+        return version;
+    }
+
+    int size() {
+        return statuteCount;
+    }
+
+    Optional<Statute> find(String identifier) {
+        // Identifiers already in key form skip the citation scan
+        int index = search(statutesOffset, STATUTE_BYTES, statuteCount, collapse(identifier).getBytes(StandardCharsets.UTF_8));
+        if (index < 0) {
+            index = search(statutesOffset, STATUTE_BYTES, statuteCount, normalize(identifier).getBytes(StandardCharsets.UTF_8));
+        }
+        if (index < 0) {
+            return Optional.empty();
+        }
+        int record = statutesOffset + index * STATUTE_BYTES;
+        int repealed = buffer.getInt(record + 28);
+        return Optional.of(new Statute(string(record + 8), string(record + 16),
+                jurisdictionName(buffer.getInt(record + 32)),
+                LocalDate.ofEpochDay(buffer.getInt(record + 24)),
+                repealed == NOT_REPEALED ? null : LocalDate.ofEpochDay(repealed)));
+    }
+
+    Optional<Jurisdiction> jurisdiction(String nameOrAlias) {
+        if (nameOrAlias == null) {
+            return Optional.empty();
+        }
+        byte[] key = normalize(nameOrAlias).getBytes(StandardCharsets.UTF_8);
+        int index = search(aliasesOffset, ALIAS_BYTES, aliasCount, key);
+        if (index < 0) {
+            return Optional.empty();
+        }
+        int record = jurisdictionsOffset + buffer.getInt(aliasesOffset + index * ALIAS_BYTES + 8) * JURISDICTION_BYTES;
+        String sources = string(record + 16);
+        return Optional.of(new Jurisdiction(string(record), string(record + 8),
+                sources.isEmpty() ? List.of() : List.of(sources.split(" "))));
+    }
+
+    private String jurisdictionName(int index) {
+        return string(jurisdictionsOffset + index * JURISDICTION_BYTES + 8);
+    }
+
+    // Binary search over records whose first field is the key's string reference
+    private int search(int sectionOffset, int recordBytes, int count, byte[] key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = compareKey(sectionOffset + mid * recordBytes, key);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareKey(int reference, byte[] key) {
+        int offset = stringsOffset + buffer.getInt(reference);
+        int length = buffer.getInt(reference + 4);
+        int shared = Math.min(length, key.length);
+        for (int i = 0; i < shared; i++) {
+            int difference = (buffer.get(offset + i) & 0xff) - (key[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+    private String string(int reference) {
+        byte[] bytes = new byte[buffer.getInt(reference + 4)];
+        buffer.get(stringsOffset + buffer.getInt(reference), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lookup key for a statute identifier or jurisdiction: citations in their index form
+     * ("42 USC 1983(a)" and "42 U.S.C. § 1983" agree), anything else whitespace-collapsed; lower-cased
+     */
+    static String normalize(String identifier) {
+        List<Citation> citations = CitationExtractor.extract(identifier);
+        String base = citations.size() == 1 && citations.get(0).type() != CitationType.CASE
+                ? citations.get(0).key() : identifier;
+        return collapse(base);
+    }
+
+    private static String collapse(String value) {
+        return value.replaceAll("\\s+", " ").strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Compile a registry source into a table file, written atomically; returns the data version
+     */
+    static String compile(InputStream source, Path target) throws IOException {
+        String version = null;
+        Map<String, Integer> jurisdictionIndexes = new HashMap<>();
+        List<String[]> jurisdictions = new ArrayList<>();
+        Map<String, Integer> aliases = new HashMap<>();
+        List<String[]> statutes = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                switch (fields[0]) {
+                    case "version" -> version = field(fields, 1, lineNumber);
+                    case "jurisdiction" -> {
+                        String id = field(fields, 1, lineNumber);
+                        int index = jurisdictions.size();
+                        jurisdictions.add(new String[]{id, field(fields, 2, lineNumber),
+                                fields.length > 4 ? fields[4].trim().replaceAll("\\s+", " ") : ""});
+                        jurisdictionIndexes.put(id, index);
+                        List<String> names = new ArrayList<>(List.of(id, fields[2]));
+                        if (fields.length > 3 && !fields[3].isBlank()) {
+                            names.addAll(List.of(fields[3].split(",")));
+                        }
+                        for (String name : names) {
+                            Integer previous = aliases.put(normalize(name), index);
+                            if (previous != null && previous != index) {
+                                throw new IllegalArgumentException("Line " + lineNumber + ": alias '" + name.strip()
+                                        + "' already names another jurisdiction");
+                            }
+                        }
+                    }
+                    case "statute" -> statutes.add(fields);
+                    default -> throw new IllegalArgumentException("Line " + lineNumber + ": unknown record type " + fields[0]);
+                }
+            }
+        }
+        if (version == null) {
+            throw new IllegalArgumentException("Statute registry has no version line");
+        }
+
+        // Each statute is filed under its identifier and every alias
+        StringPool strings = new StringPool();
+        TreeMap<byte[], int[]> records = new TreeMap<>(Arrays::compareUnsigned);
+        for (String[] fields : statutes) {
+            String identifier = field(fields, 1, -1);
+            Integer jurisdiction = jurisdictionIndexes.get(field(fields, 2, -1));
+            if (jurisdiction == null) {
+                throw new IllegalArgumentException("Statute " + identifier + ": unknown jurisdiction " + fields[2]);
+            }
+            int effective = (int) LocalDate.parse(field(fields, 3, -1)).toEpochDay();
+            int repealed = fields.length > 4 && !fields[4].isBlank()
+                    ? (int) LocalDate.parse(fields[4].trim()).toEpochDay() : NOT_REPEALED;
+            int[] identifierRef = strings.add(identifier);
+            int[] titleRef = strings.add(fields.length > 5 ? fields[5].trim() : "");
+            List<String> keys = new ArrayList<>(List.of(identifier));
+            if (fields.length > 6 && !fields[6].isBlank()) {
+                keys.addAll(List.of(fields[6].split(",")));
+            }
+            for (String key : keys) {
+                String normalized = normalize(key);
+                int[] keyRef = strings.add(normalized);
+                int[] record = {keyRef[0], keyRef[1], identifierRef[0], identifierRef[1], titleRef[0], titleRef[1],
+                        effective, repealed, jurisdiction};
+                if (records.put(normalized.getBytes(StandardCharsets.UTF_8), record) != null) {
+                    throw new IllegalArgumentException("Duplicate statute key: " + normalized);
+                }
+            }
+        }
+        TreeMap<byte[], int[]> aliasRecords = new TreeMap<>(Arrays::compareUnsigned);
+        aliases.forEach((alias, index) -> {
+            int[] aliasRef = strings.add(alias);
+            aliasRecords.put(alias.getBytes(StandardCharsets.UTF_8), new int[]{aliasRef[0], aliasRef[1], index});
+        });
+        List<int[]> jurisdictionRecords = new ArrayList<>();
+        for (String[] jurisdiction : jurisdictions) {
+            int[] id = strings.add(jurisdiction[0]);
+            int[] name = strings.add(jurisdiction[1]);
+            int[] sources = strings.add(jurisdiction[2]);
+            jurisdictionRecords.add(new int[]{id[0], id[1], name[0], name[1], sources[0], sources[1]});
+        }
+        int[] versionRef = strings.add(version);
+
+        int statutesOffset = HEADER_BYTES;
+        int jurisdictionsOffset = statutesOffset + records.size() * STATUTE_BYTES;
+        int aliasesOffset = jurisdictionsOffset + jurisdictionRecords.size() * JURISDICTION_BYTES;
+        int stringsOffset = aliasesOffset + aliasRecords.size() * ALIAS_BYTES;
+
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path temporary = Files.createTempFile(target.toAbsolutePath().getParent(), "statutes-", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeInt(versionRef[0]);
+            out.writeInt(versionRef[1]);
+            out.writeInt(records.size());
+            out.writeInt(jurisdictionRecords.size());
+            out.writeInt(aliasRecords.size());
+            out.writeInt(statutesOffset);
+            out.writeInt(jurisdictionsOffset);
+            out.writeInt(aliasesOffset);
+            out.writeInt(stringsOffset);
+            for (int[] record : records.values()) {
+                for (int value : record) {
+                    out.writeInt(value);
+                }
+            }
+            for (int[] record : jurisdictionRecords) {
+                for (int value : record) {
+                    out.writeInt(value);
+                }
+            }
+            for (int[] record : aliasRecords.values()) {
+                for (int value : record) {
+                    out.writeInt(value);
+                }
+            }
+            strings.bytes.writeTo(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return version;
+    }
+
+    private static String field(String[] fields, int index, int lineNumber) {
+        if (fields.length <= index || fields[index].isBlank()) {
+            throw new IllegalArgumentException((lineNumber > 0 ? "Line " + lineNumber : String.join(" ", fields))
+                    + ": missing field " + index);
+        }
+        return fields[index].trim();
+    }
+
+    // UTF-8 string pool with identical strings stored once
+    private static final class StringPool {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final Map<String, int[]> references = new HashMap<>();
+
+        int[] add(String value) {
+            return references.computeIfAbsent(value, v -> {
+                byte[] encoded = v.getBytes(StandardCharsets.UTF_8);
+                int[] reference = {bytes.size(), encoded.length};
+                bytes.writeBytes(encoded);
+                return reference;
+            });
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.email.legal_agent.service.synthesis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The specialist outputs of one request; null for agents that did not run
+ */
+public record AgentReports(String research, String contract, String compliance, String strategy) {
+
+    /**
+     * Reports that are present, keyed by area in the order they are presented
+     */
+    public Map<String, String> byArea() {
+        Map<String, String> areas = new LinkedHashMap<>();
+        if (contract != null) {
+            areas.put("Contract", contract);
+        }
+        if (compliance != null) {
+            areas.put("Compliance", compliance);
+        }
+        if (research != null) {
+            areas.put("Research", research);
+        }
+        if (strategy != null) {
+            areas.put("Strategy", strategy);
+        }
+        return areas;
+    }
+
+    public int count() {
+        return byArea().size();
+    }
+
+    public int totalLength() {
+        return byArea().values().stream().mapToInt(String::length).sum();
+    }
+}
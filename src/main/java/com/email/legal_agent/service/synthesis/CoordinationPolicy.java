@@ -0,0 +1,78 @@
+package com.email.legal_agent.service.synthesis;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decides per request whether the LLM coordinator has to reconcile the specialist reports or
+ * whether {@link DeterministicSynthesis} can assemble the summary. The coordinator is kept for
+ * workflows with more agents than {@code max-agents}, reports that disagree on risk (one area
+ * rated high, another low), reports that escalate to a human, and outputs too long for a
+ * template summary to do justice; everything else skips that serial model round trip.
+ *
+ * Outcomes are counted under {@code legal.coordination} by path and reason.
+ */
+@Component
+public class CoordinationPolicy {
+
+    public enum Mode {
+        AUTO,
+        ALWAYS,
+        NEVER
+    }
+
+    public record Decision(boolean useCoordinator, String reason) {
+    }
+
+    private final Mode mode;
+    private final int maxAgents;
+    private final int maxOutputChars;
+    private final MeterRegistry meterRegistry;
+
+    public CoordinationPolicy(MeterRegistry meterRegistry,
+                              @Value("${legal-assistant.coordination.mode:auto}") String mode,
+                              @Value("${legal-assistant.coordination.max-agents-without-coordinator:2}") int maxAgents,
+                              @Value("${legal-assistant.coordination.max-output-chars:12000}") int maxOutputChars) {
+        this.meterRegistry = meterRegistry;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.maxAgents = maxAgents;
+        this.maxOutputChars = maxOutputChars;
+    }
+
+    public Decision decide(AgentReports reports) {
+        Decision decision = evaluate(reports);
+        meterRegistry.counter("legal.coordination",
+                "path", decision.useCoordinator() ? "llm" : "deterministic",
+                "reason", decision.reason()).increment();
+        return decision;
+    }
+
+    private Decision evaluate(AgentReports reports) {
+        switch (mode) {
+            case ALWAYS:
+                return new Decision(true, "configured");
+            case NEVER:
+                return new Decision(false, "configured");
+            default:
+                break;
+        }
+        if (reports.count() > maxAgents) {
+            return new Decision(true, "agent-count");
+        }
+        if (reports.totalLength() > maxOutputChars) {
+            return new Decision(true, "output-length");
+        }
+        if (DeterministicSynthesis.escalates(reports)) {
+            return new Decision(true, "escalation");
+        }
+        Map<String, RiskLevel> heatmap = DeterministicSynthesis.heatmap(reports);
+        if (heatmap.containsValue(RiskLevel.HIGH) && heatmap.containsValue(RiskLevel.LOW)) {
+            return new Decision(true, "risk-conflict");
+        }
+        return new Decision(false, "simple");
+    }
+}
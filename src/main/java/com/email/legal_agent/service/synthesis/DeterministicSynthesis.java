@@ -0,0 +1,191 @@
+package com.email.legal_agent.service.synthesis;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Template synthesis of specialist reports into the executive summary, action items and risk
+ * heatmap the coordinator would otherwise write. Everything is read from the markers the agents'
+ * output formats already use (risk levels, ⚠️ flags, 💡 recommendations, numbered steps), so the
+ * same reports always give the same summary and no model call is made.
+ */
+public final class DeterministicSynthesis {
+
+    private static final int LEAD_MAX_CHARS = 600;
+    private static final int MAX_ACTION_ITEMS = 5;
+
+    // An explicit "Risk level:" rating outranks every keyword below
+    private static final Pattern RATED = Pattern.compile("risk level:\\W*(high|medium|low)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern HIGH = Pattern.compile(
+            "high[ -]risk|⚠️|\\bviolat|non-?compliant|unenforceable|\\bcritical\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern MEDIUM = Pattern.compile("medium[ -]risk|moderate[ -]risk", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LOW = Pattern.compile(
+            "low[ -]risk|\\bfully compliant\\b|\\bno (?:material |significant )?risks?\\b", Pattern.CASE_INSENSITIVE);
+    // A negation within the few words before a keyword, in the same clause: "no violations", "is not non-compliant"
+    private static final Pattern NEGATED = Pattern.compile(
+            "\\b(?:no|not|never|none|nor|neither|cannot|\\w+n['’]t|free of|absence of)\\b[^.;:!?,\\n]{0,40}$",
+            Pattern.CASE_INSENSITIVE);
+    private static final int NEGATION_WORDS = 4;
+    private static final Pattern ESCALATION = Pattern.compile(
+            "requires? (?:a |an )?(?:human )?attorney review|consult (?:a |an |outside )?(?:lawyer|attorney|counsel)"
+                    + "|conflicting (?:authority|precedent|requirements|obligations)",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern RECOMMENDATION = Pattern.compile(
+            "(?m)(?:💡\\s*)?(?:Recommendation|Action(?: item)?|Next step|Priority|Step \\d+)\\s*\\d*\\s*:\\s*(.+)$",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern NUMBERED = Pattern.compile("(?m)^\\s*\\d+[.)]\\s+(.+)$");
+
+    private DeterministicSynthesis() {
+    }
+
+    public record Synthesis(String executiveSummary, List<String> actionItems, Map<String, RiskLevel> heatmap,
+                            String riskAssessment) {
+    }
+
+    /**
+     * The risk a report rates: its most severe "Risk level:" marker if it has one, otherwise its
+     * most severe keyword that isn't negated, or UNRATED when it has neither
+     */
+    public static RiskLevel assess(String report) {
+        if (report == null) {
+            return RiskLevel.UNRATED;
+        }
+        Matcher rated = RATED.matcher(report);
+        RiskLevel explicit = RiskLevel.UNRATED;
+        while (rated.find()) {
+            RiskLevel level = RiskLevel.valueOf(rated.group(1).toUpperCase(Locale.ROOT));
+            if (level.compareTo(explicit) < 0) {
+                explicit = level;
+            }
+        }
+        if (explicit != RiskLevel.UNRATED) {
+            return explicit;
+        }
+        if (mentions(HIGH, report)) {
+            return RiskLevel.HIGH;
+        }
+        if (mentions(MEDIUM, report)) {
+            return RiskLevel.MEDIUM;
+        }
+        return mentions(LOW, report) ? RiskLevel.LOW : RiskLevel.UNRATED;
+    }
+
+    // True when the pattern occurs at least once without a negation just before it
+    private static boolean mentions(Pattern pattern, String report) {
+        Matcher matcher = pattern.matcher(report);
+        while (matcher.find()) {
+            if (!negated(report, matcher.start())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean negated(String report, int start) {
+        String before = report.substring(Math.max(0, start - 60), start);
+        String[] words = before.split("\\s+");
+        String window = String.join(" ", Arrays.copyOfRange(words, Math.max(0, words.length - NEGATION_WORDS), words.length));
+        return NEGATED.matcher(window).find();
+    }
+
+    public static Map<String, RiskLevel> heatmap(AgentReports reports) {
+        Map<String, RiskLevel> heatmap = new LinkedHashMap<>();
+        reports.byArea().forEach((area, report) -> heatmap.put(area, assess(report)));
+        return heatmap;
+    }
+
+    /**
+     * True when a report hands the question to a human or names conflicting authority
+     */
+    public static boolean escalates(AgentReports reports) {
+        return reports.byArea().values().stream().anyMatch(report -> mentions(ESCALATION, report));
+    }
+
+    public static Synthesis synthesize(AgentReports reports) {
+        Map<String, String> areas = reports.byArea();
+        Map<String, RiskLevel> heatmap = heatmap(reports);
+        List<String> actionItems = actionItems(reports);
+
+        // The strategist already builds on the other reports, so its opening states the position
+        String lead = lead(reports.strategy() != null ? reports.strategy()
+                : areas.isEmpty() ? "" : areas.values().iterator().next());
+
+        StringBuilder summary = new StringBuilder("**Executive summary** (assembled from the ")
+                .append(String.join(", ", areas.keySet()).toLowerCase(Locale.ROOT)).append(" reports)\n\n")
+                .append(lead).append("\n\n**Risk heatmap**\n");
+        StringBuilder riskAssessment = new StringBuilder("Overall Risk Assessment:\n");
+        heatmap.forEach((area, level) -> {
+            summary.append("- ").append(level.marker()).append(' ').append(area).append(": ").append(level).append('\n');
+            riskAssessment.append("• ").append(area).append(" Risk: ").append(level).append('\n');
+        });
+        if (!actionItems.isEmpty()) {
+            summary.append("\n**Top action items**\n");
+            for (int i = 0; i < actionItems.size(); i++) {
+                summary.append(i + 1).append(". ").append(actionItems.get(i)).append('\n');
+            }
+        }
+        summary.append("\nThe specialist sections below carry the full analysis.");
+        return new Synthesis(summary.toString(), actionItems, heatmap, riskAssessment.toString());
+    }
+
+    // Explicit recommendations first, strategy before the other reports; numbered steps as a fallback
+    static List<String> actionItems(AgentReports reports) {
+        List<String> ordered = new ArrayList<>();
+        if (reports.strategy() != null) {
+            ordered.add(reports.strategy());
+        }
+        reports.byArea().forEach((area, report) -> {
+            if (!area.equals("Strategy")) {
+                ordered.add(report);
+            }
+        });
+
+        Set<String> items = new LinkedHashSet<>();
+        for (Pattern pattern : List.of(RECOMMENDATION, NUMBERED)) {
+            for (String report : ordered) {
+                Matcher matcher = pattern.matcher(report);
+                while (matcher.find() && items.size() < MAX_ACTION_ITEMS) {
+                    String item = clean(matcher.group(1));
+                    if (item.length() >= 8) {
+                        items.add(truncate(item, 200));
+                    }
+                }
+            }
+            if (!items.isEmpty()) {
+                break;
+            }
+        }
+        return new ArrayList<>(items);
+    }
+
+    // First prose paragraph: not a heading, list item or table row
+    static String lead(String report) {
+        for (String paragraph : report.split("\\n\\s*\\n")) {
+            String text = clean(paragraph.replaceAll("\\s*\\n\\s*", " "));
+            if (text.length() >= 40 && !paragraph.stripLeading().matches("(?s)^(?:#|[-*•|]|\\d+[.)]).*")) {
+                return truncate(text, LEAD_MAX_CHARS);
+            }
+        }
+        return truncate(clean(report.replaceAll("\\s+", " ")), LEAD_MAX_CHARS);
+    }
+
+    private static String clean(String text) {
+        return text.replace("**", "").replace("__", "").strip();
+    }
+
+    // Cut at the last sentence end that fits, or at a word boundary
+    private static String truncate(String text, int maxChars) {
+        if (text.length() <= maxChars) {
+            return text;
+        }
+        String head = text.substring(0, maxChars);
+        int sentence = Math.max(head.lastIndexOf(". "), head.lastIndexOf(".\n"));
+        if (sentence > maxChars / 2) {
+            return head.substring(0, sentence + 1);
+        }
+        int space = head.lastIndexOf(' ');
+        return (space > 0 ? head.substring(0, space) : head) + "…";
+    }
+}
@@ -0,0 +1,21 @@
+package com.email.legal_agent.service.synthesis;
+
+/**
+ * Risk rating of one specialist report, read from the markers the agents' output formats use
+ */
+public enum RiskLevel {
+    HIGH("🔴"),
+    MEDIUM("🟠"),
+    LOW("🟢"),
+    UNRATED("⚪");
+
+    private final String marker;
+
+    RiskLevel(String marker) {
+        this.marker = marker;
+    }
+
+    public String marker() {
+        return marker;
+    }
+}
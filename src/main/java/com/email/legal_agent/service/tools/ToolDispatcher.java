@@ -0,0 +1,292 @@
+package com.email.legal_agent.service.tools;
+
+import com.email.legal_agent.service.cancellation.CancellationToken;
+import com.email.legal_agent.service.replay.TrafficTrace;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.agent.tool.ToolSpecifications;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.service.tool.DefaultToolExecutor;
+import dev.langchain4j.service.tool.ToolExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Runs an agent's tool calls concurrently and caches their results per session.
+ *
+ * LangChain4j executes the tool calls of one assistant turn one after another. The model wrapper
+ * returned by {@link #dispatching} starts every call of a turn on its own virtual thread as soon
+ * as the model response arrives; the executors from {@link #executors} then only wait for the
+ * matching result, so AiServices still records the results in request order. Identical calls
+ * (same tool, same arguments) within a session share one result, and every tool is bounded by
+ * its own timeout. Cancelling the job the agent works for cancels its pending tool calls.
+ */
+@Component
+public class ToolDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(ToolDispatcher.class);
+
+    // Tool results starting with this marker report a failure and are not cached
+    private static final String FAILURE_MARKER = "❌";
+
+    private final Duration defaultTimeout;
+    private final Map<String, Duration> timeouts = new HashMap<>();
+    private final int maxEntriesPerSession;
+    private final int maxSessions;
+    private final MeterRegistry meterRegistry;
+    private final TrafficTrace trafficTrace;
+    private final ObjectMapper canonicalJson = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private final ExecutorService toolThreads = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("tool-call-", 0).factory());
+
+    private final Map<String, ToolExecutor> targets = new ConcurrentHashMap<>();
+    private final ThreadLocal<String> currentSession = new ThreadLocal<>();
+    private final ThreadLocal<int[]> cacheHits = ThreadLocal.withInitial(() -> new int[1]);
+    private final ThreadLocal<Map<ToolExecutionRequest, Future<String>>> dispatchedCalls =
+            ThreadLocal.withInitial(HashMap::new);
+    private final Map<String, Map<String, Future<String>>> sessionCaches;
+
+    public ToolDispatcher(MeterRegistry meterRegistry,
+                          TrafficTrace trafficTrace,
+                          @Value("${legal-assistant.tools.timeout-seconds:20}") long defaultTimeoutSeconds,
+                          @Value("${legal-assistant.external-services.duckduckgo.timeout-seconds:30}") long webSearchTimeoutSeconds,
+                          @Value("${legal-assistant.tools.cache.max-entries-per-session:64}") int maxEntriesPerSession,
+                          @Value("${legal-assistant.tools.cache.max-sessions:1000}") int maxSessions) {
+        this.meterRegistry = meterRegistry;
+        this.trafficTrace = trafficTrace;
+        this.defaultTimeout = Duration.ofSeconds(defaultTimeoutSeconds);
+        this.timeouts.put("searchRecentRulings", Duration.ofSeconds(webSearchTimeoutSeconds));
+        this.maxEntriesPerSession = maxEntriesPerSession;
+        this.maxSessions = maxSessions;
+        this.sessionCaches = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, Future<String>>> eldest) {
+                return size() > ToolDispatcher.this.maxSessions;
+            }
+        });
+    }
+
+    /**
+     * Run {@code call} with tool results cached under {@code sessionId}
+     */
+    public <T> T inSession(String sessionId, Supplier<T> call) {
+        String previous = currentSession.get();
+        currentSession.set(sessionId);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                currentSession.remove();
+            } else {
+                currentSession.set(previous);
+            }
+            dispatchedCalls.get().clear();
+        }
+    }
+
+    /**
+     * Tool calls answered from the session cache on this thread since the previous call
+     */
+    public int takeCacheHits() {
+        int[] hits = cacheHits.get();
+        int taken = hits[0];
+        hits[0] = 0;
+        return taken;
+    }
+
+    public void clearSession(String sessionId) {
+        sessionCaches.remove(sessionId);
+    }
+
+    /**
+     * Executors for every {@link Tool} method of {@code tools}, resolved through this dispatcher
+     */
+    public Map<ToolSpecification, ToolExecutor> executors(Object tools) {
+        Map<ToolSpecification, ToolExecutor> executors = new LinkedHashMap<>();
+        for (Method method : AopUtils.getTargetClass(tools).getDeclaredMethods()) {
+            if (method.isAnnotationPresent(Tool.class)) {
+                ToolSpecification specification = ToolSpecifications.toolSpecificationFrom(method);
+                ToolExecutor target = new DefaultToolExecutor(tools, method);
+                executors.put(specification, (request, memoryId) -> awaitResult(request, target));
+                targets.put(specification.name(), target);
+            }
+        }
+        return executors;
+    }
+
+    /**
+     * Wrap a chat model so the tool calls in each of its responses start immediately
+     */
+    public ChatLanguageModel dispatching(ChatLanguageModel model) {
+        return new ChatLanguageModel() {
+            @Override
+            public ChatResponse chat(ChatRequest request) {
+                ChatResponse response = model.chat(request);
+                Map<ToolExecutionRequest, Future<String>> calls = dispatchedCalls.get();
+                // Anything left from an earlier turn was never awaited
+                calls.clear();
+                if (response.aiMessage() != null && response.aiMessage().hasToolExecutionRequests()) {
+                    for (ToolExecutionRequest toolRequest : response.aiMessage().toolExecutionRequests()) {
+                        ToolExecutor target = targets.get(toolRequest.name());
+                        if (target != null) {
+                            calls.put(toolRequest, dispatch(toolRequest, target));
+                        }
+                    }
+                }
+                return response;
+            }
+
+            @Override
+            public ChatRequestParameters defaultRequestParameters() {
+                return model.defaultRequestParameters();
+            }
+
+            @Override
+            public Set<Capability> supportedCapabilities() {
+                return model.supportedCapabilities();
+            }
+        };
+    }
+
+    @SuppressWarnings("try")
+    private String awaitResult(ToolExecutionRequest request, ToolExecutor target) {
+        Future<String> call = dispatchedCalls.get().remove(request);
+        if (call == null) {
+            call = dispatch(request, target);
+        }
+
+        Duration timeout = timeouts.getOrDefault(request.name(), defaultTimeout);
+        long start = System.nanoTime();
+        String outcome = "completed";
+        CancellationToken cancellation = CancellationToken.current();
+        try (CancellationToken.Scope blocking = CancellationToken.interruptibleCurrent()) {
+            return call.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            outcome = "timeout";
+            call.cancel(true);
+            forget(request, call);
+            logger.warn("Tool {} timed out after {} s", request.name(), timeout.toSeconds());
+            return FAILURE_MARKER + " " + request.name() + " timed out after " + timeout.toSeconds() + " s";
+        } catch (ExecutionException e) {
+            outcome = "failed";
+            forget(request, call);
+            return FAILURE_MARKER + " " + request.name() + " failed: " + e.getCause().getMessage();
+        } catch (InterruptedException e) {
+            outcome = "cancelled";
+            call.cancel(true);
+            forget(request, call);
+            // The rest of the turn's calls won't be awaited either
+            for (Map.Entry<ToolExecutionRequest, Future<String>> pending : dispatchedCalls.get().entrySet()) {
+                pending.getValue().cancel(true);
+                forget(pending.getKey(), pending.getValue());
+            }
+            dispatchedCalls.get().clear();
+            if (cancellation != null && cancellation.isCancelled()) {
+                throw cancellation.aborted("tool-call");
+            }
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted waiting for tool " + request.name());
+        } finally {
+            Timer.builder("legal.tool.execution")
+                    .description("Time the agent waited for a tool result")
+                    .tag("tool", request.name())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Start the call, or return the session's result for an identical earlier call
+     */
+    private Future<String> dispatch(ToolExecutionRequest request, ToolExecutor target) {
+        Map<String, Future<String>> cache = sessionCache();
+        if (cache == null) {
+            return toolThreads.submit(() -> execute(request, target));
+        }
+
+        String key = cacheKey(request);
+        synchronized (cache) {
+            Future<String> cached = cache.get(key);
+            if (cached != null && !cached.isCancelled()) {
+                cacheHits.get()[0]++;
+                return cached;
+            }
+            FutureTask<String> call = new FutureTask<>(() -> {
+                String result = execute(request, target);
+                if (result != null && result.startsWith(FAILURE_MARKER)) {
+                    synchronized (cache) {
+                        cache.remove(key);
+                    }
+                }
+                return result;
+            });
+            cache.put(key, call);
+            toolThreads.execute(call);
+            return call;
+        }
+    }
+
+    // Recorded, or answered from the trace, when traffic tracing is on
+    private String execute(ToolExecutionRequest request, ToolExecutor target) {
+        return trafficTrace.tool(request.name(), request.arguments(), () -> target.execute(request, null));
+    }
+
+    private void forget(ToolExecutionRequest request, Future<String> call) {
+        Map<String, Future<String>> cache = sessionCache();
+        if (cache != null) {
+            synchronized (cache) {
+                cache.remove(cacheKey(request), call);
+            }
+        }
+    }
+
+    private Map<String, Future<String>> sessionCache() {
+        String sessionId = currentSession.get();
+        if (sessionId == null) {
+            return null;
+        }
+        return sessionCaches.computeIfAbsent(sessionId, id -> new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Future<String>> eldest) {
+                return size() > maxEntriesPerSession;
+            }
+        });
+    }
+
+    // Same tool and same arguments regardless of key order or whitespace in the model's JSON
+    private String cacheKey(ToolExecutionRequest request) {
+        String arguments = request.arguments() == null ? "" : request.arguments();
+        try {
+            JsonNode parsed = canonicalJson.readTree(arguments.isBlank() ? "{}" : arguments);
+            arguments = canonicalJson.writeValueAsString(canonicalJson.treeToValue(parsed, Object.class));
+        } catch (Exception e) {
+            arguments = arguments.strip();
+        }
+        return request.name() + '\u0000' + arguments;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        toolThreads.shutdownNow();
+    }
+}
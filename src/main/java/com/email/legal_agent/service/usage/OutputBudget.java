@@ -0,0 +1,87 @@
+package com.email.legal_agent.service.usage;
+
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Output-token cap of the request being served. The agents are shared proxies, so the cap travels
+ * with the calling thread: {@link #budgeted} models send it as {@code maxOutputTokens} on every
+ * call made inside {@link #with}, including calls fanned out through a {@link #propagating}
+ * executor.
+ */
+public final class OutputBudget {
+
+    private final ThreadLocal<Integer> limit = new ThreadLocal<>();
+
+    /**
+     * Run {@code work} with every budgeted call capped at {@code maxOutputTokens}; 0 or less runs
+     * it uncapped
+     */
+    public <T> T with(int maxOutputTokens, Supplier<T> work) {
+        if (maxOutputTokens <= 0) {
+            return work.get();
+        }
+        return in(maxOutputTokens, work);
+    }
+
+    /**
+     * An executor whose tasks run under the cap that was in effect when they were submitted
+     */
+    public Executor propagating(Executor executor) {
+        return task -> {
+            Integer cap = limit.get();
+            executor.execute(cap == null ? task : () -> in(cap, () -> {
+                task.run();
+                return null;
+            }));
+        };
+    }
+
+    public ChatLanguageModel budgeted(ChatLanguageModel model) {
+        return new ChatLanguageModel() {
+            @Override
+            public ChatResponse chat(ChatRequest request) {
+                Integer cap = limit.get();
+                if (cap == null) {
+                    return model.chat(request);
+                }
+                ChatRequestParameters parameters = ChatRequestParameters.builder().maxOutputTokens(cap).build();
+                return model.chat(ChatRequest.builder()
+                        .messages(request.messages())
+                        .parameters(request.parameters() != null ? request.parameters().overrideWith(parameters) : parameters)
+                        .build());
+            }
+
+            @Override
+            public ChatRequestParameters defaultRequestParameters() {
+                return model.defaultRequestParameters();
+            }
+
+            @Override
+            public Set<Capability> supportedCapabilities() {
+                return model.supportedCapabilities();
+            }
+        };
+    }
+
+    private <T> T in(Integer cap, Supplier<T> work) {
+        Integer previous = limit.get();
+        limit.set(cap);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                limit.remove();
+            } else {
+                limit.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package com.email.legal_agent.service.usage;
+
+import com.email.legal_agent.dto.TokenUsageBreakdown;
+import com.email.legal_agent.service.LegalTeamService.QueryType;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token accounting per tenant, session, agent and query type, with monthly quotas per tenant.
+ *
+ * Agent models are wrapped by {@link #metering}, which reads the provider's token counts off
+ * every response. Calls made inside a {@link Scope} (one per request, opened by whoever knows the
+ * tenant) are added to that request's per-agent tallies and to the tenant's month-to-date
+ * counters; all of these are {@link LongAdder}s, so concurrent chunk calls of one request, and
+ * requests of one tenant, don't contend on a shared counter. Nothing else happens on the calling
+ * thread: the request's totals are queued when its scope closes, and a single flusher thread
+ * aggregates them and writes one row per key and interval to {@code token_usage}.
+ *
+ * Month-to-date usage is read from the table once per tenant and month and kept in memory from
+ * then on. Once it passes {@code soft-limit-percent} of the tenant's quota, {@link #quota} answers
+ * the configured soft-limit action (degrade by default); at the quota, the hard-limit action
+ * (reject by default).
+ */
+@Service
+public class TokenAccounting {
+    private static final Logger logger = LoggerFactory.getLogger(TokenAccounting.class);
+
+    private static final double MILLION = 1_000_000.0;
+
+    public enum QuotaAction {
+        NONE,
+        DEGRADE,
+        QUEUE,
+        REJECT;
+
+        static QuotaAction parse(String action) {
+            try {
+                return valueOf(action.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown quota action '" + action
+                        + "'; expected one of " + Arrays.toString(values()));
+            }
+        }
+
+        public String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * A tenant's month-to-date usage against its quota; {@code quota} 0 means unlimited
+     */
+    public record TenantUsage(String tenant, YearMonth month, long promptTokens, long completionTokens,
+                              double costUsd, long quota, QuotaAction action) {
+    }
+
+    private sealed interface Pending permits Row, Barrier {
+    }
+
+    private record Row(Key key, long calls, long promptTokens, long completionTokens) implements Pending {
+    }
+
+    private record Barrier(CompletableFuture<Void> done) implements Pending {
+    }
+
+    private record Key(LocalDate day, String tenant, String sessionId, String agent, String queryType) {
+    }
+
+    private static final class Tally {
+        final LongAdder calls = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+    }
+
+    private static final class TenantBudget {
+        final YearMonth month;
+        final long quota;
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+
+        TenantBudget(YearMonth month, long quota) {
+            this.month = month;
+            this.quota = quota;
+        }
+
+        long used() {
+            return promptTokens.sum() + completionTokens.sum();
+        }
+    }
+
+    private final TokenUsageRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final double promptPricePerToken;
+    private final double completionPricePerToken;
+    private final long defaultMonthlyTokens;
+    private final Map<String, Long> tenantQuotas;
+    private final int softLimitPercent;
+    private final QuotaAction onSoftLimit;
+    private final QuotaAction onHardLimit;
+    private final long flushIntervalNanos;
+
+    private final ThreadLocal<Scope> current = new ThreadLocal<>();
+    private final Map<String, TenantBudget> budgets = new ConcurrentHashMap<>();
+    private final BlockingQueue<Pending> queue;
+    private final ExecutorService flusher;
+    private volatile boolean running = true;
+
+    private final Counter droppedRows;
+    private final Counter failedFlushes;
+    private final Timer flushTimer;
+
+    public TokenAccounting(TokenUsageRepository repository,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${legal-assistant.usage.price-per-million-tokens.prompt:0.05}") double promptPricePerMillion,
+                           @Value("${legal-assistant.usage.price-per-million-tokens.completion:0.08}") double completionPricePerMillion,
+                           @Value("${legal-assistant.usage.quota.monthly-tokens:0}") long defaultMonthlyTokens,
+                           @Value("${legal-assistant.usage.quota.tenants:}") String tenantQuotas,
+                           @Value("${legal-assistant.usage.quota.soft-limit-percent:80}") int softLimitPercent,
+                           @Value("${legal-assistant.usage.quota.on-soft-limit:degrade}") String onSoftLimit,
+                           @Value("${legal-assistant.usage.quota.on-hard-limit:reject}") String onHardLimit,
+                           @Value("${legal-assistant.usage.queue-capacity:10000}") int queueCapacity,
+                           @Value("${legal-assistant.usage.flush-interval-ms:5000}") long flushIntervalMillis) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.promptPricePerToken = promptPricePerMillion / MILLION;
+        this.completionPricePerToken = completionPricePerMillion / MILLION;
+        this.defaultMonthlyTokens = defaultMonthlyTokens;
+        this.tenantQuotas = parseQuotas(tenantQuotas);
+        this.softLimitPercent = softLimitPercent;
+        this.onSoftLimit = QuotaAction.parse(onSoftLimit);
+        this.onHardLimit = QuotaAction.parse(onHardLimit);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        this.droppedRows = meterRegistry.counter("legal.tokens.flush.dropped");
+        this.failedFlushes = meterRegistry.counter("legal.tokens.flush.failed");
+        this.flushTimer = meterRegistry.timer("legal.tokens.flush");
+        meterRegistry.gaugeCollectionSize("legal.tokens.flush.queued", Tags.empty(), queue);
+
+        this.flusher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-usage-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.execute(this::flushLoop);
+    }
+
+    /**
+     * One request's accounting context, current on the opening thread until closed. Closing it
+     * hands the request's totals to the flusher and restores whatever scope was current before.
+     */
+    public final class Scope implements AutoCloseable {
+        private final String tenant;
+        private final String sessionId;
+        private final TenantBudget budget;
+        private final Scope previous;
+        private final Map<String, Tally> agents = new ConcurrentHashMap<>();
+        private volatile QueryType queryType;
+        private boolean closed;
+
+        private Scope(String tenant, String sessionId, TenantBudget budget, Scope previous) {
+            this.tenant = tenant;
+            this.sessionId = sessionId;
+            this.budget = budget;
+            this.previous = previous;
+        }
+
+        private void record(String agent, int promptTokens, int completionTokens) {
+            Tally tally = agents.computeIfAbsent(agent, key -> new Tally());
+            tally.calls.increment();
+            tally.promptTokens.add(promptTokens);
+            tally.completionTokens.add(completionTokens);
+            budget.promptTokens.add(promptTokens);
+            budget.completionTokens.add(completionTokens);
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+            LocalDate day = LocalDate.now(ZoneOffset.UTC);
+            String type = queryType == null ? "UNCLASSIFIED" : queryType.name();
+            agents.forEach((agent, tally) -> enqueue(new Row(new Key(day, tenant, sessionId, agent, type),
+                    tally.calls.sum(), tally.promptTokens.sum(), tally.completionTokens.sum())));
+        }
+    }
+
+    /**
+     * Start accounting the calling thread's model calls to {@code tenant} and {@code sessionId}
+     */
+    public Scope open(String tenant, String sessionId) {
+        String owner = tenant == null || tenant.isBlank() ? "anonymous" : tenant;
+        Scope scope = new Scope(owner, sessionId, budget(owner), current.get());
+        current.set(scope);
+        return scope;
+    }
+
+    /**
+     * Attribute the current request to {@code queryType} once routing has decided it
+     */
+    public void classify(QueryType queryType) {
+        Scope scope = current.get();
+        if (scope != null) {
+            scope.queryType = queryType;
+        }
+    }
+
+    /**
+     * Tokens used so far by the current request, or null outside a scope
+     */
+    public TokenUsageBreakdown snapshot() {
+        Scope scope = current.get();
+        if (scope == null) {
+            return null;
+        }
+        Map<String, TokenUsageBreakdown.AgentUsage> byAgent = new TreeMap<>();
+        long calls = 0;
+        long promptTokens = 0;
+        long completionTokens = 0;
+        for (Map.Entry<String, Tally> entry : scope.agents.entrySet()) {
+            Tally tally = entry.getValue();
+            long agentPrompt = tally.promptTokens.sum();
+            long agentCompletion = tally.completionTokens.sum();
+            byAgent.put(entry.getKey(), new TokenUsageBreakdown.AgentUsage(tally.calls.sum(), agentPrompt,
+                    agentCompletion, cost(agentPrompt, agentCompletion)));
+            calls += tally.calls.sum();
+            promptTokens += agentPrompt;
+            completionTokens += agentCompletion;
+        }
+        return new TokenUsageBreakdown(promptTokens, completionTokens, calls,
+                cost(promptTokens, completionTokens), byAgent);
+    }
+
+    /**
+     * What to do with a new request from {@code tenant} given its month-to-date usage
+     */
+    public QuotaAction quota(String tenant) {
+        TenantBudget budget = budget(tenant == null || tenant.isBlank() ? "anonymous" : tenant);
+        QuotaAction action = action(budget);
+        if (action != QuotaAction.NONE) {
+            meterRegistry.counter("legal.tokens.quota", "action", action.tag()).increment();
+        }
+        return action;
+    }
+
+    public TenantUsage usage(String tenant) {
+        String owner = tenant == null || tenant.isBlank() ? "anonymous" : tenant;
+        TenantBudget budget = budget(owner);
+        long promptTokens = budget.promptTokens.sum();
+        long completionTokens = budget.completionTokens.sum();
+        return new TenantUsage(owner, budget.month, promptTokens, completionTokens,
+                cost(promptTokens, completionTokens), budget.quota, action(budget));
+    }
+
+    /**
+     * Wrap an agent's model so the token counts of every response are accounted to {@code agent}
+     */
+    public ChatLanguageModel metering(ChatLanguageModel model, String agent) {
+        Counter prompt = Counter.builder("legal.tokens").tag("agent", agent).tag("kind", "prompt")
+                .register(meterRegistry);
+        Counter completion = Counter.builder("legal.tokens").tag("agent", agent).tag("kind", "completion")
+                .register(meterRegistry);
+        return new ChatLanguageModel() {
+            @Override
+            public ChatResponse chat(ChatRequest request) {
+                ChatResponse response = model.chat(request);
+                TokenUsage usage = response.tokenUsage();
+                int promptTokens = usage == null || usage.inputTokenCount() == null ? 0 : usage.inputTokenCount();
+                int completionTokens = usage == null || usage.outputTokenCount() == null ? 0 : usage.outputTokenCount();
+                prompt.increment(promptTokens);
+                completion.increment(completionTokens);
+                Scope scope = current.get();
+                if (scope != null) {
+                    scope.record(agent, promptTokens, completionTokens);
+                }
+                return response;
+            }
+
+            @Override
+            public ChatRequestParameters defaultRequestParameters() {
+                return model.defaultRequestParameters();
+            }
+
+            @Override
+            public Set<Capability> supportedCapabilities() {
+                return model.supportedCapabilities();
+            }
+        };
+    }
+
+    /**
+     * An executor whose tasks run in the scope that was current when they were submitted, so
+     * model calls fanned out to a pool are accounted to the request that made them
+     */
+    public Executor propagating(Executor executor) {
+        return task -> {
+            Scope scope = current.get();
+            executor.execute(scope == null ? task : () -> {
+                Scope previous = current.get();
+                current.set(scope);
+                try {
+                    task.run();
+                } finally {
+                    if (previous == null) {
+                        current.remove();
+                    } else {
+                        current.set(previous);
+                    }
+                }
+            });
+        };
+    }
+
+    /**
+     * Completes once every request closed before the call has been written out
+     */
+    public CompletableFuture<Void> flush() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (!queue.offer(new Barrier(done))) {
+            done.completeExceptionally(new RejectedExecutionException("Token usage queue full"));
+        }
+        return done;
+    }
+
+    private QuotaAction action(TenantBudget budget) {
+        if (budget.quota <= 0) {
+            return QuotaAction.NONE;
+        }
+        long used = budget.used();
+        if (used >= budget.quota) {
+            return onHardLimit;
+        }
+        return used * 100 >= budget.quota * softLimitPercent ? onSoftLimit : QuotaAction.NONE;
+    }
+
+    private double cost(long promptTokens, long completionTokens) {
+        return promptTokens * promptPricePerToken + completionTokens * completionPricePerToken;
+    }
+
+    private TenantBudget budget(String tenant) {
+        YearMonth month = YearMonth.now(ZoneOffset.UTC);
+        TenantBudget budget = budgets.get(tenant);
+        if (budget != null && budget.month.equals(month)) {
+            return budget;
+        }
+        // Loaded outside compute(): the map holds a bin monitor while the function runs, which
+        // would pin a virtual thread to its carrier for the whole query. A racing load loses.
+        TenantBudget loaded = load(tenant, month);
+        return budgets.compute(tenant, (key, existing) ->
+                existing != null && existing.month.equals(month) ? existing : loaded);
+    }
+
+    // Month-to-date usage written by earlier runs (or other nodes) before this one took over counting
+    private TenantBudget load(String tenant, YearMonth month) {
+        TenantBudget budget = new TenantBudget(month, tenantQuotas.getOrDefault(tenant, defaultMonthlyTokens));
+        try {
+            TokenUsageRepository.Totals totals = repository.totalsSince(tenant, month.atDay(1));
+            budget.promptTokens.add(totals.getPromptTokens());
+            budget.completionTokens.add(totals.getCompletionTokens());
+        } catch (RuntimeException e) {
+            logger.warn("Month-to-date token usage of {} not loaded, counting from zero: {}", tenant, e.getMessage());
+        }
+        return budget;
+    }
+
+    private void enqueue(Row row) {
+        if (!queue.offer(row)) {
+            droppedRows.increment();
+            logger.error("Token usage queue full, usage of {} / {} not persisted", row.key().tenant(), row.key().agent());
+        }
+    }
+
+    // Polls rather than blocking in take() so shutdown never has to interrupt a thread doing database I/O
+    private void flushLoop() {
+        Map<Key, long[]> aggregated = new LinkedHashMap<>();
+        List<Barrier> barriers = new ArrayList<>();
+        long lastFlush = System.nanoTime();
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending pending = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (pending instanceof Row row) {
+                    long[] totals = aggregated.computeIfAbsent(row.key(), key -> new long[3]);
+                    totals[0] += row.calls();
+                    totals[1] += row.promptTokens();
+                    totals[2] += row.completionTokens();
+                } else if (pending instanceof Barrier barrier) {
+                    barriers.add(barrier);
+                }
+                if (!barriers.isEmpty() || System.nanoTime() - lastFlush >= flushIntervalNanos
+                        || (!running && queue.isEmpty())) {
+                    persist(aggregated, barriers);
+                    aggregated.clear();
+                    barriers.clear();
+                    lastFlush = System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void persist(Map<Key, long[]> aggregated, List<Barrier> barriers) {
+        RuntimeException failure = null;
+        if (!aggregated.isEmpty()) {
+            long start = System.nanoTime();
+            List<TokenUsageEntry> entries = new ArrayList<>(aggregated.size());
+            aggregated.forEach((key, totals) -> entries.add(new TokenUsageEntry(key.day(), key.tenant(),
+                    key.sessionId(), key.agent(), key.queryType(), totals[0], totals[1], totals[2])));
+            try {
+                transactionTemplate.executeWithoutResult(status -> repository.saveAll(entries));
+            } catch (RuntimeException e) {
+                failure = e;
+                failedFlushes.increment();
+                logger.error("Token usage flush of {} rows failed: {}", entries.size(), e.getMessage());
+            }
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        for (Barrier barrier : barriers) {
+            if (failure == null) {
+                barrier.done().complete(null);
+            } else {
+                barrier.done().completeExceptionally(failure);
+            }
+        }
+    }
+
+    private static Map<String, Long> parseQuotas(String quotas) {
+        Map<String, Long> parsed = new HashMap<>();
+        if (quotas == null || quotas.isBlank()) {
+            return parsed;
+        }
+        for (String entry : quotas.split(",")) {
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Tenant quota must be tenant=tokens: " + entry);
+            }
+            long tokens = Long.parseLong(parts[1].trim());
+            if (tokens < 0) {
+                throw new IllegalArgumentException("Tenant quota must not be negative: " + entry);
+            }
+            parsed.put(parts[0].trim(), tokens);
+        }
+        return parsed;
+    }
+
+    /**
+     * Stop accepting usage and write out whatever is still queued
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Token usage not flushed at shutdown; {} rows lost", queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
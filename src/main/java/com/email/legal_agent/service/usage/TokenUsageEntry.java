@@ -0,0 +1,93 @@
+package com.email.legal_agent.service.usage;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDate;
+
+/**
+ * Token usage of one tenant, session, agent and query type on one day, as aggregated over one
+ * flush interval. A key that is busy across intervals gets one row per flush; totals are sums.
+ */
+@Entity
+@Table(name = "token_usage", indexes = @Index(name = "idx_token_usage_tenant_day", columnList = "tenant, usage_day"))
+public class TokenUsageEntry {
+
+    // Sequence ids, allocated in blocks, so a flush is sent as JDBC batches
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "token_usage_ids")
+    @SequenceGenerator(name = "token_usage_ids", sequenceName = "token_usage_ids", allocationSize = 50)
+    private Long id;
+
+    // DAY is reserved in H2 and other databases
+    @Column(name = "usage_day", nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false, length = 128)
+    private String tenant;
+
+    @Column(length = 128)
+    private String sessionId;
+
+    @Column(nullable = false, length = 32)
+    private String agent;
+
+    @Column(nullable = false, length = 32)
+    private String queryType;
+
+    private long calls;
+
+    private long promptTokens;
+
+    private long completionTokens;
+
+    protected TokenUsageEntry() {
+    }
+
+    public TokenUsageEntry(LocalDate day, String tenant, String sessionId, String agent, String queryType,
+                           long calls, long promptTokens, long completionTokens) {
+        this.day = day;
+        this.tenant = tenant;
+        this.sessionId = sessionId;
+        this.agent = agent;
+        this.queryType = queryType;
+        this.calls = calls;
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getAgent() {
+        return agent;
+    }
+
+    public String getQueryType() {
+        return queryType;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getPromptTokens() {
+        return promptTokens;
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens;
+    }
+}
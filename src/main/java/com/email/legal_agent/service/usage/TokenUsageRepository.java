@@ -0,0 +1,22 @@
+package com.email.legal_agent.service.usage;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface TokenUsageRepository extends JpaRepository<TokenUsageEntry, Long> {
+
+    interface Totals {
+        long getPromptTokens();
+
+        long getCompletionTokens();
+    }
+
+    @Query("select coalesce(sum(u.promptTokens), 0) as promptTokens, coalesce(sum(u.completionTokens), 0) as completionTokens "
+            + "from TokenUsageEntry u where u.tenant = ?1 and u.day >= ?2")
+    Totals totalsSince(String tenant, LocalDate from);
+
+    List<TokenUsageEntry> findBySessionId(String sessionId);
+}
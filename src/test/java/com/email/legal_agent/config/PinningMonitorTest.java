@@ -0,0 +1,77 @@
+package com.email.legal_agent.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PinningMonitorTest {
+
+    @Test
+    void pinnedIntervalsAreAttributedToTheInnermostApplicationFrame() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PinningMonitor monitor = new PinningMonitor(registry, true, true, 20, 2, 12);
+
+        List<String> session = List.of("java.lang.Object.wait0:-1", "java.lang.Object.wait:366",
+                "com.email.legal_agent.service.session.SessionStore.state:201",
+                "com.email.legal_agent.service.LegalTeamService.quick:400");
+        monitor.record(session, Duration.ofMillis(30));
+        monitor.record(session, Duration.ofMillis(50));
+        monitor.record(List.of("java.lang.Thread.sleep:509", "org.h2.engine.Session.lock:88"), Duration.ofMillis(40));
+        // Past max-sites, further sites are lumped together
+        monitor.record(List.of("com.example.Library.call:10"), Duration.ofMillis(25));
+        monitor.record(List.of("com.example.Other.call:20"), Duration.ofMillis(25));
+
+        List<PinningMonitor.PinnedSite> sites = monitor.sites();
+        assertEquals(List.of("com.email.legal_agent.service.session.SessionStore.state:201", "other",
+                "org.h2.engine.Session.lock:88"), sites.stream().map(PinningMonitor.PinnedSite::site).toList());
+        assertEquals(2, sites.get(0).events());
+        assertEquals(80, sites.get(0).totalMs());
+        assertEquals(50, sites.get(0).maxMs());
+        assertEquals(session, sites.get(0).stack());
+        assertEquals(5, monitor.events());
+        assertEquals(2, registry.get("legal.virtual-threads.pinned")
+                .tag("site", "com.email.legal_agent.service.session.SessionStore.state:201").timer().count());
+    }
+
+    @Test
+    void reportsAVirtualThreadThatSleepsInsideASynchronizedBlock() throws Exception {
+        PinningMonitor monitor = new PinningMonitor(new SimpleMeterRegistry(), true, true, 10, 50, 12);
+        monitor.start();
+        try {
+            assertTrue(monitor.isRunning());
+            Object lock = new Object();
+            Thread.ofVirtual().start(() -> {
+                synchronized (lock) {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }).join();
+
+            // The recording stream delivers events about once a second
+            long deadline = System.nanoTime() + Duration.ofSeconds(15).toNanos();
+            while (monitor.events() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            assertEquals(1, monitor.events());
+            assertTrue(monitor.sites().get(0).site().startsWith(PinningMonitorTest.class.getName()),
+                    monitor.sites().get(0).site());
+        } finally {
+            monitor.stop();
+        }
+    }
+
+    @Test
+    void staysOffOnPlatformThreads() {
+        PinningMonitor monitor = new PinningMonitor(new SimpleMeterRegistry(), false, true, 20, 50, 12);
+        monitor.start();
+        assertFalse(monitor.isRunning());
+        assertEquals(false, monitor.report().get("enabled"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.email.legal_agent.controller;
+
+import com.email.legal_agent.dto.LegalAnalysisResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonProjectionTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonProjection projection = new JsonProjection(objectMapper);
+
+    private static LegalAnalysisResult result() {
+        LegalAnalysisResult result = new LegalAnalysisResult();
+        result.setSessionId("s1");
+        result.setExecutiveSummary("GDPR applies");
+        result.setResearchFindings("x".repeat(10_000));
+        result.setKeyInsights(List.of("Appoint a DPO"));
+        result.setConfidenceScore(0.8);
+        return result;
+    }
+
+    private JsonNode write(Object value, Set<String> fields) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        projection.body(value, fields).writeTo(out);
+        return objectMapper.readTree(out.toByteArray());
+    }
+
+    @Test
+    void onlyRequestedFieldsAreWrittenForSingleResultsAndLists() throws Exception {
+        Set<String> fields = projection.parse(" executiveSummary, keyInsights ,");
+        JsonNode single = write(result(), fields);
+        assertEquals(Set.of("executiveSummary", "keyInsights"), names(single));
+        assertEquals("GDPR applies", single.get("executiveSummary").asText());
+
+        JsonNode list = write(List.of(result(), result()), fields);
+        assertEquals(2, list.size());
+        assertEquals(Set.of("executiveSummary", "keyInsights"), names(list.get(1)));
+
+        // No selection writes everything, and the shared mapper is left unfiltered
+        JsonNode full = write(result(), projection.parse(null));
+        assertEquals(10_000, full.get("researchFindings").asText().length());
+        assertTrue(objectMapper.writeValueAsString(result()).contains("researchFindings"));
+    }
+
+    @Test
+    void unknownFieldsAreRejected() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> projection.parse("executiveSummary,secretNotes"));
+        assertTrue(e.getMessage().contains("secretNotes"), e.getMessage());
+        assertTrue(e.getMessage().contains("riskAssessment"), e.getMessage());
+    }
+
+    private static Set<String> names(JsonNode node) {
+        Set<String> names = new HashSet<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+}
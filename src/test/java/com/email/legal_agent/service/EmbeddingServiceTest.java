@@ -0,0 +1,107 @@
+package com.email.legal_agent.service;
+
+import com.email.legal_agent.service.replay.TrafficTrace;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class EmbeddingServiceTest {
+
+    // Texts of every embedAll call the model received
+    private final List<List<String>> calls = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean stalled;
+    private EmbeddingService service;
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private EmbeddingService service(long windowMs, long timeoutMs) {
+        EmbeddingModel model = new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+                calls.add(segments.stream().map(TextSegment::text).toList());
+                if (stalled) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return Response.from(segments.stream()
+                        .map(segment -> Embedding.from(new float[]{segment.text().length(), 1f}))
+                        .toList());
+            }
+        };
+        ObjectProvider<EmbeddingModel> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(model);
+        service = new EmbeddingService(provider, new SimpleMeterRegistry(), mock(TrafficTrace.class),
+                32, windowMs, 100, 2, timeoutMs);
+        return service;
+    }
+
+    @Test
+    void concurrentCallsShareABatchAndRepeatsComeFromTheCache() throws Exception {
+        EmbeddingService embeddings = service(200, 5_000);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Embedding>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String text = "clause " + "x".repeat(i);
+                results.add(callers.submit(() -> embeddings.embed(text)));
+            }
+            for (int i = 0; i < 8; i++) {
+                assertEquals(7 + i, results.get(i).get(5, TimeUnit.SECONDS).vector()[0]);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertTrue(calls.size() < 8, "8 concurrent texts took " + calls.size() + " model calls");
+
+        int before = calls.size();
+        assertEquals(7, embeddings.embed("clause ").vector()[0]);
+        assertEquals(before, calls.size(), "repeated text went to the model");
+
+        // Ingestion reuses cached texts and sends only the new ones
+        List<Embedding> ingested = embeddings.embedAll(List.of(TextSegment.from("clause x"), TextSegment.from("new text")));
+        assertEquals(List.of(8f, 8f), ingested.stream().map(embedding -> embedding.vector()[0]).toList());
+        assertEquals(List.of("new text"), calls.get(calls.size() - 1));
+        embeddings.embed("new text");
+        assertEquals(before + 1, calls.size());
+    }
+
+    @Test
+    void aStalledModelTimesOutAndShutdownFailsTheWaiters() throws Exception {
+        EmbeddingService embeddings = service(1, 300);
+        stalled = true;
+
+        IllegalStateException timedOut = assertThrows(IllegalStateException.class, () -> embeddings.embed("first"));
+        assertTrue(timedOut.getMessage().contains("timed out"));
+        assertThrows(IllegalStateException.class, () -> embeddings.embedAll(List.of(TextSegment.from("second"))));
+
+        // A caller left waiting when the service stops fails instead of hanging
+        CompletableFuture<Embedding> waiting = CompletableFuture.supplyAsync(() -> embeddings.embed("third"));
+        Thread.sleep(100);
+        embeddings.shutdown();
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> waiting.get(1, TimeUnit.SECONDS));
+        assertEquals("Embedding failed: Embedding service shut down", failure.getCause().getMessage());
+        assertThrows(IllegalStateException.class, () -> embeddings.embed("after shutdown"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.email.legal_agent.service;
+
+import com.email.legal_agent.dto.LegalAnalysisResult;
+import com.email.legal_agent.service.audit.AuditLog;
+import com.email.legal_agent.service.cancellation.CancellationRegistry;
+import com.email.legal_agent.service.citation.CitationIndex;
+import com.email.legal_agent.service.document.ExtractedDocument;
+import com.email.legal_agent.service.replay.TrafficTrace;
+import com.email.legal_agent.service.session.SessionStore;
+import com.email.legal_agent.service.synthesis.CoordinationPolicy;
+import com.email.legal_agent.service.tools.ToolDispatcher;
+import com.email.legal_agent.service.usage.TokenAccounting;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LegalTeamServiceTest {
+
+    private static final int CONTEXT_TOKENS = 8192;
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final String ANSWER = "Finding: the clause is one-sided. Risk: Medium. ".repeat(40);
+
+    private final CancellationRegistry cancellations = new CancellationRegistry(new SimpleMeterRegistry(), 300, 900);
+    private final SessionStore sessionStore = mock(SessionStore.class);
+    private final TrafficTrace trafficTrace = mock(TrafficTrace.class);
+    private final TokenAccounting tokenAccounting = mock(TokenAccounting.class);
+    private final ToolDispatcher toolDispatcher = mock(ToolDispatcher.class);
+    private final CoordinationPolicy coordinationPolicy = mock(CoordinationPolicy.class);
+    private final List<String> turns = Collections.synchronizedList(new ArrayList<>());
+    // Agent name and the messages of every request it sent, in order
+    private final List<Map.Entry<String, List<ChatMessage>>> requests = Collections.synchronizedList(new ArrayList<>());
+
+    private final LegalTeamService service;
+
+    LegalTeamServiceTest() {
+        doAnswer(call -> turns.add(call.getArgument(1))).when(sessionStore).appendTurn(anyString(), anyString());
+        when(sessionStore.history(anyString())).thenAnswer(call -> List.copyOf(turns));
+        when(trafficTrace.chatModel(any(), anyString())).thenAnswer(call -> recording(call.getArgument(1)));
+        when(tokenAccounting.metering(any(), anyString())).then(returnsFirstArg());
+        when(tokenAccounting.propagating(any())).then(returnsFirstArg());
+        when(toolDispatcher.dispatching(any())).then(returnsFirstArg());
+        when(coordinationPolicy.decide(any())).thenReturn(new CoordinationPolicy.Decision(true, "test"));
+
+        service = new LegalTeamService("test-key", "http://localhost:1", "test-model", 0.1,
+                mock(LegalResearcherTools.class), toolDispatcher, mock(CitationIndex.class), sessionStore,
+                mock(AuditLog.class), coordinationPolicy, tokenAccounting, trafficTrace, cancellations,
+                3000, 2500, 150, 4, true, false, 0.85, 0.5, 100, 2, 512, 0, 384);
+    }
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+        cancellations.shutdown();
+    }
+
+    private ChatLanguageModel recording(String agent) {
+        return new ChatLanguageModel() {
+            @Override
+            public ChatResponse chat(ChatRequest request) {
+                requests.add(Map.entry(agent, List.copyOf(request.messages())));
+                return ChatResponse.builder().aiMessage(AiMessage.from(ANSWER)).build();
+            }
+        };
+    }
+
+    @Test
+    void secondUploadPromptsStayWithinTheContext() {
+        // Just under the single-pass budget, so each upload is analysed in full in one prompt
+        service.analyzeDocument(document("first.txt", "The supplier shall deliver the goods on time. "), "CONTRACT",
+                "session-1", "tenant-a");
+        int firstUploadCalls = requests.size();
+        service.analyzeDocument(document("second.txt", "The licensee may not sublicense the software. "), "CONTRACT",
+                "session-1", "tenant-a");
+
+        List<Map.Entry<String, List<ChatMessage>>> secondUpload = requests.subList(firstUploadCalls, requests.size());
+        assertEquals(Set.of("contract", "compliance", "strategy", "coordinator"),
+                new HashSet<>(secondUpload.stream().map(Map.Entry::getKey).toList()));
+        for (Map.Entry<String, List<ChatMessage>> request : secondUpload) {
+            // Only the system prompt and this upload's question: nothing carried over from the first
+            assertEquals(2, request.getValue().size(), request.getKey() + " replayed earlier messages");
+            int tokens = request.getValue().stream().mapToInt(message -> text(message).length()).sum() / CHARS_PER_TOKEN;
+            assertTrue(tokens < CONTEXT_TOKENS, request.getKey() + " prompt is " + tokens + " tokens");
+            assertFalse(request.getValue().stream().anyMatch(message -> text(message).contains("supplier shall deliver")),
+                    request.getKey() + " saw the first upload");
+        }
+    }
+
+    @Test
+    void onlyTheMostRecentSessionsKeepAVersionBaseline() {
+        service.analyzeDocument(upload("msa-v1.txt", agreement("thirty")), "CONTRACT", "session-1", "tenant-a");
+        service.analyzeDocument(upload("nda.txt", agreement("ninety")), "CONTRACT", "session-2", "tenant-a");
+        service.analyzeDocument(upload("lease.txt", agreement("sixty")), "CONTRACT", "session-3", "tenant-a");
+        service.analyzeDocument(upload("dpa.txt", agreement("ten")), "CONTRACT", "session-2", "tenant-a");
+
+        // Two sessions are kept, so session-1's baseline went when session-3 uploaded
+        assertEquals("new-version", mode(service.analyzeDocument(upload("nda-v2.txt", agreement("fifteen")),
+                "CONTRACT", "session-2", "tenant-a")));
+        assertNotEquals("new-version", mode(service.analyzeDocument(upload("msa-v2.txt", agreement("forty")),
+                "CONTRACT", "session-1", "tenant-a")));
+    }
+
+    @Test
+    void fullQueriesReportTheirProcessingStats() {
+        LegalAnalysisResult result = service.processLegalQuery("Is the indemnity clause in this contract one-sided?",
+                "session-1", "CONTRACT_ANALYSIS", "DETAILED");
+
+        Map<String, Object> stats = result.getProcessingStats();
+        assertNotNull(stats);
+        assertTrue(stats.containsKey("contractMs"), stats.toString());
+        assertTrue(stats.containsKey("coordinationMs"), stats.toString());
+        assertEquals("coordinator", stats.get("coordination"));
+        assertTrue(stats.containsKey("totalMs"), stats.toString());
+    }
+
+    private static String agreement(String noticeDays) {
+        return "1. Parties\nThis agreement is between Acme Corp and Beta LLC.\n\n"
+                + "2. Term\nThe term is two years from the effective date.\n\n"
+                + "3. Termination\nEither party may terminate on " + noticeDays + " days written notice.\n\n"
+                + "4. Payment\nFees are payable within thirty days of invoice.\n\n"
+                + "5. Governing Law\nThis agreement is governed by the laws of Delaware.\n";
+    }
+
+    private static String mode(LegalAnalysisResult result) {
+        return String.valueOf(result.getProcessingStats().get("mode"));
+    }
+
+    private static ExtractedDocument document(String filename, String sentence) {
+        return upload(filename, sentence.repeat(2900 * CHARS_PER_TOKEN / sentence.length()));
+    }
+
+    private static ExtractedDocument upload(String filename, String text) {
+        return new ExtractedDocument(filename, "txt", text, 0, 0, "UTF-8", false, 0);
+    }
+
+    private static String text(ChatMessage message) {
+        if (message instanceof SystemMessage system) {
+            return system.text();
+        }
+        if (message instanceof UserMessage user) {
+            return user.singleText();
+        }
+        return message instanceof AiMessage ai && ai.text() != null ? ai.text() : "";
+    }
+}
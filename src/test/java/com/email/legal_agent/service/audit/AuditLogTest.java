@@ -0,0 +1,120 @@
+package com.email.legal_agent.service.audit;
+
+import com.email.legal_agent.service.LegalTeamService.QueryType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditLogTest {
+
+    private static final Instant BASE = Instant.parse("2025-06-02T00:00:00Z");
+    private static final int BLOCK = 500;
+
+    @TempDir
+    Path directory;
+
+    private AuditLog auditLog;
+
+    @AfterEach
+    void shutdown() {
+        if (auditLog != null) {
+            auditLog.shutdown();
+        }
+    }
+
+    // One query type per block, and every tenth record an error
+    private static AuditRecord record(int i) {
+        QueryType type = QueryType.values()[(i / BLOCK) % QueryType.values().length];
+        AuditRecord.Status status = i % 10 == 0 ? AuditRecord.Status.ERROR : AuditRecord.Status.SUCCESS;
+        return new AuditRecord(BASE.toEpochMilli() + i * 1000L, AuditRecord.Kind.QUERY, type, status,
+                AuditRecord.Mode.NONE, 2000 + i % 500, 300, 400, 500, 600, 200, 4, 1200 + i % 7, i % 3, 0, 0, 0);
+    }
+
+    private void write(int count) throws Exception {
+        // Blocks are cut only when full or flushed, so each one holds a single query type
+        auditLog = new AuditLog(new SimpleMeterRegistry(), true, directory.toString(), 100_000, BLOCK, 60_000, 64, 30);
+        for (int i = 0; i < count; i++) {
+            auditLog.record(record(i));
+        }
+        auditLog.flush().get(10, TimeUnit.SECONDS);
+    }
+
+    private static long bytesOnDisk(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    @Test
+    void recordsRoundTripCompressedAndScansSkipBlocksThatCannotMatch() throws Exception {
+        write(10_000);
+
+        List<AuditRecord> all = new ArrayList<>();
+        AuditLogReader.ScanStats everything = AuditLogReader.scan(directory, AuditQuery.all(), all::add);
+        assertEquals(10_000, all.size());
+        assertEquals(record(1234), all.get(1234));
+        assertTrue(bytesOnDisk(directory) < 10_000L * AuditSegment.RECORD_BYTES / 4,
+                "columnar blocks should compress well, got " + bytesOnDisk(directory) + " bytes");
+        assertEquals(0, everything.blocksSkipped());
+
+        // Compliance errors in the first half: only 2 of the 20 blocks can hold any
+        AuditQuery query = AuditQuery.all()
+                .between(BASE, BASE.plusSeconds(5_000))
+                .queryTypes(QueryType.COMPLIANCE)
+                .statuses(AuditRecord.Status.ERROR);
+        List<AuditRecord> matched = new ArrayList<>();
+        AuditLogReader.ScanStats stats = AuditLogReader.scan(directory, query, matched::add);
+
+        assertEquals(100, matched.size());
+        assertTrue(matched.stream().allMatch(r -> r.queryType() == QueryType.COMPLIANCE
+                && r.status() == AuditRecord.Status.ERROR && r.timestampMillis() < BASE.plusSeconds(5_000).toEpochMilli()));
+        assertEquals(2, stats.blocksRead());
+        assertEquals(18, stats.blocksSkipped());
+    }
+
+    @Test
+    void partlyWrittenBlockEndsTheSegmentAndTheCliSummarizes() throws Exception {
+        write(1_000);
+        auditLog.shutdown();
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        // A crash in the middle of a block: a header promising more bytes than follow
+        byte[] cut = new byte[AuditSegment.BLOCK_HEADER_BYTES + 10];
+        System.arraycopy(Files.readAllBytes(segment), AuditSegment.FILE_HEADER_BYTES, cut, 0, cut.length);
+        Files.write(segment, cut, StandardOpenOption.APPEND);
+
+        List<AuditRecord> all = new ArrayList<>();
+        AuditLogReader.scan(directory, AuditQuery.all(), all::add);
+        assertEquals(1_000, all.size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exit = AuditLogCli.run(new String[]{"--dir", directory.toString(), "--status", "error"},
+                new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8));
+
+        assertEquals(0, exit);
+        String summary = out.toString(StandardCharsets.UTF_8);
+        assertTrue(summary.contains("QUERY CONTRACT_ANALYSIS"), summary);
+        assertTrue(summary.contains("QUERY COMPLIANCE"), summary);
+        assertTrue(err.toString(StandardCharsets.UTF_8).startsWith("100 records matched of 1000 scanned"));
+
+        assertEquals(2, AuditLogCli.run(new String[]{"--format", "xml"}, new PrintStream(out), new PrintStream(err)));
+    }
+}
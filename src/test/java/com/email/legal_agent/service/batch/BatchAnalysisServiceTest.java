@@ -0,0 +1,152 @@
+package com.email.legal_agent.service.batch;
+
+import com.email.legal_agent.dto.BatchEvent;
+import com.email.legal_agent.dto.LegalAnalysisResult;
+import com.email.legal_agent.service.LegalTeamService;
+import com.email.legal_agent.service.cancellation.CancellationRegistry;
+import com.email.legal_agent.service.document.DocumentExtractionService;
+import com.email.legal_agent.service.document.ExtractedDocument;
+import com.email.legal_agent.service.scheduling.AgentScheduler;
+import com.email.legal_agent.service.usage.TokenAccounting;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BatchAnalysisServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DocumentExtractionService extraction =
+            new DocumentExtractionService(new SimpleMeterRegistry(), 30, 1_000_000, 4, 2);
+    private final LegalTeamService legalTeamService = mock(LegalTeamService.class);
+    private final AgentScheduler scheduler =
+            new AgentScheduler(new SimpleMeterRegistry(), 8, 8, 8, 6, 4, 30_000, 300, 1000, "");
+    private final BatchAnalysisService service = new BatchAnalysisService(
+            legalTeamService, extraction, scheduler, mock(TokenAccounting.class),
+            new CancellationRegistry(new SimpleMeterRegistry(), 300, 900), objectMapper, 3, 0, 500, 1024 * 1024, 60, 6, true);
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+        extraction.shutdown();
+    }
+
+    @Test
+    void archiveEntriesAreStreamedAndFailuresStayIsolated() throws Exception {
+        when(legalTeamService.analyzeDocument(any(ExtractedDocument.class), anyString(), anyString(), anyString())).thenAnswer(call -> {
+            ExtractedDocument document = call.getArgument(0);
+            if (document.filename().contains("broken")) {
+                throw new IllegalStateException("model unavailable");
+            }
+            LegalAnalysisResult result = new LegalAnalysisResult();
+            result.setExecutiveSummary("Reviewed " + document.filename());
+            return result;
+        });
+
+        MockMultipartFile archive = new MockMultipartFile("files", "contracts.zip", "application/zip", zip(Map.of(
+                "nda/acme.txt", "Mutual NDA between Acme and Beta.",
+                "nda/gamma.txt", "Mutual NDA between Gamma and Delta.",
+                "msa/broken.txt", "Master services agreement.",
+                "images/logo.png", "not a document")));
+        MockMultipartFile single = new MockMultipartFile("files", "lease.txt", "text/plain",
+                "Lease of the premises at 12 High Street.".getBytes(StandardCharsets.UTF_8));
+
+        BatchJob job = service.submit(List.of(archive, single), "CONTRACT", "tenant-a");
+        List<JsonNode> lines = readAll(job, 0);
+
+        assertEquals(6, lines.size());
+        JsonNode summary = lines.get(5);
+        assertEquals(BatchEvent.COMPLETED, summary.get("event").asText());
+        assertEquals(5, summary.get("documents").asInt());
+        assertEquals(2, summary.get("failed").asInt());
+
+        Map<String, JsonNode> byFile = new HashMap<>();
+        lines.subList(0, 5).forEach(line -> byFile.put(line.get("filename").asText(), line));
+        assertEquals("SUCCESS", byFile.get("lease.txt").get("status").asText());
+        assertEquals("Reviewed nda/acme.txt", byFile.get("nda/acme.txt").get("result").get("executiveSummary").asText());
+        assertEquals("FAILED", byFile.get("msa/broken.txt").get("status").asText());
+        assertEquals("model unavailable", byFile.get("msa/broken.txt").get("error").asText());
+        assertEquals("Unsupported file type", byFile.get("images/logo.png").get("error").asText());
+
+        // Sequence numbers are contiguous, and a reconnect replays only what came after
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(i + 1, lines.get(i).get("sequence").asLong());
+        }
+        List<JsonNode> resumed = readAll(job, 4);
+        assertEquals(List.of(5L, 6L), resumed.stream().map(line -> line.get("sequence").asLong()).toList());
+        verify(legalTeamService, times(4)).clearConversationHistory(anyString());
+    }
+
+    @Test
+    void batchesAreScopedToTheirTenantAndOldOnesEvictedBeyondTheCap() throws Exception {
+        when(legalTeamService.analyzeDocument(any(ExtractedDocument.class), anyString(), anyString(), anyString()))
+                .thenAnswer(call -> new LegalAnalysisResult());
+
+        BatchJob first = service.submit(files(4), "CONTRACT", "tenant-a");
+        readAll(first, 0);
+        assertTrue(service.find(first.id(), "tenant-a").isPresent());
+        assertTrue(service.find(first.id(), "tenant-b").isEmpty());
+
+        // Four more results take the finished batches past the cap of six, so the oldest goes
+        BatchJob second = service.submit(files(4), "CONTRACT", "tenant-b");
+        readAll(second, 0);
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (service.find(first.id(), "tenant-a").isPresent() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(service.find(first.id(), "tenant-a").isEmpty());
+        assertTrue(service.find(second.id(), "tenant-b").isPresent());
+    }
+
+    private static List<MultipartFile> files(int count) {
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            files.add(new MockMultipartFile("files", "contract-" + i + ".txt", "text/plain",
+                    ("Agreement number " + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        return files;
+    }
+
+    @Test
+    void emptySubmissionIsRejected() {
+        MockMultipartFile empty = new MockMultipartFile("files", "empty.txt", "text/plain", new byte[0]);
+
+        assertThrows(IllegalArgumentException.class, () -> service.submit(List.of(empty), "CONTRACT", "tenant-a"));
+    }
+
+    private List<JsonNode> readAll(BatchJob job, long after) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.stream(job, after, out);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private static byte[] zip(Map<String, String> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, String> entry : new TreeMap<>(entries).entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
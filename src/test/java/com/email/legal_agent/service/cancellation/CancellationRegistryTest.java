@@ -0,0 +1,113 @@
+package com.email.legal_agent.service.cancellation;
+
+import com.email.legal_agent.service.scheduling.AgentScheduler;
+import com.email.legal_agent.service.scheduling.Priority;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CancellationRegistryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CancellationRegistry registry = new CancellationRegistry(meterRegistry, 300, 900);
+
+    @AfterEach
+    void shutdown() {
+        registry.shutdown();
+    }
+
+    // Blocks like a slow provider until its thread is interrupted
+    private static ChatLanguageModel hanging(CountDownLatch started) {
+        return new ChatLanguageModel() {
+            @Override
+            public ChatResponse chat(ChatRequest request) {
+                started.countDown();
+                try {
+                    Thread.sleep(60_000);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException("request aborted", e);
+                }
+                throw new AssertionError("not interrupted");
+            }
+        };
+    }
+
+    private static ChatRequest question() {
+        return ChatRequest.builder().messages(UserMessage.from("question")).build();
+    }
+
+    @Test
+    void cancellingAJobCutsOffItsModelCallAndSkipsTheNextStep() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        ChatLanguageModel model = registry.cancellable(hanging(started));
+        CancellationToken token = registry.register("job-1", "acme", null);
+        CompletableFuture<ChatResponse> job = registry.submit(token, () -> {
+            try {
+                return model.chat(question());
+            } catch (CancellationException e) {
+                // The agent's next step doesn't reach the model at all
+                return model.chat(question());
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertFalse(registry.cancel("job-1", "other-tenant", CancellationToken.Reason.CLIENT_REQUEST));
+        assertTrue(registry.cancel("job-1", "acme", CancellationToken.Reason.CLIENT_DISCONNECT));
+
+        // A job future fails with the CancellationException itself, not wrapped
+        assertThrows(CancellationException.class, () -> job.get(5, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.get("legal.cancellations").tag("reason", "client-disconnect").counter().count());
+        assertEquals(1, meterRegistry.get("legal.cancellation.aborted").tag("stage", "model-call").counter().count());
+        assertEquals(1, meterRegistry.get("legal.cancellation.aborted").tag("stage", "agent-step").counter().count());
+    }
+
+    @Test
+    void aDeadlineTakesAQueuedJobOutOfTheSchedulerWithoutLeakingItsSlot() throws Exception {
+        AgentScheduler scheduler = new AgentScheduler(meterRegistry, 1, 1, 1, 1, 1, 30_000, 300, 10, "");
+        AgentScheduler.Permit held = scheduler.acquire(Priority.MEDIUM, "acme");
+
+        CancellationToken token = registry.register("job-2", "acme", 1L);
+        CompletableFuture<AgentScheduler.Permit> job = registry.submit(token,
+                () -> scheduler.acquire(Priority.MEDIUM, "acme"));
+
+        // A job future fails with the CancellationException itself, not wrapped
+        assertThrows(CancellationException.class, () -> job.get(10, TimeUnit.SECONDS));
+        assertEquals(CancellationToken.Reason.DEADLINE, token.reason());
+        assertEquals(1, meterRegistry.get("legal.cancellation.aborted").tag("stage", "scheduler-queue")
+                .tag("reason", "deadline").counter().count());
+
+        // The cancelled waiter is gone, so the slot goes straight to the next caller
+        held.close();
+        CompletableFuture<AgentScheduler.Permit> next = CompletableFuture.supplyAsync(() -> {
+            try {
+                return scheduler.acquire(Priority.MEDIUM, "acme");
+            } catch (InterruptedException e) {
+                throw new CompletionException(e);
+            }
+        });
+        next.get(5, TimeUnit.SECONDS).close();
+    }
+
+    @Test
+    void jobIdsAreUniquePerTenantAndNegativeDeadlinesRejected() {
+        CancellationToken token = registry.register("job-3", "acme", 0L);
+        assertThrows(IllegalArgumentException.class, () -> registry.register("job-3", "acme", null));
+        assertThrows(IllegalArgumentException.class, () -> registry.register("job-4", "acme", -1L));
+
+        // Job ids are per tenant
+        CancellationToken other = registry.register("job-3", "globex");
+        registry.unregister(token);
+        assertFalse(registry.cancel("job-3", "acme", CancellationToken.Reason.CLIENT_REQUEST));
+        assertTrue(registry.cancel("job-3", "globex", CancellationToken.Reason.CLIENT_REQUEST));
+        assertTrue(other.isCancelled());
+        assertFalse(token.isCancelled());
+    }
+}
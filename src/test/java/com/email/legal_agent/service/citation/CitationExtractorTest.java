@@ -0,0 +1,79 @@
+package com.email.legal_agent.service.citation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CitationExtractorTest {
+
+    private static final String FINDINGS = """
+            The agreement is governed by the laws of Delaware. Smith v. Jones Corporation, 123 F. 3d 456, 460
+            (Ninth Circuit 2001) held otherwise. See also Carpenter v. United States, 585 U.S. 296 (2018).
+            Claims arise under 42 U.S.C. § 1983(a)(1), 16 CFR 312.5(c) and 45 C.F.R. Part 164.
+            Under Cal. Bus. & Prof. Code § 16600 and Section 1798.120 of the CCPA, plus California Civil Code
+            section 1798.100(a); New York General Business Law § 349 may also apply. Processors must meet
+            Article 28(3) GDPR and GDPR Art. 6(1)(f). Doe v. Roe, 10 F. Supp. 2d 20 (S.D.N.Y. 1998).
+            """;
+
+    @Test
+    void citationsAreNormalizedToBluebookForm() {
+        List<Citation> citations = CitationExtractor.extract(FINDINGS);
+
+        assertEquals(List.of(
+                "Smith v. Jones Corp., 123 F.3d 456, 460 (9th Cir. 2001)",
+                "Carpenter v. United States, 585 U.S. 296 (2018)",
+                "42 U.S.C. § 1983(a)(1)",
+                "16 C.F.R. § 312.5(c)",
+                "45 C.F.R. pt. 164",
+                "Cal. Bus. & Prof. Code § 16600",
+                "Cal. Civ. Code § 1798.120",
+                "Cal. Civ. Code § 1798.100(a)",
+                "N.Y. Gen. Bus. Law § 349",
+                "Regulation 2016/679, art. 28(3), 2016 O.J. (L 119) 1 (EU)",
+                "Regulation 2016/679, art. 6(1)(f), 2016 O.J. (L 119) 1 (EU)",
+                "Doe v. Roe, 10 F. Supp. 2d 20 (S.D.N.Y. 1998)"),
+                citations.stream().map(Citation::bluebook).toList());
+
+        Citation smith = citations.get(0);
+        assertEquals("Smith v. Jones Corp., 123 F.3d 456", smith.key());
+        assertEquals("9th Cir.", smith.court());
+        assertEquals(2001, smith.year());
+        assertTrue(FINDINGS.substring(smith.start(), smith.end()).startsWith("Smith v. Jones"));
+        assertEquals("U.S. Supreme Court", citations.get(1).court());
+        assertEquals(CitationType.CCPA, citations.get(7).type(), "Cal. Civ. Code § 1798.1xx is the CCPA");
+        assertEquals(CitationType.STATE_CODE, citations.get(5).type());
+    }
+
+    @Test
+    void nameOnlyMentionsAreShortForms() {
+        List<Citation> citations = CitationExtractor.extract("In Riley v. California the Court agreed.");
+
+        assertEquals(1, citations.size());
+        assertEquals("Riley v. California", citations.get(0).bluebook());
+        assertTrue(citations.get(0).isShortForm());
+    }
+
+    @Test
+    void scansMegabytesPerSecond() {
+        StringBuilder text = new StringBuilder();
+        String filler = "The Supplier shall process Customer Data under the Governing Law of the State only on "
+                + "documented instructions and in line with the Code of Conduct. ";
+        int expected = 0;
+        while (text.length() < 4_000_000) {
+            text.append(filler.repeat(12))
+                    .append("See Smith v. Jones, 123 F.3d 456 (9th Cir. 2001); 42 U.S.C. § 1983; Article 28 GDPR. ");
+            expected += 3;
+        }
+        String document = text.toString();
+        CitationExtractor.extract(document);
+
+        long start = System.nanoTime();
+        int found = CitationExtractor.extract(document).size();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        assertEquals(expected, found);
+        assertTrue(document.length() / seconds > 2_000_000, "scanned " + (document.length() / seconds / 1e6) + " MB/s");
+    }
+}
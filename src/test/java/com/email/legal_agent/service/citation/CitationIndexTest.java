@@ -0,0 +1,57 @@
+package com.email.legal_agent.service.citation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CitationIndexTest {
+
+    @Test
+    void citationsMapToEverySourceThatContainsThem() {
+        CitationIndex index = new CitationIndex(100);
+        index.index("Notice under Article 33 GDPR within 72 hours; see Carpenter v. United States, 585 U.S. 296 (2018).",
+                CitationIndex.Source.session("s1"));
+        index.index("Article 33(1) of the GDPR requires notification.", CitationIndex.Source.segment("kb-7"));
+        index.index("As Carpenter v. United States explains, location data needs a warrant.",
+                CitationIndex.Source.session("s2"));
+
+        CitationIndex.Entry gdpr = index.lookup("Regulation 2016/679, art. 33, 2016 O.J. (L 119) 1 (EU)").orElseThrow();
+        assertEquals(Set.of("s1"), gdpr.sessions());
+        assertEquals(Set.of("kb-7"), gdpr.segments(), "subsections share the article's entry");
+
+        CitationIndex.Entry carpenter = index.lookup("Carpenter v. United States, 585 U.S. 296").orElseThrow();
+        assertEquals(Set.of("s1", "s2"), carpenter.sessions(), "name-only mentions resolve to the full citation");
+        assertEquals("Carpenter v. United States, 585 U.S. 296 (2018)", carpenter.bluebook());
+    }
+
+    @Test
+    void clearingASourceRemovesItsCitations() {
+        CitationIndex index = new CitationIndex(100);
+        index.index("See 42 U.S.C. § 1983.", CitationIndex.Source.session("s1"));
+        index.index("See 42 U.S.C. § 1983 and 16 C.F.R. § 312.5.", CitationIndex.Source.session("s2"));
+
+        index.remove(CitationIndex.Source.session("s2"));
+
+        assertEquals(1, index.size());
+        assertEquals(Set.of("s1"), index.lookup("42 U.S.C. § 1983").orElseThrow().sessions());
+        assertTrue(index.lookup("16 C.F.R. § 312.5").isEmpty());
+    }
+
+    @Test
+    void oldestSessionsAreEvictedBeyondTheLimit() {
+        CitationIndex index = new CitationIndex(2);
+        index.index("See 42 U.S.C. § 1983.", CitationIndex.Source.session("s1"));
+        index.index("See 16 C.F.R. § 312.5.", CitationIndex.Source.session("s2"));
+        index.index("See 42 U.S.C. § 1983 again.", CitationIndex.Source.session("s1"));
+        index.index("Article 33(1) of the GDPR requires notification.", CitationIndex.Source.segment("kb-7"));
+        index.index("See 15 U.S.C. § 45.", CitationIndex.Source.session("s3"));
+
+        assertEquals(Set.of(), index.lookup("42 U.S.C. § 1983").map(CitationIndex.Entry::sessions).orElse(Set.of()));
+        assertEquals(Set.of("s2"), index.lookup("16 C.F.R. § 312.5").orElseThrow().sessions());
+        assertEquals(Set.of("s3"), index.lookup("15 U.S.C. § 45").orElseThrow().sessions());
+        assertEquals(Set.of("kb-7"), index.lookup("Regulation 2016/679, art. 33, 2016 O.J. (L 119) 1 (EU)")
+                .orElseThrow().segments(), "knowledge-base segments don't count against the limit");
+    }
+}
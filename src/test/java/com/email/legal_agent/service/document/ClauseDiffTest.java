@@ -0,0 +1,105 @@
+package com.email.legal_agent.service.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClauseDiffTest {
+
+    private static final String V1 = """
+            1. Term
+            This Agreement runs for three years.
+
+            2. Limitation of Liability
+            Liability is capped at the fees paid in the prior 12 months.
+
+            3. Notices
+            Notices shall be in writing.
+
+            4. Governing Law
+            This Agreement is governed by the laws of England and Wales.
+            """;
+
+    private static final String V2 = """
+            1. Term
+            This Agreement runs for three years.
+
+            2. Limitation of Liability
+            Liability is capped at twice the fees paid in the prior 12 months.
+
+            4. Governing Law
+            This Agreement   is governed by the laws of England and Wales.
+
+            5. Audit
+            The Customer may audit the Supplier once a year.
+            """;
+
+    @Test
+    void clausesAreAlignedByNumber() {
+        List<ClauseDiff.Snapshot> before = ClauseDiff.snapshot(ClauseSegmenter.segment(V1), V1, false);
+
+        ClauseDiff diff = ClauseDiff.between(before, ClauseSegmenter.segment(V2), V2);
+
+        assertEquals(List.of("2"), diff.changed().stream().map(ClauseIndex.Clause::number).toList());
+        assertEquals(List.of("5"), diff.added().stream().map(ClauseIndex.Clause::number).toList());
+        assertEquals(List.of("3"), diff.removed().stream().map(ClauseDiff.Snapshot::number).toList());
+        // Whitespace-only edits don't count
+        assertEquals(2, diff.unchanged());
+        assertTrue(diff.touches(Set.of(ClauseCategory.LIABILITY)));
+        assertFalse(diff.touches(Set.of(ClauseCategory.DATA_PROTECTION)));
+    }
+
+    @Test
+    void revisedFindingsReplaceTheirSections() {
+        String previous = """
+                Summary of the agreement.
+
+                ### Clause 2 - Limitation of Liability
+                Cap is low. Risk: medium.
+
+                ### Clause 3 - Notices
+                Standard.""";
+        String delta = """
+                ### Clause 2 - Limitation of Liability
+                Cap doubled. Risk: low.
+
+                ### Clause 5 - Audit
+                Annual audit right.""";
+
+        String merged = ClauseFindings.merge(previous, delta, List.of("3"));
+
+        assertTrue(merged.startsWith("Summary of the agreement."));
+        assertTrue(merged.contains("Cap doubled. Risk: low."));
+        assertFalse(merged.contains("Cap is low"));
+        assertFalse(merged.contains("Notices"));
+        assertTrue(merged.indexOf(ClauseFindings.UPDATED_HEADING) < merged.indexOf("Annual audit right."));
+
+        // A second round replaces the added section rather than appending another copy
+        String again = ClauseFindings.merge(merged, "### Clause 5 - Audit\nAudit limited to records.", List.of());
+        assertEquals(1, again.split(ClauseFindings.UPDATED_HEADING, -1).length - 1);
+        assertFalse(again.contains("Annual audit right."));
+    }
+
+    @Test
+    void previousWordingAndStatedRiskAreAvailableForTheNextVersion() {
+        ClauseIndex v1 = ClauseSegmenter.segment(V1);
+        List<ClauseDiff.Snapshot> before = ClauseDiff.snapshot(v1, V1, true);
+
+        ClauseIndex v2 = ClauseSegmenter.segment(V2);
+        ClauseDiff diff = ClauseDiff.between(before, v2, V2);
+
+        ClauseDiff.Snapshot previous = diff.previousVersion(diff.changed().get(0));
+        assertTrue(previous.text().contains("capped at the fees paid"));
+        assertNull(previous.withoutText().text());
+
+        String findings = ClauseFindings.heading(v2.clauses().get(1)) + "\nThe cap doubled.\n**Risk:** Low";
+        assertEquals("### Clause 2 - Limitation of Liability", findings.lines().findFirst().orElseThrow());
+        String section = ClauseFindings.sections(findings).get(ClauseFindings.key(v2.clauses().get(1)));
+        assertEquals("low", ClauseFindings.riskLevel(section).orElseThrow());
+        assertEquals("high", ClauseFindings.riskLevel("Risk level - HIGH, see below").orElseThrow());
+        assertTrue(ClauseFindings.riskLevel("No risk identified").isEmpty());
+    }
+}
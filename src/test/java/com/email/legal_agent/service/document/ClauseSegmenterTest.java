@@ -0,0 +1,98 @@
+package com.email.legal_agent.service.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClauseSegmenterTest {
+
+    private static final String CONTRACT = """
+            MASTER SERVICES AGREEMENT
+            This Agreement is made between Acme Corp (the "Supplier") and Beta LLC (the "Customer").
+
+            1. Definitions
+            "Services" means the hosting services described in Schedule 1.
+            "Customer Data" means all personal data processed by the Supplier on behalf of the Customer.
+
+            2. Term
+            This Agreement starts on the Effective Date and runs for three years.
+
+            3. Data Protection
+            3.1 The Supplier shall process Customer Data only on documented instructions.
+            3.2 The Supplier shall notify the Customer of any breach within 72 hours.
+
+            4. Limitation of Liability
+            Neither party's liability shall exceed the fees paid in the prior 12 months.
+
+            5. Termination
+            Either party may terminate for material breach on 30 days written notice.
+
+            6. Notices
+            Notices shall be in writing and delivered to the addresses above.
+
+            7. Governing Law
+            This Agreement is governed by the laws of England and Wales.
+            """;
+
+    @Test
+    void headingsNumberingAndDefinedTermsAreIndexed() {
+        ClauseIndex index = ClauseSegmenter.segment(CONTRACT);
+
+        List<String> numbers = index.clauses().stream().map(ClauseIndex.Clause::number).toList();
+        assertEquals(List.of("", "1", "2", "3", "3.1", "3.2", "4", "5", "6", "7"), numbers);
+        assertEquals("MASTER SERVICES AGREEMENT", index.clauses().get(0).title());
+        assertEquals(2, index.clauses().get(4).level());
+
+        assertTrue(index.definedTerms().keySet().containsAll(List.of("Supplier", "Customer", "Services", "Customer Data")));
+        assertEquals(1, index.definedTerms().get("Services").clauseIndex());
+
+        ClauseIndex.Clause subClause = index.clauses().get(5);
+        assertTrue(subClause.categories().contains(ClauseCategory.DATA_PROTECTION), "sub-clauses inherit the parent's family");
+    }
+
+    @Test
+    void eachAudienceSeesOnlyItsClauses() {
+        ClauseIndex index = ClauseSegmenter.segment(CONTRACT);
+
+        String compliance = index.render(ClauseIndex.Audience.COMPLIANCE);
+        assertTrue(compliance.contains("breach within 72 hours"));
+        assertTrue(compliance.contains("laws of England and Wales"));
+        assertFalse(compliance.contains("fees paid in the prior 12 months"));
+        assertFalse(compliance.contains("Notices shall be in writing"));
+        // Definitions used by the selected clauses travel with them
+        assertTrue(compliance.contains("\"Customer Data\" means all personal data"));
+
+        String strategy = index.render(ClauseIndex.Audience.STRATEGY);
+        assertTrue(strategy.contains("fees paid in the prior 12 months"));
+        assertTrue(strategy.contains("30 days written notice"));
+        assertFalse(strategy.contains("breach within 72 hours"));
+        assertTrue(strategy.length() < CONTRACT.length());
+    }
+
+    @Test
+    void unstructuredTextFallsBackToFullDocument() {
+        String letter = "Dear Sir,\nplease find enclosed the signed copy of the lease for your records.\n";
+
+        ClauseIndex index = ClauseSegmenter.segment(letter);
+
+        assertFalse(index.isStructured());
+        assertEquals(letter, index.render(ClauseIndex.Audience.COMPLIANCE));
+    }
+
+    @Test
+    void hundredPageContractIsSegmentedCompletely() {
+        StringBuilder contract = new StringBuilder(CONTRACT);
+        for (int clause = 8; clause < 408; clause++) {
+            contract.append(clause).append(". Miscellaneous Obligation ").append(clause).append('\n');
+            contract.append("The Supplier shall comply with the obligations in this clause at its own cost. ".repeat(8))
+                    .append("\n\n");
+        }
+
+        ClauseIndex index = ClauseSegmenter.segment(contract.toString());
+
+        assertEquals(410, index.clauses().size());
+        assertEquals(contract.length(), index.clauses().get(index.clauses().size() - 1).end());
+    }
+}
@@ -0,0 +1,54 @@
+package com.email.legal_agent.service.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentChunkerTest {
+
+    @Test
+    void shortTextIsSingleChunk() {
+        List<DocumentChunker.Chunk> chunks = DocumentChunker.split("1. Parties\nAcme and Beta.", 1000, 100);
+
+        assertEquals(1, chunks.size());
+        assertEquals("1. Parties\nAcme and Beta.", chunks.get(0).text());
+    }
+
+    @Test
+    void chunksEndOnClauseHeadingsAndCoverTheWholeText() {
+        StringBuilder text = new StringBuilder();
+        for (int clause = 1; clause <= 60; clause++) {
+            text.append(clause).append(". Clause heading ").append(clause).append('\n');
+            text.append("The Supplier shall perform the obligations in this clause diligently. ".repeat(4)).append("\n\n");
+        }
+
+        List<DocumentChunker.Chunk> chunks = DocumentChunker.split(text.toString(), 2000, 200);
+
+        assertTrue(chunks.size() > 5);
+        assertEquals(0, chunks.get(0).start());
+        assertEquals(text.length(), chunks.get(chunks.size() - 1).end());
+        for (int i = 0; i < chunks.size(); i++) {
+            DocumentChunker.Chunk chunk = chunks.get(i);
+            assertTrue(chunk.text().length() <= 2000);
+            if (i < chunks.size() - 1) {
+                // Every chunk but the last stops right before a numbered heading
+                assertTrue(text.substring(chunk.end()).matches("(?s)\\d+\\. Clause heading.*"), "chunk " + i);
+                // and the next one overlaps it without leaving a gap
+                DocumentChunker.Chunk next = chunks.get(i + 1);
+                assertTrue(next.start() < chunk.end() && next.start() > chunk.start());
+            }
+        }
+    }
+
+    @Test
+    void textWithoutBoundariesIsHardCut() {
+        String text = "x".repeat(2500);
+
+        List<DocumentChunker.Chunk> chunks = DocumentChunker.split(text, 1000, 100);
+
+        assertEquals(1000, chunks.get(0).end());
+        assertEquals(text.length(), chunks.get(chunks.size() - 1).end());
+    }
+}
@@ -0,0 +1,98 @@
+package com.email.legal_agent.service.document;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentExtractionServiceTest {
+
+    private final DocumentExtractionService service =
+            new DocumentExtractionService(new SimpleMeterRegistry(), 30, 1_000_000, 4, 4);
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void parallelPdfExtractionKeepsPageOrderAndHonoursPageCap() throws IOException {
+        MockMultipartFile pdf = new MockMultipartFile("file", "bundle.pdf", "application/pdf", pdfWithPages(40));
+
+        ExtractedDocument document = service.extract(pdf);
+
+        assertEquals(40, document.pageCount());
+        assertEquals(30, document.pagesExtracted());
+        assertTrue(document.truncated());
+        assertTrue(document.text().contains("Clause 1 of the agreement"));
+        assertTrue(document.text().contains("Clause 30 of the agreement"));
+        assertFalse(document.text().contains("Clause 31 of the agreement"));
+        assertTrue(document.text().indexOf("Clause 9 of") < document.text().indexOf("Clause 10 of"));
+        assertTrue(document.text().indexOf("Clause 19 of") < document.text().indexOf("Clause 20 of"));
+    }
+
+    @Test
+    void docxBodyIsStreamedWithParagraphBreaks() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (XWPFDocument docx = new XWPFDocument()) {
+            docx.createParagraph().createRun().setText("1. Definitions");
+            docx.createParagraph().createRun().setText("\"Confidential Information\" means any non-public information.");
+            docx.write(bytes);
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "nda.docx",
+                "application/vnd.openxmlformats-officedocument.wordprocessingml.document", bytes.toByteArray());
+
+        ExtractedDocument document = service.extract(file);
+
+        assertEquals("1. Definitions\n\"Confidential Information\" means any non-public information.\n", document.text());
+        assertFalse(document.truncated());
+    }
+
+    @Test
+    void legacyEncodedTextIsDetected() throws IOException {
+        byte[] latin1 = "Société Générale — § 4 Haftung".getBytes(Charset.forName("windows-1252"));
+        MockMultipartFile file = new MockMultipartFile("file", "notes.txt", "text/plain", latin1);
+
+        ExtractedDocument document = service.extract(file);
+
+        assertEquals("windows-1252", document.charset());
+        assertEquals("Société Générale — § 4 Haftung", document.text());
+    }
+
+    @Test
+    void unsupportedTypeIsRejected() {
+        MockMultipartFile file = new MockMultipartFile("file", "image.png", "image/png", new byte[]{1, 2, 3});
+
+        assertThrows(IllegalArgumentException.class, () -> service.extract(file));
+    }
+
+    private static byte[] pdfWithPages(int pages) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 1; i <= pages; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("Clause " + i + " of the agreement");
+                    content.endText();
+                }
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            document.save(bytes);
+            return bytes.toByteArray();
+        }
+    }
+}
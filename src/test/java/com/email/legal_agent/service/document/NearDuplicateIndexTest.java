@@ -0,0 +1,86 @@
+package com.email.legal_agent.service.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearDuplicateIndexTest {
+
+    private static final String[] SUBJECTS = {"records", "copies", "employees", "advisers", "affiliates", "notes",
+            "samples", "software", "drawings", "forecasts", "pricing", "customers", "suppliers", "roadmaps",
+            "designs", "formulas", "reports", "minutes", "budgets", "patents"};
+
+    private static String nda(String discloser, String recipient) {
+        StringBuilder text = new StringBuilder("MUTUAL NON-DISCLOSURE AGREEMENT\nThis Agreement is between ")
+                .append(discloser).append(" and ").append(recipient).append(".\n\n");
+        for (int clause = 0; clause < SUBJECTS.length; clause++) {
+            String subject = SUBJECTS[clause];
+            String next = SUBJECTS[(clause + 7) % SUBJECTS.length];
+            text.append(clause + 1).append(". Handling of ").append(subject).append('\n')
+                    .append("The Recipient shall keep all ").append(subject).append(" received from the Discloser secret, ")
+                    .append("shall not share ").append(subject).append(" or related ").append(next)
+                    .append(" with third parties, and shall return any ").append(subject)
+                    .append(" on request together with derived ").append(next).append(".\n\n");
+        }
+        return text.toString();
+    }
+
+    @Test
+    void sameTemplateWithOtherPartiesIsNearDuplicate() {
+        DocumentFingerprint original = DocumentFingerprint.of(nda("Acme Corp", "Beta LLC"));
+        DocumentFingerprint renamed = DocumentFingerprint.of(nda("Gamma Holdings", "Delta Partners"));
+        DocumentFingerprint unrelated = DocumentFingerprint.of(
+                "This lease of the premises at 12 High Street runs for five years at a rent payable quarterly in advance. ".repeat(20));
+
+        assertNotEquals(original.contentHash(), renamed.contentHash());
+        assertTrue(original.similarity(renamed) > 0.85, "similarity was " + original.similarity(renamed));
+        assertTrue(original.similarity(unrelated) < 0.2, "similarity was " + original.similarity(unrelated));
+    }
+
+    @Test
+    void lookupPrefersExactMatchThenNearest() {
+        NearDuplicateIndex<String> index = new NearDuplicateIndex<>(100);
+        DocumentFingerprint original = DocumentFingerprint.of(nda("Acme Corp", "Beta LLC"));
+        index.put("tenant-a", original, "acme");
+
+        Optional<NearDuplicateIndex.Match<String>> exact = index.findNearest("tenant-a", DocumentFingerprint.of(nda("Acme Corp", "Beta LLC")), 0.85);
+        assertTrue(exact.isPresent() && exact.get().exact());
+
+        Optional<NearDuplicateIndex.Match<String>> near = index.findNearest("tenant-a", DocumentFingerprint.of(nda("Gamma Holdings", "Beta LLC")), 0.85);
+        assertTrue(near.isPresent());
+        assertFalse(near.get().exact());
+        assertEquals("acme", near.get().value());
+
+        assertTrue(index.findNearest("tenant-a", DocumentFingerprint.of("Completely different short text about a lease."), 0.85).isEmpty());
+    }
+
+    @Test
+    void otherTenantsNeverSeeAnEntry() {
+        NearDuplicateIndex<String> index = new NearDuplicateIndex<>(100);
+        DocumentFingerprint original = DocumentFingerprint.of(nda("Acme Corp", "Beta LLC"));
+        index.put("tenant-a", original, "acme");
+
+        assertTrue(index.findNearest("tenant-b", original, 0.85).isEmpty());
+        assertTrue(index.findNearest("tenant-b", DocumentFingerprint.of(nda("Gamma Holdings", "Beta LLC")), 0.85).isEmpty());
+
+        // The same content analysed for another tenant is a separate entry
+        index.put("tenant-b", original, "beta");
+        assertEquals(2, index.size());
+        assertEquals("acme", index.findNearest("tenant-a", original, 0.85).orElseThrow().value());
+        assertEquals("beta", index.findNearest("tenant-b", original, 0.85).orElseThrow().value());
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() {
+        NearDuplicateIndex<Integer> index = new NearDuplicateIndex<>(2);
+        DocumentFingerprint first = DocumentFingerprint.of(nda("First Ltd", "One Inc"));
+        index.put("tenant-a", first, 1);
+        index.put("tenant-a", DocumentFingerprint.of("Second unrelated document about lease payments and rent reviews."), 2);
+        index.put("tenant-a", DocumentFingerprint.of("Third unrelated document about employment and notice periods."), 3);
+
+        assertEquals(2, index.size());
+        assertTrue(index.findNearest("tenant-a", first, 0.99).isEmpty());
+    }
+}
@@ -0,0 +1,140 @@
+package com.email.legal_agent.service.knowledge;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.*;
+
+class Bm25IndexTest {
+
+    @Test
+    void tokenizerKeepsLegalIdentifiersIntact() {
+        List<String> tokens = LegalTokenizer.tokenize(
+                "Under Section 1798.120 and GDPR Article 30, see 42 U.S.C. § 1983 and Smith v. Jones, 123 F.3d 456.");
+
+        assertTrue(tokens.contains("§1798.120"));
+        assertTrue(tokens.contains("1798.120"));
+        assertTrue(tokens.contains("art_30"));
+        assertTrue(tokens.contains("42_usc_1983"));
+        assertTrue(tokens.contains("123_f3d_456"));
+        assertTrue(tokens.contains("smith"));
+        assertFalse(tokens.contains("1798"));
+        assertFalse(tokens.contains("v"));
+    }
+
+    @Test
+    void exactSectionReferenceRanksFirst() {
+        Bm25Index index = new Bm25Index();
+        index.add("opt-out", TextSegment.from("Consumers may opt out of the sale of personal information under Section 1798.120."));
+        index.add("deletion", TextSegment.from("Section 1798.105 gives consumers the right to request deletion of personal information."));
+        index.add("records", TextSegment.from("Article 30 requires controllers to maintain records of processing activities."));
+
+        List<Bm25Index.Hit> hits = index.search("What does § 1798.120 require?", 10, null);
+
+        assertEquals("opt-out", hits.get(0).id());
+        assertTrue(hits.stream().noneMatch(hit -> hit.id().equals("records")));
+    }
+
+    @Test
+    void filterAndRemovalAreApplied() {
+        Bm25Index index = new Bm25Index();
+        index.add("ca", TextSegment.from("employment arbitration clause", Metadata.from("jurisdiction", "California")));
+        index.add("fed", TextSegment.from("employment arbitration clause", Metadata.from("jurisdiction", "Federal")));
+        index.add("ny", TextSegment.from("employment arbitration clause", Metadata.from("jurisdiction", "New York")));
+
+        index.remove(List.of("ny"));
+        List<Bm25Index.Hit> hits = index.search("arbitration", 10, metadataKey("jurisdiction").isEqualTo("California"));
+
+        assertEquals(1, hits.size());
+        assertEquals("ca", hits.get(0).id());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void replacedAndRemovedDocumentsNoLongerSkewScores() {
+        Bm25Index fresh = new Bm25Index();
+        fresh.add("a", TextSegment.from("indemnification cap of twelve months fees"));
+        fresh.add("b", TextSegment.from("limitation of liability excludes gross negligence"));
+
+        Bm25Index reindexed = new Bm25Index();
+        reindexed.add("a", TextSegment.from("indemnification indemnification survives termination of this agreement entirely"));
+        reindexed.add("b", TextSegment.from("limitation of liability excludes gross negligence"));
+        reindexed.add("c", TextSegment.from("indemnification obligations of the vendor"));
+        reindexed.add("a", TextSegment.from("indemnification cap of twelve months fees"));
+        reindexed.remove(List.of("c"));
+
+        List<Bm25Index.Hit> expected = fresh.search("indemnification cap", 10, null);
+        List<Bm25Index.Hit> actual = reindexed.search("indemnification cap", 10, null);
+
+        assertEquals(2, reindexed.size());
+        assertEquals(expected.size(), actual.size());
+        assertEquals("a", actual.get(0).id());
+        assertEquals(expected.get(0).score(), actual.get(0).score(), 1e-6);
+    }
+
+    @Test
+    void indexedFiltersAreAppliedBeforeScoringAndOthersPerDocument() {
+        Bm25Index index = new Bm25Index();
+        index.add("ca", TextSegment.from("arbitration clause", Metadata.from("jurisdiction", "California").put("court", "state")));
+        index.add("fed", TextSegment.from("arbitration arbitration clause", Metadata.from("jurisdiction", "Federal").put("court", "district")));
+        index.add("ny", TextSegment.from("arbitration clause", Metadata.from("jurisdiction", "New York").put("court", "state")));
+
+        List<Bm25Index.Hit> indexed = index.search("arbitration", 10,
+                metadataKey("jurisdiction").isIn("california", "New York"));
+        assertEquals(List.of("ca", "ny"), indexed.stream().map(Bm25Index.Hit::id).sorted().toList());
+        assertTrue(index.search("arbitration", 10, metadataKey("jurisdiction").isEqualTo("Texas")).isEmpty());
+
+        // "court" has no bitmap, so it falls back to testing each scored document
+        List<Bm25Index.Hit> unindexed = index.search("arbitration", 10, metadataKey("court").isEqualTo("district"));
+        assertEquals(List.of("fed"), unindexed.stream().map(Bm25Index.Hit::id).toList());
+
+        // A replaced document's old metadata no longer matches
+        index.add("fed", TextSegment.from("arbitration clause", Metadata.from("jurisdiction", "Texas")));
+        assertTrue(index.search("arbitration", 10, metadataKey("jurisdiction").isEqualTo("Federal")).isEmpty());
+        assertEquals("fed", index.search("arbitration", 10, metadataKey("jurisdiction").isEqualTo("Texas")).get(0).id());
+    }
+
+    @Test
+    void tombstonesAreCompactedOutOfThePostings() {
+        Bm25Index churned = new Bm25Index();
+        Bm25Index fresh = new Bm25Index();
+        List<String> removed = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            TextSegment segment = TextSegment.from("arbitration clause " + "indemnity ".repeat(i % 7) + "term " + i,
+                    Metadata.from("jurisdiction", i % 2 == 0 ? "California" : "Federal"));
+            churned.add("doc-" + i, segment);
+            if (i % 5 < 2) {
+                removed.add("doc-" + i);
+            } else {
+                fresh.add("doc-" + i, segment);
+            }
+        }
+
+        churned.remove(removed);
+        assertEquals(60, churned.size());
+        assertEquals(60, churned.documentSlots());
+
+        for (Filter filter : Arrays.asList(null, metadataKey("jurisdiction").isEqualTo("california"),
+                metadataKey("jurisdiction").isEqualTo("Federal").and(Filter.not(metadataKey("court").isEqualTo("state"))))) {
+            List<Bm25Index.Hit> expected = fresh.search("indemnity arbitration", 100, filter);
+            List<Bm25Index.Hit> actual = churned.search("indemnity arbitration", 100, filter);
+            assertEquals(expected.stream().map(Bm25Index.Hit::id).toList(), actual.stream().map(Bm25Index.Hit::id).toList());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).score(), actual.get(i).score(), 1e-6);
+            }
+        }
+
+        // Documents keep working after being renumbered
+        churned.add("doc-2", TextSegment.from("liquidated damages", Metadata.from("jurisdiction", "Texas")));
+        churned.remove(List.of("doc-3"));
+        assertEquals("doc-2", churned.search("liquidated damages", 10, metadataKey("jurisdiction").isEqualTo("texas")).get(0).id());
+        assertTrue(churned.search("term 3", 10, null).stream().noneMatch(hit -> hit.id().equals("doc-3")));
+    }
+}
@@ -0,0 +1,207 @@
+package com.email.legal_agent.service.knowledge;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantizedEmbeddingStoreTest {
+
+    private static final int DIMENSION = 384;
+    private static final int CORPUS_SIZE = 5_000;
+    private static final int QUERIES = 50;
+
+    @Test
+    void int8RecallMatchesFullPrecision() {
+        assertTrue(averageRecall(new QuantizedEmbeddingStore(QuantizedEmbeddingStore.Mode.INT8, false, 1, 1000)) >= 0.9);
+    }
+
+    @Test
+    void binaryWithRescoringMatchesFullPrecision() {
+        try (QuantizedEmbeddingStore store = new QuantizedEmbeddingStore(QuantizedEmbeddingStore.Mode.BINARY, true, 4, 1000)) {
+            assertTrue(averageRecall(store) >= 0.9);
+        }
+    }
+
+    @Test
+    void removedSegmentsAreNotReturned() {
+        QuantizedEmbeddingStore store = new QuantizedEmbeddingStore(QuantizedEmbeddingStore.Mode.INT8, false, 1, 10);
+        Random random = new Random(7);
+        float[] vector = randomVector(random);
+        String id = store.add(Embedding.from(vector), TextSegment.from("clause", Metadata.from("source", "kb")));
+
+        store.remove(id);
+
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(vector))
+                .maxResults(5)
+                .build();
+        assertEquals(0, store.search(request).matches().size());
+    }
+
+    @Test
+    void removeAllStartsAFreshSpillForTheNextCorpus() {
+        QuantizedEmbeddingStore store = new QuantizedEmbeddingStore(QuantizedEmbeddingStore.Mode.INT8, true, 2, 10);
+        Random random = new Random(3);
+        for (int i = 0; i < 20; i++) {
+            store.add(Embedding.from(randomVector(random)), TextSegment.from("old " + i));
+        }
+
+        store.removeAll();
+        float[] vector = new float[16];
+        vector[5] = 1f;
+        String id = store.add(Embedding.from(vector), TextSegment.from("new"));
+        store.add(Embedding.from(new float[]{1f, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}), TextSegment.from("other"));
+
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(vector))
+                .maxResults(1)
+                .build();
+        EmbeddingMatch<TextSegment> match = store.search(request).matches().get(0);
+        assertEquals(id, match.embeddingId());
+        assertEquals(16, match.embedding().dimension());
+        store.close();
+    }
+
+    @Test
+    void indexedFiltersOnlyScoreMatchingSegments() {
+        QuantizedEmbeddingStore store = new QuantizedEmbeddingStore(QuantizedEmbeddingStore.Mode.INT8, false, 1, 100);
+        Random random = new Random(11);
+        String[] jurisdictions = {"California", "Federal", "Canada"};
+        for (int i = 0; i < 300; i++) {
+            Metadata metadata = new Metadata()
+                    .put("jurisdiction", jurisdictions[i % jurisdictions.length])
+                    .put("case_type", i % 2 == 0 ? "employment" : "contract")
+                    .put("year", 2015 + i % 10);
+            store.add(Embedding.from(randomVector(random)), TextSegment.from("segment " + i, metadata));
+        }
+
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(randomVector(random)))
+                .maxResults(10)
+                .filter(metadataKey("jurisdiction").isEqualTo("california")
+                        .and(metadataKey("case_type").isEqualTo("employment"))
+                        .and(metadataKey("year").isGreaterThanOrEqualTo(2020)))
+                .build();
+
+        List<EmbeddingMatch<TextSegment>> matches = store.search(request).matches();
+        assertEquals(10, matches.size());
+        for (EmbeddingMatch<TextSegment> match : matches) {
+            Metadata metadata = match.embedded().metadata();
+            assertEquals("California", metadata.getString("jurisdiction"));
+            assertEquals("employment", metadata.getString("case_type"));
+            assertTrue(metadata.getInteger("year") >= 2020);
+        }
+    }
+
+    @Test
+    void residualFiltersMatchTheSameSegmentsAsTheBitmaps() {
+        QuantizedEmbeddingStore store = new QuantizedEmbeddingStore(QuantizedEmbeddingStore.Mode.INT8, false, 1, 100);
+        Random random = new Random(13);
+        Map<Integer, String> ids = new HashMap<>();
+        for (int year = 2017; year <= 2022; year++) {
+            Metadata metadata = new Metadata()
+                    .put("jurisdiction", year % 2 == 0 ? "California" : "Federal")
+                    .put("court", "supreme")
+                    .put("year", year);
+            ids.put(year, store.add(Embedding.from(randomVector(random)), TextSegment.from("ruling " + year, metadata)));
+        }
+
+        // "court" isn't indexed, so the second filter is tested per segment
+        Filter indexed = metadataKey("jurisdiction").isEqualTo("CALIFORNIA")
+                .and(metadataKey("year").isGreaterThanOrEqualTo(2017.5));
+        Filter residual = indexed.and(metadataKey("court").isEqualTo("supreme"));
+        assertEquals(Set.of(2018, 2020, 2022), years(store, indexed));
+        assertEquals(Set.of(2018, 2020, 2022), years(store, residual));
+
+        // Fractional bounds round inwards rather than truncating
+        assertEquals(Set.of(2020, 2021, 2022), years(store, metadataKey("year").isGreaterThanOrEqualTo(2019.5)));
+        assertEquals(Set.of(2020, 2021, 2022), years(store, metadataKey("year").isGreaterThan(2019.5)));
+        assertEquals(Set.of(2017, 2018, 2019), years(store, metadataKey("year").isLessThan(2019.5)));
+        assertEquals(Set.of(), years(store, metadataKey("year").isEqualTo(2019.5)));
+        assertEquals(Set.of(2019), years(store, metadataKey("year").isEqualTo(2019.0)
+                .and(metadataKey("court").isEqualTo("supreme"))));
+
+        store.remove(ids.get(2020));
+        assertEquals(Set.of(2018, 2022), years(store, indexed));
+        assertEquals(Set.of(2018, 2022), years(store, residual));
+    }
+
+    private static Set<Integer> years(QuantizedEmbeddingStore store, Filter filter) {
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(randomVector(new Random(1))))
+                .maxResults(20)
+                .filter(filter)
+                .build();
+        return store.search(request).matches().stream()
+                .map(match -> match.embedded().metadata().getInteger("year"))
+                .collect(Collectors.toSet());
+    }
+
+    private double averageRecall(QuantizedEmbeddingStore store) {
+        Random random = new Random(42);
+        InMemoryEmbeddingStore<TextSegment> exact = new InMemoryEmbeddingStore<>();
+
+        // Clustered corpus so nearest neighbours are meaningful, as with real clause embeddings
+        List<float[]> centroids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            centroids.add(randomVector(random));
+        }
+
+        List<String> ids = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            ids.add("segment-" + i);
+            embeddings.add(Embedding.from(perturb(centroids.get(i % centroids.size()), random, 0.6f)));
+        }
+        List<TextSegment> segments = ids.stream().map(TextSegment::from).toList();
+        store.addAll(ids, embeddings, segments);
+        exact.addAll(ids, embeddings, segments);
+
+        double recall = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            Embedding query = Embedding.from(perturb(centroids.get(q % centroids.size()), random, 0.6f));
+            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(query)
+                    .maxResults(10)
+                    .build();
+
+            Set<String> expected = exact.search(request).matches().stream()
+                    .map(EmbeddingMatch::embeddingId)
+                    .collect(Collectors.toSet());
+            long hits = store.search(request).matches().stream()
+                    .map(EmbeddingMatch::embeddingId)
+                    .filter(expected::contains)
+                    .count();
+            recall += hits / (double) expected.size();
+        }
+        return recall / QUERIES;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static float[] perturb(float[] centroid, Random random, float noise) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = centroid[i] + noise * (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,108 @@
+package com.email.legal_agent.service.replay;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrafficTraceTest {
+
+    @TempDir
+    Path directory;
+
+    // Asks for a tool on the first call, answers with the call count after that
+    private static ChatLanguageModel live(AtomicInteger calls) {
+        return new ChatLanguageModel() {
+            @Override
+            public ChatResponse chat(ChatRequest request) {
+                int call = calls.incrementAndGet();
+                AiMessage message = call == 1
+                        ? AiMessage.from(ToolExecutionRequest.builder().id("t1").name("searchCaseLaw")
+                        .arguments("{\"query\":\"non-compete\"}").build())
+                        : AiMessage.from("answer " + call);
+                return ChatResponse.builder().aiMessage(message).tokenUsage(new TokenUsage(100 * call, 10 * call))
+                        .finishReason(call == 1 ? FinishReason.TOOL_EXECUTION : FinishReason.STOP).build();
+            }
+        };
+    }
+
+    private static ChatResponse ask(ChatLanguageModel model, String question) {
+        return model.chat(ChatRequest.builder().messages(UserMessage.from(question)).build());
+    }
+
+    private static ChatLanguageModel offline() {
+        return new ChatLanguageModel() {
+            @Override
+            public ChatResponse chat(ChatRequest request) {
+                throw new AssertionError("replay must not reach the live model");
+            }
+        };
+    }
+
+    @Test
+    void recordedExchangesAreServedBackWithoutTheLiveModelOrTools() {
+        String file = directory.resolve("trace.ndjson.gz").toString();
+        AtomicInteger liveCalls = new AtomicInteger();
+        TrafficTrace recording = new TrafficTrace(new SimpleMeterRegistry(), "record", file, 1.0, 100);
+        ChatLanguageModel researcher = recording.chatModel(live(liveCalls), "research");
+        recording.query(TraceEvent.QUERY, "Is my non-compete enforceable?", "s1", "COMPREHENSIVE", "DETAILED");
+        ChatResponse toolTurn = ask(researcher, "Is my non-compete enforceable?");
+        String toolResult = recording.tool("searchCaseLaw", "{\"query\":\"non-compete\"}", () -> "3 rulings found");
+        ChatResponse answer = ask(researcher, "with the rulings");
+        recording.embedding("non-compete", System.nanoTime());
+        recording.shutdown();
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TrafficTrace replay = new TrafficTrace(registry, "replay", file, 0.0, 100);
+        ChatLanguageModel replayed = replay.chatModel(offline(), "research");
+
+        assertEquals(1, replay.requests().size());
+        assertEquals("Is my non-compete enforceable?", replay.requests().get(0).input());
+        assertEquals(toolTurn.aiMessage().toolExecutionRequests(),
+                ask(replayed, "Is my non-compete enforceable?").aiMessage().toolExecutionRequests());
+        assertEquals(toolResult, replay.tool("searchCaseLaw", "{\"query\":\"non-compete\"}",
+                () -> fail("replay must not run the tool")));
+        ChatResponse replayedAnswer = ask(replayed, "with the rulings");
+        assertEquals(answer.aiMessage().text(), replayedAnswer.aiMessage().text());
+        assertEquals(answer.tokenUsage(), replayedAnswer.tokenUsage());
+        assertEquals(FinishReason.STOP, replayedAnswer.finishReason());
+        assertEquals(2, liveCalls.get());
+        assertEquals(2, replay.lookups(TraceEvent.CHAT, "digest"));
+        assertEquals(1, replay.lookups(TraceEvent.TOOL, "digest"));
+    }
+
+    @Test
+    void unmatchedRequestsFallBackToTraceOrderAndFailOnceItRunsOut() {
+        String file = directory.resolve("trace.ndjson").toString();
+        TrafficTrace recording = new TrafficTrace(new SimpleMeterRegistry(), "record", file, 1.0, 100);
+        ChatLanguageModel strategist = recording.chatModel(live(new AtomicInteger(1)), "strategy");
+        ask(strategist, "first");
+        ask(strategist, "second");
+        recording.shutdown();
+
+        TrafficTrace replay = new TrafficTrace(new SimpleMeterRegistry(), "replay", file, 0.0, 100);
+        ChatLanguageModel replayed = replay.chatModel(offline(), "strategy");
+
+        // "second" matches its own recording; the reworded question gets the one left over
+        assertEquals("answer 3", ask(replayed, "second").aiMessage().text());
+        assertEquals("answer 2", ask(replayed, "first, reworded").aiMessage().text());
+        assertThrows(IllegalStateException.class, () -> ask(replayed, "third"));
+        assertEquals(1, replay.lookups(TraceEvent.CHAT, "digest"));
+        assertEquals(1, replay.lookups(TraceEvent.CHAT, "order"));
+        assertEquals(1, replay.lookups(TraceEvent.CHAT, "none"));
+        assertEquals(List.of(), replay.requests());
+    }
+}
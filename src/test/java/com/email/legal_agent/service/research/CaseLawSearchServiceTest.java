@@ -0,0 +1,68 @@
+package com.email.legal_agent.service.research;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaseLawSearchServiceTest {
+
+    private static final String RULINGS = """
+            {"title": "Edwards v. Arthur Andersen LLP", "court": "Supreme Court of California", "year": 2008, "jurisdiction": "California", "summary": "Employee noncompetition agreements are void under section 16600."}
+            {"title": "Epic Systems Corp. v. Lewis", "court": "Supreme Court of the United States", "year": 2018, "jurisdiction": "Federal", "summary": "Employment arbitration agreements with class action waivers are enforceable."}
+
+            {"title": "Uber BV v. Aslam", "court": "Supreme Court of the United Kingdom", "year": 2021, "jurisdiction": "UK", "summary": "Drivers are workers despite contract terms calling them independent contractors."}
+            {"title": "Restatement note", "jurisdiction": "Federal", "summary": "Noncompetition covenants are enforced when reasonable in scope and duration."}
+            """;
+
+    private static LocalCaseLawProvider local() throws Exception {
+        return LocalCaseLawProvider.fromJsonLines(new ByteArrayInputStream(RULINGS.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void localIndexRanksRequestedJurisdictionFirst() throws Exception {
+        LocalCaseLawProvider local = local();
+
+        List<CaseLawResult> results = local.search("noncompetition agreements", "california", 5).get();
+
+        assertEquals(4, local.size());
+        assertEquals(List.of("Edwards v. Arthur Andersen LLP", "Restatement note"),
+                results.stream().limit(2).map(CaseLawResult::title).toList());
+        assertEquals(2008, results.get(0).year());
+        assertEquals("local", results.get(0).provider());
+    }
+
+    @Test
+    void failingProviderFallsBackToLocalAndIsCounted() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CaseLawSearchProvider unreachable = new CaseLawSearchProvider() {
+            @Override
+            public String name() {
+                return "duckduckgo";
+            }
+
+            @Override
+            public CompletableFuture<List<CaseLawResult>> search(String legalConcept, String jurisdiction, int maxResults) {
+                return CompletableFuture.failedFuture(new HttpTimeoutException("request timed out"));
+            }
+        };
+        CaseLawSearchService service = new CaseLawSearchService(registry, 3, unreachable, local());
+
+        CaseLawSearchService.Search search = service.search("class action waiver arbitration", "Federal").get();
+
+        assertEquals("local", search.provider());
+        assertEquals("timed out", search.fallbackReason());
+        assertEquals("Epic Systems Corp. v. Lewis", search.results().get(0).title());
+        assertEquals(1.0, registry.get("legal.research.provider.failures").tag("provider", "duckduckgo").counter().count());
+        assertEquals(1, registry.get("legal.research.provider")
+                .tags("provider", "duckduckgo", "outcome", "timeout").timer().count());
+        assertEquals(1, registry.get("legal.research.provider")
+                .tags("provider", "local", "outcome", "success").timer().count());
+    }
+}
@@ -0,0 +1,133 @@
+package com.email.legal_agent.service.research;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuckDuckGoCaseLawProviderTest {
+
+    private static final String RESPONSE = """
+            {
+              "Heading": "Van Buren v. United States",
+              "AbstractText": "Van Buren v. United States, 593 U.S. 374 (2021), was a Supreme Court of the United States case on the Computer Fraud and Abuse Act.",
+              "AbstractURL": "https://supreme.justia.com/cases/federal/us/593/19-783/",
+              "Results": [],
+              "RelatedTopics": [
+                {
+                  "Result": "<a href=\\"https://caselaw.findlaw.com/court/us-9th-circuit/hiq.html\\">hiQ Labs v. LinkedIn</a> scraping public profiles",
+                  "Text": "hiQ Labs v. LinkedIn - scraping public profiles, 31 F.4th 1180 (9th Cir. 2022)",
+                  "FirstURL": "https://caselaw.findlaw.com/court/us-9th-circuit/hiq.html"
+                },
+                {
+                  "Name": "See also",
+                  "Topics": [
+                    {"Text": "Sandvig v. Barr - research exemption (D.D.C. 2020)", "FirstURL": "https://law.justia.com/sandvig"},
+                    {"Text": "Van Buren v. United States - duplicate", "FirstURL": "https://supreme.justia.com/cases/federal/us/593/19-783/"}
+                  ]
+                }
+              ]
+            }
+            """;
+
+    private HttpServer server;
+    private DuckDuckGoCaseLawProvider provider;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", exchange -> respond(exchange, RESPONSE.getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/huge", exchange -> respond(exchange, new byte[64 * 1024]));
+        server.createContext("/slow", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(2_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    private void respond(HttpExchange exchange, byte[] body) throws IOException {
+        requests.incrementAndGet();
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        } catch (IOException e) {
+            // Client hung up after hitting its limit
+        }
+    }
+
+    @AfterEach
+    void stopServer() {
+        if (provider != null) {
+            provider.close();
+        }
+        server.stop(0);
+    }
+
+    private DuckDuckGoCaseLawProvider provider(String path) {
+        provider = new DuckDuckGoCaseLawProvider("http://127.0.0.1:" + server.getAddress().getPort() + path,
+                Duration.ofSeconds(2), Duration.ofMillis(500), 16 * 1024, Duration.ofMinutes(5), 10);
+        return provider;
+    }
+
+    @Test
+    void responseIsParsedIntoRulingsAndCached() throws Exception {
+        DuckDuckGoCaseLawProvider duckDuckGo = provider("/ok");
+
+        List<CaseLawResult> results = duckDuckGo.search("unauthorized access", "Federal", 5).get();
+
+        assertEquals(List.of("Van Buren v. United States", "hiQ Labs v. LinkedIn", "Sandvig v. Barr"),
+                results.stream().map(CaseLawResult::title).toList());
+        assertEquals(2021, results.get(0).year());
+        assertEquals("Supreme Court of the United States", results.get(0).court());
+        assertEquals("9th Cir.", results.get(1).court());
+        assertEquals(2022, results.get(1).year());
+        assertEquals("https://law.justia.com/sandvig", results.get(2).url());
+
+        duckDuckGo.search("Unauthorized Access", "federal", 5).get();
+        assertEquals(1, requests.get(), "repeat searches are served from the cache");
+    }
+
+    @Test
+    void oversizedResponseIsRejected() {
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> provider("/huge").search("anything", "Federal", 5).get());
+
+        assertTrue(error.getCause().getMessage().contains("exceeded"), error.getCause().getMessage());
+    }
+
+    @Test
+    void slowResponseTimesOutAndIsNotCached() {
+        DuckDuckGoCaseLawProvider duckDuckGo = provider("/slow");
+
+        long start = System.nanoTime();
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> duckDuckGo.search("anything", "Federal", 5).get());
+
+        assertInstanceOf(HttpTimeoutException.class, error.getCause());
+        assertTrue(System.nanoTime() - start < 1_500_000_000L);
+        assertThrows(ExecutionException.class, () -> duckDuckGo.search("anything", "Federal", 5).get());
+        assertEquals(2, requests.get(), "failed searches are retried");
+    }
+}
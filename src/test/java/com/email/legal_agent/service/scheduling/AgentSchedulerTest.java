@@ -0,0 +1,97 @@
+package com.email.legal_agent.service.scheduling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentSchedulerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> served = Collections.synchronizedList(new ArrayList<>());
+    private final List<Thread> waiters = new ArrayList<>();
+
+    private AgentScheduler scheduler(int maxConcurrent, int lowLimit, long starvationMillis, long timeoutSeconds) {
+        return new AgentScheduler(registry, maxConcurrent, maxConcurrent, maxConcurrent, maxConcurrent, lowLimit,
+                starvationMillis, timeoutSeconds, 100, "heavy=1,light=1");
+    }
+
+    // Queue a request that records when it is served and gives its slot straight back
+    @SuppressWarnings("try")
+    private void enqueue(AgentScheduler scheduler, Priority priority, String tenant) throws InterruptedException {
+        int before = scheduler.queued(priority);
+        waiters.add(Thread.ofVirtual().start(() -> {
+            try (AgentScheduler.Permit permit = scheduler.acquire(priority, tenant)) {
+                served.add(priority + " " + tenant);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        while (scheduler.queued(priority) == before) {
+            Thread.sleep(1);
+        }
+    }
+
+    private void awaitWaiters() throws InterruptedException {
+        for (Thread waiter : waiters) {
+            waiter.join(5_000);
+        }
+    }
+
+    @Test
+    void urgentWorkGoesFirstAndTenantsShareTheirClassFairly() throws Exception {
+        AgentScheduler scheduler = scheduler(1, 1, 60_000, 30);
+        AgentScheduler.Permit busy = scheduler.acquire(Priority.MEDIUM, "x");
+
+        enqueue(scheduler, Priority.LOW, "sweep");
+        for (int i = 0; i < 4; i++) {
+            enqueue(scheduler, Priority.MEDIUM, "heavy");
+        }
+        enqueue(scheduler, Priority.MEDIUM, "light");
+        enqueue(scheduler, Priority.MEDIUM, "light");
+        enqueue(scheduler, Priority.URGENT, "partner");
+
+        busy.close();
+        awaitWaiters();
+
+        assertEquals(List.of("URGENT partner", "MEDIUM heavy", "MEDIUM light", "MEDIUM heavy", "MEDIUM light",
+                "MEDIUM heavy", "MEDIUM heavy", "LOW sweep"), served);
+        assertEquals(0, scheduler.running());
+        assertEquals(1, registry.get("legal.scheduler.wait").tag("class", "urgent").timer().count());
+        assertEquals(0.0, registry.get("legal.scheduler.queued").tag("class", "medium").gauge().value());
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    void starvedWaitersAreServedFirstAndClassCapsHold() throws Exception {
+        AgentScheduler scheduler = scheduler(1, 1, 100, 1);
+        AgentScheduler.Permit busy = scheduler.acquire(Priority.HIGH, "x");
+        enqueue(scheduler, Priority.LOW, "sweep");
+        Thread.sleep(150);
+        enqueue(scheduler, Priority.HIGH, "partner");
+
+        busy.close();
+        awaitWaiters();
+        assertEquals(List.of("LOW sweep", "HIGH partner"), served);
+        assertEquals(1.0, registry.get("legal.scheduler.promoted").tag("class", "low").counter().count());
+
+        // Two slots, but the low class may only use one of them; a second low request times out
+        AgentScheduler capped = new AgentScheduler(new SimpleMeterRegistry(), 2, 2, 2, 2, 1, 60_000, 1, 100, "");
+        try (AgentScheduler.Permit low = capped.acquire(Priority.LOW, "sweep")) {
+            assertThrows(RejectedExecutionException.class, () -> capped.acquire(Priority.LOW, "sweep"));
+            assertEquals(0, capped.queued(Priority.LOW));
+            try (AgentScheduler.Permit high = capped.acquire(Priority.HIGH, "partner")) {
+                assertEquals(2, capped.running());
+            }
+        }
+        assertEquals(0, capped.running());
+
+        assertThrows(IllegalArgumentException.class, () -> Priority.parse("critical"));
+        assertEquals(Priority.MEDIUM, Priority.parse(null));
+    }
+}
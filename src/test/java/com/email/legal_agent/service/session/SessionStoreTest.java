@@ -0,0 +1,118 @@
+package com.email.legal_agent.service.session;
+
+import com.email.legal_agent.dto.LegalAnalysisResult;
+import com.email.legal_agent.service.LegalTeamService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The store commits on its own writer thread, so tests run outside a test-managed transaction
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SessionStoreTest {
+
+    @Autowired
+    ConversationTurnRepository turnRepository;
+
+    @Autowired
+    AnalysisRecordRepository resultRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final List<SessionStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() {
+        stores.forEach(SessionStore::shutdown);
+        turnRepository.deleteAll();
+        resultRepository.deleteAll();
+    }
+
+    private SessionStore store(SimpleMeterRegistry registry, int hotMaxSessions) {
+        SessionStore store = new SessionStore(turnRepository, resultRepository, transactionManager,
+                new ObjectMapper(), registry, hotMaxSessions, 1000, 50, 1000);
+        stores.add(store);
+        return store;
+    }
+
+    @Test
+    void writesAreBatchedAndAnotherStoreReadsThemFromTheDatabase() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SessionStore node = store(registry, 100);
+        for (int i = 0; i < 120; i++) {
+            node.appendTurn("s1", (i % 2 == 0 ? "USER: " : "ASSISTANT: ") + "turn " + i);
+        }
+        LegalAnalysisResult result = new LegalAnalysisResult();
+        result.setSessionId("s1");
+        result.setQueryType(LegalTeamService.QueryType.COMPLIANCE);
+        result.setExecutiveSummary("GDPR applies");
+        result.setProcessingStats(Map.of("totalMs", 42));
+        node.saveResult("s1", result);
+
+        // Visible at once from the hot tier, before anything reached the database
+        assertEquals(120, node.history("s1").size());
+        assertEquals("GDPR applies", node.results("s1").get(0).getExecutiveSummary());
+
+        node.flush().get(5, TimeUnit.SECONDS);
+        assertEquals(120, turnRepository.count());
+        long batches = registry.get("legal.sessions.write-behind.batch").timer().count();
+        assertTrue(batches <= 5, "121 writes took " + batches + " batches");
+
+        // A second store over the same database, as after a restart or on another node
+        SimpleMeterRegistry otherRegistry = new SimpleMeterRegistry();
+        SessionStore otherNode = store(otherRegistry, 100);
+        List<String> history = otherNode.history("s1");
+        assertEquals(120, history.size());
+        assertEquals("USER: turn 0", history.get(0));
+        assertEquals("ASSISTANT: turn 119", history.get(119));
+        LegalAnalysisResult loaded = otherNode.results("s1").get(0);
+        assertEquals(LegalTeamService.QueryType.COMPLIANCE, loaded.getQueryType());
+        assertEquals(42, loaded.getProcessingStats().get("totalMs"));
+
+        otherNode.history("s1");
+        assertEquals(1.0, otherRegistry.get("legal.sessions.reads").tag("tier", "database").counter().count());
+        assertEquals(2.0, otherRegistry.get("legal.sessions.reads").tag("tier", "hot").counter().count());
+
+        // Pages resume where the previous one ended and the last one carries no cursor
+        SessionStore.Page<String> page = otherNode.history("s1", 0, 50);
+        assertEquals(50, page.items().size());
+        page = otherNode.history("s1", page.next(), 50);
+        assertEquals("USER: turn 50", page.items().get(0));
+        page = otherNode.history("s1", page.next(), 50);
+        assertEquals(20, page.items().size());
+        assertEquals(-1, page.next());
+    }
+
+    @Test
+    void clearedSessionStaysEmptyAndEvictedSessionsReloadFromTheDatabase() throws Exception {
+        SessionStore store = store(new SimpleMeterRegistry(), 1);
+        store.appendTurn("old", "USER: first question");
+        store.clear("old");
+        store.appendTurn("old", "USER: fresh start");
+        assertEquals(List.of("USER: fresh start"), store.history("old"));
+
+        // Only one session fits the hot tier; the other must come back from the database
+        store.appendTurn("other", "USER: another session");
+        store.flush().get(5, TimeUnit.SECONDS);
+        store.appendTurn("third", "USER: evicts the others");
+        store.flush().get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("USER: fresh start"), store.history("old"));
+        assertEquals(List.of("USER: another session"), store.history("other"));
+        assertEquals(0, store.queuedWrites());
+    }
+}
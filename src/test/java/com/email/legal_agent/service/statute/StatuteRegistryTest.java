@@ -0,0 +1,105 @@
+package com.email.legal_agent.service.statute;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatuteRegistryTest {
+
+    private static final String REGISTRY = """
+            # test registry
+            version\t2025.01
+            jurisdiction\tfederal\tFederal\tus,united states\thttps://www.congress.gov https://www.law.cornell.edu
+            jurisdiction\tcalifornia\tCalifornia\tcal.\thttps://leginfo.legislature.ca.gov
+            statute\t42 U.S.C. § 1983\tfederal\t1871-04-20\t\tCivil action for deprivation of rights
+            statute\t12 U.S.C. § 377\tfederal\t1933-06-16\t1999-11-12\tGlass-Steagall Act section 20
+            statute\tCal. Civ. Code § 1798.100\tcalifornia\t2020-01-01\t\tCCPA: general duties\tCCPA
+            """;
+
+    @TempDir
+    Path directory;
+
+    private StatuteRegistry registry;
+
+    @AfterEach
+    void shutdown() {
+        if (registry != null) {
+            registry.shutdown();
+        }
+    }
+
+    private StatuteRegistry registry(Path source) {
+        registry = new StatuteRegistry(new DefaultResourceLoader(), source.toUri().toString(),
+                directory.resolve("tables").toString(), "federal", 0);
+        return registry;
+    }
+
+    @Test
+    void looksUpStatutesByAnyCitationFormAndReportsValidity() throws Exception {
+        Path source = Files.writeString(directory.resolve("registry.tsv"), REGISTRY);
+        StatuteRegistry registry = registry(source);
+
+        assertEquals(Optional.of("2025.01"), registry.version());
+        Statute section1983 = registry.find("42 USC 1983(a)").orElseThrow();
+        assertEquals("42 U.S.C. § 1983", section1983.identifier());
+        assertEquals("Federal", section1983.jurisdiction());
+        assertEquals(Statute.Validity.IN_FORCE, section1983.validityOn(LocalDate.of(2025, 1, 1)));
+
+        Statute glassSteagall = registry.find("12 U.S.C. § 377").orElseThrow();
+        assertEquals(Statute.Validity.IN_FORCE, glassSteagall.validityOn(LocalDate.of(1990, 1, 1)));
+        assertEquals(Statute.Validity.REPEALED, glassSteagall.validityOn(LocalDate.of(1999, 11, 12)));
+        assertEquals(Statute.Validity.NOT_YET_IN_FORCE, glassSteagall.validityOn(LocalDate.of(1930, 1, 1)));
+
+        assertEquals("Cal. Civ. Code § 1798.100", registry.find("ccpa").orElseThrow().identifier());
+        assertTrue(registry.find("15 U.S.C. § 6501").isEmpty());
+
+        assertEquals("federal", registry.jurisdiction("United States").orElseThrow().id());
+        assertEquals(List.of("https://leginfo.legislature.ca.gov"),
+                registry.jurisdiction("Cal.").orElseThrow().sources());
+        assertTrue(registry.jurisdiction("Mars").isEmpty());
+        assertEquals("federal", registry.jurisdictionOrFallback("Mars").orElseThrow().id());
+
+        // Lookups are answered from the mapped table in microseconds
+        int lookups = 20_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            registry.find("42 U.S.C. § 1983");
+        }
+        long averageMicros = (System.nanoTime() - start) / lookups / 1_000;
+        assertTrue(averageMicros < 100, "average lookup took " + averageMicros + " µs");
+    }
+
+    @Test
+    void refreshSwapsInTheNewVersionAndKeepsTheOldOneOnBadData() throws Exception {
+        Path source = Files.writeString(directory.resolve("registry.tsv"), REGISTRY);
+        StatuteRegistry registry = registry(source);
+
+        Files.writeString(source, REGISTRY.replace("2025.01", "2025.02")
+                + "statute\t15 U.S.C. § 6501\tfederal\t1998-10-21\t\tCOPPA definitions\tCOPPA\n");
+        assertEquals("2025.02", registry.refresh());
+        assertEquals("15 U.S.C. § 6501", registry.find("COPPA").orElseThrow().identifier());
+        // Only the live table's file is kept
+        assertEquals(1, tables().size(), tables().toString());
+
+        Files.writeString(source, REGISTRY + "statute\t9 U.S.C. § 2\tnowhere\t1926-01-01\t\tFAA\n");
+        assertThrows(IllegalArgumentException.class, registry::refresh);
+        assertEquals(Optional.of("2025.02"), registry.version());
+        assertTrue(registry.find("COPPA").isPresent());
+        assertEquals(1, tables().size(), tables().toString());
+    }
+
+    private List<Path> tables() throws Exception {
+        try (var files = Files.list(directory.resolve("tables"))) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".bin")).toList();
+        }
+    }
+}
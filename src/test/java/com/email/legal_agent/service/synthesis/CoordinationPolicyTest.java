@@ -0,0 +1,81 @@
+package com.email.legal_agent.service.synthesis;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoordinationPolicyTest {
+
+    private static final String COMPLIANCE = """
+            ### Article 28 Processor Terms
+            🔎 Observation: The DPA lists sub-processors and audit rights.
+            📊 Risk Level: Medium
+            💡 Recommendation: Add a 72-hour breach notification duty to clause 9
+            """;
+
+    private static final String STRATEGY = """
+            # Strategy
+
+            Given a SaaS provider in the EU facing a customer audit, the balanced option is to update the
+            processor terms before renewal. This keeps the relationship intact and closes the notification gap.
+
+            1. Circulate the revised DPA to the customer
+            2. Brief the security team on the new notification window
+            """;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CoordinationPolicy policy = new CoordinationPolicy(registry, "auto", 2, 12_000);
+
+    private double decisions(String path) {
+        return registry.get("legal.coordination").tag("path", path).counters().stream()
+                .mapToDouble(Counter::count).sum();
+    }
+
+    @Test
+    void simpleWorkflowsAreSynthesizedFromTemplates() {
+        AgentReports reports = new AgentReports(null, null, COMPLIANCE, STRATEGY);
+        CoordinationPolicy.Decision decision = policy.decide(reports);
+        assertFalse(decision.useCoordinator());
+        assertEquals("simple", decision.reason());
+
+        DeterministicSynthesis.Synthesis synthesis = DeterministicSynthesis.synthesize(reports);
+        assertTrue(synthesis.executiveSummary().contains("Given a SaaS provider in the EU"), synthesis.executiveSummary());
+        assertEquals(RiskLevel.MEDIUM, synthesis.heatmap().get("Compliance"));
+        assertEquals(List.of("Add a 72-hour breach notification duty to clause 9"), synthesis.actionItems());
+        assertTrue(synthesis.executiveSummary().contains("1. Add a 72-hour breach notification duty"));
+        assertEquals(synthesis, DeterministicSynthesis.synthesize(reports));
+
+        // Without explicit recommendations the numbered steps become the action items
+        List<String> steps = DeterministicSynthesis.synthesize(new AgentReports("Precedent found.", null, null, STRATEGY))
+                .actionItems();
+        assertEquals(List.of("Circulate the revised DPA to the customer",
+                "Brief the security team on the new notification window"), steps);
+
+        assertEquals(1.0, decisions("deterministic"));
+    }
+
+    @Test
+    void coordinatorIsKeptForManyAgentsConflictsEscalationsAndLongOutputs() {
+        assertEquals("agent-count", policy.decide(new AgentReports("r", "c", COMPLIANCE, STRATEGY)).reason());
+
+        AgentReports conflict = new AgentReports(null, null,
+                "Processing of health data without consent is a violation of Article 9.",
+                "Overall this is a low risk position for the client.");
+        assertEquals("risk-conflict", policy.decide(conflict).reason());
+
+        AgentReports escalation = new AgentReports("Circuits are split; this requires human attorney review.",
+                null, null, STRATEGY);
+        assertEquals("escalation", policy.decide(escalation).reason());
+
+        AgentReports longOutput = new AgentReports(null, null, COMPLIANCE, STRATEGY.repeat(40));
+        assertEquals("output-length", policy.decide(longOutput).reason());
+
+        assertFalse(new CoordinationPolicy(registry, "never", 2, 12_000)
+                .decide(new AgentReports("r", "c", COMPLIANCE, STRATEGY)).useCoordinator());
+        assertEquals(4.0, decisions("llm"));
+    }
+}
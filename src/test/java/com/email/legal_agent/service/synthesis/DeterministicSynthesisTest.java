@@ -0,0 +1,44 @@
+package com.email.legal_agent.service.synthesis;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeterministicSynthesisTest {
+
+    @Test
+    void negatedRiskKeywordsDoNotRaiseTheRating() {
+        assertEquals(RiskLevel.LOW, DeterministicSynthesis.assess(
+                "No violations were found in the processor terms. Overall this is a low risk position."));
+        assertEquals(RiskLevel.UNRATED, DeterministicSynthesis.assess("The vendor is not non-compliant with GDPR."));
+        assertEquals(RiskLevel.LOW, DeterministicSynthesis.assess(
+                "The clause doesn't violate Article 9 and the DPA is fully compliant."));
+        assertEquals(RiskLevel.UNRATED, DeterministicSynthesis.assess("We found no material violation of the lease."));
+
+        // Negation only reaches a few words back within the clause
+        assertEquals(RiskLevel.HIGH, DeterministicSynthesis.assess(
+                "Processing of health data without consent is a violation of Article 9."));
+        assertEquals(RiskLevel.HIGH, DeterministicSynthesis.assess(
+                "The seller did not sign the disclosure, which is a violation of the statute."));
+    }
+
+    @Test
+    void explicitRiskLevelsOutrankKeywords() {
+        assertEquals(RiskLevel.LOW, DeterministicSynthesis.assess("""
+                🔎 Observation: earlier drafts were non-compliant, but the signed version fixed clause 4.
+                📊 Risk Level: Low
+                """));
+        assertEquals(RiskLevel.HIGH, DeterministicSynthesis.assess("""
+                📊 Risk Level: Medium
+                📊 Risk Level: **High**
+                """));
+    }
+
+    @Test
+    void negatedEscalationsDoNotEscalate() {
+        assertFalse(DeterministicSynthesis.escalates(new AgentReports(null, null,
+                "This routine renewal does not require attorney review.", null)));
+        assertTrue(DeterministicSynthesis.escalates(new AgentReports(null, null,
+                "Circuits are split; this requires human attorney review.", null)));
+    }
+}
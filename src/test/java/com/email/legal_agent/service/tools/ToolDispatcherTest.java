@@ -0,0 +1,153 @@
+package com.email.legal_agent.service.tools;
+
+import com.email.legal_agent.service.replay.TrafficTrace;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.service.AiServices;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolDispatcherTest {
+
+    interface Researcher {
+        String research(String question);
+    }
+
+    public static class SlowTools {
+        final AtomicInteger executions = new AtomicInteger();
+
+        @Tool("Search rulings")
+        public String searchRecentRulings(String legalConcept, String jurisdiction) throws InterruptedException {
+            executions.incrementAndGet();
+            Thread.sleep(300);
+            return "rulings on " + legalConcept;
+        }
+
+        @Tool("Check a statute")
+        public String verifyStatutoryValidity(String statute, String jurisdiction) throws InterruptedException {
+            executions.incrementAndGet();
+            Thread.sleep(300);
+            return "statute " + statute + " is current";
+        }
+
+        @Tool("Secondary sources")
+        public String crossReferenceSecondary(String topic) throws InterruptedException {
+            executions.incrementAndGet();
+            Thread.sleep(topic.equals("hang") ? 5_000 : 300);
+            return "journals on " + topic;
+        }
+    }
+
+    /**
+     * Asks for the scripted tool calls on the first turn and echoes the tool results on the second
+     */
+    static class ScriptedModel implements ChatLanguageModel {
+        final List<ToolExecutionRequest> calls;
+        final List<String> toolResults = new CopyOnWriteArrayList<>();
+
+        ScriptedModel(List<ToolExecutionRequest> calls) {
+            this.calls = calls;
+        }
+
+        @Override
+        public ChatResponse chat(ChatRequest request) {
+            List<ChatMessage> messages = request.messages();
+            AiMessage reply;
+            if (messages.get(messages.size() - 1) instanceof ToolExecutionResultMessage) {
+                messages.stream().filter(ToolExecutionResultMessage.class::isInstance)
+                        .map(message -> ((ToolExecutionResultMessage) message).text())
+                        .forEach(toolResults::add);
+                reply = AiMessage.from("done");
+            } else {
+                reply = AiMessage.from(calls);
+            }
+            return ChatResponse.builder().aiMessage(reply).tokenUsage(new TokenUsage(1, 1)).build();
+        }
+    }
+
+    private final ToolDispatcher dispatcher = new ToolDispatcher(new SimpleMeterRegistry(),
+            new TrafficTrace(new SimpleMeterRegistry(), "off", "", 1.0, 1), 1, 2, 64, 100);
+
+    @AfterEach
+    void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    private static ToolExecutionRequest call(String id, String name, String arguments) {
+        return ToolExecutionRequest.builder().id(id).name(name).arguments(arguments).build();
+    }
+
+    private Researcher researcher(ScriptedModel model, SlowTools tools) {
+        return AiServices.builder(Researcher.class)
+                .chatLanguageModel(dispatcher.dispatching(model))
+                .chatMemory(MessageWindowChatMemory.withMaxMessages(50))
+                .tools(dispatcher.executors(tools))
+                .build();
+    }
+
+    @Test
+    void toolCallsOfOneTurnRunConcurrentlyAndKeepTheirOrder() {
+        SlowTools tools = new SlowTools();
+        ScriptedModel model = new ScriptedModel(List.of(
+                call("1", "searchRecentRulings", "{\"legalConcept\":\"non-compete\",\"jurisdiction\":\"California\"}"),
+                call("2", "verifyStatutoryValidity", "{\"statute\":\"Cal. Bus. & Prof. Code 16600\",\"jurisdiction\":\"California\"}"),
+                call("3", "crossReferenceSecondary", "{\"topic\":\"non-compete\"}")));
+
+        long start = System.nanoTime();
+        dispatcher.inSession("s1", () -> researcher(model, tools).research("Are non-competes enforceable?"));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMs < 800, "three 300 ms tools took " + elapsedMs + " ms");
+        assertEquals(List.of("rulings on non-compete", "statute Cal. Bus. & Prof. Code 16600 is current",
+                "journals on non-compete"), model.toolResults);
+    }
+
+    @Test
+    void repeatedCallsInASessionAreServedFromCache() {
+        SlowTools tools = new SlowTools();
+        ScriptedModel first = new ScriptedModel(List.of(
+                call("1", "crossReferenceSecondary", "{\"topic\":\"indemnity\"}")));
+        // Same arguments with different spacing
+        ScriptedModel second = new ScriptedModel(List.of(
+                call("2", "crossReferenceSecondary", "{ \"topic\" : \"indemnity\" }")));
+
+        dispatcher.inSession("s1", () -> researcher(first, tools).research("q1"));
+        dispatcher.inSession("s1", () -> researcher(second, tools).research("q2"));
+        assertEquals(1, tools.executions.get());
+        assertEquals(List.of("journals on indemnity"), second.toolResults);
+
+        dispatcher.inSession("s2", () -> researcher(new ScriptedModel(second.calls), tools).research("q3"));
+        assertEquals(2, tools.executions.get(), "other sessions don't share results");
+    }
+
+    @Test
+    void slowToolTimesOutWithoutBlockingTheTurn() {
+        SlowTools tools = new SlowTools();
+        ScriptedModel model = new ScriptedModel(List.of(
+                call("1", "crossReferenceSecondary", "{\"topic\":\"hang\"}"),
+                call("2", "searchRecentRulings", "{\"legalConcept\":\"waiver\",\"jurisdiction\":\"Federal\"}")));
+
+        long start = System.nanoTime();
+        dispatcher.inSession("s1", () -> researcher(model, tools).research("q"));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2_000);
+        assertTrue(model.toolResults.get(0).contains("timed out"));
+        assertEquals("rulings on waiver", model.toolResults.get(1));
+    }
+}
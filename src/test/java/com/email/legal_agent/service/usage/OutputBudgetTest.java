@@ -0,0 +1,79 @@
+package com.email.legal_agent.service.usage;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputBudgetTest {
+
+    private final OutputBudget budget = new OutputBudget();
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+    private final Map<String, Integer> sent = new ConcurrentHashMap<>();
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // Records the maxOutputTokens each call was sent with (-1 for none)
+    private ChatLanguageModel recording() {
+        return budget.budgeted(new ChatLanguageModel() {
+            @Override
+            public ChatResponse chat(ChatRequest request) {
+                Integer cap = request.parameters() == null ? null : request.parameters().maxOutputTokens();
+                sent.put(((UserMessage) request.messages().get(0)).singleText(), cap == null ? -1 : cap);
+                return ChatResponse.builder().aiMessage(AiMessage.from("ok")).build();
+            }
+        });
+    }
+
+    private static void call(ChatLanguageModel model, String question) {
+        model.chat(ChatRequest.builder().messages(UserMessage.from(question)).build());
+    }
+
+    @Test
+    void chunkCallsOnPoolAndReduceThreadsCarryTheCap() {
+        ChatLanguageModel model = recording();
+        Executor chunks = budget.propagating(pool);
+        // Like the document map-reduce: a driver thread fans chunk calls out to the pool
+        Executor reduceDriver = budget.propagating(runnable -> Thread.ofVirtual().name("chunk-reduce").start(runnable));
+
+        budget.with(512, () -> {
+            call(model, "coordinator");
+            CompletableFuture<Void> contract = CompletableFuture.runAsync(() -> CompletableFuture.allOf(
+                    CompletableFuture.runAsync(() -> call(model, "contract-chunk-1"), chunks),
+                    CompletableFuture.runAsync(() -> call(model, "contract-chunk-2"), chunks)).join(), reduceDriver);
+            CompletableFuture.runAsync(() -> call(model, "compliance-chunk-1"), chunks).join();
+            contract.join();
+            return null;
+        });
+
+        assertEquals(Map.of("coordinator", 512, "contract-chunk-1", 512, "contract-chunk-2", 512,
+                "compliance-chunk-1", 512), sent);
+    }
+
+    @Test
+    void uncappedRunsAndPoolThreadsReusedAfterwardsSendNoLimit() throws Exception {
+        ChatLanguageModel model = recording();
+        Executor chunks = budget.propagating(pool);
+
+        budget.with(0, () -> CompletableFuture.runAsync(() -> call(model, "detailed"), chunks).join());
+        budget.with(256, () -> CompletableFuture.runAsync(() -> call(model, "brief"), chunks).join());
+        // The pool threads don't keep the previous request's cap
+        for (String question : List.of("later-1", "later-2")) {
+            CompletableFuture.runAsync(() -> call(model, question), chunks).get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(Map.of("detailed", -1, "brief", 256, "later-1", -1, "later-2", -1), sent);
+    }
+}
@@ -0,0 +1,146 @@
+package com.email.legal_agent.service.usage;
+
+import com.email.legal_agent.dto.TokenUsageBreakdown;
+import com.email.legal_agent.service.LegalTeamService.QueryType;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Usage is written on the flusher thread, so tests run outside a test-managed transaction
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TokenAccountingTest {
+
+    @Autowired
+    TokenUsageRepository repository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final List<TokenAccounting> instances = new ArrayList<>();
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void cleanUp() {
+        instances.forEach(TokenAccounting::shutdown);
+        pool.shutdownNow();
+        repository.deleteAll();
+    }
+
+    private TokenAccounting accounting(SimpleMeterRegistry registry, String tenantQuotas) {
+        TokenAccounting accounting = new TokenAccounting(repository, transactionManager, registry,
+                1.0, 2.0, 0, tenantQuotas, 80, "degrade", "reject", 100, 60_000);
+        instances.add(accounting);
+        return accounting;
+    }
+
+    // Every response reports 300 prompt and 100 completion tokens
+    private static ChatLanguageModel fixedUsage() {
+        return new ChatLanguageModel() {
+            @Override
+            public ChatResponse chat(ChatRequest request) {
+                return ChatResponse.builder()
+                        .aiMessage(AiMessage.from("ok"))
+                        .tokenUsage(new TokenUsage(300, 100))
+                        .build();
+            }
+        };
+    }
+
+    private static void call(ChatLanguageModel model) {
+        model.chat(ChatRequest.builder().messages(UserMessage.from("question")).build());
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    void callsAreAttributedToTheRequestIncludingPoolThreadsAndFlushedByKey() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TokenAccounting accounting = accounting(registry, "");
+        ChatLanguageModel contract = accounting.metering(fixedUsage(), "contract");
+        ChatLanguageModel coordinator = accounting.metering(fixedUsage(), "coordinator");
+        Executor chunks = accounting.propagating(pool);
+
+        TokenUsageBreakdown usage;
+        try (TokenAccounting.Scope scope = accounting.open("acme", "s1")) {
+            accounting.classify(QueryType.CONTRACT_ANALYSIS);
+            call(contract);
+            CompletableFuture.allOf(
+                    CompletableFuture.runAsync(() -> call(contract), chunks),
+                    CompletableFuture.runAsync(() -> call(contract), chunks)).join();
+            call(coordinator);
+            usage = accounting.snapshot();
+        }
+        // Outside a scope only the meters count
+        call(contract);
+        assertNull(accounting.snapshot());
+
+        assertEquals(4, usage.calls());
+        assertEquals(1200, usage.promptTokens());
+        assertEquals(400, usage.completionTokens());
+        assertEquals(3, usage.byAgent().get("contract").calls());
+        assertEquals(300 * 1e-6 + 100 * 2e-6, usage.byAgent().get("coordinator").costUsd(), 1e-12);
+        assertEquals(1200 * 1e-6 + 400 * 2e-6, usage.costUsd(), 1e-12);
+        assertEquals(1200, registry.get("legal.tokens").tags("agent", "contract", "kind", "prompt").counter().count());
+
+        accounting.flush().get(10, TimeUnit.SECONDS);
+        List<TokenUsageEntry> rows = repository.findBySessionId("s1");
+        assertEquals(2, rows.size());
+        TokenUsageEntry contractRow = rows.stream().filter(row -> row.getAgent().equals("contract")).findFirst().orElseThrow();
+        assertEquals("acme", contractRow.getTenant());
+        assertEquals("CONTRACT_ANALYSIS", contractRow.getQueryType());
+        assertEquals(3, contractRow.getCalls());
+        assertEquals(900, contractRow.getPromptTokens());
+        assertEquals(300, contractRow.getCompletionTokens());
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    void quotasDegradeThenRejectAndSurviveARestart() throws Exception {
+        TokenAccounting accounting = accounting(new SimpleMeterRegistry(), "trial=2000");
+        ChatLanguageModel quick = accounting.metering(fixedUsage(), "quick");
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(TokenAccounting.QuotaAction.NONE, accounting.quota("trial"));
+            try (TokenAccounting.Scope scope = accounting.open("trial", null)) {
+                call(quick);
+            }
+        }
+        // 1600 of 2000 tokens is the soft limit
+        assertEquals(TokenAccounting.QuotaAction.DEGRADE, accounting.quota("trial"));
+        assertEquals(TokenAccounting.QuotaAction.NONE, accounting.quota("unlimited"));
+        try (TokenAccounting.Scope scope = accounting.open("trial", null)) {
+            call(quick);
+        }
+        assertEquals(TokenAccounting.QuotaAction.REJECT, accounting.quota("trial"));
+        assertEquals(2000, accounting.usage("trial").quota());
+
+        // Another node, or this one after a restart, starts from the persisted month to date
+        accounting.flush().get(10, TimeUnit.SECONDS);
+        TokenAccounting restarted = accounting(new SimpleMeterRegistry(), "trial=2000");
+        TokenAccounting.TenantUsage usage = restarted.usage("trial");
+        assertEquals(1500, usage.promptTokens());
+        assertEquals(500, usage.completionTokens());
+        assertEquals(TokenAccounting.QuotaAction.REJECT, usage.action());
+    }
+}